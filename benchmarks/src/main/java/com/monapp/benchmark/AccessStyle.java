@@ -0,0 +1,185 @@
+package com.monapp.benchmark;
+
+import com.monapp.config.BulkConfig;
+import com.monapp.config.GroupBatchConfig;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.User;
+import com.monapp.redis.highlevel.GroupUserManagerDataSourceImperative;
+import com.monapp.redis.highlevel.GroupUserManagerDataSourceReactive;
+import com.monapp.redis.lowlevel.redis.GroupUserManagerRedisMutiny;
+import com.monapp.redis.lowlevel.redis.GroupUserManagerRedisVertx;
+import com.monapp.redis.lowlevel.redisapi.GroupUserManagerRedisAPIMutiny;
+import com.monapp.redis.lowlevel.redisapi.GroupUserManagerRedisAPIVertx;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Future;
+
+import java.util.Map;
+
+/**
+ * Les six styles d'accès à Redis, derrière une même façade bloquante pour le harnais JMH.
+ */
+enum AccessStyle {
+
+    REDIS_VERTX("redis-vertx") {
+        @Override
+        GroupUserClient create(RedisClients clients) {
+            var manager = new GroupUserManagerRedisVertx(clients.redis, clients.readRedis, clients.jsonCodec,
+                    clients.registry, clients.pipelines);
+            return new GroupUserClient() {
+                public CreateUserResult createUser(String groupId, User user) {
+                    return await(manager.createUser(groupId, user));
+                }
+
+                public User getUser(String groupId, String userId) {
+                    return await(manager.getUser(groupId, userId));
+                }
+
+                public Map<String, User> getAllUsers(String groupId) {
+                    return await(manager.getAllUsers(groupId));
+                }
+            };
+        }
+    },
+
+    REDIS_MUTINY("redis-mutiny") {
+        @Override
+        GroupUserClient create(RedisClients clients) {
+            var manager = new GroupUserManagerRedisMutiny(clients.mutinyRedis, clients.mutinyReadRedis,
+                    clients.jsonCodec, clients.config(GroupBatchConfig.class), clients.pipelines);
+            return new GroupUserClient() {
+                public CreateUserResult createUser(String groupId, User user) {
+                    return await(manager.createUser(groupId, user));
+                }
+
+                public User getUser(String groupId, String userId) {
+                    return await(manager.getUser(groupId, userId));
+                }
+
+                public Map<String, User> getAllUsers(String groupId) {
+                    return await(manager.getAllUsers(groupId));
+                }
+            };
+        }
+    },
+
+    REDISAPI_VERTX("redisapi-vertx") {
+        @Override
+        GroupUserClient create(RedisClients clients) {
+            var manager = new GroupUserManagerRedisAPIVertx(clients.redisAPI, clients.readRedisAPI, clients.redis,
+                    clients.jsonCodec, clients.pipelines);
+            return new GroupUserClient() {
+                public CreateUserResult createUser(String groupId, User user) {
+                    return await(manager.createUser(groupId, user));
+                }
+
+                public User getUser(String groupId, String userId) {
+                    return await(manager.getUser(groupId, userId));
+                }
+
+                public Map<String, User> getAllUsers(String groupId) {
+                    return await(manager.getAllUsers(groupId));
+                }
+            };
+        }
+    },
+
+    REDISAPI_MUTINY("redisapi-mutiny") {
+        @Override
+        GroupUserClient create(RedisClients clients) {
+            var manager = new GroupUserManagerRedisAPIMutiny(clients.mutinyRedisAPI, clients.mutinyReadRedisAPI,
+                    clients.mutinyRedis, clients.jsonCodec, clients.pipelines);
+            return new GroupUserClient() {
+                public CreateUserResult createUser(String groupId, User user) {
+                    return await(manager.createUser(groupId, user));
+                }
+
+                public User getUser(String groupId, String userId) {
+                    return await(manager.getUser(groupId, userId));
+                }
+
+                public Map<String, User> getAllUsers(String groupId) {
+                    return await(manager.getAllUsers(groupId));
+                }
+            };
+        }
+    },
+
+    DS_IMPERATIVE("ds-imperative") {
+        @Override
+        GroupUserClient create(RedisClients clients) {
+            var manager = new GroupUserManagerDataSourceImperative(clients.blockingDataSource,
+                    clients.readBlockingDataSource, clients.jsonCodec, clients.pipelines);
+            return new GroupUserClient() {
+                public CreateUserResult createUser(String groupId, User user) {
+                    return manager.createUser(groupId, user);
+                }
+
+                public User getUser(String groupId, String userId) {
+                    return manager.getUser(groupId, userId);
+                }
+
+                public Map<String, User> getAllUsers(String groupId) {
+                    return manager.getAllUsers(groupId);
+                }
+            };
+        }
+    },
+
+    DS_REACTIVE("ds-reactive") {
+        @Override
+        GroupUserClient create(RedisClients clients) {
+            var manager = new GroupUserManagerDataSourceReactive(clients.reactiveDataSource,
+                    clients.readReactiveDataSource, clients.jsonCodec, clients.config(BulkConfig.class), clients.pipelines);
+            return new GroupUserClient() {
+                public CreateUserResult createUser(String groupId, User user) {
+                    return await(manager.createUser(groupId, user));
+                }
+
+                public User getUser(String groupId, String userId) {
+                    return await(manager.getUser(groupId, userId));
+                }
+
+                public Map<String, User> getAllUsers(String groupId) {
+                    return await(manager.getAllUsers(groupId));
+                }
+            };
+        }
+    };
+
+    final String id;
+
+    AccessStyle(String id) {
+        this.id = id;
+    }
+
+    abstract GroupUserClient create(RedisClients clients);
+
+    static AccessStyle of(String id) {
+        for (AccessStyle style : values()) {
+            if (style.id.equals(id)) {
+                return style;
+            }
+        }
+        throw new IllegalArgumentException("Unknown style " + id);
+    }
+
+    private static <T> T await(Future<T> future) {
+        return future.toCompletionStage().toCompletableFuture().join();
+    }
+
+    private static <T> T await(Uni<T> uni) {
+        return uni.await().indefinitely();
+    }
+
+    /**
+     * Façade bloquante commune aux six managers.
+     */
+    interface GroupUserClient {
+
+        CreateUserResult createUser(String groupId, User user);
+
+        User getUser(String groupId, String userId);
+
+        Map<String, User> getAllUsers(String groupId);
+    }
+}
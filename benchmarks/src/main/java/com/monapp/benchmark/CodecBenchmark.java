@@ -0,0 +1,75 @@
+package com.monapp.benchmark;
+
+import com.monapp.model.User;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
+import com.monapp.redis.lowlevel.codec.ValueFormat;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import io.vertx.redis.client.impl.types.BulkType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codec seul, sans Redis : ancien chemin String (toujours JSON) contre chemin Buffer dans chaque format,
+ * à l'encodage (construction du HSET) comme au décodage (réponse HGET). Le profiler gc donne l'allocation par opération ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final String KEY = "groups:bench";
+
+    @Param({"json", "binary", "smile", "cbor"})
+    public String format;
+
+    private JsonCodec jsonCodec;
+    private User user;
+    private Response jsonResponse;
+    private Response response;
+
+    @Setup
+    public void setUp() {
+        jsonCodec = new JsonCodec(ValueFormat.valueOf(format.toUpperCase()));
+        user = new User("u42", "User 42", "user42@example.com");
+        jsonResponse = BulkType.create(Buffer.buffer(jsonCodec.encode(user)), false);
+        response = BulkType.create(jsonCodec.encodeToBuffer(user), false);
+    }
+
+    @Benchmark
+    public Request encodeString() {
+        return Request.cmd(Command.HSET).arg(KEY).arg(user.id()).arg(jsonCodec.encode(user));
+    }
+
+    @Benchmark
+    public Request encodeBuffer() {
+        Buffer value = jsonCodec.encodeToBuffer(user);
+        return Request.cmd(Command.HSET).arg(KEY).arg(user.id()).arg(value);
+    }
+
+    @Benchmark
+    public User decodeString() {
+        return jsonCodec.decode(jsonResponse.toString(), User.class);
+    }
+
+    @Benchmark
+    public User decodeBuffer() {
+        return jsonCodec.decode(user.id(), response);
+    }
+}
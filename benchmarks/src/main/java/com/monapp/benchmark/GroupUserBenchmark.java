@@ -0,0 +1,117 @@
+package com.monapp.benchmark;
+
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.User;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * createUser / getUser / getAllUsers pour chacun des six styles, sur des groupes de 10, 1k et 100k membres.
+ * <p>
+ * Throughput donne le débit, SampleTime les percentiles de latence ; le profiler gc
+ * (activé par {@link BenchmarkRunner}) donne le taux d'allocation par opération.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(8)
+public class GroupUserBenchmark {
+
+    private static final String GROUP_ID = "bench";
+    private static final int SEED_BATCH = 1000;
+
+    @Param({"redis-vertx", "redis-mutiny", "redisapi-vertx", "redisapi-mutiny", "ds-imperative", "ds-reactive"})
+    public String style;
+
+    @Param({"10", "1000", "100000"})
+    public int groupSize;
+
+    private RedisServer server;
+    private RedisClients clients;
+    private AccessStyle.GroupUserClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = RedisServer.start(Integer.getInteger("redis.port", 6390));
+        clients = new RedisClients(server.connectionString());
+        client = AccessStyle.of(style).create(clients);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clients.close();
+        server.close();
+    }
+
+    /**
+     * Réécrit un membre existant : la taille du groupe reste constante pendant la mesure.
+     */
+    @Benchmark
+    public CreateUserResult createUser() {
+        return client.createUser(GROUP_ID, user(randomIndex()));
+    }
+
+    @Benchmark
+    public User getUser() {
+        return client.getUser(GROUP_ID, userId(randomIndex()));
+    }
+
+    @Benchmark
+    public Map<String, User> getAllUsers() {
+        return client.getAllUsers(GROUP_ID);
+    }
+
+    /**
+     * Remplit le groupe par HSET multi-champs pipelinés, indépendamment du style mesuré.
+     */
+    private void seed() {
+        String key = "groups:" + GROUP_ID;
+        List<Request> batch = new ArrayList<>();
+        for (int start = 0; start < groupSize; start += SEED_BATCH) {
+            Request hset = Request.cmd(Command.HSET).arg(key);
+            for (int i = start; i < Math.min(groupSize, start + SEED_BATCH); i++) {
+                hset.arg(userId(i)).arg(clients.jsonCodec.encodeToBuffer(user(i)));
+            }
+            batch.add(hset);
+        }
+        batch.add(Request.cmd(Command.EXPIRE).arg(key).arg(36000));
+
+        clients.redis.batch(batch).toCompletionStage().toCompletableFuture().join();
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(groupSize);
+    }
+
+    private static String userId(int index) {
+        return "u" + index;
+    }
+
+    private static User user(int index) {
+        return new User(userId(index), "User " + index, "user" + index + "@example.com");
+    }
+}
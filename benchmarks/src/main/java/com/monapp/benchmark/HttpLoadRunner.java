@@ -0,0 +1,149 @@
+package com.monapp.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Générateur de charge HTTP en boucle fermée contre une application démarrée : compare getUser sur le pool
+ * de workers ({@code /datasource/imperative}), les threads virtuels ({@code /datasource/virtual}) et le
+ * DataSource réactif ({@code /datasource/reactive}), de 1k à 10k clients simultanés.
+ * <p>
+ * JMH n'est pas adapté ici : chaque client est un thread virtuel qui enchaîne les requêtes pendant la durée
+ * de mesure ; le débit et les percentiles de latence sont calculés sur les requêtes terminées.
+ * <p>
+ * Propriétés système : {@code base.url} (http://localhost:8080), {@code modes} (imperative,virtual,reactive),
+ * {@code clients} (1000,5000,10000), {@code duration} (30 s), {@code warmup} (10 s), {@code group.size} (1000).
+ */
+public final class HttpLoadRunner {
+
+    private static final String GROUP_ID = "load";
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String baseUrl;
+    private final int groupSize;
+
+    private HttpLoadRunner(String baseUrl, int groupSize) {
+        this.baseUrl = baseUrl;
+        this.groupSize = groupSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        HttpLoadRunner runner = new HttpLoadRunner(System.getProperty("base.url", "http://localhost:8080"),
+                Integer.getInteger("group.size", 1000));
+        List<String> modes = List.of(System.getProperty("modes", "imperative,virtual,reactive").split(","));
+        int[] clients = Arrays.stream(System.getProperty("clients", "1000,5000,10000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        Duration duration = Duration.ofSeconds(Long.getLong("duration", 30));
+        Duration warmup = Duration.ofSeconds(Long.getLong("warmup", 10));
+
+        runner.seed();
+        System.out.printf("%-12s %8s %12s %10s %10s %10s %10s %8s%n",
+                "mode", "clients", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        for (String mode : modes) {
+            for (int count : clients) {
+                runner.run(mode, count, warmup);
+                Result result = runner.run(mode, count, duration);
+                System.out.printf("%-12s %8d %12.0f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                        mode, count, result.throughput(), result.percentile(0.50), result.percentile(0.99),
+                        result.percentile(0.999), result.percentile(1.0), result.errors());
+            }
+        }
+    }
+
+    private void seed() throws Exception {
+        for (int i = 0; i < groupSize; i++) {
+            String body = "{\"id\":\"u%d\",\"name\":\"User %d\",\"email\":\"user%d@example.com\"}".formatted(i, i, i);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/datasource/reactive/create/" + GROUP_ID))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            http.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    private Result run(String mode, int clients, Duration duration) throws Exception {
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        List<Future<long[]>> latencies = new ArrayList<>(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                latencies.add(executor.submit(() -> loop(mode, client, deadline, errors)));
+            }
+        }
+
+        List<long[]> all = new ArrayList<>(clients);
+        for (Future<long[]> future : latencies) {
+            all.add(future.get());
+        }
+        return Result.of(all, errors.get(), duration);
+    }
+
+    /**
+     * Un client : enchaîne les getUser jusqu'à l'échéance et renvoie ses latences en nanosecondes.
+     */
+    private long[] loop(String mode, int client, long deadline, AtomicLong errors) {
+        long[] samples = new long[1024];
+        int count = 0;
+        int index = client % groupSize;
+        while (System.nanoTime() < deadline) {
+            HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("%s/datasource/%s/get/%s/u%d".formatted(baseUrl, mode, GROUP_ID, index)))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                    continue;
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = System.nanoTime() - start;
+            index = (index + 1) % groupSize;
+        }
+        return Arrays.copyOf(samples, count);
+    }
+
+    private record Result(long[] sorted, long errors, Duration duration) {
+
+        static Result of(List<long[]> latencies, long errors, Duration duration) {
+            long[] merged = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            return new Result(merged, errors, duration);
+        }
+
+        double throughput() {
+            return sorted.length / (duration.toNanos() / 1e9);
+        }
+
+        double percentile(double p) {
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.monapp.benchmark;
+
+import com.monapp.cache.GroupNearCache;
+import com.monapp.concurrency.AdmissionController;
+import com.monapp.concurrency.SingleFlight;
+import com.monapp.config.AdmissionConfig;
+import com.monapp.config.BulkConfig;
+import com.monapp.config.ChangeFeedConfig;
+import com.monapp.config.CodecConfig;
+import com.monapp.config.DeleteAllConfig;
+import com.monapp.config.EmailIndexConfig;
+import com.monapp.config.GroupBatchConfig;
+import com.monapp.config.GroupShardingConfig;
+import com.monapp.config.MetricsConfig;
+import com.monapp.config.MultiGetConfig;
+import com.monapp.config.NearCacheConfig;
+import com.monapp.config.ReadRoutingConfig;
+import com.monapp.config.ScanConfig;
+import com.monapp.config.SingleFlightConfig;
+import com.monapp.config.TtlConfig;
+import com.monapp.config.WriteBehindConfig;
+import com.monapp.feed.ChangeFeed;
+import com.monapp.index.EmailIndex;
+import com.monapp.metrics.RedisMetrics;
+import com.monapp.redis.GroupPipelines;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
+import com.monapp.redis.routing.ReadRouting;
+import com.monapp.redis.script.GroupFunctions;
+import com.monapp.redis.sharding.GroupSharding;
+import com.monapp.redis.ttl.TtlPolicy;
+import com.monapp.redis.writebehind.WriteBehind;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.redis.runtime.datasource.BlockingRedisDataSourceImpl;
+import io.quarkus.redis.runtime.datasource.ReactiveRedisDataSourceImpl;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.quarkus.runtime.configuration.MemorySizeConverter;
+import io.smallrye.config.SmallRyeConfig;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.vertx.core.Vertx;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.RedisClientType;
+import io.vertx.redis.client.RedisOptions;
+import io.vertx.redis.client.RedisReplicas;
+
+import java.time.Duration;
+
+/**
+ * Clients Redis et dépendances des managers, construits hors CDI pour appeler les managers directement.
+ * Les configurations applicatives prennent leurs valeurs par défaut (near-cache désactivé), surchargeables
+ * par propriétés système, par exemple {@code -Dmonapp.codec.format=binary}.
+ * <p>
+ * Les clients {@code read*} tiennent lieu du client nommé {@code read} : les mêmes que les clients par défaut,
+ * ou un client en mode réplication qui ne lit que sur les réplicas ({@code readFromReplicas}).
+ */
+final class RedisClients implements AutoCloseable {
+
+    final Vertx vertx;
+    final Redis redis;
+    final RedisAPI redisAPI;
+    final io.vertx.mutiny.core.Vertx mutinyVertx;
+    final io.vertx.mutiny.redis.client.Redis mutinyRedis;
+    final io.vertx.mutiny.redis.client.RedisAPI mutinyRedisAPI;
+    final ReactiveRedisDataSourceImpl reactiveDataSource;
+    final BlockingRedisDataSourceImpl blockingDataSource;
+
+    final Redis readRedis;
+    final RedisAPI readRedisAPI;
+    final io.vertx.mutiny.redis.client.Redis mutinyReadRedis;
+    final io.vertx.mutiny.redis.client.RedisAPI mutinyReadRedisAPI;
+    final ReactiveRedisDataSourceImpl readReactiveDataSource;
+    final BlockingRedisDataSourceImpl readBlockingDataSource;
+
+    final MeterRegistry registry = new SimpleMeterRegistry();
+    final SmallRyeConfig config;
+    final RedisMetrics metrics;
+    final JsonCodec jsonCodec;
+    final GroupNearCache nearCache;
+    final TtlPolicy ttlPolicy;
+    final ReadRouting readRouting;
+    final SingleFlight singleFlight;
+    final ChangeFeed changeFeed;
+    final EmailIndex emailIndex;
+    final GroupFunctions groupFunctions;
+    final AdmissionController admission;
+    final WriteBehind writeBehind;
+    final GroupSharding groupSharding;
+    final GroupPipelines pipelines;
+
+    RedisClients(String connectionString) {
+        this(connectionString, false);
+    }
+
+    RedisClients(String connectionString, boolean readFromReplicas) {
+        this.vertx = Vertx.vertx();
+        this.redis = Redis.createClient(vertx, new RedisOptions()
+                .setConnectionString(connectionString)
+                .setMaxPoolSize(16)
+                .setMaxPoolWaiting(1024));
+        this.redisAPI = RedisAPI.api(redis);
+        this.mutinyVertx = io.vertx.mutiny.core.Vertx.newInstance(vertx);
+        this.mutinyRedis = io.vertx.mutiny.redis.client.Redis.newInstance(redis);
+        this.mutinyRedisAPI = io.vertx.mutiny.redis.client.RedisAPI.api(mutinyRedis);
+        this.reactiveDataSource = new ReactiveRedisDataSourceImpl(mutinyVertx, mutinyRedis, mutinyRedisAPI);
+        this.blockingDataSource = new BlockingRedisDataSourceImpl(reactiveDataSource, Duration.ofSeconds(30));
+
+        if (readFromReplicas) {
+            // Mode réplication : le client découvre les réplicas du primaire (INFO replication) et n'y envoie que les lectures
+            this.readRedis = Redis.createClient(vertx, new RedisOptions()
+                    .setType(RedisClientType.REPLICATION)
+                    .setUseReplicas(RedisReplicas.ALWAYS)
+                    .setConnectionString(connectionString)
+                    .setMaxPoolSize(16)
+                    .setMaxPoolWaiting(1024));
+            this.readRedisAPI = RedisAPI.api(readRedis);
+            this.mutinyReadRedis = io.vertx.mutiny.redis.client.Redis.newInstance(readRedis);
+            this.mutinyReadRedisAPI = io.vertx.mutiny.redis.client.RedisAPI.api(mutinyReadRedis);
+            this.readReactiveDataSource = new ReactiveRedisDataSourceImpl(mutinyVertx, mutinyReadRedis, mutinyReadRedisAPI);
+            this.readBlockingDataSource = new BlockingRedisDataSourceImpl(readReactiveDataSource, Duration.ofSeconds(30));
+        } else {
+            this.readRedis = redis;
+            this.readRedisAPI = redisAPI;
+            this.mutinyReadRedis = mutinyRedis;
+            this.mutinyReadRedisAPI = mutinyRedisAPI;
+            this.readReactiveDataSource = reactiveDataSource;
+            this.readBlockingDataSource = blockingDataSource;
+        }
+
+        this.config = new SmallRyeConfigBuilder()
+                .addSystemSources()
+                .withConverter(MemorySize.class, 100, new MemorySizeConverter())
+                .withMapping(AdmissionConfig.class)
+                .withMapping(BulkConfig.class)
+                .withMapping(ChangeFeedConfig.class)
+                .withMapping(CodecConfig.class)
+                .withMapping(DeleteAllConfig.class)
+                .withMapping(EmailIndexConfig.class)
+                .withMapping(ScanConfig.class)
+                .withMapping(GroupBatchConfig.class)
+                .withMapping(GroupShardingConfig.class)
+                .withMapping(MetricsConfig.class)
+                .withMapping(MultiGetConfig.class)
+                .withMapping(NearCacheConfig.class)
+                .withMapping(ReadRoutingConfig.class)
+                .withMapping(SingleFlightConfig.class)
+                .withMapping(TtlConfig.class)
+                .withMapping(WriteBehindConfig.class)
+                .build();
+        this.metrics = new RedisMetrics(registry, config(MetricsConfig.class));
+        this.jsonCodec = new JsonCodec(config(CodecConfig.class), metrics);
+        this.nearCache = new GroupNearCache(mutinyRedis, mutinyVertx, config(NearCacheConfig.class), registry);
+        this.ttlPolicy = new TtlPolicy(config(TtlConfig.class), registry);
+        this.readRouting = new ReadRouting(mutinyRedis, config(ReadRoutingConfig.class), registry);
+        this.singleFlight = new SingleFlight(config(SingleFlightConfig.class), registry);
+        this.changeFeed = new ChangeFeed(config(ChangeFeedConfig.class));
+        // Hors CDI, pas de chargement au démarrage : la bibliothèque est chargée au premier FCALL
+        this.groupFunctions = new GroupFunctions(mutinyRedis);
+        this.emailIndex = new EmailIndex(mutinyRedis, config(EmailIndexConfig.class), groupFunctions);
+        this.admission = new AdmissionController(config(AdmissionConfig.class), registry);
+        this.writeBehind = new WriteBehind(config(WriteBehindConfig.class), ttlPolicy, changeFeed, emailIndex, mutinyVertx, registry);
+        this.groupSharding = new GroupSharding(reactiveDataSource, config(GroupShardingConfig.class), ttlPolicy, registry);
+        this.pipelines = new GroupPipelines(metrics, singleFlight, nearCache, ttlPolicy, readRouting, admission, changeFeed,
+                emailIndex, groupFunctions, groupSharding, writeBehind, config(MultiGetConfig.class),
+                config(DeleteAllConfig.class), config(ScanConfig.class));
+    }
+
+    <T> T config(Class<T> mapping) {
+        return config.getConfigMapping(mapping);
+    }
+
+    @Override
+    public void close() {
+        writeBehind.close();
+        if (readRedis != redis) {
+            readRedis.close();
+        }
+        redis.close();
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+}
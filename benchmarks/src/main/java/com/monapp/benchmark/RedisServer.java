@@ -0,0 +1,79 @@
+package com.monapp.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Processus redis-server local démarré par le harnais, sans persistance.
+ * Binaire : propriété système {@code redis.server} (défaut {@code redis-server} dans le PATH).
+ */
+final class RedisServer implements AutoCloseable {
+
+    private final Process process;
+    private final int port;
+
+    private RedisServer(Process process, int port) {
+        this.process = process;
+        this.port = port;
+    }
+
+    static RedisServer start(int port, String... extraArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                System.getProperty("redis.server", "redis-server"),
+                "--port", String.valueOf(port),
+                "--save", "",
+                "--appendonly", "no"));
+        command.addAll(List.of(extraArgs));
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+
+        RedisServer server = new RedisServer(process, port);
+        server.awaitReady();
+        return server;
+    }
+
+    String connectionString() {
+        return "redis://localhost:" + port;
+    }
+
+    int port() {
+        return port;
+    }
+
+    private void awaitReady() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("redis-server exited with code " + process.exitValue());
+            }
+            try (Socket socket = new Socket("localhost", port)) {
+                OutputStream out = socket.getOutputStream();
+                out.write("PING\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                InputStream in = socket.getInputStream();
+                byte[] reply = in.readNBytes(7);
+                if ("+PONG\r\n".equals(new String(reply, StandardCharsets.US_ASCII))) {
+                    return;
+                }
+            } catch (IOException notYetListening) {
+                // le serveur démarre encore
+            }
+            Thread.sleep(50);
+        }
+        close();
+        throw new IOException("redis-server did not answer PING on port " + port);
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+    }
+}
@@ -0,0 +1,179 @@
+package com.monapp.benchmark;
+
+import com.monapp.model.User;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Vérification de bout en bout du routage des lectures vers les réplicas, contre des processus redis-server locaux :
+ * un primaire et {@code replicas} réplicas ({@code --replicaof}), démarrés par le harnais.
+ * <p>
+ * Pour chacun des six styles : remet à zéro les statistiques de commandes de chaque nœud, lance des getUser /
+ * getAllUsers concurrents, puis compte sur chaque nœud les HGET / HGETALL reçus (INFO commandstats). La vérification
+ * échoue si le primaire a servi une lecture, si moins de deux réplicas en ont servi, ou si une lecture qui suit une
+ * écriture du même groupe n'a pas été servie par le primaire.
+ * <p>
+ * Propriétés système : {@code redis.server} (redis-server), {@code redis.port} (6390, réplicas sur les ports suivants),
+ * {@code replicas} (2), {@code reads} (2000 par style), {@code styles} (les six).
+ */
+public final class ReplicaReadRunner {
+
+    private static final String GROUP_ID = "replicated";
+    private static final int GROUP_SIZE = 100;
+    private static final int CONCURRENCY = 32;
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.getInteger("redis.port", 6390);
+        int replicaCount = Integer.getInteger("replicas", 2);
+        int reads = Integer.getInteger("reads", 2000);
+        List<String> styles = List.of(System.getProperty("styles",
+                "redis-vertx,redis-mutiny,redisapi-vertx,redisapi-mutiny,ds-imperative,ds-reactive").split(","));
+        System.setProperty("monapp.read-routing.enabled", "true");
+
+        List<RedisServer> servers = new ArrayList<>();
+        boolean failed = false;
+        try {
+            RedisServer primary = RedisServer.start(port);
+            servers.add(primary);
+            for (int i = 1; i <= replicaCount; i++) {
+                servers.add(RedisServer.start(port + i, "--replicaof", "localhost", String.valueOf(port)));
+            }
+
+            try (RedisClients clients = new RedisClients(primary.connectionString(), true)) {
+                Map<String, Redis> nodes = new LinkedHashMap<>();
+                nodes.put("primary", Redis.createClient(clients.vertx, primary.connectionString()));
+                for (int i = 1; i < servers.size(); i++) {
+                    nodes.put("replica-" + i, Redis.createClient(clients.vertx, servers.get(i).connectionString()));
+                }
+
+                seed(clients);
+                awaitReplication(nodes.get("primary"), replicaCount);
+                clients.readRouting.checkLag().await().indefinitely();
+
+                System.out.printf("%-16s %10s %s%n", "style", "reads", String.join("  ", nodes.keySet()));
+                for (String style : styles) {
+                    failed |= !check(style, clients, nodes, reads);
+                }
+            }
+        } finally {
+            servers.forEach(RedisServer::close);
+        }
+
+        if (failed) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Lectures concurrentes d'un style, puis lecture après écriture ; {@code false} si le routage est incorrect.
+     */
+    private static boolean check(String style, RedisClients clients, Map<String, Redis> nodes, int reads)
+            throws Exception {
+        AccessStyle.GroupUserClient client = AccessStyle.of(style).create(clients);
+        nodes.values().forEach(node -> send(node, Request.cmd(Command.CONFIG).arg("RESETSTAT")));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < CONCURRENCY; worker++) {
+                int offset = worker;
+                executor.submit(() -> {
+                    for (int i = offset; i < reads; i += CONCURRENCY) {
+                        if (i % 10 == 0) {
+                            client.getAllUsers(GROUP_ID);
+                        } else {
+                            client.getUser(GROUP_ID, "u" + (i % GROUP_SIZE));
+                        }
+                    }
+                });
+            }
+        }
+
+        Map<String, Long> served = new LinkedHashMap<>();
+        nodes.forEach((name, node) -> served.put(name, readCalls(node)));
+        long replicasServing = served.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals("primary") && entry.getValue() > 0)
+                .count();
+        boolean ok = served.get("primary") == 0 && replicasServing >= Math.min(2, nodes.size() - 1);
+
+        // Lecture de ses propres écritures : le groupe écrit reste lu sur le primaire pendant max-staleness
+        String writtenGroup = GROUP_ID + "-" + style;
+        client.createUser(writtenGroup, user(0));
+        long before = readCalls(nodes.get("primary"));
+        ok &= client.getUser(writtenGroup, "u0") != null && readCalls(nodes.get("primary")) == before + 1;
+
+        System.out.printf("%-16s %10d %s %s%n", style, reads,
+                String.join("  ", served.values().stream().map(String::valueOf).toList()), ok ? "" : "<- FAILED");
+        return ok;
+    }
+
+    private static void seed(RedisClients clients) {
+        Request hset = Request.cmd(Command.HSET).arg("groups:" + GROUP_ID);
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            hset.arg("u" + i).arg(clients.jsonCodec.encodeToBuffer(user(i)));
+        }
+        send(clients.redis, hset);
+    }
+
+    /**
+     * Attend que tous les réplicas soient en ligne et aient rattrapé l'offset de réplication du primaire.
+     */
+    private static void awaitReplication(Redis primary, int replicaCount) throws InterruptedException {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            String info = send(primary, Request.cmd(Command.INFO).arg("replication")).toString();
+            String offset = field(info, "master_repl_offset:");
+            long synced = info.lines()
+                    .filter(line -> line.startsWith("slave") && line.contains("state=online")
+                            && line.contains("offset=" + offset + ","))
+                    .count();
+            if (synced == replicaCount) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("Replicas did not catch up with the primary");
+    }
+
+    /**
+     * HGET + HGETALL reçus par le nœud depuis le dernier CONFIG RESETSTAT.
+     */
+    private static long readCalls(Redis node) {
+        String stats = send(node, Request.cmd(Command.INFO).arg("commandstats")).toString();
+        return calls(stats, "cmdstat_hget:") + calls(stats, "cmdstat_hgetall:");
+    }
+
+    private static long calls(String stats, String prefix) {
+        String line = field(stats, prefix);
+        if (line == null) {
+            return 0;
+        }
+        // calls=12,usec=...
+        return Long.parseLong(line.substring("calls=".length(), line.indexOf(',')));
+    }
+
+    private static String field(String info, String prefix) {
+        return info.lines()
+                .filter(line -> line.startsWith(prefix))
+                .map(line -> line.substring(prefix.length()).trim())
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static Response send(Redis redis, Request request) {
+        return redis.send(request).toCompletionStage().toCompletableFuture().join();
+    }
+
+    private static User user(int index) {
+        return new User("u" + index, "User " + index, "user" + index + "@example.com");
+    }
+}
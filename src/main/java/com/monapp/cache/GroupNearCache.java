@@ -0,0 +1,379 @@
+package com.monapp.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.monapp.config.NearCacheConfig;
+import com.monapp.model.User;
+import com.monapp.redis.sharding.ShardLayout;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.client.RedisClientName;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Future;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.RedisConnection;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import io.vertx.redis.client.ResponseType;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Near-cache en mémoire des groupes, placé devant getUser / getAllUsers des managers.
+ * <p>
+ * Les entrées sont indexées par clé Redis ({@code groups:{groupId}}) et évincées par Caffeine (W-TinyLFU),
+ * bornées à la fois en nombre et en mémoire estimée. La cohérence repose sur le tracking côté serveur :
+ * une connexion active {@code CLIENT TRACKING ON BCAST PREFIX groups:} et redirige les invalidations vers
+ * une seconde connexion abonnée à {@code __redis__:invalidate}. Redis notifie toute écriture, suppression,
+ * expiration ou éviction d'une clé {@code groups:*}, quel que soit le nœud applicatif qui l'a provoquée :
+ * une entrée ne survit donc pas au TTL de son groupe. getUserTTL n'est jamais servi par le cache.
+ * <p>
+ * Les deux connexions de tracking restent ouvertes tant que le cache est actif : elles viennent du client nommé
+ * {@code subscriptions}, pas du pool partagé des managers. Tant qu'elles ne sont pas établies, le cache est contourné ;
+ * à chaque coupure il est vidé.
+ */
+@ApplicationScoped
+public class GroupNearCache {
+
+    private static final String INVALIDATION_CHANNEL = "__redis__:invalidate";
+    private static final String TRACKED_PREFIX = "groups:";
+
+    /**
+     * Marque un utilisateur connu comme absent du groupe (HGET a renvoyé null).
+     */
+    private static final User ABSENT = new User(null, null, null);
+
+    /**
+     * Nombre (puissance de deux) de compteurs d'invalidation, répartis par hash de clé.
+     */
+    private static final int EPOCH_STRIPES = 1024;
+
+    private final Redis redis;
+    private final Vertx vertx;
+    private final NearCacheConfig config;
+    private final Cache<String, GroupEntry> cache;
+
+    /**
+     * Compteur de la clé incrémenté à chaque invalidation : une lecture commencée avant une invalidation de sa clé
+     * n'alimente pas le cache. Les invalidations des autres groupes (hors collision de compteur) ne la gênent pas.
+     */
+    private final AtomicLongArray epochs = new AtomicLongArray(EPOCH_STRIPES);
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private volatile boolean active;
+    private volatile boolean stopped;
+    private volatile RedisConnection subscriber;
+    private volatile RedisConnection tracker;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+
+    public GroupNearCache(@RedisClientName("subscriptions") Redis redis, Vertx vertx, NearCacheConfig config,
+                          MeterRegistry registry) {
+        this.redis = redis;
+        this.vertx = vertx;
+        this.config = config;
+
+        long maxWeight = config.maxMemory().asLongValue();
+        // Un poids plancher de maxMemory / maxEntries borne aussi le nombre d'entrées
+        long minWeight = Math.max(1, maxWeight / config.maxEntries());
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String key, GroupEntry entry) -> (int) Math.min(Integer.MAX_VALUE, Math.max(minWeight, entry.weight())))
+                .expireAfterWrite(config.expireAfterWrite())
+                .build();
+
+        this.hits = Counter.builder("near_cache.hits").register(registry);
+        this.misses = Counter.builder("near_cache.misses").register(registry);
+        this.invalidations = Counter.builder("near_cache.invalidations").register(registry);
+        Gauge.builder("near_cache.size", cache, Cache::estimatedSize).register(registry);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (config.enabled()) {
+            connect();
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stopped = true;
+        active = false;
+        closeConnections();
+    }
+
+    /**
+     * Sert l'utilisateur depuis le cache, ou le charge avec {@code loader} et le met en cache.
+     */
+    public Uni<User> getUser(String key, String userId, Supplier<Uni<User>> loader) {
+        if (!active) {
+            return loader.get();
+        }
+        return Uni.createFrom().deferred(() -> {
+            User cached = lookupUser(key, userId);
+            if (cached != null) {
+                return Uni.createFrom().item(cached == ABSENT ? null : cached);
+            }
+            long start = epoch(key);
+            return loader.get().invoke(user -> putUser(key, userId, user, start));
+        });
+    }
+
+    public Future<User> getUserFuture(String key, String userId, Supplier<Future<User>> loader) {
+        if (!active) {
+            return loader.get();
+        }
+        User cached = lookupUser(key, userId);
+        if (cached != null) {
+            return Future.succeededFuture(cached == ABSENT ? null : cached);
+        }
+        long start = epoch(key);
+        return loader.get().onSuccess(user -> putUser(key, userId, user, start));
+    }
+
+    /**
+     * Sert le groupe complet depuis le cache, ou le charge avec {@code loader} et le met en cache.
+     */
+    public Uni<Map<String, User>> getAllUsers(String key, Supplier<Uni<Map<String, User>>> loader) {
+        if (!active) {
+            return loader.get();
+        }
+        return Uni.createFrom().deferred(() -> {
+            Map<String, User> cached = lookupAll(key);
+            if (cached != null) {
+                return Uni.createFrom().item(cached);
+            }
+            long start = epoch(key);
+            return loader.get().invoke(users -> putAll(key, users, start));
+        });
+    }
+
+    public Future<Map<String, User>> getAllUsersFuture(String key, Supplier<Future<Map<String, User>>> loader) {
+        if (!active) {
+            return loader.get();
+        }
+        Map<String, User> cached = lookupAll(key);
+        if (cached != null) {
+            return Future.succeededFuture(cached);
+        }
+        long start = epoch(key);
+        return loader.get().onSuccess(users -> putAll(key, users, start));
+    }
+
+    /**
+     * Invalidation locale immédiate après une écriture de ce nœud (le tracking la confirmera).
+     */
+    public void invalidate(String key) {
+        epochs.incrementAndGet(stripe(key));
+        if (cache.asMap().remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < EPOCH_STRIPES; i++) {
+            epochs.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    private long epoch(String key) {
+        return epochs.get(stripe(key));
+    }
+
+    static int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (EPOCH_STRIPES - 1);
+    }
+
+    private User lookupUser(String key, String userId) {
+        GroupEntry entry = cache.getIfPresent(key);
+        User user = entry == null ? null : entry.user(userId);
+        if (user == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return user;
+    }
+
+    private Map<String, User> lookupAll(String key) {
+        GroupEntry entry = cache.getIfPresent(key);
+        if (entry == null || !entry.complete()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.users();
+    }
+
+    private void putUser(String key, String userId, User user, long start) {
+        if (epoch(key) != start) {
+            return;
+        }
+        User value = user == null ? ABSENT : user;
+        cache.asMap().compute(key, (k, entry) -> entry == null ? GroupEntry.partial(userId, value) : entry.with(userId, value));
+        // Une invalidation a pu passer pendant le compute
+        if (epoch(key) != start) {
+            cache.invalidate(key);
+        }
+    }
+
+    private void putAll(String key, Map<String, User> users, long start) {
+        if (epoch(key) != start) {
+            return;
+        }
+        cache.put(key, GroupEntry.complete(users));
+        if (epoch(key) != start) {
+            cache.invalidate(key);
+        }
+    }
+
+    // ----- Connexions de tracking -----
+
+    private void connect() {
+        redis.connect()
+                .chain(sub -> {
+                    subscriber = sub;
+                    sub.handler(this::onMessage);
+                    sub.exceptionHandler(failure -> onConnectionLost(failure));
+                    sub.endHandler(() -> onConnectionLost(null));
+                    return sub.send(Request.cmd(Command.CLIENT).arg("ID"))
+                            .chain(id -> sub.send(Request.cmd(Command.SUBSCRIBE).arg(INVALIDATION_CHANNEL))
+                                    .replaceWith(id.toLong()));
+                })
+                .chain(subscriberId -> redis.connect()
+                        .chain(track -> {
+                            tracker = track;
+                            track.exceptionHandler(failure -> onConnectionLost(failure));
+                            track.endHandler(() -> onConnectionLost(null));
+                            return track.send(Request.cmd(Command.CLIENT)
+                                    .arg("TRACKING").arg("ON")
+                                    .arg("REDIRECT").arg(subscriberId)
+                                    .arg("BCAST")
+                                    .arg("PREFIX").arg(TRACKED_PREFIX));
+                        }))
+                .subscribe().with(
+                        ok -> {
+                            activate();
+                            reconnecting.set(false);
+                            Log.info("Near-cache enabled with Redis server-assisted invalidation");
+                        },
+                        failure -> {
+                            reconnecting.set(false);
+                            onConnectionLost(failure);
+                        });
+    }
+
+    /**
+     * Connexions de tracking établies : ce qui a pu être mis en cache avant est écarté, le cache sert à nouveau.
+     */
+    void activate() {
+        invalidateAll();
+        active = true;
+    }
+
+    private void onMessage(Response message) {
+        if (message == null || message.size() < 3 || !"message".equals(message.get(0).toString())) {
+            return;
+        }
+        Response keys = message.get(2);
+        // Charge utile nulle : FLUSHALL / FLUSHDB
+        if (keys == null || keys.type() != ResponseType.MULTI) {
+            invalidateAll();
+            return;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i).toString();
+            invalidate(key);
+            // Sous-hash d'un groupe découpé (groups:<groupId>#<n>) : l'entrée est sous la clé du groupe
+            String groupId = ShardLayout.groupIdOf(key);
+            String parent = groupId == null ? null : ShardLayout.GROUP_KEY.formatted(groupId);
+            if (parent != null && !parent.equals(key)) {
+                invalidate(parent);
+            }
+        }
+    }
+
+    private void onConnectionLost(Throwable failure) {
+        active = false;
+        invalidateAll();
+        if (stopped || !reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        if (failure != null) {
+            Log.warnf(failure, "Near-cache tracking connection lost, retrying in %s", config.reconnectDelay());
+        }
+        closeConnections();
+        vertx.setTimer(config.reconnectDelay().toMillis(), id -> connect());
+    }
+
+    private void closeConnections() {
+        RedisConnection sub = subscriber;
+        RedisConnection track = tracker;
+        subscriber = null;
+        tracker = null;
+        if (sub != null) {
+            sub.closeAndForget();
+        }
+        if (track != null) {
+            track.closeAndForget();
+        }
+    }
+
+    /**
+     * Entrée immuable : utilisateurs connus d'un groupe, complet si issu d'un HGETALL.
+     */
+    private record GroupEntry(Map<String, User> users, boolean complete, long weight) {
+
+        static GroupEntry complete(Map<String, User> users) {
+            return new GroupEntry(Map.copyOf(users), true, weigh(users));
+        }
+
+        static GroupEntry partial(String userId, User user) {
+            Map<String, User> users = Map.of(userId, user);
+            return new GroupEntry(users, false, weigh(users));
+        }
+
+        User user(String userId) {
+            User user = users.get(userId);
+            return user == null && complete ? ABSENT : user;
+        }
+
+        GroupEntry with(String userId, User user) {
+            if (complete) {
+                return this;
+            }
+            Map<String, User> copy = new HashMap<>(users);
+            copy.put(userId, user);
+            return new GroupEntry(Map.copyOf(copy), false, weigh(copy));
+        }
+
+        /**
+         * Estimation grossière de l'empreinte mémoire : en-têtes d'objets et chaînes (2 octets par caractère).
+         */
+        private static long weigh(Map<String, User> users) {
+            long weight = 64;
+            for (Map.Entry<String, User> entry : users.entrySet()) {
+                User user = entry.getValue();
+                weight += 96 + 2L * (entry.getKey().length() + length(user.id()) + length(user.name()) + length(user.email()));
+            }
+            return weight;
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.monapp.concurrency;
+
+import com.monapp.config.AdmissionConfig;
+import com.monapp.error.TooManyRequestsException;
+import com.monapp.metrics.RedisOp;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Future;
+import io.vertx.core.http.ConnectionPoolTooBusyException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Contrôle d'admission des appels Redis, partagé par les six managers : borne le nombre d'appels en vol pour
+ * qu'un pic de trafic ne se transforme pas en rafale de connexions qui ralentit Redis pour tous les groupes.
+ * <p>
+ * Deux niveaux :
+ * <ul>
+ *     <li>par groupe, une limite fixe ({@code per-group-limit}) : un groupe très sollicité est rejeté
+ *     immédiatement plutôt que d'occuper toute la capacité ;</li>
+ *     <li>global, une limite adaptative (AIMD guidé par la latence, à la Vegas) : la latence minimale récente
+ *     de chaque commande ({@link RedisOp}) sert de référence à cette commande ; un appel plus lent que
+ *     {@code latency-tolerance} fois sa référence, ou en échec pour surcharge (timeout, pool de connexions saturé,
+ *     Redis {@code BUSY} ou {@code LOADING}), réduit la limite d'un facteur {@code backoff-ratio} (au plus une fois
+ *     par latence d'appel), un appel rapide sous forte utilisation l'augmente d'environ une place par « tour » de
+ *     limite. Une erreur applicative ({@code WRONGTYPE}, {@code NOSCRIPT}…) ne dit rien de la charge : elle ne
+ *     modifie pas la limite.</li>
+ * </ul>
+ * Un HGET et un HGETALL n'ont pas la même latence de base : une référence commune ferait passer chaque HGETALL pour
+ * un signe de congestion. Les lots d'ingestion et de flush, dont la latence suit la taille du lot, ne sont pas
+ * échantillonnés (seuls leurs échecs pour surcharge comptent). L'échantillonnage est sans verrou.
+ * <p>
+ * Un appel éclaté en plusieurs commandes sur un même groupe (lots HMGET, sous-hashes) ne prend qu'une place de
+ * groupe ({@link #admitGroup}), ses commandes passant ensuite sans groupe : sinon un seul get-many de plus de
+ * {@code per-group-limit} lots serait rejeté par sa propre limite.
+ * Au-delà de la limite globale, l'appel attend dans une file bornée ({@code queue-size}) au plus
+ * {@code queue-timeout} ; file pleine ou attente dépassée : 429 Too Many Requests, sans rien envoyer à Redis.
+ * <p>
+ * Meters : {@code admission.limit}, {@code admission.in_flight}, {@code admission.queue_depth},
+ * {@code admission.rejected} ({@code reason=group|queue_full|timeout}).
+ */
+@ApplicationScoped
+public class AdmissionController {
+
+    /**
+     * Instance inerte, pour les usages hors CDI.
+     */
+    public static final AdmissionController DISABLED = new AdmissionController();
+
+    /**
+     * Renouvellement de la latence de référence : une hausse durable de la latence de base finit par être acceptée.
+     */
+    private static final int RTT_WINDOW = 1000;
+
+    /**
+     * Commandes dont la latence suit la taille du lot plutôt que la charge de Redis.
+     */
+    private static final Set<RedisOp> UNSAMPLED = EnumSet.of(RedisOp.HSET, RedisOp.HSET_EXPIRE_FLUSH);
+
+    /**
+     * Préfixes des erreurs Redis qui signalent une surcharge du serveur plutôt qu'une erreur de l'appel.
+     */
+    private static final List<String> OVERLOAD_ERRORS = List.of("BUSY ", "LOADING ", "MASTERDOWN ");
+
+    private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int perGroupLimit;
+    private final int queueSize;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final Executor queueTimeout;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, Integer> groups = new ConcurrentHashMap<>();
+
+    private final AtomicLong limit;
+    private final AtomicLongArray minRttNanos = new AtomicLongArray(RedisOp.values().length);
+    private final AtomicIntegerArray samples = new AtomicIntegerArray(RedisOp.values().length);
+    private final AtomicLong lastDecrease = new AtomicLong();
+
+    private final Counter rejectedByGroup;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    @Inject
+    public AdmissionController(AdmissionConfig config, MeterRegistry registry) {
+        this.enabled = config.enabled();
+        this.minLimit = config.minLimit();
+        this.maxLimit = config.maxLimit();
+        this.perGroupLimit = config.perGroupLimit();
+        this.queueSize = config.queueSize();
+        this.latencyTolerance = config.latencyTolerance();
+        this.backoffRatio = config.backoffRatio();
+        this.queueTimeout = CompletableFuture.delayedExecutor(config.queueTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        this.limit = new AtomicLong(Double.doubleToRawLongBits(Math.clamp(config.initialLimit(), minLimit, maxLimit)));
+
+        this.rejectedByGroup = rejected(registry, "group");
+        this.rejectedQueueFull = rejected(registry, "queue_full");
+        this.rejectedTimeout = rejected(registry, "timeout");
+        Gauge.builder("admission.limit", this, AdmissionController::limit)
+                .description("Adaptive limit of concurrent Redis calls")
+                .register(registry);
+        Gauge.builder("admission.in_flight", inFlight, AtomicInteger::get)
+                .description("Redis calls admitted and not yet completed")
+                .register(registry);
+        Gauge.builder("admission.queue_depth", queued, AtomicInteger::get)
+                .description("Redis calls waiting for admission")
+                .register(registry);
+    }
+
+    AdmissionController() {
+        this.enabled = false;
+        this.minLimit = 0;
+        this.maxLimit = 0;
+        this.perGroupLimit = 0;
+        this.queueSize = 0;
+        this.latencyTolerance = 0;
+        this.backoffRatio = 0;
+        this.queueTimeout = null;
+        this.limit = null;
+        this.rejectedByGroup = null;
+        this.rejectedQueueFull = null;
+        this.rejectedTimeout = null;
+    }
+
+    /**
+     * Souscrit à {@code call} une fois admis ; sa latence est comparée à celle des précédents {@code op}.
+     * {@code groupId} null : limite globale seulement (appels multi-groupes, commandes d'un {@link #admitGroup}).
+     */
+    public <T> Uni<T> admit(String groupId, RedisOp op, Uni<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Uni.createFrom().completionStage(() -> acquire(groupId))
+                .chain(() -> {
+                    long start = System.nanoTime();
+                    return call.onTermination().invoke((item, failure, cancelled) -> release(groupId, op, start, failure));
+                });
+    }
+
+    public <T> Future<T> admitFuture(String groupId, RedisOp op, Supplier<Future<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        CompletableFuture<Void> permit = acquire(groupId);
+        if (permit == GRANTED) {
+            return run(groupId, op, call);
+        }
+        return Future.fromCompletionStage(permit).compose(ignored -> run(groupId, op, call));
+    }
+
+    /**
+     * Place de groupe seule, pour l'ensemble des commandes d'un appel éclaté ; chacune passe ensuite par
+     * {@link #admit} sans groupe. Rejet immédiat au-delà de {@code per-group-limit}, sans file d'attente.
+     */
+    public <T> Uni<T> admitGroup(String groupId, Uni<T> calls) {
+        if (!enabled) {
+            return calls;
+        }
+        return Uni.createFrom().deferred(() -> {
+            if (!acquireGroup(groupId)) {
+                return Uni.createFrom().failure(tooManyRequests("Too many concurrent Redis calls for group " + groupId));
+            }
+            return calls.onTermination().invoke(() -> releaseGroup(groupId));
+        });
+    }
+
+    public <T> Future<T> admitGroupFuture(String groupId, Supplier<Future<T>> calls) {
+        if (!enabled) {
+            return calls.get();
+        }
+        if (!acquireGroup(groupId)) {
+            return Future.failedFuture(tooManyRequests("Too many concurrent Redis calls for group " + groupId));
+        }
+        try {
+            return calls.get().onComplete(ignored -> releaseGroup(groupId));
+        } catch (RuntimeException e) {
+            releaseGroup(groupId);
+            return Future.failedFuture(e);
+        }
+    }
+
+    /**
+     * Variante bloquante : le thread appelant attend son tour (au plus {@code queue-timeout}).
+     */
+    public <T> T admitBlocking(String groupId, RedisOp op, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        try {
+            acquire(groupId).join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            release(groupId, op, start, e);
+            throw e;
+        }
+        release(groupId, op, start, null);
+        return result;
+    }
+
+    private <T> Future<T> run(String groupId, RedisOp op, Supplier<Future<T>> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get().onComplete(result -> release(groupId, op, start, result.cause()));
+        } catch (RuntimeException e) {
+            release(groupId, op, start, e);
+            return Future.failedFuture(e);
+        }
+    }
+
+    // ----- Admission -----
+
+    private CompletableFuture<Void> acquire(String groupId) {
+        if (groupId != null && !acquireGroup(groupId)) {
+            return CompletableFuture.failedFuture(tooManyRequests("Too many concurrent Redis calls for group " + groupId));
+        }
+        if (tryAcquire()) {
+            return GRANTED;
+        }
+        if (queued.incrementAndGet() > queueSize) {
+            queued.decrementAndGet();
+            releaseGroup(groupId);
+            rejectedQueueFull.increment();
+            return CompletableFuture.failedFuture(tooManyRequests("Too many Redis calls waiting for admission"));
+        }
+
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        // Attente dépassée ou abonné parti : l'appel quitte la file et rend sa place de groupe
+        waiter.whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                if (waiters.remove(waiter)) {
+                    queued.decrementAndGet();
+                }
+                releaseGroup(groupId);
+            }
+        });
+        queueTimeout.execute(() -> {
+            if (waiter.completeExceptionally(tooManyRequests("Timed out waiting for Redis call admission"))) {
+                rejectedTimeout.increment();
+            }
+        });
+        waiters.add(waiter);
+        // Une place a pu se libérer entre tryAcquire et la mise en file
+        drain();
+        return waiter;
+    }
+
+    private boolean acquireGroup(String groupId) {
+        if (groups.merge(groupId, 1, Integer::sum) > perGroupLimit) {
+            releaseGroup(groupId);
+            rejectedByGroup.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(String groupId, RedisOp op, long start, Throwable failure) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        releaseGroup(groupId);
+        sample(op, System.nanoTime() - start, failure, inFlightBefore);
+        drain();
+    }
+
+    /**
+     * Donne les places libres aux appels en file, dans l'ordre d'arrivée.
+     */
+    private void drain() {
+        while (!waiters.isEmpty() && tryAcquire()) {
+            CompletableFuture<Void> waiter = waiters.poll();
+            if (waiter == null) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            queued.decrementAndGet();
+            // Déjà expiré ou annulé : la place passe au suivant
+            if (!waiter.complete(null)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private void releaseGroup(String groupId) {
+        if (groupId != null) {
+            groups.computeIfPresent(groupId, (id, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    // ----- Limite adaptative -----
+
+    double limit() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    private void sample(RedisOp op, long rttNanos, Throwable failure, int inFlightBefore) {
+        if (failure != null) {
+            if (overload(failure)) {
+                decrease(rttNanos);
+            }
+            return;
+        }
+        if (op == null || UNSAMPLED.contains(op)) {
+            return;
+        }
+        if (rttNanos > baseline(op.ordinal(), rttNanos) * latencyTolerance) {
+            decrease(rttNanos);
+        } else if (inFlightBefore * 2 >= limit()) {
+            updateLimit(current -> Math.min(maxLimit, current + 1 / current));
+        }
+    }
+
+    /**
+     * Latence minimale récente de la commande, cet échantillon compris ; repart de l'échantillon tous les
+     * {@link #RTT_WINDOW} appels de la commande.
+     */
+    private long baseline(int op, long rttNanos) {
+        if (samples.incrementAndGet(op) % RTT_WINDOW == 0) {
+            minRttNanos.set(op, rttNanos);
+            return rttNanos;
+        }
+        return minRttNanos.accumulateAndGet(op, rttNanos, (current, sample) -> current == 0 ? sample : Math.min(current, sample));
+    }
+
+    /**
+     * Échec dû à la charge : timeout (Vert.x ou Mutiny), pool de connexions saturé, Redis occupé par un script
+     * ({@code BUSY}), en chargement ou sans maître. Les autres erreurs Redis et les exceptions applicatives non.
+     */
+    static boolean overload(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof ConnectionPoolTooBusyException) {
+                return true;
+            }
+            String message = cause.getMessage();
+            if (message != null && OVERLOAD_ERRORS.stream().anyMatch(message::startsWith)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void decrease(long rttNanos) {
+        long now = System.nanoTime();
+        long last = lastDecrease.get();
+        // Une seule réduction par latence d'appel : les réponses lentes d'une même rafale comptent pour une
+        if (now - last > rttNanos && lastDecrease.compareAndSet(last, now)) {
+            updateLimit(current -> Math.max(minLimit, current * backoffRatio));
+        }
+    }
+
+    private void updateLimit(DoubleUnaryOperator update) {
+        limit.updateAndGet(bits -> Double.doubleToRawLongBits(update.applyAsDouble(Double.longBitsToDouble(bits))));
+    }
+
+    private static TooManyRequestsException tooManyRequests(String message) {
+        return new TooManyRequestsException(message);
+    }
+
+    private static Counter rejected(MeterRegistry registry, String reason) {
+        return Counter.builder("admission.rejected")
+                .description("Redis calls rejected with 429 before reaching Redis")
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,67 @@
+package com.monapp.concurrency;
+
+import com.monapp.config.AdmissionConfig;
+import com.monapp.config.VirtualThreadsConfig;
+import com.monapp.error.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Borne le nombre d'appels bloquants simultanés (sémaphore) pour les endpoints exécutés sur threads virtuels.
+ * Un appel qui n'obtient pas de place dans {@code acquireTimeout} est rejeté en 429 Too Many Requests :
+ * l'attente se fait en parquant le thread virtuel, sans occuper de thread porteur.
+ * <p>
+ * Inactif quand le contrôle d'admission est activé : chaque appel Redis y attend déjà sa place
+ * ({@link AdmissionController#admitBlocking}), une seule limite suffit.
+ */
+@ApplicationScoped
+public class ConcurrencyLimiter {
+
+    private final boolean enabled;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long acquireTimeoutNanos;
+    private final Counter rejected;
+
+    public ConcurrencyLimiter(VirtualThreadsConfig config, AdmissionConfig admission, MeterRegistry registry) {
+        this.enabled = !admission.enabled();
+        this.maxConcurrency = config.maxConcurrency();
+        this.permits = new Semaphore(maxConcurrency);
+        this.acquireTimeoutNanos = config.acquireTimeout().toNanos();
+        this.rejected = Counter.builder("virtual_threads.limiter.rejected").register(registry);
+        Gauge.builder("virtual_threads.limiter.in_flight", permits, p -> maxConcurrency - p.availablePermits())
+                .register(registry);
+    }
+
+    public <T> T call(Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        acquire();
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many concurrent Redis calls");
+        }
+    }
+}
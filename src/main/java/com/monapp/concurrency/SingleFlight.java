@@ -0,0 +1,68 @@
+package com.monapp.concurrency;
+
+import com.monapp.config.SingleFlightConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Fabrique des {@link StyleFlights} : un registre d'appels en vol par style d'accès, exporté sur {@code /q/metrics} :
+ * <ul>
+ *     <li>{@code single_flight.calls} : lectures par style, {@code role=leader} (commande envoyée)
+ *     ou {@code role=follower} (résultat partagé) ;</li>
+ *     <li>{@code single_flight.dedup_ratio} : part des lectures servies par un appel déjà en vol ;</li>
+ *     <li>{@code single_flight.in_flight} : appels Redis partagés en cours.</li>
+ * </ul>
+ */
+@ApplicationScoped
+public class SingleFlight {
+
+    /**
+     * Instance inerte, pour les usages hors CDI.
+     */
+    public static final SingleFlight DISABLED = new SingleFlight(null, false);
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+
+    @Inject
+    public SingleFlight(SingleFlightConfig config, MeterRegistry registry) {
+        this(registry, config.enabled());
+    }
+
+    SingleFlight(MeterRegistry registry, boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Registre d'un style d'accès ; à appeler une fois, à la construction du manager.
+     */
+    public StyleFlights forStyle(String style) {
+        if (!enabled) {
+            return StyleFlights.DISABLED;
+        }
+        Counter leaders = Counter.builder("single_flight.calls")
+                .description("Group reads, by whether they sent the Redis command or joined one in flight")
+                .tag("style", style)
+                .tag("role", "leader")
+                .register(registry);
+        Counter followers = Counter.builder("single_flight.calls")
+                .description("Group reads, by whether they sent the Redis command or joined one in flight")
+                .tag("style", style)
+                .tag("role", "follower")
+                .register(registry);
+        StyleFlights flights = new StyleFlights(leaders, followers);
+        Gauge.builder("single_flight.dedup_ratio", flights, StyleFlights::dedupRatio)
+                .description("Share of group reads served by a Redis call already in flight")
+                .tag("style", style)
+                .register(registry);
+        Gauge.builder("single_flight.in_flight", flights, StyleFlights::inFlight)
+                .description("Shared Redis reads in flight")
+                .tag("style", style)
+                .register(registry);
+        return flights;
+    }
+}
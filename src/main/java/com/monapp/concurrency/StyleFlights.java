@@ -0,0 +1,148 @@
+package com.monapp.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Appels Redis en vol d'un style d'accès (single-flight). Une lecture identique à une lecture en cours
+ * (même groupe, même utilisateur) ne renvoie pas de commande : elle reçoit le résultat décodé de la première.
+ * L'entrée disparaît dès que l'appel se termine ; la lecture suivante repart vers Redis.
+ * <p>
+ * Une écriture appelle {@link #forget(String)} : les lectures qui la suivent ne rejoignent pas un appel
+ * parti avant elle. Le résultat est partagé tel quel entre les appelants, qui ne doivent pas le modifier.
+ * Désactivé, chaque méthode appelle simplement {@code loader}.
+ */
+public final class StyleFlights {
+
+    static final StyleFlights DISABLED = new StyleFlights(null, null);
+
+    /**
+     * Sépare la clé du groupe de l'id utilisateur ; absent des clés {@code groups:*}.
+     */
+    private static final char USER_SEPARATOR = '\0';
+
+    private final Map<String, Object> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+    private final boolean enabled;
+
+    StyleFlights(Counter leaders, Counter followers) {
+        this.leaders = leaders;
+        this.followers = followers;
+        this.enabled = leaders != null;
+    }
+
+    /**
+     * HGETALL partagé : une seule commande et un seul décodage pour les lectures simultanées du groupe.
+     */
+    public <T> Uni<T> group(String key, Supplier<Uni<T>> loader) {
+        return share(key, loader);
+    }
+
+    /**
+     * HGET partagé : une seule commande pour les lectures simultanées du même utilisateur.
+     */
+    public <T> Uni<T> user(String key, String userId, Supplier<Uni<T>> loader) {
+        return share(key + USER_SEPARATOR + userId, loader);
+    }
+
+    public <T> Future<T> groupFuture(String key, Supplier<Future<T>> loader) {
+        return shareFuture(key, loader);
+    }
+
+    public <T> Future<T> userFuture(String key, String userId, Supplier<Future<T>> loader) {
+        return shareFuture(key + USER_SEPARATOR + userId, loader);
+    }
+
+    /**
+     * Le groupe vient d'être écrit : les appels en vol restent servis à ceux qui les attendent,
+     * mais les nouvelles lectures repartent vers Redis.
+     */
+    public void forget(String key) {
+        if (!enabled || inFlight.isEmpty()) {
+            return;
+        }
+        inFlight.remove(key);
+        String userPrefix = key + USER_SEPARATOR;
+        // Ne contient que les appels en cours : le parcours reste court
+        inFlight.keySet().removeIf(flight -> flight.startsWith(userPrefix));
+    }
+
+    double dedupRatio() {
+        double followed = followers.count();
+        double total = leaders.count() + followed;
+        return total == 0 ? 0 : followed / total;
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Le premier abonné crée l'appel, mémorisé jusqu'à sa fin ; les suivants s'abonnent au même Uni.
+     * L'entrée est retirée à la terminaison de l'appel, avant que le résultat ne soit rediffusé.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Uni<T> share(String flight, Supplier<Uni<T>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return Uni.createFrom().deferred(() -> {
+            boolean[] leader = new boolean[1];
+            Uni<T> uni = (Uni<T>) inFlight.computeIfAbsent(flight, key -> {
+                leader[0] = true;
+                return newFlight(key, loader);
+            });
+            (leader[0] ? leaders : followers).increment();
+            return uni;
+        });
+    }
+
+    private <T> Uni<T> newFlight(String flight, Supplier<Uni<T>> loader) {
+        AtomicReference<Uni<T>> self = new AtomicReference<>();
+        Uni<T> uni = Uni.createFrom().deferred(loader)
+                .onTermination().invoke(() -> inFlight.remove(flight, self.get()))
+                .memoize().indefinitely();
+        self.set(uni);
+        return uni;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Future<T> shareFuture(String flight, Supplier<Future<T>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Promise<T>[] leader = new Promise[1];
+        Future<T> shared = (Future<T>) inFlight.computeIfAbsent(flight, key -> {
+            leader[0] = Promise.promise();
+            return leader[0].future();
+        });
+        if (leader[0] == null) {
+            followers.increment();
+            return shared;
+        }
+        leaders.increment();
+
+        // L'appel part hors du computeIfAbsent : sa complétion peut être synchrone et retirer l'entrée
+        Promise<T> promise = leader[0];
+
+        Future<T> call;
+        try {
+            call = loader.get();
+        } catch (RuntimeException e) {
+            call = Future.failedFuture(e);
+        }
+        call.onComplete(result -> {
+            inFlight.remove(flight, promise.future());
+            promise.handle(result);
+        });
+        return promise.future();
+    }
+}
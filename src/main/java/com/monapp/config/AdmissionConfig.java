@@ -0,0 +1,62 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Contrôle d'admission des appels Redis, commun aux six managers (voir AdmissionController).
+ */
+@ConfigMapping(prefix = "monapp.admission")
+public interface AdmissionConfig {
+
+    /**
+     * Désactivé par défaut : activé, il ajoute des réponses 429 à tous les endpoints existants.
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Limite globale d'appels Redis simultanés au démarrage, ajustée ensuite entre {@code min-limit}
+     * et {@code max-limit} selon la latence observée.
+     */
+    @WithDefault("64")
+    int initialLimit();
+
+    @WithDefault("8")
+    int minLimit();
+
+    @WithDefault("512")
+    int maxLimit();
+
+    /**
+     * Appels simultanés (en cours ou en file) pour un même groupe ; au-delà, rejet immédiat en 429.
+     */
+    @WithDefault("32")
+    int perGroupLimit();
+
+    /**
+     * Appels en attente d'une place sous la limite globale ; au-delà, rejet immédiat en 429.
+     */
+    @WithDefault("256")
+    int queueSize();
+
+    /**
+     * Attente maximale en file avant rejet en 429.
+     */
+    @WithDefault("100ms")
+    Duration queueTimeout();
+
+    /**
+     * Un appel plus lent que {@code latency-tolerance} fois la latence minimale récente signale une congestion.
+     */
+    @WithDefault("2.0")
+    double latencyTolerance();
+
+    /**
+     * Facteur appliqué à la limite globale sur congestion (latence, timeout ou surcharge de Redis).
+     */
+    @WithDefault("0.9")
+    double backoffRatio();
+}
@@ -0,0 +1,23 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Paramètres de l'ingestion en masse (POST /datasource/reactive/bulk/{groupId}).
+ */
+@ConfigMapping(prefix = "monapp.bulk")
+public interface BulkConfig {
+
+    /**
+     * Nombre d'utilisateurs regroupés dans un même HSET multi-champs.
+     */
+    @WithDefault("500")
+    int batchSize();
+
+    /**
+     * Nombre de HSET envoyés ensemble dans un même pipeline (Redis.batch).
+     */
+    @WithDefault("4")
+    int pipelineDepth();
+}
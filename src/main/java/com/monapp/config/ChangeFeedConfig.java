@@ -0,0 +1,51 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Flux de changements des groupes (Redis Streams), alimenté par createUser, deleteUser et deleteAllUsers.
+ */
+@ConfigMapping(prefix = "monapp.change-feed")
+public interface ChangeFeedConfig {
+
+    /**
+     * Ajoute un événement au flux à chaque écriture, dans le même MULTI/EXEC, script ou pipeline.
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * 0 : un flux par groupe ({@code group-changes:{groupId}}). Sinon, nombre de flux partagés
+     * ({@code group-changes-shard:{n}}, n = hash slot du groupe modulo {@code shards}).
+     */
+    @WithDefault("0")
+    int shards();
+
+    /**
+     * Durée pendant laquelle un flux propre à un groupe survit au groupe (suppression, expiration) : le temps pour
+     * les consommateurs d'y lire les derniers événements. Sans objet pour les flux partagés.
+     */
+    @WithDefault("10m")
+    Duration clearedRetention();
+
+    /**
+     * Longueur approximative conservée par flux (XADD MAXLEN ~).
+     */
+    @WithDefault("10000")
+    long maxLen();
+
+    /**
+     * Nombre maximum d'événements par lecture (XREAD / XREADGROUP COUNT).
+     */
+    @WithDefault("100")
+    int readCount();
+
+    /**
+     * Attente entre deux lectures quand le flux n'a rien de nouveau.
+     */
+    @WithDefault("200ms")
+    Duration pollInterval();
+}
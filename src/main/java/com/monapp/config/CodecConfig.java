@@ -0,0 +1,18 @@
+package com.monapp.config;
+
+import com.monapp.redis.lowlevel.codec.ValueFormat;
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Format d'écriture des valeurs User dans les hash des groupes.
+ */
+@ConfigMapping(prefix = "monapp.codec")
+public interface CodecConfig {
+
+    /**
+     * Format des nouvelles écritures ; la lecture accepte tous les formats, quel que soit ce réglage.
+     */
+    @WithDefault("json")
+    ValueFormat format();
+}
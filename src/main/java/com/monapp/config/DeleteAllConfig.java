@@ -0,0 +1,17 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Suppression progressive des groupes (delete-all?progressive=true), commune aux six managers.
+ */
+@ConfigMapping(prefix = "monapp.delete-all")
+public interface DeleteAllConfig {
+
+    /**
+     * Indication COUNT des HSCAN : utilisateurs supprimés (HDEL) par lot.
+     */
+    @WithDefault("500")
+    int chunkSize();
+}
@@ -0,0 +1,49 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Index secondaire des emails ({@code users:email:<email>}), tenu à jour par toutes les écritures d'utilisateurs,
+ * et sa reconstruction.
+ */
+@ConfigMapping(prefix = "monapp.email-index")
+public interface EmailIndexConfig {
+
+    /**
+     * Met à jour l'index dans le même MULTI/EXEC ou script que l'écriture. Refusé au démarrage en cluster
+     * (voir ClusterCompatibility).
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Utilisateurs retirés de l'index par appel lors du vidage différé d'un groupe supprimé.
+     */
+    @WithDefault("500")
+    int drainBatchSize();
+
+    /**
+     * Intervalle entre deux reconstructions planifiées ("off" : seulement à la demande, POST /email-index/rebuild).
+     */
+    @WithDefault("off")
+    String rebuildEvery();
+
+    /**
+     * Indication COUNT des SCAN de la reconstruction (groupes, tables inverses).
+     */
+    @WithDefault("1000")
+    int rebuildScanCount();
+
+    /**
+     * Utilisateurs par page HSCAN, et donc par script de mise à jour de l'index.
+     */
+    @WithDefault("500")
+    int rebuildPageSize();
+
+    /**
+     * Débit maximum de la reconstruction, en utilisateurs indexés ou vérifiés par seconde.
+     */
+    @WithDefault("5000")
+    int rebuildMaxUsersPerSecond();
+}
@@ -0,0 +1,30 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Paramètres de la lecture multi-groupes (endpoint get-all-groups).
+ */
+@ConfigMapping(prefix = "monapp.group-batch")
+public interface GroupBatchConfig {
+
+    /**
+     * Nombre maximal de HGETALL par pipeline.
+     */
+    @WithDefault("50")
+    int pipelineSize();
+
+    /**
+     * Nombre maximal de pipelines en vol simultanément.
+     */
+    @WithDefault("4")
+    int concurrency();
+
+    /**
+     * Regroupe les clés par hash slot : à activer avec {@code quarkus.redis.client-type=cluster},
+     * où un pipeline ne peut viser qu'un seul slot.
+     */
+    @WithDefault("false")
+    boolean groupBySlot();
+}
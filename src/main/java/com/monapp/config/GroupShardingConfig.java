@@ -0,0 +1,55 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Répartition des très gros groupes sur plusieurs sous-hashes (voir GroupSharding).
+ */
+@ConfigMapping(prefix = "monapp.group-sharding")
+public interface GroupShardingConfig {
+
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Utilisateurs visés par sous-hash : le nombre de sous-hashes est la plus petite puissance de deux
+     * qui garde chacun sous cette taille.
+     */
+    @WithDefault("100000")
+    int shardSize();
+
+    /**
+     * Nombre maximal de sous-hashes par groupe (puissance de deux).
+     */
+    @WithDefault("64")
+    int maxShards();
+
+    /**
+     * Resharding automatique quand un getAllUsers observe une taille qui ne correspond plus au découpage :
+     * plus de sous-hashes que nécessaire, ou au moins deux fois moins.
+     */
+    @WithDefault("true")
+    boolean autoReshard();
+
+    /**
+     * Durée pendant laquelle un nœud garde le découpage d'un groupe en mémoire.
+     */
+    @WithDefault("1s")
+    Duration layoutCacheTtl();
+
+    /**
+     * Attente entre l'annonce d'un resharding et le début de la migration : doit dépasser {@code layout-cache-ttl}
+     * (et {@code monapp.write-behind.flush-interval}) pour que plus aucun nœud n'écrive selon l'ancien découpage.
+     */
+    @WithDefault("3s")
+    Duration migrationDelay();
+
+    /**
+     * Indication COUNT des HSCAN de la migration : utilisateurs déplacés par aller-retour.
+     */
+    @WithDefault("1000")
+    int migrationScanCount();
+}
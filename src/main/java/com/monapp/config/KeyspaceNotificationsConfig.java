@@ -0,0 +1,58 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Abonnement aux notifications keyspace de Redis sur les clés {@code groups:*}, relayées aux
+ * {@link com.monapp.keyspace.KeyspaceListener} de l'application.
+ */
+@ConfigMapping(prefix = "monapp.keyspace-notifications")
+public interface KeyspaceNotificationsConfig {
+
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Événements écoutés ({@code __keyevent@*__:<event>}). Par défaut les seules suppressions : {@code hset} et
+     * {@code hdel} publieraient un message par écriture, sur toutes les clés du serveur.
+     */
+    @WithDefault("expired,del")
+    List<String> events();
+
+    /**
+     * Ajoute au démarrage les classes requises à {@code notify-keyspace-events} (CONFIG SET, sans retirer
+     * celles déjà actives). Désactivé par défaut : l'application ne modifie pas la configuration du serveur, qui
+     * doit être réglée à la main, par exemple {@code notify-keyspace-events Egx} (ajouter {@code h} pour
+     * {@code hset} / {@code hdel}).
+     */
+    @WithDefault("false")
+    boolean configureServer();
+
+    /**
+     * Clés distinctes en attente qui déclenchent la distribution sans attendre {@code batch-interval}.
+     */
+    @WithDefault("500")
+    int batchSize();
+
+    /**
+     * Fenêtre de regroupement : les notifications d'une même clé reçues dans la fenêtre n'en font qu'une.
+     */
+    @WithDefault("100ms")
+    Duration batchInterval();
+
+    /**
+     * Clés distinctes en attente au-delà desquelles les nouvelles notifications sont abandonnées.
+     */
+    @WithDefault("100000")
+    int maxPending();
+
+    /**
+     * Délai avant de rétablir l'abonnement après une coupure.
+     */
+    @WithDefault("1s")
+    Duration reconnectDelay();
+}
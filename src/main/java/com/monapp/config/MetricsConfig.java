@@ -0,0 +1,17 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Instrumentation des commandes Redis (timers par style et par commande, tailles de valeurs et de groupes).
+ */
+@ConfigMapping(prefix = "monapp.metrics")
+public interface MetricsConfig {
+
+    /**
+     * Désactivé, aucun meter n'est enregistré et les appels passent tels quels : ni wrapper ni allocation.
+     */
+    @WithDefault("true")
+    boolean enabled();
+}
@@ -0,0 +1,17 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Paramètres des lectures multiples (endpoints get-many).
+ */
+@ConfigMapping(prefix = "monapp.multi-get")
+public interface MultiGetConfig {
+
+    /**
+     * Nombre maximal de champs par HMGET ; une liste plus longue est découpée en HMGET envoyés en pipeline.
+     */
+    @WithDefault("500")
+    int chunkSize();
+}
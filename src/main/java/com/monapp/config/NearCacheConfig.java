@@ -0,0 +1,44 @@
+package com.monapp.config;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Paramètres du near-cache local (getUser / getAllUsers) invalidé par CLIENT TRACKING.
+ */
+@ConfigMapping(prefix = "monapp.near-cache")
+public interface NearCacheConfig {
+
+    /**
+     * Active le cache. Requiert Redis 6+ (CLIENT TRACKING).
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Nombre maximum de groupes en cache.
+     */
+    @WithDefault("10000")
+    int maxEntries();
+
+    /**
+     * Empreinte mémoire estimée maximum du cache.
+     */
+    @WithDefault("64M")
+    MemorySize maxMemory();
+
+    /**
+     * Durée de vie locale maximum d'une entrée, filet de sécurité si une invalidation est perdue.
+     */
+    @WithDefault("60s")
+    Duration expireAfterWrite();
+
+    /**
+     * Délai avant de rétablir les connexions de tracking après une coupure.
+     */
+    @WithDefault("1s")
+    Duration reconnectDelay();
+}
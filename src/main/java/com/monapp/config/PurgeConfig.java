@@ -0,0 +1,71 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Paramètres de la purge planifiée des groupes ({@code groups:*}).
+ * La fréquence d'exécution est portée par {@code monapp.purge.every} ("off" pour désactiver).
+ */
+@ConfigMapping(prefix = "monapp.purge")
+public interface PurgeConfig {
+
+    /**
+     * Intervalle entre deux passes de purge.
+     */
+    @WithDefault("5m")
+    String every();
+
+    /**
+     * Indication COUNT transmise à SCAN.
+     */
+    @WithDefault("1000")
+    int scanCount();
+
+    /**
+     * Nombre maximum de pages SCAN parcourues par exécution ; la suivante reprend au curseur sauvegardé.
+     */
+    @WithDefault("50")
+    int pagesPerRun();
+
+    /**
+     * Nombre de clés examinées (et supprimées le cas échéant) par appel du script de purge.
+     */
+    @WithDefault("100")
+    int batchSize();
+
+    /**
+     * Débit maximum de suppression, en clés par seconde.
+     */
+    @WithDefault("500")
+    int maxPurgedPerSecond();
+
+    /**
+     * Supprime les groupes sans TTL (TTL = -1), une fois inactifs depuis {@code without-ttl-grace}. Désactivé par
+     * défaut : l'application pose toujours un TTL, un groupe sans TTL vient d'un autre client.
+     */
+    @WithDefault("false")
+    boolean purgeWithoutTtl();
+
+    /**
+     * Inactivité minimum (OBJECT IDLETIME) d'un groupe sans TTL avant sa suppression : laisse à une écriture en cours
+     * le temps de poser son EXPIRE.
+     */
+    @WithDefault("10m")
+    Duration withoutTtlGrace();
+
+    /**
+     * Supprime les groupes non accédés depuis cette durée (OBJECT IDLETIME).
+     * Non disponible lorsque Redis utilise une politique d'éviction LFU.
+     */
+    Optional<Duration> maxIdle();
+
+    /**
+     * Clé Redis contenant le curseur SCAN de la dernière page traitée.
+     */
+    @WithDefault("purge:groups:cursor")
+    String checkpointKey();
+}
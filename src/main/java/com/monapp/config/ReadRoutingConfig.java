@@ -0,0 +1,40 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Routage des lectures de groupe (getUser, getAllUsers, getUserTTL) vers le client Redis nommé {@code read},
+ * configuré pour lire sur les réplicas ({@code quarkus.redis.read.*}). Topologies réplication et sentinel
+ * seulement : en cluster, les lectures restent sur les primaires (voir ReadRouting).
+ */
+@ConfigMapping(prefix = "monapp.read-routing")
+public interface ReadRoutingConfig {
+
+    /**
+     * Active le routage. Désactivé, toutes les lectures vont au client par défaut (primaires).
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Tolérance de fraîcheur : les réplicas ne servent les lectures que si leur retard de réplication
+     * ne la dépasse pas, et un groupe écrit par ce nœud est lu sur le primaire pendant cette durée.
+     */
+    @WithDefault("1s")
+    Duration maxStaleness();
+
+    /**
+     * Intervalle de mesure du retard des réplicas (INFO replication) ; "off" pour désactiver la mesure.
+     */
+    @WithDefault("5s")
+    String lagCheckInterval();
+
+    /**
+     * Nombre maximal de groupes récemment écrits suivis localement.
+     */
+    @WithDefault("100000")
+    int trackedGroups();
+}
@@ -0,0 +1,17 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Paramètres du parcours incrémental des groupes (HSCAN) utilisé par les endpoints de streaming.
+ */
+@ConfigMapping(prefix = "monapp.scan")
+public interface ScanConfig {
+
+    /**
+     * Indication COUNT transmise à HSCAN : nombre approximatif de champs renvoyés par page.
+     */
+    @WithDefault("500")
+    int count();
+}
@@ -0,0 +1,17 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Regroupement des lectures concurrentes identiques (getUser, getAllUsers) en un seul appel Redis.
+ */
+@ConfigMapping(prefix = "monapp.single-flight")
+public interface SingleFlightConfig {
+
+    /**
+     * Désactivé, chaque lecture envoie sa propre commande.
+     */
+    @WithDefault("true")
+    boolean enabled();
+}
@@ -0,0 +1,44 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Politique de TTL des groupes : durée par préfixe d'id de groupe et rafraîchissement conditionnel.
+ */
+@ConfigMapping(prefix = "monapp.ttl")
+public interface TtlConfig {
+
+    /**
+     * TTL des groupes dont l'id ne correspond à aucun préfixe.
+     */
+    @WithDefault("10h")
+    Duration defaultTtl();
+
+    /**
+     * TTL par préfixe d'id de groupe ({@code monapp.ttl.prefixes.session-=30m}) ; le plus long préfixe l'emporte.
+     */
+    Map<String, Duration> prefixes();
+
+    /**
+     * Le TTL n'est repoussé que si le TTL restant est passé sous cette fraction du TTL du groupe.
+     * Avec 0.9 et un TTL de 10 h, un groupe reçoit au plus un EXPIRE effectif par heure.
+     */
+    @WithDefault("0.9")
+    double refreshRatio();
+
+    /**
+     * Repousse aussi le TTL sur les lectures (getUser, getAllUsers), selon le même seuil.
+     */
+    @WithDefault("false")
+    boolean slidingOnRead();
+
+    /**
+     * Nombre maximal de groupes suivis localement (échéance du prochain rafraîchissement).
+     */
+    @WithDefault("100000")
+    int trackedGroups();
+}
@@ -0,0 +1,34 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Exécution des endpoints DataSource impératifs sur threads virtuels ({@code /datasource/virtual}).
+ * L'activation est une propriété de build : {@code monapp.virtual-threads.enabled=true} au packaging ; la changer
+ * au démarrage (variable d'environnement, {@code -D} sur {@code java -jar}) n'ajoute ni ne retire les endpoints.
+ */
+@ConfigMapping(prefix = "monapp.virtual-threads")
+public interface VirtualThreadsConfig {
+
+    /**
+     * Rappel de la propriété de build lue par {@code @IfBuildProperty} ; sans effet à l'exécution.
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Nombre maximal d'appels Redis simultanés depuis les threads virtuels : protège Redis et le pool
+     * de connexions, que les threads virtuels ne bornent plus. Ignoré quand le contrôle d'admission est activé.
+     */
+    @WithDefault("256")
+    int maxConcurrency();
+
+    /**
+     * Attente maximale d'une place avant de répondre 429 Too Many Requests.
+     */
+    @WithDefault("500ms")
+    Duration acquireTimeout();
+}
@@ -0,0 +1,62 @@
+package com.monapp.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+/**
+ * Écriture différée (write-behind) des createUser des managers Redis Mutiny et DataSource réactif.
+ */
+@ConfigMapping(prefix = "monapp.write-behind")
+public interface WriteBehindConfig {
+
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Moment où createUser rend la main : compromis entre latence et durabilité.
+     */
+    @WithDefault("flushed")
+    Ack ack();
+
+    /**
+     * Partitions du tampon (par groupe), chacune avec son verrou et au plus un flush en cours.
+     */
+    @WithDefault("16")
+    int shards();
+
+    /**
+     * Écritures distinctes (groupe, utilisateur) en attente, tous shards confondus ; au-delà, rejet en 429.
+     */
+    @WithDefault("100000")
+    int maxPending();
+
+    /**
+     * Écritures en attente dans un shard qui déclenchent son flush sans attendre {@code flush-interval}.
+     */
+    @WithDefault("1000")
+    int flushSize();
+
+    @WithDefault("50ms")
+    Duration flushInterval();
+
+    /**
+     * Attente maximale du dernier flush à l'arrêt de l'application.
+     */
+    @WithDefault("10s")
+    Duration shutdownTimeout();
+
+    enum Ack {
+        /**
+         * Dès la mise en tampon : latence minimale, mais les écritures non encore flushées sont perdues
+         * si le processus s'arrête brutalement ; un flush en échec est retenté au suivant.
+         */
+        BUFFERED,
+        /**
+         * Une fois le flush qui contient l'écriture terminé : aucune écriture acquittée n'est perdue,
+         * au prix d'une latence jusqu'à {@code flush-interval} ; un flush en échec fait échouer ses createUser.
+         */
+        FLUSHED
+    }
+}
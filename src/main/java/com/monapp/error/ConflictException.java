@@ -0,0 +1,12 @@
+package com.monapp.error;
+
+/**
+ * L'opération est incompatible avec l'état courant : fonctionnalité désactivée, groupe découpé, opération déjà
+ * en cours… Réponse HTTP 409 (voir {@link com.monapp.resource.ErrorMappers}).
+ */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
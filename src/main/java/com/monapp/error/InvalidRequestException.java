@@ -0,0 +1,12 @@
+package com.monapp.error;
+
+/**
+ * Paramètre invalide (identifiant, nombre de sous-hashes…). Réponse HTTP 400
+ * (voir {@link com.monapp.resource.ErrorMappers}).
+ */
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
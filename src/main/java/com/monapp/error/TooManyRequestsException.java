@@ -0,0 +1,12 @@
+package com.monapp.error;
+
+/**
+ * Appel refusé sans rien envoyer à Redis (admission, tampon plein) ; le client peut réessayer plus tard.
+ * Réponse HTTP 429 (voir {@link com.monapp.resource.ErrorMappers}).
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,174 @@
+package com.monapp.feed;
+
+import com.monapp.config.ChangeFeedConfig;
+import com.monapp.redis.cluster.HashSlot;
+import com.monapp.model.ChangeEvent;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Request;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Flux de changements des groupes : nommage des Redis Streams et construction des XADD ajoutés aux écritures.
+ * <p>
+ * Chaque createUser / deleteUser / deleteAllUsers ajoute un événement compact ({@code op}, {@code u}, et {@code g}
+ * pour un flux partagé) dans le même MULTI/EXEC, fonction Redis ou pipeline que l'écriture : un consommateur n'observe
+ * jamais une écriture sans son événement, ni l'inverse (hors pipeline non transactionnel du createUsers en masse).
+ * <p>
+ * Par défaut, un flux par groupe, {@code group-changes:{groups:<groupId>}} : le hash tag le place dans le même
+ * hash slot que {@code groups:<groupId>}, l'ajout atomique fonctionne donc aussi en cluster. Avec {@code shards > 0},
+ * les groupes partagent {@code shards} flux {@code group-changes-shard:<n>} : moins de clés, mais un MULTI ou une
+ * fonction touche alors deux slots, ce mode est refusé au démarrage en cluster (voir ClusterCompatibility).
+ * <p>
+ * Un flux propre au groupe suit le TTL du groupe, dans la même transaction ou fonction que l'événement
+ * ({@link #streamExpire}) : il vit jusqu'à {@code cleared-retention} après la fin du groupe, le temps de lire
+ * l'événement {@code clear}, puis disparaît avec lui. Les flux partagés n'expirent pas (MAXLEN seul).
+ * Aucun de ces noms ne commence par {@code groups:} : ni le near-cache ni le job de purge ne les voient.
+ */
+@ApplicationScoped
+public class ChangeFeed {
+
+    private static final String GROUP_KEY = "groups:%s";
+    private static final String GROUP_STREAM = "group-changes:{" + GROUP_KEY + "}";
+    private static final String SHARD_STREAM = "group-changes-shard:%d";
+
+    private final ChangeFeedConfig config;
+
+    public ChangeFeed(ChangeFeedConfig config) {
+        this.config = config;
+    }
+
+    public boolean enabled() {
+        return config.enabled();
+    }
+
+    public boolean sharded() {
+        return config.shards() > 0;
+    }
+
+    public int shards() {
+        return config.shards();
+    }
+
+    /**
+     * Flux qui reçoit les événements du groupe.
+     */
+    public String streamKey(String groupId) {
+        return sharded() ? shardKey(shardOf(groupId)) : GROUP_STREAM.formatted(groupId);
+    }
+
+    public String shardKey(int shard) {
+        if (shard < 0 || shard >= config.shards()) {
+            throw new IllegalArgumentException("Unknown change feed shard: " + shard);
+        }
+        return SHARD_STREAM.formatted(shard);
+    }
+
+    public int shardOf(String groupId) {
+        return HashSlot.of(GROUP_KEY.formatted(groupId)) % config.shards();
+    }
+
+    /**
+     * XADD de l'événement, ou {@code null} si le flux est désactivé.
+     */
+    public Request xadd(String groupId, String op, String userId) {
+        if (!config.enabled()) {
+            return null;
+        }
+        Request xadd = Request.cmd(Command.XADD);
+        xaddArgs(groupId, op, userId).forEach(xadd::arg);
+        return xadd;
+    }
+
+    /**
+     * EXPIRE du flux propre au groupe à placer après le XADD d'un événement {@code op}, ou {@code null} (flux
+     * désactivé ou partagé) : TTL du groupe plus {@code cleared-retention} pour un {@code set} ; la rétention seule
+     * après un {@code clear}, et pour un {@code del} si le flux n'a pas de TTL (créé par ce XADD, groupe absent).
+     */
+    public Request streamExpire(String groupId, String op, long groupTtlSeconds) {
+        if (!config.enabled() || sharded()) {
+            return null;
+        }
+        long retention = config.clearedRetention().toSeconds();
+        Request expire = Request.cmd(Command.EXPIRE).arg(streamKey(groupId));
+        return switch (op) {
+            case ChangeEvent.SET -> expire.arg(groupTtlSeconds + retention);
+            case ChangeEvent.DELETE -> expire.arg(retention).arg("NX");
+            default -> expire.arg(retention);
+        };
+    }
+
+    /**
+     * Arguments du XADD de l'événement (clé, MAXLEN ~, id auto, champs), pour les API qui prennent une liste.
+     */
+    public List<String> xaddArgs(String groupId, String op, String userId) {
+        List<String> args = new ArrayList<>(11);
+        Collections.addAll(args, streamKey(groupId), "MAXLEN", "~", String.valueOf(config.maxLen()), "*", "op", op);
+        if (userId != null) {
+            Collections.addAll(args, "u", userId);
+        }
+        if (sharded()) {
+            Collections.addAll(args, "g", groupId);
+        }
+        return args;
+    }
+
+    /**
+     * Arguments d'un FCALL sur un groupe (voir GroupFunctions) : {@code [fonction, numkeys, clé, (flux), argv...,
+     * (maxLen, rétention, groupe)]}. Les paramètres du flux suivent les ARGV propres à la fonction ; sans flux, la
+     * fonction n'ajoute pas d'événement. La rétention ({@code cleared-retention}, en secondes) sert à l'expiration
+     * d'un flux propre au groupe, calquée sur le TTL du groupe par la fonction.
+     */
+    public List<String> callArgs(String function, String key, String groupId, String... argv) {
+        return callArgs(function, List.of(key), List.of(groupId), Arrays.asList(argv));
+    }
+
+    /**
+     * Arguments d'un FCALL sur plusieurs groupes :
+     * {@code [fonction, numkeys, clés..., (flux...), argv..., (maxLen, rétention, groupe...)]}, un flux et un
+     * id de groupe ({@code ""} pour un flux propre au groupe) par clé.
+     */
+    public List<String> callArgs(String function, List<String> keys, List<String> groupIds, List<String> argv) {
+        List<String> args = new ArrayList<>(2 + 3 * keys.size() + argv.size() + 2);
+        args.add(function);
+        if (!config.enabled()) {
+            args.add(String.valueOf(keys.size()));
+            args.addAll(keys);
+            args.addAll(argv);
+            return args;
+        }
+        args.add(String.valueOf(2 * keys.size()));
+        args.addAll(keys);
+        groupIds.forEach(groupId -> args.add(streamKey(groupId)));
+        args.addAll(argv);
+        args.add(String.valueOf(config.maxLen()));
+        args.add(String.valueOf(config.clearedRetention().toSeconds()));
+        groupIds.forEach(groupId -> args.add(sharded() ? groupId : ""));
+        return args;
+    }
+
+    /**
+     * FCALL de {@link #callArgs(String, List, List, List)} dont l'ARGV d'indice {@code valueIndex} (à partir de 0)
+     * est une valeur encodée (voir JsonCodec#encodeToBuffer) : envoyée en octets, elle n'est pas altérée par un
+     * passage en String, quel que soit le format. {@code argv} réserve sa place.
+     */
+    public Request call(String function, List<String> keys, List<String> groupIds, List<String> argv,
+                        int valueIndex, Buffer value) {
+        List<String> args = callArgs(function, keys, groupIds, argv);
+        int position = 2 + Integer.parseInt(args.get(1)) + valueIndex;
+        Request fcall = Request.cmd(Command.FCALL);
+        for (int i = 0; i < args.size(); i++) {
+            if (i == position) {
+                fcall.arg(value);
+            } else {
+                fcall.arg(args.get(i));
+            }
+        }
+        return fcall;
+    }
+}
@@ -0,0 +1,129 @@
+package com.monapp.feed;
+
+import com.monapp.config.ChangeFeedConfig;
+import com.monapp.model.ChangeEvent;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.stream.ReactiveStreamCommands;
+import io.quarkus.redis.datasource.stream.StreamMessage;
+import io.quarkus.redis.datasource.stream.StreamRange;
+import io.quarkus.redis.datasource.stream.XGroupCreateArgs;
+import io.quarkus.redis.datasource.stream.XReadArgs;
+import io.quarkus.redis.datasource.stream.XReadGroupArgs;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Lecture du flux de changements : suivi libre à partir d'un offset, ou consommation au sein d'un consumer group.
+ * <p>
+ * Les lectures ne bloquent pas côté serveur (pas de BLOCK) : un XREAD bloquant immobiliserait une connexion du pool
+ * par abonné. Quand le flux n'a rien de nouveau, la lecture suivante part après {@code poll-interval}.
+ * Le flux se termine quand l'abonné se désabonne (fermeture de la connexion HTTP).
+ */
+@ApplicationScoped
+public class ChangeFeedReader {
+
+    /**
+     * Offset spécial : ne suivre que les événements ajoutés après l'abonnement.
+     */
+    public static final String LATEST = "$";
+    private static final String BEGINNING = "0-0";
+    private static final String PENDING = "0";
+    private static final String NEW_MESSAGES = ">";
+
+    private final ReactiveStreamCommands<String, String, String> streams;
+    private final ChangeFeedConfig config;
+
+    public ChangeFeedReader(ReactiveRedisDataSource ds, ChangeFeedConfig config) {
+        this.streams = ds.stream(String.class);
+        this.config = config;
+    }
+
+    /**
+     * Suit le flux après l'offset {@code from} (id exclu, {@code 0-0} depuis le début, {@code $} depuis maintenant).
+     * {@code groupId} : groupe du flux s'il est propre à un groupe, filtre sur les événements d'un flux partagé,
+     * {@code null} pour tous les événements d'un flux partagé.
+     */
+    public Multi<ChangeEvent> tail(String stream, String groupId, String from) {
+        return resolve(stream, from).onItem().transformToMulti(start -> poll(start,
+                        offset -> streams.xread(stream, offset, new XReadArgs().count(config.readCount()))))
+                .map(message -> toEvent(message, groupId))
+                .filter(event -> groupId == null || groupId.equals(event.groupId()));
+    }
+
+    /**
+     * Consomme le flux au sein du consumer group {@code consumerGroup} (créé au besoin, à partir des nouveaux
+     * événements) : d'abord les événements déjà remis à {@code consumer} et non acquittés, puis les nouveaux.
+     * Chaque événement reste en attente jusqu'à {@link #ack}.
+     */
+    public Multi<ChangeEvent> consume(String stream, String groupId, String consumerGroup, String consumer) {
+        XReadGroupArgs args = new XReadGroupArgs().count(config.readCount());
+        return createGroup(stream, consumerGroup)
+                .onItem().transformToMulti(ignored -> poll(PENDING, offset -> streams.xreadgroup(consumerGroup, consumer, stream, offset, args)
+                        // Fin des événements en attente : passage aux nouveaux
+                        .map(messages -> messages.isEmpty() && !NEW_MESSAGES.equals(offset) ? null : messages)))
+                .map(message -> toEvent(message, groupId));
+    }
+
+    public Uni<Integer> ack(String stream, String consumerGroup, List<String> ids) {
+        if (ids.isEmpty()) {
+            return Uni.createFrom().item(0);
+        }
+        return streams.xack(stream, consumerGroup, ids.toArray(String[]::new));
+    }
+
+    /**
+     * Lectures successives à partir de {@code start}. {@code read} renvoie la page suivant l'offset ;
+     * une page vide attend {@code poll-interval}, une page {@code null} fait passer aux nouveaux messages (">").
+     */
+    private Multi<StreamMessage<String, String, String>> poll(String start,
+                                                             Function<String, Uni<List<StreamMessage<String, String, String>>>> read) {
+        return Multi.createBy().repeating()
+                .uni(() -> new AtomicReference<>(start),
+                        offset -> read.apply(offset.get())
+                                .chain(messages -> {
+                                    if (messages == null) {
+                                        offset.set(NEW_MESSAGES);
+                                        return Uni.createFrom().item(List.<StreamMessage<String, String, String>>of());
+                                    }
+                                    if (messages.isEmpty()) {
+                                        return Uni.createFrom().item(messages).onItem().delayIt().by(config.pollInterval());
+                                    }
+                                    if (!NEW_MESSAGES.equals(offset.get())) {
+                                        offset.set(messages.get(messages.size() - 1).id());
+                                    }
+                                    return Uni.createFrom().item(messages);
+                                }))
+                .indefinitely()
+                .onItem().transformToIterable(messages -> messages);
+    }
+
+    /**
+     * Remplace {@code $} par l'id du dernier événement (XREVRANGE), XREAD sans BLOCK ne le comprenant pas.
+     */
+    private Uni<String> resolve(String stream, String from) {
+        if (!LATEST.equals(from)) {
+            return Uni.createFrom().item(from == null || from.isBlank() ? BEGINNING : from);
+        }
+        return streams.xrevrange(stream, StreamRange.of("-", "+"), 1)
+                .map(last -> last.isEmpty() ? BEGINNING : last.get(0).id());
+    }
+
+    private Uni<Void> createGroup(String stream, String consumerGroup) {
+        return streams.xgroupCreate(stream, consumerGroup, LATEST, new XGroupCreateArgs().mkstream())
+                // Le groupe existe déjà : on le reprend là où il en est
+                .onFailure(failure -> failure.getMessage() != null && failure.getMessage().startsWith("BUSYGROUP"))
+                .recoverWithNull();
+    }
+
+    private static ChangeEvent toEvent(StreamMessage<String, String, String> message, String groupId) {
+        Map<String, String> fields = message.payload();
+        String group = fields.getOrDefault("g", groupId);
+        return new ChangeEvent(message.id(), group, fields.get("op"), fields.get("u"));
+    }
+}
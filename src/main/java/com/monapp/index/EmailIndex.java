@@ -0,0 +1,249 @@
+package com.monapp.index;
+
+import com.monapp.config.EmailIndexConfig;
+import com.monapp.error.ConflictException;
+import com.monapp.error.InvalidRequestException;
+import com.monapp.keyspace.KeyspaceListener;
+import com.monapp.model.EmailMatch;
+import com.monapp.model.KeyspaceEvent;
+import com.monapp.redis.script.GroupFunctions;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Response;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Request;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Index secondaire des emails : {@code users:email:<email>} est le set des {@code <groupId>:<userId>} qui portent
+ * cet email, ce qui rend la recherche indépendante du nombre de groupes.
+ * <p>
+ * Chaque écriture d'utilisateurs le met à jour dans le même MULTI/EXEC ou la même fonction Redis (voir GroupFunctions) ;
+ * l'ingestion en masse et l'écriture différée l'ajoutent à leur pipeline. Une table inverse par groupe,
+ * {@code group-emails:{groups:<groupId>}}, donne l'email précédent d'un utilisateur. {@link EmailIndexRebuildJob}
+ * rattrape ce qu'un pipeline interrompu a manqué.
+ * <p>
+ * Supprimer un groupe ne fait que renommer sa table inverse (O(1) dans l'écriture) ; {@link #drainPending} en retire
+ * ensuite les utilisateurs par lots de {@code drain-batch-size}. Un groupe qui expire est retiré sur notification
+ * keyspace, si elles sont activées ; sinon, ou tant que le retrait n'est pas fini, {@link #lookup} écarte les
+ * utilisateurs qui ne sont plus dans leur groupe.
+ * <p>
+ * Les clés de l'index ne partagent pas le hash slot du groupe et ne sont pas déclarées dans KEYS : le démarrage
+ * est refusé en cluster (voir ClusterCompatibility).
+ * Un id utilisateur ne peut pas contenir {@code :}, qui sépare le groupe de l'utilisateur dans l'index
+ * (voir {@link #validateUserId}).
+ */
+@ApplicationScoped
+public class EmailIndex implements KeyspaceListener {
+
+    private static final String CLEARING_KEY = "group-emails-clearing";
+
+    public static final String REVERSE_PREFIX = "group-emails:";
+
+    private final Redis redis;
+    private final EmailIndexConfig config;
+    private final GroupFunctions functions;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    public EmailIndex(Redis redis, EmailIndexConfig config, GroupFunctions functions) {
+        this.redis = redis;
+        this.config = config;
+        this.functions = functions;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        // Groupes supprimés avant un arrêt, pas encore retirés
+        drainPending();
+    }
+
+    public boolean enabled() {
+        return config.enabled();
+    }
+
+    /**
+     * Refuse (400) un id utilisateur contenant {@code :} quand l'index est activé, à la création dans tous les styles.
+     */
+    public void validateUserId(String userId) {
+        if (config.enabled() && userId != null && userId.indexOf(':') >= 0) {
+            throw new InvalidRequestException("User id must not contain ':' when the email index is enabled: " + userId);
+        }
+    }
+
+    /**
+     * Forme indexée d'un email : sans espaces autour, en minuscules ; vide si absent.
+     */
+    public static String normalize(String email) {
+        return email == null ? "" : email.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Argument « groupe à indexer » des fonctions de la bibliothèque : vide si l'index est désactivé.
+     */
+    public String indexedGroup(String groupId) {
+        return config.enabled() ? groupId : "";
+    }
+
+    /**
+     * Arguments de la fonction delete_users : le groupe à indexer, puis les ids.
+     */
+    public List<String> deleteUsersArgs(String groupId, List<String> userIds) {
+        List<String> args = new ArrayList<>(userIds.size() + 1);
+        args.add(indexedGroup(groupId));
+        args.addAll(userIds);
+        return args;
+    }
+
+    /**
+     * Mise à jour de l'index pour l'écriture d'un utilisateur, à placer dans un MULTI/EXEC, ou {@code null}
+     * si l'index est désactivé.
+     */
+    public Request set(String groupId, String userId, String email) {
+        return config.enabled() ? script("set", groupId).arg(userId).arg(normalize(email)) : null;
+    }
+
+    /**
+     * {@link #set(String, String, String)} pour plusieurs utilisateurs (id -> email), en un appel.
+     */
+    public Request set(String groupId, Map<String, String> emails) {
+        if (!config.enabled() || emails.isEmpty()) {
+            return null;
+        }
+        Request set = script("set", groupId);
+        emails.forEach((userId, email) -> set.arg(userId).arg(normalize(email)));
+        return set;
+    }
+
+    public Request delete(String groupId, String userId) {
+        return config.enabled() ? script("del", groupId).arg(userId) : null;
+    }
+
+    public Request clear(String groupId) {
+        return config.enabled() ? script("clear", groupId) : null;
+    }
+
+    /**
+     * FCALL de la fonction index_emails pour l'opération et le groupe ; les arguments propres à l'opération suivent.
+     */
+    static Request script(String op, String groupId) {
+        return Request.cmd(Command.FCALL).arg(GroupFunctions.INDEX_EMAILS).arg(0).arg(op).arg(groupId);
+    }
+
+    /**
+     * Utilisateurs qui portent l'email, tous groupes confondus (fonction lookup_email : les membres du set dont
+     * l'utilisateur est encore dans son groupe).
+     */
+    public Uni<List<EmailMatch>> lookup(String email) {
+        if (!config.enabled()) {
+            return Uni.createFrom().failure(new ConflictException("Email index is disabled"));
+        }
+        Request fcall = Request.cmd(Command.FCALL).arg(GroupFunctions.LOOKUP_EMAIL).arg(0).arg(normalize(email));
+        return call(io.vertx.mutiny.redis.client.Request.newInstance(fcall))
+                .map(members -> {
+                    List<EmailMatch> matches = new ArrayList<>(members == null ? 0 : members.size());
+                    for (int i = 0; members != null && i < members.size(); i++) {
+                        String member = members.get(i).toString();
+                        int separator = member.lastIndexOf(':');
+                        matches.add(new EmailMatch(member.substring(0, separator), member.substring(separator + 1)));
+                    }
+                    return matches;
+                });
+    }
+
+    /**
+     * Retire de l'index les groupes expirés ou supprimés hors de l'API ; le script vérifie que le groupe
+     * n'existe plus (une notification peut arriver après sa recréation).
+     */
+    @Override
+    public void onEvents(List<KeyspaceEvent> events) {
+        if (!config.enabled()) {
+            return;
+        }
+        for (KeyspaceEvent event : events) {
+            if (event.removed()) {
+                // Pour un sous-hash, le groupe n'est retiré que si tous ses sous-hashes ont disparu
+                clearIfGone(event.groupId());
+            }
+        }
+    }
+
+    /**
+     * Groupe supprimé hors d'une écriture de l'application (purge) : retiré de l'index s'il n'existe plus,
+     * sous-hashes compris.
+     */
+    public void removed(String groupId) {
+        if (config.enabled()) {
+            clearIfGone(groupId);
+        }
+    }
+
+    private void clearIfGone(String groupId) {
+        call(io.vertx.mutiny.redis.client.Request.newInstance(script("clear-if-gone", groupId)))
+                .subscribe().with(
+                        removed -> {
+                            if (removed.toLong() > 0) {
+                                drainPending();
+                            }
+                        },
+                        failure -> Log.warnf(failure, "Could not remove group %s from the email index", groupId));
+    }
+
+    /**
+     * Retire de l'index, lot par lot, les utilisateurs des groupes supprimés (tables inscrites dans
+     * {@code group-emails-clearing}). Un seul vidage à la fois par instance ; un appel pendant un vidage le relance
+     * à sa fin.
+     */
+    public void drainPending() {
+        if (!config.enabled()) {
+            return;
+        }
+        drainRequested.set(true);
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        drainRequested.set(false);
+        drainNext().subscribe().with(
+                ignored -> {
+                    draining.set(false);
+                    if (drainRequested.get()) {
+                        drainPending();
+                    }
+                },
+                failure -> {
+                    draining.set(false);
+                    Log.warnf(failure, "Could not drain deleted groups from the email index");
+                });
+    }
+
+    private Uni<Void> drainNext() {
+        return send(Request.cmd(Command.SRANDMEMBER).arg(CLEARING_KEY))
+                .chain(pending -> pending == null
+                        ? Uni.createFrom().voidItem()
+                        : drain(pending.toString()).chain(this::drainNext));
+    }
+
+    private Uni<Void> drain(String pending) {
+        return call(io.vertx.mutiny.redis.client.Request.newInstance(script("drain", pending).arg(config.drainBatchSize())))
+                .chain(remaining -> remaining.toLong() > 0 ? drain(pending) : Uni.createFrom().voidItem());
+    }
+
+    Uni<Response> send(Request request) {
+        return redis.send(io.vertx.mutiny.redis.client.Request.newInstance(request));
+    }
+
+    /**
+     * Envoie un FCALL de {@link #script}, rejoué après rechargement de la bibliothèque si elle manque.
+     */
+    Uni<Response> call(io.vertx.mutiny.redis.client.Request fcall) {
+        return functions.call(() -> redis.send(fcall));
+    }
+}
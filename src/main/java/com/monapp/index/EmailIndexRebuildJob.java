@@ -0,0 +1,211 @@
+package com.monapp.index;
+
+import com.monapp.config.EmailIndexConfig;
+import com.monapp.error.ConflictException;
+import com.monapp.model.EmailIndexRebuildResult;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
+import com.monapp.redis.lowlevel.redis.GroupUserManagerRedisMutiny;
+import com.monapp.redis.sharding.ShardLayout;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reconstruction de l'index des emails à partir des données, à débit plafonné.
+ * <p>
+ * Deux passes SCAN : les hashes {@code groups:*} sont parcourus par pages HSCAN, chaque page indexée par un appel
+ * de la fonction index_emails qui ne retient un utilisateur que si le groupe contient toujours la valeur lue (une écriture concurrente
+ * l'emporte) ; puis les tables inverses {@code group-emails:*} sont parcourues pour retirer les groupes disparus et
+ * les utilisateurs qui ne sont plus dans leur groupe (un groupe disparu part ensuite par EmailIndex#drainPending). Le débit total est plafonné à
+ * {@code rebuild-max-users-per-second}. Une seule reconstruction à la fois par instance.
+ */
+@ApplicationScoped
+public class EmailIndexRebuildJob {
+
+    private static final String GROUP_PREFIX = GroupUserManagerRedisMutiny.GROUP_USERS_KEY.formatted("");
+    private static final String REVERSE_KEY_PREFIX = EmailIndex.REVERSE_PREFIX + "{" + GROUP_PREFIX;
+
+    private final Redis redis;
+    private final JsonCodec jsonCodec;
+    private final EmailIndex index;
+    private final EmailIndexConfig config;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter indexedCounter;
+    private final Counter removedCounter;
+
+    public EmailIndexRebuildJob(Redis redis, JsonCodec jsonCodec, EmailIndex index, EmailIndexConfig config,
+                                MeterRegistry registry) {
+        this.redis = redis;
+        this.jsonCodec = jsonCodec;
+        this.index = index;
+        this.config = config;
+        this.indexedCounter = Counter.builder("email_index.rebuild.indexed")
+                .description("Users (re)indexed by the email index rebuild")
+                .register(registry);
+        this.removedCounter = Counter.builder("email_index.rebuild.removed")
+                .description("Stale email index entries removed by the rebuild")
+                .register(registry);
+    }
+
+    @Scheduled(identity = "email-index-rebuild", every = "${monapp.email-index.rebuild-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> scheduledRebuild() {
+        if (!index.enabled() || running.get()) {
+            return Uni.createFrom().voidItem();
+        }
+        return rebuild()
+                .invoke(result -> Log.infof("Email index rebuilt: %s", result))
+                .replaceWithVoid()
+                .onFailure().invoke(failure -> Log.warnf(failure, "Email index rebuild interrupted"))
+                .onFailure().recoverWithNull();
+    }
+
+    public Uni<EmailIndexRebuildResult> rebuild() {
+        if (!index.enabled()) {
+            return Uni.createFrom().failure(new ConflictException("Email index is disabled"));
+        }
+        if (!running.compareAndSet(false, true)) {
+            return Uni.createFrom().failure(new ConflictException("Email index rebuild already running"));
+        }
+        AtomicLong groups = new AtomicLong();
+        AtomicLong users = new AtomicLong();
+        AtomicLong removed = new AtomicLong();
+        // Sous-hashes d'un groupe découpé (groups:<groupId>#<n>) indexés sous le groupe
+        return scan(GROUP_PREFIX + "*")
+                .onItem().transformToUniAndConcatenate(key -> {
+                    groups.incrementAndGet();
+                    return indexGroup(key, ShardLayout.groupIdOf(key), users);
+                })
+                .onItem().ignoreAsUni()
+                .chain(() -> scan(REVERSE_KEY_PREFIX + "*")
+                        .onItem().transformToUniAndConcatenate(reverse -> prune(reverse, removed))
+                        .onItem().ignoreAsUni())
+                .map(ignored -> new EmailIndexRebuildResult(groups.get(), users.get(), removed.get()))
+                .eventually(() -> {
+                    running.set(false);
+                    // Groupes disparus retirés par la passe 2
+                    index.drainPending();
+                });
+    }
+
+    /**
+     * Passe 1 : indexe le hash page par page (fonction index_emails, opération sync).
+     */
+    private Uni<Void> indexGroup(String key, String groupId, AtomicLong users) {
+        return hscan(key)
+                .onItem().transformToUniAndConcatenate(entries -> {
+                    if (entries.size() == 0) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    Request sync = Request.newInstance(EmailIndex.script("sync", groupId));
+                    for (int i = 0; i < entries.size(); i += 2) {
+                        String userId = entries.get(i).toString();
+                        Response value = entries.get(i + 1);
+                        sync.arg(userId).arg(value.toBuffer()).arg(EmailIndex.normalize(jsonCodec.decode(userId, value).email()));
+                    }
+                    return index.call(sync)
+                            .map(Response::toLong)
+                            .invoke(indexed -> {
+                                users.addAndGet(indexed);
+                                indexedCounter.increment(indexed);
+                            })
+                            .chain(() -> throttle(entries.size() / 2));
+                })
+                .onItem().ignoreAsUni();
+    }
+
+    /**
+     * Passe 2 : retire le groupe s'il a disparu, sinon les utilisateurs de la table inverse absents du groupe.
+     */
+    private Uni<Void> prune(String reverse, AtomicLong removed) {
+        String groupId = reverse.substring(REVERSE_KEY_PREFIX.length(), reverse.length() - 1);
+        return index.call(Request.newInstance(EmailIndex.script("clear-if-gone", groupId)))
+                .map(Response::toLong)
+                .chain(cleared -> {
+                    if (cleared >= 0) {
+                        removed.addAndGet(cleared);
+                        removedCounter.increment(cleared);
+                        return throttle(cleared);
+                    }
+                    return hscan(reverse)
+                            .onItem().transformToUniAndConcatenate(entries -> {
+                                if (entries.size() == 0) {
+                                    return Uni.createFrom().voidItem();
+                                }
+                                Request check = Request.newInstance(EmailIndex.script("prune", groupId));
+                                for (int i = 0; i < entries.size(); i += 2) {
+                                    check.arg(entries.get(i).toString());
+                                }
+                                return index.call(check)
+                                        .map(Response::toLong)
+                                        .invoke(pruned -> {
+                                            removed.addAndGet(pruned);
+                                            removedCounter.increment(pruned);
+                                        })
+                                        .chain(() -> throttle(entries.size() / 2));
+                            })
+                            .onItem().ignoreAsUni();
+                });
+    }
+
+    /**
+     * Clés de type hash correspondant au motif, page SCAN après page SCAN.
+     */
+    private Multi<String> scan(String pattern) {
+        return Multi.createBy().repeating()
+                .uni(() -> new AtomicReference<>("0"),
+                        cursor -> redis.send(Request.cmd(Command.SCAN)
+                                        .arg(cursor.get())
+                                        .arg("MATCH").arg(pattern)
+                                        .arg("COUNT").arg(config.rebuildScanCount())
+                                        .arg("TYPE").arg("hash"))
+                                .invoke(page -> cursor.set(page.get(0).toString())))
+                .whilst(page -> !"0".equals(page.get(0).toString()))
+                .onItem().transformToIterable(page -> {
+                    Response keys = page.get(1);
+                    List<String> names = new ArrayList<>(keys.size());
+                    for (int i = 0; i < keys.size(); i++) {
+                        names.add(keys.get(i).toString());
+                    }
+                    return names;
+                });
+    }
+
+    /**
+     * Pages HSCAN du hash : champs et valeurs alternés.
+     */
+    private Multi<Response> hscan(String key) {
+        return Multi.createBy().repeating()
+                .uni(() -> new AtomicReference<>("0"),
+                        cursor -> redis.send(Request.cmd(Command.HSCAN)
+                                        .arg(key)
+                                        .arg(cursor.get())
+                                        .arg("COUNT").arg(config.rebuildPageSize()))
+                                .invoke(page -> cursor.set(page.get(0).toString())))
+                .whilst(page -> !"0".equals(page.get(0).toString()))
+                .map(page -> page.get(1));
+    }
+
+    private Uni<Void> throttle(long users) {
+        if (users == 0) {
+            return Uni.createFrom().voidItem();
+        }
+        Duration pause = Duration.ofMillis(users * 1000 / config.rebuildMaxUsersPerSecond());
+        return Uni.createFrom().voidItem().onItem().delayIt().by(pause);
+    }
+}
@@ -0,0 +1,27 @@
+package com.monapp.keyspace;
+
+import com.monapp.model.KeyspaceEvent;
+
+import java.util.List;
+
+/**
+ * Écouteur des notifications keyspace des groupes : tout bean CDI qui implémente cette interface est appelé
+ * par {@link KeyspaceNotifications}.
+ * <p>
+ * Les appels se font sur la boucle d'événements Vert.x, un lot à la fois : un écouteur ne doit pas bloquer et
+ * délègue les traitements longs. Une exception est journalisée et comptée, sans effet sur les autres écouteurs.
+ */
+public interface KeyspaceListener {
+
+    /**
+     * Lot de notifications, au plus une par clé.
+     */
+    void onEvents(List<KeyspaceEvent> events);
+
+    /**
+     * L'abonnement vient d'être (r)établi : les notifications émises pendant la coupure sont perdues (Pub/Sub),
+     * l'écouteur doit se resynchroniser s'il en dépend.
+     */
+    default void onResync() {
+    }
+}
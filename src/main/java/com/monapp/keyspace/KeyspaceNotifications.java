@@ -0,0 +1,349 @@
+package com.monapp.keyspace;
+
+import com.monapp.config.KeyspaceNotificationsConfig;
+import com.monapp.model.KeyspaceEvent;
+import com.monapp.redis.sharding.ShardLayout;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.client.RedisClientName;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.RedisConnection;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Abonnement aux notifications keyspace des groupes, distribuées par lots aux {@link KeyspaceListener}.
+ * <p>
+ * Une connexion dédiée, prise au client nommé {@code subscriptions} plutôt qu'au pool partagé, s'abonne ({@code PSUBSCRIBE}) à {@code __keyevent@*__:<event>} pour chaque événement
+ * configuré ; seules les clés {@code groups:*} sont retenues. Les notifications sont regroupées par clé : une rafale
+ * de HSET sur un groupe pendant {@code batch-interval} ne produit qu'un {@link KeyspaceEvent}, qui garde les
+ * événements vus et le dernier. Un lot part toutes les {@code batch-interval}, ou dès {@code batch-size} clés.
+ * <p>
+ * Pub/Sub ne rejoue rien : à chaque coupure l'abonnement est rétabli après {@code reconnect-delay}, puis les
+ * écouteurs sont prévenus ({@link KeyspaceListener#onResync()}) qu'ils ont pu manquer des événements.
+ * Redis n'émet les notifications d'une clé que sur le nœud qui la porte : en cluster, seul le nœud de la connexion
+ * est écouté. Une expiration est notifiée quand Redis supprime effectivement la clé (accès ou cycle d'expiration
+ * actif), pas à l'échéance exacte du TTL.
+ */
+@ApplicationScoped
+public class KeyspaceNotifications {
+
+    private static final String CHANNEL_PATTERN = "__keyevent@*__:%s";
+    private static final String GROUP_PREFIX = "groups:";
+    private static final String NOTIFY_PARAMETER = "notify-keyspace-events";
+
+    private final Redis redis;
+    private final Vertx vertx;
+    private final KeyspaceNotificationsConfig config;
+    private final List<KeyspaceListener> listeners;
+
+    /**
+     * Notifications en attente de distribution, par clé, dans l'ordre d'arrivée ; protégé par {@code this}.
+     */
+    private Map<String, Pending> pending = new LinkedHashMap<>();
+
+    private final Object dispatchLock = new Object();
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private volatile boolean connected;
+    private volatile boolean stopped;
+    private volatile boolean subscribedOnce;
+    private volatile RedisConnection subscriber;
+    private volatile long timerId = -1;
+
+    private final Map<String, Counter> received = new HashMap<>();
+    private final Counter deduplicated;
+    private final Counter dropped;
+    private final Counter listenerFailures;
+    private final Counter reconnects;
+    private final DistributionSummary batchSize;
+    private final Timer dispatchLag;
+
+    public KeyspaceNotifications(@RedisClientName("subscriptions") Redis redis, Vertx vertx, KeyspaceNotificationsConfig config,
+                                 @Any Instance<KeyspaceListener> listeners, MeterRegistry registry) {
+        this.redis = redis;
+        this.vertx = vertx;
+        this.config = config;
+        this.listeners = listeners.stream().toList();
+
+        for (String event : config.events()) {
+            received.put(event, Counter.builder("keyspace.notifications")
+                    .description("Keyspace notifications received for group keys")
+                    .tag("event", event)
+                    .register(registry));
+        }
+        this.deduplicated = Counter.builder("keyspace.notifications.deduplicated")
+                .description("Notifications merged into a pending event of the same key")
+                .register(registry);
+        this.dropped = Counter.builder("keyspace.notifications.dropped")
+                .description("Notifications dropped because max-pending keys were waiting")
+                .register(registry);
+        this.listenerFailures = Counter.builder("keyspace.listener.failures")
+                .description("Keyspace listener calls that threw")
+                .register(registry);
+        this.reconnects = Counter.builder("keyspace.reconnects")
+                .description("Keyspace subscriptions re-established after a connection loss")
+                .register(registry);
+        this.batchSize = DistributionSummary.builder("keyspace.batch.size")
+                .description("Keys per batch dispatched to the listeners")
+                .register(registry);
+        this.dispatchLag = Timer.builder("keyspace.dispatch.lag")
+                .description("Delay between the first notification of a key and its dispatch to the listeners")
+                .register(registry);
+        Gauge.builder("keyspace.pending", this, KeyspaceNotifications::pendingKeys)
+                .description("Keys waiting to be dispatched")
+                .register(registry);
+        Gauge.builder("keyspace.connected", this, notifications -> notifications.connected ? 1 : 0)
+                .description("1 while the keyspace subscription is established")
+                .register(registry);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!config.enabled()) {
+            return;
+        }
+        timerId = vertx.setPeriodic(config.batchInterval().toMillis(), id -> dispatch());
+        configureServer()
+                .subscribe().with(
+                        ok -> connect(),
+                        failure -> {
+                            Log.warnf(failure, "Could not set %s, keyspace notifications must be enabled on the server",
+                                    NOTIFY_PARAMETER);
+                            connect();
+                        });
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stopped = true;
+        connected = false;
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+        closeConnection();
+        dispatch();
+    }
+
+    /**
+     * Ajoute à {@code notify-keyspace-events} les classes manquantes pour les événements configurés.
+     */
+    private Uni<Void> configureServer() {
+        if (!config.configureServer()) {
+            return Uni.createFrom().voidItem();
+        }
+        return redis.send(Request.cmd(Command.CONFIG).arg("GET").arg(NOTIFY_PARAMETER))
+                .chain(response -> {
+                    Response value = response == null ? null : response.get(NOTIFY_PARAMETER);
+                    String current = value == null ? "" : value.toString();
+                    String flags = withRequiredFlags(current, config.events());
+                    if (flags.equals(current)) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    Log.infof("Setting %s from '%s' to '%s'", NOTIFY_PARAMETER, current, flags);
+                    return redis.send(Request.cmd(Command.CONFIG).arg("SET").arg(NOTIFY_PARAMETER).arg(flags))
+                            .replaceWithVoid();
+                });
+    }
+
+    /**
+     * {@code E} (canaux keyevent) plus la classe de chaque événement : {@code x} expired, {@code e} evicted,
+     * {@code h} commandes de hash, {@code g} commandes génériques (del, expire, rename…). {@code A} couvre tout
+     * sauf {@code K}, {@code E}, {@code m} et {@code n}.
+     */
+    static String withRequiredFlags(String current, List<String> events) {
+        StringBuilder flags = new StringBuilder(current);
+        Set<Character> required = new LinkedHashSet<>();
+        required.add('E');
+        for (String event : events) {
+            required.add(switch (event) {
+                case KeyspaceEvent.EXPIRED -> 'x';
+                case "evicted" -> 'e';
+                default -> event.startsWith("h") ? 'h' : 'g';
+            });
+        }
+        for (char flag : required) {
+            boolean covered = current.indexOf(flag) >= 0 || (flag != 'E' && current.indexOf('A') >= 0);
+            if (!covered) {
+                flags.append(flag);
+            }
+        }
+        return flags.toString();
+    }
+
+    // ----- Abonnement -----
+
+    private void connect() {
+        redis.connect()
+                .chain(sub -> {
+                    subscriber = sub;
+                    sub.handler(this::onMessage);
+                    sub.exceptionHandler(failure -> onConnectionLost(failure));
+                    sub.endHandler(() -> onConnectionLost(null));
+                    Request psubscribe = Request.cmd(Command.PSUBSCRIBE);
+                    config.events().forEach(event -> psubscribe.arg(CHANNEL_PATTERN.formatted(event)));
+                    return sub.send(psubscribe);
+                })
+                .subscribe().with(
+                        ok -> {
+                            connected = true;
+                            reconnecting.set(false);
+                            if (subscribedOnce) {
+                                reconnects.increment();
+                            }
+                            subscribedOnce = true;
+                            Log.infof("Subscribed to keyspace notifications %s, %d listener(s)", config.events(),
+                                    listeners.size());
+                            listeners.forEach(this::resync);
+                        },
+                        failure -> {
+                            reconnecting.set(false);
+                            onConnectionLost(failure);
+                        });
+    }
+
+    private void onMessage(Response message) {
+        // pmessage, motif, __keyevent@<db>__:<event>, clé
+        if (message == null || message.size() < 4 || !"pmessage".equals(message.get(0).toString())) {
+            return;
+        }
+        String key = message.get(3).toString();
+        if (!key.startsWith(GROUP_PREFIX)) {
+            return;
+        }
+        String channel = message.get(2).toString();
+        String event = channel.substring(channel.indexOf(':') + 1);
+        Counter counter = received.get(event);
+        if (counter != null) {
+            counter.increment();
+        }
+
+        boolean full;
+        synchronized (this) {
+            Pending entry = pending.get(key);
+            if (entry == null) {
+                if (pending.size() >= config.maxPending()) {
+                    dropped.increment();
+                    return;
+                }
+                entry = new Pending(System.nanoTime());
+                pending.put(key, entry);
+            } else {
+                deduplicated.increment();
+            }
+            entry.add(event);
+            full = pending.size() >= config.batchSize();
+        }
+        if (full) {
+            dispatch();
+        }
+    }
+
+    private void onConnectionLost(Throwable failure) {
+        connected = false;
+        if (stopped || !reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        if (failure != null) {
+            Log.warnf(failure, "Keyspace notification subscription lost, retrying in %s", config.reconnectDelay());
+        }
+        closeConnection();
+        vertx.setTimer(config.reconnectDelay().toMillis(), id -> connect());
+    }
+
+    private void closeConnection() {
+        RedisConnection sub = subscriber;
+        subscriber = null;
+        if (sub != null) {
+            sub.closeAndForget();
+        }
+    }
+
+    // ----- Distribution -----
+
+    private void dispatch() {
+        Map<String, Pending> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        long now = System.nanoTime();
+        List<KeyspaceEvent> events = new ArrayList<>(batch.size());
+        batch.forEach((key, entry) -> {
+            dispatchLag.record(now - entry.firstNanos, TimeUnit.NANOSECONDS);
+            events.add(new KeyspaceEvent(key, ShardLayout.groupIdOf(key), Collections.unmodifiableSet(entry.events),
+                    entry.last, entry.occurrences));
+        });
+        batchSize.record(events.size());
+        List<KeyspaceEvent> view = Collections.unmodifiableList(events);
+        // Le minuteur et un lot plein peuvent distribuer depuis deux boucles d'événements
+        synchronized (dispatchLock) {
+            for (KeyspaceListener listener : listeners) {
+                try {
+                    listener.onEvents(view);
+                } catch (RuntimeException e) {
+                    listenerFailures.increment();
+                    Log.warnf(e, "Keyspace listener %s failed", listener.getClass().getName());
+                }
+            }
+        }
+    }
+
+    private void resync(KeyspaceListener listener) {
+        try {
+            listener.onResync();
+        } catch (RuntimeException e) {
+            listenerFailures.increment();
+            Log.warnf(e, "Keyspace listener %s failed to resync", listener.getClass().getName());
+        }
+    }
+
+    private synchronized int pendingKeys() {
+        return pending.size();
+    }
+
+    /**
+     * Notifications d'une clé en attente : événements distincts dans l'ordre d'arrivée, dernier, nombre.
+     */
+    private static final class Pending {
+
+        final long firstNanos;
+        final Set<String> events = new LinkedHashSet<>(4);
+        String last;
+        int occurrences;
+
+        Pending(long firstNanos) {
+            this.firstNanos = firstNanos;
+        }
+
+        void add(String event) {
+            events.add(event);
+            last = event;
+            occurrences++;
+        }
+    }
+}
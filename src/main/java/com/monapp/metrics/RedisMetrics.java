@@ -0,0 +1,95 @@
+package com.monapp.metrics;
+
+import com.monapp.config.MetricsConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Meters Redis communs aux managers, exportés sur {@code /q/metrics} :
+ * <ul>
+ *     <li>{@code redis.command} : timer par style ({@code style}) et par commande ({@code command}) ;</li>
+ *     <li>{@code redis.value.size} : taille en octets des valeurs User écrites et lues ({@code direction}) ;</li>
+ *     <li>{@code redis.group.size} : nombre d'utilisateurs renvoyés par getAllUsers, par style.</li>
+ * </ul>
+ * Tous les timers sont créés au démarrage : le chemin d'appel ne fait aucune recherche de meter.
+ */
+@ApplicationScoped
+public class RedisMetrics {
+
+    /**
+     * Instance inerte, pour les usages hors CDI.
+     */
+    public static final RedisMetrics DISABLED = new RedisMetrics(null, false);
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final DistributionSummary valueWritten;
+    private final DistributionSummary valueRead;
+
+    @Inject
+    public RedisMetrics(MeterRegistry registry, MetricsConfig config) {
+        this(registry, config.enabled());
+    }
+
+    RedisMetrics(MeterRegistry registry, boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.valueWritten = enabled ? valueSize(registry, "write") : null;
+        this.valueRead = enabled ? valueSize(registry, "read") : null;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Meters d'un style d'accès ; à appeler une fois, à la construction du manager.
+     */
+    public StyleMetrics forStyle(String style) {
+        if (!enabled) {
+            return StyleMetrics.DISABLED;
+        }
+        Map<RedisOp, Timer> timers = new EnumMap<>(RedisOp.class);
+        for (RedisOp op : RedisOp.values()) {
+            timers.put(op, Timer.builder("redis.command")
+                    .description("Redis command latency, as seen by the manager")
+                    .tag("style", style)
+                    .tag("command", op.command())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        DistributionSummary groupSize = DistributionSummary.builder("redis.group.size")
+                .description("Users returned by getAllUsers")
+                .tag("style", style)
+                .publishPercentileHistogram()
+                .register(registry);
+        return new StyleMetrics(timers, groupSize);
+    }
+
+    public void recordValueWritten(int bytes) {
+        if (enabled) {
+            valueWritten.record(bytes);
+        }
+    }
+
+    public void recordValueRead(int bytes) {
+        if (enabled) {
+            valueRead.record(bytes);
+        }
+    }
+
+    private static DistributionSummary valueSize(MeterRegistry registry, String direction) {
+        return DistributionSummary.builder("redis.value.size")
+                .description("Size of the User values written to / read from Redis")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
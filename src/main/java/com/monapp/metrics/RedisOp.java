@@ -0,0 +1,37 @@
+package com.monapp.metrics;
+
+/**
+ * Commandes Redis instrumentées, valeur du tag {@code command}.
+ * createUser est compté sous {@code HSET+EXPIRE} quel que soit son transport (MULTI/EXEC ou FCALL create_user),
+ * les fonctions de la bibliothèque {@code monapp_groups} sous {@code FCALL <fonction>},
+ * les pipelines HSET + EXPIRE d'un groupe vidés du tampon d'écriture différée sous {@code HSET+EXPIRE flush}.
+ * deleteAllUsers est compté sous {@code UNLINK}, avec les HLEN / MEMORY USAGE qui l'accompagnent.
+ */
+public enum RedisOp {
+
+    HSET_EXPIRE("HSET+EXPIRE"),
+    HSET_EXPIRE_FLUSH("HSET+EXPIRE flush"),
+    HSET("HSET"),
+    HGET("HGET"),
+    HMGET("HMGET"),
+    HGETALL("HGETALL"),
+    HSCAN("HSCAN"),
+    HDEL("HDEL"),
+    UNLINK("UNLINK"),
+    MEMORY_USAGE("MEMORY USAGE"),
+    EXPIRE("EXPIRE"),
+    TTL("TTL"),
+    DELETE_USERS("FCALL delete_users"),
+    CREATE_IF_ABSENT("FCALL create_if_absent"),
+    MOVE_USER("FCALL move_user");
+
+    private final String command;
+
+    RedisOp(String command) {
+        this.command = command;
+    }
+
+    public String command() {
+        return command;
+    }
+}
@@ -0,0 +1,65 @@
+package com.monapp.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Future;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters d'un style d'accès. Désactivé, chaque méthode rend son argument tel quel.
+ * <p>
+ * Les Uni sont paresseux : {@link #time(RedisOp, Uni)} mesure depuis la souscription. Les Future et les appels
+ * bloquants sont déjà partis quand on les reçoit : on relève {@link #start()} avant l'appel.
+ */
+public final class StyleMetrics {
+
+    static final StyleMetrics DISABLED = new StyleMetrics(null, null);
+
+    private final Map<RedisOp, Timer> timers;
+    private final DistributionSummary groupSize;
+    private final boolean enabled;
+
+    StyleMetrics(Map<RedisOp, Timer> timers, DistributionSummary groupSize) {
+        this.timers = timers;
+        this.groupSize = groupSize;
+        this.enabled = timers != null;
+    }
+
+    public <T> Uni<T> time(RedisOp op, Uni<T> uni) {
+        if (!enabled) {
+            return uni;
+        }
+        Timer timer = timers.get(op);
+        return Uni.createFrom().deferred(() -> {
+            long start = System.nanoTime();
+            return uni.onTermination().invoke(() -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public <T> Future<T> record(RedisOp op, long start, Future<T> future) {
+        if (!enabled) {
+            return future;
+        }
+        Timer timer = timers.get(op);
+        return future.onComplete(result -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    public void record(RedisOp op, long start) {
+        if (enabled) {
+            timers.get(op).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordGroupSize(int users) {
+        if (enabled) {
+            groupSize.record(users);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.monapp.model;
+
+import java.util.List;
+
+/**
+ * Résultat d'une ingestion en masse.
+ *
+ * @param batches       un élément par HSET multi-champs, dans l'ordre d'envoi
+ * @param expirationSet {@code true} si le TTL du groupe (ou d'un de ses sous-hashes) a été posé pendant l'ingestion
+ */
+public record BulkCreateResult(List<Batch> batches, boolean expirationSet) {
+
+    /**
+     * @param users   nombre d'utilisateurs envoyés dans le HSET
+     * @param created nombre de champs ajoutés (les utilisateurs déjà présents sont mis à jour et non comptés)
+     */
+    public record Batch(int users, long created) {
+    }
+}
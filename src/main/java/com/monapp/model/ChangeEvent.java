@@ -0,0 +1,17 @@
+package com.monapp.model;
+
+/**
+ * Changement de composition d'un groupe, lu dans le flux de changements (Redis Stream).
+ *
+ * @param id      id de l'entrée dans le flux, à repasser en {@code from} pour reprendre après elle
+ * @param groupId identifiant du groupe
+ * @param op      {@code set} (création ou mise à jour), {@code del} (utilisateur supprimé),
+ *                {@code clear} (groupe supprimé)
+ * @param userId  utilisateur concerné ({@code null} pour {@code clear})
+ */
+public record ChangeEvent(String id, String groupId, String op, String userId) {
+
+    public static final String SET = "set";
+    public static final String DELETE = "del";
+    public static final String CLEAR = "clear";
+}
@@ -0,0 +1,19 @@
+package com.monapp.model;
+
+/**
+ * Résultat d'un createUser : HSET et EXPIRE sont rapportés séparément.
+ *
+ * @param created       {@code true} si le champ utilisateur a été ajouté au hash (HSET = 1),
+ *                      {@code false} s'il a été mis à jour
+ * @param expirationSet {@code true} si le TTL du groupe a été (re)posé (EXPIRE = 1) ; {@code false} si le TTL
+ *                      restant était encore au-dessus du seuil de rafraîchissement (voir TtlPolicy)
+ * @param deferred      {@code true} si l'écriture est passée par le tampon d'écriture différée (monapp.write-behind) :
+ *                      {@code created} rapporte alors le HSET de cet utilisateur dans le flush (pour des écritures
+ *                      fusionnées, seule la première peut l'avoir créé), et les deux indicateurs sont faux tant que l'écriture n'est pas flushée
+ */
+public record CreateUserResult(boolean created, boolean expirationSet, boolean deferred) {
+
+    public CreateUserResult(boolean created, boolean expirationSet) {
+        this(created, expirationSet, false);
+    }
+}
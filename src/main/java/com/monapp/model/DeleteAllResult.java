@@ -0,0 +1,13 @@
+package com.monapp.model;
+
+/**
+ * Résultat de la suppression d'un groupe.
+ *
+ * @param deleted    1 si le groupe existait, 0 sinon
+ * @param users      nombre d'utilisateurs supprimés
+ * @param freedBytes mémoire occupée par le groupe avant sa suppression (MEMORY USAGE, estimation échantillonnée) ;
+ *                   après UNLINK, Redis la libère en tâche de fond
+ * @param chunks     lots HSCAN + HDEL de la suppression progressive (0 : groupe supprimé d'un bloc)
+ */
+public record DeleteAllResult(int deleted, long users, long freedBytes, int chunks) {
+}
@@ -0,0 +1,10 @@
+package com.monapp.model;
+
+/**
+ * Résultat d'une suppression de plusieurs utilisateurs.
+ *
+ * @param deleted   nombre d'utilisateurs supprimés (les ids absents du groupe ne sont pas comptés)
+ * @param remaining nombre d'utilisateurs restant dans le groupe (0 : le groupe n'existe plus)
+ */
+public record DeleteUsersResult(int deleted, long remaining) {
+}
@@ -0,0 +1,11 @@
+package com.monapp.model;
+
+/**
+ * Bilan d'une reconstruction de l'index des emails.
+ *
+ * @param groups  hashes de groupe parcourus
+ * @param users   utilisateurs (ré)indexés
+ * @param removed entrées retirées : utilisateurs ou groupes disparus
+ */
+public record EmailIndexRebuildResult(long groups, long users, long removed) {
+}
@@ -0,0 +1,10 @@
+package com.monapp.model;
+
+/**
+ * Utilisateur trouvé par l'index des emails.
+ *
+ * @param groupId identifiant du groupe
+ * @param userId  identifiant de l'utilisateur dans le groupe
+ */
+public record EmailMatch(String groupId, String userId) {
+}
@@ -0,0 +1,12 @@
+package com.monapp.model;
+
+import java.util.Map;
+
+/**
+ * Membres d'un groupe, élément du flux renvoyé par la lecture multi-groupes.
+ *
+ * @param groupId identifiant du groupe
+ * @param users   utilisateurs par id (vide si le groupe n'existe pas)
+ */
+public record GroupUsers(String groupId, Map<String, User> users) {
+}
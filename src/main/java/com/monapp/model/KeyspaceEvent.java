@@ -0,0 +1,27 @@
+package com.monapp.model;
+
+import java.util.Set;
+
+/**
+ * Notifications keyspace d'une clé de groupe, regroupées sur une fenêtre de distribution.
+ *
+ * @param key         clé Redis ({@code groups:<groupId>}, ou un sous-hash {@code groups:<groupId>#<n>})
+ * @param groupId     id du groupe, celui du groupe découpé pour un sous-hash
+ * @param events      événements reçus dans la fenêtre, dans l'ordre de leur première occurrence
+ * @param last        dernier événement reçu, qui donne l'état de la clé ({@code expired} / {@code del} : disparue)
+ * @param occurrences notifications regroupées
+ */
+public record KeyspaceEvent(String key, String groupId, Set<String> events, String last, int occurrences) {
+
+    public static final String EXPIRED = "expired";
+    public static final String DEL = "del";
+    public static final String HSET = "hset";
+    public static final String HDEL = "hdel";
+
+    /**
+     * La clé a disparu (expiration ou suppression) à la fin de la fenêtre.
+     */
+    public boolean removed() {
+        return EXPIRED.equals(last) || DEL.equals(last);
+    }
+}
@@ -0,0 +1,10 @@
+package com.monapp.model;
+
+/**
+ * Résultat du déplacement d'un utilisateur entre deux groupes.
+ *
+ * @param moved         {@code false} si l'utilisateur n'existait pas dans le groupe source (rien n'est modifié)
+ * @param expirationSet {@code true} si le TTL du groupe cible a été (re)posé
+ */
+public record MoveUserResult(boolean moved, boolean expirationSet) {
+}
@@ -0,0 +1,17 @@
+package com.monapp.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Résultat d'une lecture multiple.
+ *
+ * @param found   utilisateurs trouvés, par id, dans l'ordre de la demande
+ * @param missing ids demandés absents du groupe, dans l'ordre de la demande
+ */
+public record MultiGetResult(Map<String, User> found, List<String> missing) {
+
+    public static MultiGetResult empty() {
+        return new MultiGetResult(Map.of(), List.of());
+    }
+}
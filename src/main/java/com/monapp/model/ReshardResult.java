@@ -0,0 +1,11 @@
+package com.monapp.model;
+
+/**
+ * Résultat d'un resharding de groupe.
+ *
+ * @param fromShards sous-hashes avant le resharding (1 : hash unique {@code groups:<groupId>})
+ * @param toShards   sous-hashes après ; égal à {@code fromShards} si le découpage convenait déjà
+ * @param moved      utilisateurs déplacés vers un autre sous-hash
+ */
+public record ReshardResult(String groupId, int fromShards, int toShards, long moved) {
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.Map;
+import java.util.Objects;
 
 public record User(String id, String name, String email) {
 
@@ -15,4 +16,11 @@ public record User(String id, String name, String email) {
                 });
     }
 
+    /**
+     * Copie avec l'id donné : les formats compacts n'écrivent pas l'id, déjà présent comme nom de champ du hash.
+     */
+    public User withId(String id) {
+        return Objects.equals(this.id, id) ? this : new User(id, name, email);
+    }
+
 }
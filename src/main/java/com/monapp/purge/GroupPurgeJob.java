@@ -0,0 +1,216 @@
+package com.monapp.purge;
+
+import com.monapp.config.PurgeConfig;
+import com.monapp.index.EmailIndex;
+import com.monapp.redis.lowlevel.redis.GroupUserManagerRedisMutiny;
+import com.monapp.redis.script.GroupScripts;
+import com.monapp.redis.sharding.GroupSharding;
+import com.monapp.redis.sharding.ShardLayout;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Purge planifiée des groupes sans TTL ou inactifs.
+ * <p>
+ * Chaque exécution reprend le SCAN {@code groups:*} au curseur sauvegardé dans Redis, examine au plus
+ * {@code pages-per-run} pages et supprime les groupes concernés par UNLINK (libération mémoire en tâche de fond),
+ * par lots dont le débit est plafonné. Le curseur est sauvegardé après chaque page : un redémarrage reprend
+ * là où la passe précédente s'était arrêtée. Plusieurs instances peuvent tourner en parallèle : les critères
+ * étant réévalués dans le script de purge, le pire cas est un travail en double.
+ * <p>
+ * Les sous-hashes {@code groups:<groupId>#<n>} d'un groupe découpé (voir GroupSharding) ne sont jamais purgés un par
+ * un : le groupe est purgé d'un seul tenant, d'après son découpage, si tous ses sous-hashes sont à purger, et pas
+ * pendant un resharding. Un groupe purgé est retiré de l'index des emails.
+ */
+@ApplicationScoped
+public class GroupPurgeJob {
+
+    private static final String GROUPS_PATTERN = GroupUserManagerRedisMutiny.GROUP_USERS_KEY.formatted("*");
+
+    private final Redis redis;
+    private final PurgeConfig config;
+    private final GroupSharding sharding;
+    private final EmailIndex emailIndex;
+    private final Counter scannedCounter;
+    private final Counter purgedCounter;
+
+    public GroupPurgeJob(Redis redis, PurgeConfig config, GroupSharding sharding, EmailIndex emailIndex,
+                         MeterRegistry registry) {
+        this.redis = redis;
+        this.config = config;
+        this.sharding = sharding;
+        this.emailIndex = emailIndex;
+        this.scannedCounter = Counter.builder("purge.keys.scanned")
+                .description("Group keys examined by the purge job")
+                .register(registry);
+        this.purgedCounter = Counter.builder("purge.keys.purged")
+                .description("Group keys unlinked by the purge job")
+                .register(registry);
+    }
+
+    @Scheduled(identity = "group-purge", every = "${monapp.purge.every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public Uni<Void> purge() {
+        return loadCheckpoint()
+                .onItem().transformToMulti(this::scanFrom)
+                .select().first(config.pagesPerRun())
+                .onItem().transformToUniAndConcatenate(page -> purgeKeys(page.keys())
+                        .chain(() -> saveCheckpoint(page.nextCursor())))
+                .onItem().ignoreAsUni()
+                .onFailure().invoke(failure -> Log.warnf(failure, "Group purge interrupted"));
+    }
+
+    /**
+     * Pages SCAN successives à partir du curseur donné, jusqu'à la fin de l'itération (curseur "0").
+     */
+    private Multi<ScanPage> scanFrom(String startCursor) {
+        return Multi.createBy().repeating()
+                .uni(() -> new AtomicReference<>(startCursor),
+                        cursor -> redis.send(Request.cmd(Command.SCAN)
+                                        .arg(cursor.get())
+                                        .arg("MATCH").arg(GROUPS_PATTERN)
+                                        .arg("COUNT").arg(config.scanCount())
+                                        .arg("TYPE").arg("hash"))
+                                .map(ScanPage::of)
+                                .invoke(page -> cursor.set(page.nextCursor())))
+                .whilst(page -> !page.last())
+                .invoke(page -> scannedCounter.increment(page.keys().size()));
+    }
+
+    /**
+     * Purge les clés d'une page par lots de {@code batch-size}, puis les groupes découpés dont elle contient un
+     * sous-hash, en respectant {@code max-purged-per-second}.
+     */
+    private Uni<Void> purgeKeys(List<String> keys) {
+        List<String> groups = new ArrayList<>(keys.size());
+        Set<String> shardedGroups = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (key.indexOf(ShardLayout.SHARD_SEPARATOR) < 0) {
+                groups.add(key);
+            } else {
+                shardedGroups.add(ShardLayout.groupIdOf(key));
+            }
+        }
+
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i += config.batchSize()) {
+            batches.add(groups.subList(i, Math.min(groups.size(), i + config.batchSize())));
+        }
+
+        return Multi.createFrom().iterable(batches)
+                .onItem().transformToUniAndConcatenate(batch -> {
+                    boolean layouts = sharding.enabled();
+                    Request eval = Request.cmd(Command.EVAL).arg(GroupScripts.PURGE_STALE_GROUPS)
+                            .arg(batch.size() + (layouts ? 1 : 0));
+                    batch.forEach(eval::arg);
+                    if (layouts) {
+                        eval.arg(GroupSharding.LAYOUT_KEY);
+                    }
+                    criteria(eval).arg(layouts ? "1" : "0");
+
+                    return redis.send(eval)
+                            .map(purged -> {
+                                for (int i = 0; i < purged.size(); i++) {
+                                    emailIndex.removed(ShardLayout.groupIdOf(purged.get(i).toString()));
+                                }
+                                return (long) purged.size();
+                            })
+                            .invoke(purged -> purgedCounter.increment(purged))
+                            .chain(purged -> throttle(purged));
+                })
+                .onItem().ignoreAsUni()
+                .chain(() -> Multi.createFrom().iterable(shardedGroups)
+                        .onItem().transformToUniAndConcatenate(this::purgeShardedGroup)
+                        .onItem().ignoreAsUni());
+    }
+
+    /**
+     * Purge d'un seul tenant d'un groupe découpé ; rien si le découpage n'est plus actif ou qu'un resharding est en
+     * cours (ses sous-hashes changent).
+     */
+    private Uni<Void> purgeShardedGroup(String groupId) {
+        if (!sharding.enabled()) {
+            return Uni.createFrom().voidItem();
+        }
+        return sharding.storedLayout(groupId).chain(layout -> {
+            if (!layout.sharded() || layout.migrating()) {
+                return Uni.createFrom().voidItem();
+            }
+            List<String> hashes = layout.keys(groupId);
+            Request eval = Request.cmd(Command.EVAL).arg(GroupScripts.PURGE_STALE_SHARDED_GROUP).arg(hashes.size() + 1);
+            hashes.forEach(eval::arg);
+            eval.arg(GroupSharding.LAYOUT_KEY);
+            criteria(eval).arg(groupId);
+
+            return redis.send(eval)
+                    .map(Response::toLong)
+                    .invoke(purged -> {
+                        if (purged > 0) {
+                            sharding.forget(groupId);
+                            emailIndex.removed(groupId);
+                        }
+                        purgedCounter.increment(purged);
+                    })
+                    .chain(this::throttle);
+        });
+    }
+
+    /**
+     * ARGV[1..3] des scripts de purge : groupes sans TTL, inactivité maximale et délai de grâce.
+     */
+    private Request criteria(Request eval) {
+        return eval.arg(config.purgeWithoutTtl() ? "1" : "0")
+                .arg(config.maxIdle().map(Duration::toSeconds).orElse(0L))
+                .arg(config.withoutTtlGrace().toSeconds());
+    }
+
+    private Uni<Void> throttle(long purged) {
+        if (purged == 0) {
+            return Uni.createFrom().voidItem();
+        }
+        Duration pause = Duration.ofMillis(purged * 1000 / config.maxPurgedPerSecond());
+        return Uni.createFrom().voidItem().onItem().delayIt().by(pause);
+    }
+
+    private Uni<String> loadCheckpoint() {
+        return redis.send(Request.cmd(Command.GET).arg(config.checkpointKey()))
+                .map(response -> response == null ? "0" : response.toString());
+    }
+
+    private Uni<Void> saveCheckpoint(String cursor) {
+        return redis.send(Request.cmd(Command.SET).arg(config.checkpointKey()).arg(cursor))
+                .replaceWithVoid();
+    }
+
+    private record ScanPage(String nextCursor, List<String> keys) {
+
+        static ScanPage of(Response response) {
+            Response keys = response.get(1);
+            List<String> names = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                names.add(keys.get(i).toString());
+            }
+            return new ScanPage(response.get(0).toString(), names);
+        }
+
+        boolean last() {
+            return "0".equals(nextCursor);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.monapp.redis;
+
+import com.monapp.model.DeleteAllResult;
+import io.vertx.redis.client.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Décodage des suppressions de groupe, communes aux six managers.
+ * <p>
+ * Le groupe est supprimé par UNLINK : la clé disparaît aussitôt, sa mémoire est libérée par un thread d'arrière-plan
+ * de Redis au lieu de bloquer la boucle d'événements comme DEL. HLEN et MEMORY USAGE la précèdent dans la même
+ * transaction (ou le même script) pour rapporter ce qui a été libéré.
+ * <p>
+ * La suppression progressive retire d'abord les utilisateurs par lots (HSCAN puis HDEL des champs de la page),
+ * chaque lot étant un appel court ; l'UNLINK final emporte ce qui a été ajouté pendant le parcours.
+ */
+public final class GroupDeletion {
+
+    private GroupDeletion() {
+    }
+
+    /**
+     * Décode {HLEN, MEMORY USAGE, UNLINK} : réponse du script DELETE_GROUP ou d'EXEC.
+     */
+    public static DeleteAllResult unlinked(Response response) {
+        Response bytes = response.get(1);
+        return new DeleteAllResult(response.get(2).toInteger(), response.get(0).toLong(),
+                bytes == null ? 0 : bytes.toLong(), 0);
+    }
+
+    public static DeleteAllResult unlinked(io.vertx.mutiny.redis.client.Response response) {
+        return unlinked(response.getDelegate());
+    }
+
+    /**
+     * Curseur suivant d'une réponse HSCAN ({@code "0"} : dernière page).
+     */
+    public static String cursor(Response response) {
+        return response.get(0).toString();
+    }
+
+    public static String cursor(io.vertx.mutiny.redis.client.Response response) {
+        return cursor(response.getDelegate());
+    }
+
+    /**
+     * Champs d'une page HSCAN (liste plate [champ1, valeur1, ...]).
+     */
+    public static List<String> fields(Response response) {
+        Response page = response.get(1);
+        List<String> fields = new ArrayList<>(page.size() / 2);
+        for (int i = 0; i < page.size(); i += 2) {
+            fields.add(page.get(i).toString());
+        }
+        return fields;
+    }
+
+    public static List<String> fields(io.vertx.mutiny.redis.client.Response response) {
+        return fields(response.getDelegate());
+    }
+
+    /**
+     * Cumul des suppressions des sous-hashes d'un groupe découpé.
+     */
+    public static DeleteAllResult merge(List<DeleteAllResult> results) {
+        int deleted = 0;
+        long users = 0;
+        long freedBytes = 0;
+        int chunks = 0;
+        for (DeleteAllResult result : results) {
+            deleted = Math.max(deleted, result.deleted());
+            users += result.users();
+            freedBytes += result.freedBytes();
+            chunks += result.chunks();
+        }
+        return new DeleteAllResult(deleted, users, freedBytes, chunks);
+    }
+
+    /**
+     * État d'une suppression progressive, mis à jour lot après lot (un seul lot en cours à la fois).
+     * Le curseur revient à {@code "0"} après la dernière page : le même état peut parcourir plusieurs hashes
+     * l'un après l'autre (sous-hashes d'un groupe découpé).
+     */
+    public static final class Progress {
+
+        private final long freedBytes;
+        private String cursor = "0";
+        private boolean done;
+        private long users;
+        private int chunks;
+
+        /**
+         * @param freedBytes taille du groupe (MEMORY USAGE) mesurée avant le premier lot
+         */
+        public Progress(long freedBytes) {
+            this.freedBytes = freedBytes;
+        }
+
+        public String cursor() {
+            return cursor;
+        }
+
+        /**
+         * Prend en compte une page HSCAN et renvoie les champs à supprimer (HDEL).
+         */
+        public List<String> page(Response response) {
+            cursor = GroupDeletion.cursor(response);
+            done = "0".equals(cursor);
+            chunks++;
+            return fields(response);
+        }
+
+        public List<String> page(io.vertx.mutiny.redis.client.Response response) {
+            return page(response.getDelegate());
+        }
+
+        public void deleted(long count) {
+            users += count;
+        }
+
+        /**
+         * Utilisateurs supprimés par les lots déjà terminés.
+         */
+        public long users() {
+            return users;
+        }
+
+        /**
+         * Vrai une fois la dernière page (curseur {@code "0"}) prise en compte.
+         */
+        public boolean done() {
+            return done;
+        }
+
+        /**
+         * Bilan : utilisateurs retirés par lots, puis par l'UNLINK final ({@code last}).
+         */
+        public DeleteAllResult result(DeleteAllResult last) {
+            int deleted = users > 0 || last.deleted() == 1 ? 1 : 0;
+            return new DeleteAllResult(deleted, users + last.users(), Math.max(freedBytes, last.freedBytes()), chunks);
+        }
+    }
+}
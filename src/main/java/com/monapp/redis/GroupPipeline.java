@@ -0,0 +1,302 @@
+package com.monapp.redis;
+
+import com.monapp.cache.GroupNearCache;
+import com.monapp.concurrency.AdmissionController;
+import com.monapp.concurrency.StyleFlights;
+import com.monapp.error.ConflictException;
+import com.monapp.feed.ChangeFeed;
+import com.monapp.index.EmailIndex;
+import com.monapp.metrics.RedisOp;
+import com.monapp.metrics.StyleMetrics;
+import com.monapp.redis.routing.ReadRouting;
+import com.monapp.redis.script.GroupFunctions;
+import com.monapp.redis.sharding.GroupSharding;
+import com.monapp.redis.sharding.ShardLayout;
+import com.monapp.redis.ttl.TtlPolicy;
+import com.monapp.redis.writebehind.WriteBehind;
+import com.monapp.redis.writebehind.WriteBehindBuffer;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Future;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Collaborateurs transverses d'un style d'accès, obtenus de {@link GroupPipelines#forStyle(String)} : meters,
+ * single-flight, near-cache, TTL, routage des lectures, admission, flux de changements, index des emails,
+ * fonctions Redis, découpage des groupes et tailles de lots. Un manager ne garde à côté que ses clients Redis
+ * et son codec.
+ * <p>
+ * Autour d'une écriture : {@link #writing} avant l'envoi, puis {@link #created}, {@link #cleared} ou
+ * {@link #invalidate} une fois la réponse reçue. Chaque commande passe par {@link #call} (ou ses variantes
+ * Future et bloquante) : admission puis mesure sous son {@link RedisOp}.
+ * <p>
+ * Seul un style qui lit le découpage des groupes ({@code shardAware}, voir GroupSharding) opère sur un groupe
+ * découpé ; pour les autres, {@link #call} échoue en 409 sur un tel groupe plutôt que de lire ou d'écrire la seule
+ * clé {@code groups:<groupId>}.
+ */
+public final class GroupPipeline {
+
+    private final String style;
+    private final boolean shardAware;
+    private final StyleMetrics metrics;
+    private final StyleFlights flights;
+    private final GroupNearCache nearCache;
+    private final TtlPolicy ttl;
+    private final ReadRouting routing;
+    private final AdmissionController admission;
+    private final ChangeFeed changeFeed;
+    private final EmailIndex emailIndex;
+    private final GroupFunctions functions;
+    private final GroupSharding sharding;
+    private final WriteBehind writeBehind;
+    private final int multiGetChunkSize;
+    private final int deleteChunkSize;
+    private final int scanCount;
+
+    GroupPipeline(String style, boolean shardAware, StyleMetrics metrics, StyleFlights flights, GroupNearCache nearCache, TtlPolicy ttl,
+                  ReadRouting routing, AdmissionController admission, ChangeFeed changeFeed,
+                  EmailIndex emailIndex, GroupFunctions functions, GroupSharding sharding, WriteBehind writeBehind,
+                  int multiGetChunkSize, int deleteChunkSize, int scanCount) {
+        this.style = style;
+        this.shardAware = shardAware;
+        this.metrics = metrics;
+        this.flights = flights;
+        this.nearCache = nearCache;
+        this.ttl = ttl;
+        this.routing = routing;
+        this.admission = admission;
+        this.changeFeed = changeFeed;
+        this.emailIndex = emailIndex;
+        this.functions = functions;
+        this.sharding = sharding;
+        this.writeBehind = writeBehind;
+        this.multiGetChunkSize = multiGetChunkSize;
+        this.deleteChunkSize = deleteChunkSize;
+        this.scanCount = scanCount;
+    }
+
+    public StyleMetrics metrics() {
+        return metrics;
+    }
+
+    public StyleFlights flights() {
+        return flights;
+    }
+
+    public GroupNearCache nearCache() {
+        return nearCache;
+    }
+
+    public TtlPolicy ttl() {
+        return ttl;
+    }
+
+    public ChangeFeed changeFeed() {
+        return changeFeed;
+    }
+
+    public EmailIndex emailIndex() {
+        return emailIndex;
+    }
+
+    public GroupFunctions functions() {
+        return functions;
+    }
+
+    public GroupSharding sharding() {
+        return sharding;
+    }
+
+    public int multiGetChunkSize() {
+        return multiGetChunkSize;
+    }
+
+    public int deleteChunkSize() {
+        return deleteChunkSize;
+    }
+
+    public int scanCount() {
+        return scanCount;
+    }
+
+    // ----- Écritures -----
+
+    /**
+     * Le groupe va être écrit : ses lectures restent sur le primaire (lecture de ses propres écritures) et ne
+     * rejoignent plus un appel parti avant l'écriture.
+     */
+    public void writing(String groupId, String key) {
+        ShardLayout.validateGroupId(groupId);
+        routing.written(groupId);
+        flights.forget(key);
+    }
+
+    /**
+     * {@link #writing(String, String)} pour l'écriture d'un utilisateur, dont l'id doit être indexable
+     * (voir EmailIndex#validateUserId).
+     */
+    public void writing(String groupId, String key, String userId) {
+        emailIndex.validateUserId(userId);
+        writing(groupId, key);
+    }
+
+    /**
+     * Écriture reçue par Redis : TTL suivi localement et entrée du near-cache invalidée.
+     */
+    public void created(String groupId, String key, boolean expirationSet) {
+        ttl.written(groupId, expirationSet);
+        nearCache.invalidate(key);
+    }
+
+    /**
+     * Groupe supprimé : la prochaine écriture repose le TTL, et ses utilisateurs quittent l'index des emails
+     * en arrière-plan.
+     */
+    public void cleared(String groupId, String key) {
+        ttl.forget(groupId);
+        nearCache.invalidate(key);
+        emailIndex.drainPending();
+    }
+
+    public void invalidate(String key) {
+        nearCache.invalidate(key);
+    }
+
+    /**
+     * Tampon d'écriture différée du style, ou {@code null} si désactivée ; un flush invalide les lectures du groupe.
+     *
+     * @param sender envoie le pipeline d'un groupe, à faire passer par {@link #call}
+     */
+    public WriteBehindBuffer writeBehind(BiFunction<String, List<Request>, Uni<List<Response>>> sender) {
+        return writeBehind.forStyle(style, sender, groupId -> {
+            String key = ShardLayout.GROUP_KEY.formatted(groupId);
+            flights.forget(key);
+            nearCache.invalidate(key);
+        });
+    }
+
+    // ----- Appels -----
+
+    /**
+     * Client des lectures routables : {@code replica} (client nommé read) ou {@code primary}.
+     */
+    public <T> T reader(String groupId, T primary, T replica) {
+        return routing.select(groupId, primary, replica);
+    }
+
+    /**
+     * Souscrit à la commande une fois l'appel admis (voir AdmissionController) et la mesure sous {@code op}.
+     */
+    public <T> Uni<T> call(String groupId, RedisOp op, Uni<T> command) {
+        Uni<T> admitted = admission.admit(groupId, op, metrics.time(op, command));
+        return checksLayout(groupId) ? unsharded(groupId).chain(() -> admitted) : admitted;
+    }
+
+    public <T> Future<T> callFuture(String groupId, RedisOp op, Supplier<Future<T>> command) {
+        return admitFuture(groupId, op, () -> metrics.record(op, metrics.start(), command.get()));
+    }
+
+    /**
+     * Admission seule, sans mesure : pour un appelant qui mesure lui-même sa commande (connexion dédiée).
+     */
+    public <T> Future<T> admitFuture(String groupId, RedisOp op, Supplier<Future<T>> call) {
+        if (checksLayout(groupId)) {
+            return Future.fromCompletionStage(unsharded(groupId).subscribeAsCompletionStage())
+                    .compose(ignored -> admission.admitFuture(groupId, op, call));
+        }
+        return admission.admitFuture(groupId, op, call);
+    }
+
+    /**
+     * Appel éclaté en plusieurs commandes sur un même groupe (lots HMGET, sous-hashes) : {@code parts} réunit des
+     * {@link #part}, et l'ensemble ne prend qu'une place du groupe.
+     */
+    public <T> Uni<T> fanOut(String groupId, Uni<T> parts) {
+        Uni<T> admitted = admission.admitGroup(groupId, parts);
+        return checksLayout(groupId) ? unsharded(groupId).chain(() -> admitted) : admitted;
+    }
+
+    public <T> Future<T> fanOutFuture(String groupId, Supplier<Future<T>> parts) {
+        if (checksLayout(groupId)) {
+            return Future.fromCompletionStage(unsharded(groupId).subscribeAsCompletionStage())
+                    .compose(ignored -> admission.admitGroupFuture(groupId, parts));
+        }
+        return admission.admitGroupFuture(groupId, parts);
+    }
+
+    /**
+     * Une commande d'un {@link #fanOut} : limite globale seulement, la place du groupe étant déjà prise.
+     */
+    public <T> Uni<T> part(RedisOp op, Uni<T> command) {
+        return admission.admit(null, op, metrics.time(op, command));
+    }
+
+    public <T> Future<T> partFuture(RedisOp op, Supplier<Future<T>> command) {
+        return admission.admitFuture(null, op, () -> metrics.record(op, metrics.start(), command.get()));
+    }
+
+    /**
+     * Variante bloquante : attend au besoin son tour (au plus {@code queue-timeout}).
+     */
+    public <T> T callBlocking(String groupId, RedisOp op, Supplier<T> command) {
+        if (checksLayout(groupId)) {
+            unsharded(groupId).await().indefinitely();
+        }
+        return admission.admitBlocking(groupId, op, () -> {
+            long start = metrics.start();
+            T result = command.get();
+            metrics.record(op, start);
+            return result;
+        });
+    }
+
+    /**
+     * Commande d'entretien envoyée en tâche de fond (EXPIRE glissant sur lecture) : mesurée sous {@code op}, mais hors
+     * contrôle d'admission. Elle ne prend ni place globale ni place du groupe à la lecture qui la déclenche, et n'est
+     * jamais rejetée en 429 ; TtlPolicy en limite déjà le nombre (un par groupe et par période de rafraîchissement).
+     */
+    public <T> Uni<T> background(RedisOp op, Uni<T> command) {
+        return metrics.time(op, command);
+    }
+
+    public <T> Future<T> backgroundFuture(RedisOp op, Supplier<Future<T>> command) {
+        return metrics.record(op, metrics.start(), command.get());
+    }
+
+    public <T> T backgroundBlocking(RedisOp op, Supplier<T> command) {
+        long start = metrics.start();
+        T result = command.get();
+        metrics.record(op, start);
+        return result;
+    }
+
+    /**
+     * Échoue en 409 si le groupe est découpé en sous-hashes (voir GroupSharding) : l'opération suppose un seul hash.
+     */
+    public Uni<Void> unsharded(String groupId) {
+        return sharding.layout(groupId).chain(layout -> layout.sharded()
+                ? Uni.createFrom().failure(new ConflictException("Group " + groupId + " is sharded"))
+                : Uni.createFrom().voidItem());
+    }
+
+    /**
+     * {@link #unsharded(String)} pour chacun des groupes d'un appel multi-groupes, sauf style {@code shardAware}.
+     */
+    public Uni<Void> unsharded(List<String> groupIds) {
+        if (shardAware || !sharding.enabled()) {
+            return Uni.createFrom().voidItem();
+        }
+        return Multi.createFrom().iterable(groupIds)
+                .onItem().transformToUniAndConcatenate(this::unsharded)
+                .onItem().ignoreAsUni();
+    }
+
+    private boolean checksLayout(String groupId) {
+        return !shardAware && groupId != null && sharding.enabled();
+    }
+}
@@ -0,0 +1,78 @@
+package com.monapp.redis;
+
+import com.monapp.cache.GroupNearCache;
+import com.monapp.concurrency.AdmissionController;
+import com.monapp.concurrency.SingleFlight;
+import com.monapp.config.DeleteAllConfig;
+import com.monapp.config.MultiGetConfig;
+import com.monapp.config.ScanConfig;
+import com.monapp.feed.ChangeFeed;
+import com.monapp.index.EmailIndex;
+import com.monapp.metrics.RedisMetrics;
+import com.monapp.redis.routing.ReadRouting;
+import com.monapp.redis.script.GroupFunctions;
+import com.monapp.redis.sharding.GroupSharding;
+import com.monapp.redis.ttl.TtlPolicy;
+import com.monapp.redis.writebehind.WriteBehind;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Fabrique des {@link GroupPipeline} : un par style d'accès, avec ses propres meters et son registre single-flight,
+ * les autres collaborateurs étant partagés.
+ */
+@ApplicationScoped
+public class GroupPipelines {
+
+    private final RedisMetrics redisMetrics;
+    private final SingleFlight singleFlight;
+    private final GroupNearCache nearCache;
+    private final TtlPolicy ttlPolicy;
+    private final ReadRouting readRouting;
+    private final AdmissionController admission;
+    private final ChangeFeed changeFeed;
+    private final EmailIndex emailIndex;
+    private final GroupFunctions groupFunctions;
+    private final GroupSharding sharding;
+    private final WriteBehind writeBehind;
+    private final MultiGetConfig multiGetConfig;
+    private final DeleteAllConfig deleteAllConfig;
+    private final ScanConfig scanConfig;
+
+    public GroupPipelines(RedisMetrics redisMetrics, SingleFlight singleFlight, GroupNearCache nearCache,
+                          TtlPolicy ttlPolicy, ReadRouting readRouting, AdmissionController admission,
+                          ChangeFeed changeFeed, EmailIndex emailIndex, GroupFunctions groupFunctions,
+                          GroupSharding sharding, WriteBehind writeBehind, MultiGetConfig multiGetConfig,
+                          DeleteAllConfig deleteAllConfig, ScanConfig scanConfig) {
+        this.redisMetrics = redisMetrics;
+        this.singleFlight = singleFlight;
+        this.nearCache = nearCache;
+        this.ttlPolicy = ttlPolicy;
+        this.readRouting = readRouting;
+        this.admission = admission;
+        this.changeFeed = changeFeed;
+        this.emailIndex = emailIndex;
+        this.groupFunctions = groupFunctions;
+        this.sharding = sharding;
+        this.writeBehind = writeBehind;
+        this.multiGetConfig = multiGetConfig;
+        this.deleteAllConfig = deleteAllConfig;
+        this.scanConfig = scanConfig;
+    }
+
+    /**
+     * Collaborateurs d'un style d'accès ; à appeler une fois, à la construction du manager.
+     */
+    public GroupPipeline forStyle(String style) {
+        return forStyle(style, false);
+    }
+
+    /**
+     * @param shardAware le style lit le découpage des groupes (voir GroupSharding) ; sinon ses appels échouent en 409
+     *                   sur un groupe découpé
+     */
+    public GroupPipeline forStyle(String style, boolean shardAware) {
+        return new GroupPipeline(style, shardAware, redisMetrics.forStyle(style), singleFlight.forStyle(style), nearCache,
+                ttlPolicy, readRouting, admission, changeFeed, emailIndex, groupFunctions, sharding, writeBehind,
+                multiGetConfig.chunkSize(), deleteAllConfig.chunkSize(), scanConfig.count());
+    }
+}
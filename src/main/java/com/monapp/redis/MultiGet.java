@@ -0,0 +1,112 @@
+package com.monapp.redis;
+
+import com.monapp.error.InvalidRequestException;
+import com.monapp.model.MultiGetResult;
+import com.monapp.model.User;
+import com.monapp.redis.lowlevel.codec.UserCodec;
+import io.vertx.redis.client.Response;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Découpage et assemblage des lectures multiples (HMGET), communs aux six managers.
+ */
+public final class MultiGet {
+
+    private MultiGet() {
+    }
+
+    /**
+     * Corps d'une lecture multiple : 400 s'il est absent ou contient un id null, plutôt qu'une erreur 500 au découpage.
+     */
+    public static List<String> requireIds(List<String> userIds) {
+        if (userIds == null) {
+            throw new InvalidRequestException("Request body must be a JSON array of user ids");
+        }
+        if (userIds.contains(null)) {
+            throw new InvalidRequestException("User ids must not be null");
+        }
+        return userIds;
+    }
+
+    /**
+     * Ids dédoublonnés (ordre conservé), découpés en lots d'au plus {@code chunkSize} champs : un HMGET par lot.
+     */
+    public static List<List<String>> chunks(Collection<String> userIds, int chunkSize) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<List<String>> chunks = new ArrayList<>((distinct.size() + chunkSize - 1) / chunkSize);
+        for (int start = 0; start < distinct.size(); start += chunkSize) {
+            chunks.add(distinct.subList(start, Math.min(distinct.size(), start + chunkSize)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Décode la réponse d'un HMGET : une valeur par id du lot, {@code null} si le champ est absent.
+     */
+    public static List<User> decode(UserCodec codec, List<String> chunk, Response response) {
+        List<User> users = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            users.add(codec.decode(chunk.get(i), response.get(i)));
+        }
+        return users;
+    }
+
+    public static List<User> decode(UserCodec codec, List<String> chunk, io.vertx.mutiny.redis.client.Response response) {
+        return decode(codec, chunk, response.getDelegate());
+    }
+
+    /**
+     * Aligne le résultat d'un {@code HashCommands.hmget} sur les ids du lot, en rétablissant l'id de chaque valeur.
+     */
+    public static List<User> align(List<String> chunk, Map<String, User> values) {
+        List<User> users = new ArrayList<>(chunk.size());
+        for (String userId : chunk) {
+            User user = values.get(userId);
+            users.add(user == null ? null : user.withId(userId));
+        }
+        return users;
+    }
+
+    /**
+     * Assemble trouvés et manquants, les valeurs de chaque lot étant alignées sur ses ids.
+     */
+    public static MultiGetResult result(List<List<String>> chunks, List<List<User>> values) {
+        Map<String, User> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (int c = 0; c < chunks.size(); c++) {
+            List<String> chunk = chunks.get(c);
+            List<User> users = values.get(c);
+            for (int i = 0; i < chunk.size(); i++) {
+                if (users.get(i) == null) {
+                    missing.add(chunk.get(i));
+                } else {
+                    found.put(chunk.get(i), users.get(i));
+                }
+            }
+        }
+        return new MultiGetResult(found, missing);
+    }
+
+    /**
+     * Remet les trouvés de plusieurs HMGET (sous-hashes d'un groupe découpé) dans l'ordre de la demande.
+     */
+    public static MultiGetResult ordered(Collection<String> userIds, Map<String, User> values) {
+        Map<String, User> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            User user = values.get(userId);
+            if (user == null) {
+                missing.add(userId);
+            } else {
+                found.put(userId, user);
+            }
+        }
+        return new MultiGetResult(found, missing);
+    }
+}
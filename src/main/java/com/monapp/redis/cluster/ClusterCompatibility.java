@@ -0,0 +1,59 @@
+package com.monapp.redis.cluster;
+
+import com.monapp.config.ChangeFeedConfig;
+import com.monapp.config.EmailIndexConfig;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Refuse de démarrer en cluster ({@code quarkus.redis.client-type=cluster}) avec une fonctionnalité dont les
+ * fonctions Redis touchent des clés absentes de KEYS ou de plusieurs hash slots :
+ * <ul>
+ *   <li>l'index des emails : {@code users:email:<email>}, {@code group-emails:*}, {@code group-emails-clearing*} et
+ *       {@code group-shards} sont calculées dans la bibliothèque {@code monapp_groups} ;</li>
+ *   <li>les flux de changements partagés ({@code change-feed.shards > 0}), dans un autre slot que le groupe.</li>
+ * </ul>
+ * Le découpage des groupes (GroupSharding) n'en fait pas partie : il n'envoie que des commandes à une clé, et seul
+ * l'index lit {@code group-shards} depuis une fonction.
+ */
+@ApplicationScoped
+public class ClusterCompatibility {
+
+    private final boolean cluster;
+    private final EmailIndexConfig emailIndex;
+    private final ChangeFeedConfig changeFeed;
+
+    public ClusterCompatibility(@ConfigProperty(name = "quarkus.redis.client-type", defaultValue = "standalone") String clientType,
+                                EmailIndexConfig emailIndex, ChangeFeedConfig changeFeed) {
+        this.cluster = "cluster".equalsIgnoreCase(clientType);
+        this.emailIndex = emailIndex;
+        this.changeFeed = changeFeed;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        List<String> unsupported = unsupported();
+        if (!unsupported.isEmpty()) {
+            throw new IllegalStateException("Not supported with quarkus.redis.client-type=cluster: "
+                    + String.join(", ", unsupported));
+        }
+    }
+
+    List<String> unsupported() {
+        List<String> unsupported = new ArrayList<>();
+        if (!cluster) {
+            return unsupported;
+        }
+        if (emailIndex.enabled()) {
+            unsupported.add("monapp.email-index.enabled=true");
+        }
+        if (changeFeed.enabled() && changeFeed.shards() > 0) {
+            unsupported.add("monapp.change-feed.shards=" + changeFeed.shards());
+        }
+        return unsupported;
+    }
+}
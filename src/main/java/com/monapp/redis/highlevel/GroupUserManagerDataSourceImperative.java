@@ -1,11 +1,31 @@
 package com.monapp.redis.highlevel;
 
+import com.monapp.index.EmailIndex;
+import com.monapp.metrics.RedisOp;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.GroupDeletion;
+import com.monapp.redis.GroupPipeline;
+import com.monapp.redis.GroupPipelines;
+import com.monapp.redis.MultiGet;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
+import com.monapp.redis.script.GroupFunctions;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.client.RedisClientName;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.redis.datasource.hash.HashCommands;
+import io.quarkus.redis.datasource.keys.ExpireArgs;
 import io.quarkus.redis.datasource.keys.KeyCommands;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @ApplicationScoped
@@ -13,38 +33,162 @@ public class GroupUserManagerDataSourceImperative {
 
     public static final String GROUP_USERS_KEY = "groups:%s";
 
+    private final RedisDataSource ds;
     private final HashCommands<String, String, User> hashCommands;
     private final KeyCommands<String> keyCommands;
+    private final HashCommands<String, String, User> readHashCommands;
+    private final KeyCommands<String> readKeyCommands;
+    private final JsonCodec jsonCodec;
+    private final GroupPipeline pipeline;
 
-    public GroupUserManagerDataSourceImperative(RedisDataSource ds) {
+    public GroupUserManagerDataSourceImperative(RedisDataSource ds, @RedisClientName("read") RedisDataSource readDs,
+                                                JsonCodec jsonCodec, GroupPipelines pipelines) {
+        this.ds = ds;
         this.hashCommands = ds.hash(String.class, String.class, User.class);
         this.keyCommands = ds.key();
+        this.readHashCommands = readDs.hash(String.class, String.class, User.class);
+        this.readKeyCommands = readDs.key();
+        this.jsonCodec = jsonCodec;
+        this.pipeline = pipelines.forStyle("ds-imperative");
     }
 
-    public boolean createUser(String groupId, User user) {
-        boolean isSuccess = hashCommands.hset(GROUP_USERS_KEY.formatted(groupId), user.id(), user);
-        boolean expirationSuccess = keyCommands.expire(GROUP_USERS_KEY.formatted(groupId), 36000);
+    public CreateUserResult createUser(String groupId, User user) {
+        // HSET + EXPIRE atomiques en un seul aller-retour (une transaction coûterait un aller-retour par commande) ;
+        // la fonction ne repousse le TTL que s'il est passé sous le seuil de rafraîchissement, et alimente le flux de changements et l'index des emails
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key, user.id());
+        io.vertx.redis.client.Request request = pipeline.changeFeed().call(GroupFunctions.CREATE_USER, List.of(key), List.of(groupId),
+                List.of(user.id(), "",
+                        String.valueOf(pipeline.ttl().ttlSeconds(groupId)), String.valueOf(pipeline.ttl().refreshThresholdSeconds(groupId)),
+                        pipeline.emailIndex().indexedGroup(groupId), EmailIndex.normalize(user.email())),
+                1, jsonCodec.encodeToBuffer(user));
+        Response response = pipeline.callBlocking(groupId, RedisOp.HSET_EXPIRE, () -> fcall(request));
 
-        return isSuccess && expirationSuccess;
+        CreateUserResult result = new CreateUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1);
+        pipeline.created(groupId, key, result.expirationSet());
+        return result;
     }
 
     public int deleteUser(String groupId, String userId) {
-        return hashCommands.hdel(GROUP_USERS_KEY.formatted(groupId), userId);
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+        int deleted = pipeline.callBlocking(groupId, RedisOp.HDEL, () -> pipeline.changeFeed().enabled() || pipeline.emailIndex().enabled()
+                ? fcall(pipeline.changeFeed().callArgs(GroupFunctions.DELETE_USER, key, groupId, userId, pipeline.emailIndex().indexedGroup(groupId))).toInteger()
+                : hashCommands.hdel(key, userId));
+        pipeline.invalidate(key);
+        return deleted;
     }
 
     public User getUser(String groupId, String userId) {
-        return hashCommands.hget(GROUP_USERS_KEY.formatted(groupId), userId);
+        slide(groupId);
+        User user = pipeline.callBlocking(groupId, RedisOp.HGET, () -> pipeline.reader(groupId, hashCommands, readHashCommands).hget(GROUP_USERS_KEY.formatted(groupId), userId));
+        return user == null ? null : user.withId(userId);
+    }
+
+    /**
+     * Récupère plusieurs utilisateurs du groupe : un HMGET par lot de {@code chunkSize} ids,
+     * tous les lots envoyés en pipeline (un seul aller-retour, une seule attente bloquante).
+     */
+    public MultiGetResult getUsers(String groupId, List<String> userIds) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        List<List<String>> chunks = MultiGet.chunks(userIds, pipeline.multiGetChunkSize());
+        if (chunks.isEmpty()) {
+            return MultiGetResult.empty();
+        }
+
+        List<Request> requests = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            Request hmget = Request.cmd(Command.HMGET).arg(key);
+            chunk.forEach(hmget::arg);
+            requests.add(hmget);
+        }
+
+        List<Response> responses = pipeline.callBlocking(groupId, RedisOp.HMGET, () -> ds.getRedis().batch(requests).await().indefinitely());
+        List<List<User>> values = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            values.add(MultiGet.decode(jsonCodec, chunks.get(i), responses.get(i)));
+        }
+        return MultiGet.result(chunks, values);
     }
 
     public Map<String, User> getAllUsers(String groupId) {
-        return hashCommands.hgetall(GROUP_USERS_KEY.formatted(groupId));
+        slide(groupId);
+        Map<String, User> values = pipeline.callBlocking(groupId, RedisOp.HGETALL, () -> pipeline.reader(groupId, hashCommands, readHashCommands).hgetall(GROUP_USERS_KEY.formatted(groupId)));
+
+        // Rétablit l'id depuis le nom du champ : les formats compacts ne l'écrivent pas dans la valeur
+        Map<String, User> users = new HashMap<>(values.size());
+        values.forEach((userId, user) -> users.put(userId, user.withId(userId)));
+        pipeline.metrics().recordGroupSize(users.size());
+        return users;
     }
 
     public Long getUserTTL(String groupId) {
-        return keyCommands.ttl(GROUP_USERS_KEY.formatted(groupId));
+        Long ttl = pipeline.callBlocking(groupId, RedisOp.TTL, () -> pipeline.reader(groupId, keyCommands, readKeyCommands).ttl(GROUP_USERS_KEY.formatted(groupId)));
+        return ttl;
     }
    
-    public int deleteAllUsers(String groupId) {
-        return keyCommands.del(GROUP_USERS_KEY.formatted(groupId));
+    /**
+     * Supprime le groupe par UNLINK (fonction delete_group, qui rapporte aussi HLEN et MEMORY USAGE) ;
+     * en mode progressif, supprime d'abord les utilisateurs par lots HSCAN + HDEL (voir GroupDeletion).
+     */
+    public DeleteAllResult deleteAllUsers(String groupId, boolean progressive) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+        DeleteAllResult result;
+        if (progressive) {
+            Response bytes = pipeline.callBlocking(groupId, RedisOp.MEMORY_USAGE, () -> ds.execute(Command.MEMORY, "USAGE", key));
+            GroupDeletion.Progress progress = new GroupDeletion.Progress(bytes == null ? 0 : bytes.toLong());
+            do {
+                Response page = pipeline.callBlocking(groupId, RedisOp.HSCAN, () -> ds.execute(Command.HSCAN, key, progress.cursor(),
+                        "COUNT", String.valueOf(pipeline.deleteChunkSize())));
+                List<String> fields = progress.page(page);
+                if (!fields.isEmpty()) {
+                    progress.deleted(pipeline.callBlocking(groupId, RedisOp.HDEL, () -> hashCommands.hdel(key, fields.toArray(String[]::new))));
+                }
+            } while (!progress.done());
+            result = progress.result(unlink(groupId, key, progress.users() > 0));
+        } else {
+            result = unlink(groupId, key, false);
+        }
+        pipeline.cleared(groupId, key);
+        return result;
+    }
+
+    /**
+     * Fonction delete_group ; {@code cleared} force l'événement de changement quand les lots ont déjà vidé le groupe.
+     */
+    private DeleteAllResult unlink(String groupId, String key, boolean cleared) {
+        return GroupDeletion.unlinked(pipeline.callBlocking(groupId, RedisOp.UNLINK,
+                () -> fcall(pipeline.changeFeed().callArgs(GroupFunctions.DELETE_GROUP, key, groupId, cleared ? "1" : "0",
+                        pipeline.emailIndex().indexedGroup(groupId)))));
+    }
+
+    /**
+     * FCALL d'une fonction de la bibliothèque monapp_groups, rechargée au besoin.
+     */
+    private Response fcall(List<String> args) {
+        return pipeline.functions().callBlocking(() -> ds.execute(Command.FCALL, args.toArray(String[]::new)));
+    }
+
+    /**
+     * FCALL portant une valeur binaire (voir ChangeFeed#call) : ds.execute ne prend que des String.
+     */
+    private Response fcall(io.vertx.redis.client.Request request) {
+        return pipeline.functions().callBlocking(() -> ds.getRedis().send(Request.newInstance(request)).await().indefinitely());
+    }
+
+    /**
+     * Expiration glissante sur lecture (monapp.ttl.sliding-on-read) : EXPIRE XX, pour ne pas reposer de TTL
+     * sur une clé absente. Appel bloquant, mais au plus un par groupe et par intervalle de rafraîchissement, hors
+     * contrôle d'admission (voir GroupPipeline#background) ; un échec ne fait pas échouer la lecture.
+     */
+    private void slide(String groupId) {
+        if (pipeline.ttl().slideOnRead(groupId)) {
+            try {
+                pipeline.backgroundBlocking(RedisOp.EXPIRE, () -> keyCommands.expire(GROUP_USERS_KEY.formatted(groupId), pipeline.ttl().ttlSeconds(groupId), new ExpireArgs().xx()));
+            } catch (RuntimeException e) {
+                Log.debugf(e, "Sliding EXPIRE failed for group %s", groupId);
+            }
+        }
     }
 }
@@ -1,50 +1,552 @@
 package com.monapp.redis.highlevel;
 
+import com.monapp.config.BulkConfig;
+import com.monapp.index.EmailIndex;
+import com.monapp.metrics.RedisOp;
+import com.monapp.model.BulkCreateResult;
+import com.monapp.model.ChangeEvent;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.DeleteUsersResult;
+import com.monapp.model.MoveUserResult;
+import com.monapp.model.MultiGetResult;
+import com.monapp.model.ReshardResult;
 import com.monapp.model.User;
+import com.monapp.redis.GroupDeletion;
+import com.monapp.redis.GroupPipeline;
+import com.monapp.redis.GroupPipelines;
+import com.monapp.redis.MultiGet;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
+import com.monapp.redis.script.GroupFunctions;
+import com.monapp.redis.sharding.ShardLayout;
+import com.monapp.redis.writebehind.WriteBehindBuffer;
+import io.quarkus.redis.client.RedisClientName;
 import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.ScanArgs;
 import io.quarkus.redis.datasource.hash.ReactiveHashCommands;
+import io.quarkus.redis.datasource.hash.ReactiveHashScanCursor;
+import io.quarkus.redis.datasource.keys.ExpireArgs;
 import io.quarkus.redis.datasource.keys.ReactiveKeyCommands;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 @ApplicationScoped
 public class GroupUserManagerDataSourceReactive {
 
     public static final String GROUP_USERS_KEY = "groups:%s";
 
+    private final ReactiveRedisDataSource ds;
     private final ReactiveHashCommands<String, String, User> hashCommands;
     private final ReactiveKeyCommands<String> keyCommands;
+    private final ReactiveHashCommands<String, String, User> readHashCommands;
+    private final ReactiveKeyCommands<String> readKeyCommands;
+    private final JsonCodec jsonCodec;
+    private final BulkConfig bulkConfig;
+    private final GroupPipeline pipeline;
+    private final WriteBehindBuffer writeBehind;
 
-    public GroupUserManagerDataSourceReactive(ReactiveRedisDataSource ds) {
+    public GroupUserManagerDataSourceReactive(ReactiveRedisDataSource ds,
+                                              @RedisClientName("read") ReactiveRedisDataSource readDs, JsonCodec jsonCodec,
+                                              BulkConfig bulkConfig, GroupPipelines pipelines) {
+        this.ds = ds;
         this.hashCommands = ds.hash(String.class, String.class, User.class);
         this.keyCommands = ds.key();
+        this.readHashCommands = readDs.hash(String.class, String.class, User.class);
+        this.readKeyCommands = readDs.key();
+        this.jsonCodec = jsonCodec;
+        this.bulkConfig = bulkConfig;
+        this.pipeline = pipelines.forStyle("ds-reactive", true);
+        this.writeBehind = pipeline.writeBehind(
+                (groupId, requests) -> pipeline.call(groupId, RedisOp.HSET_EXPIRE_FLUSH, ds.getRedis().batch(requests)));
     }
 
-    public Uni<Boolean> createUser(String groupId, User user) {
-        return hashCommands.hset(GROUP_USERS_KEY.formatted(groupId), user.id(), user)
-                .chain(() ->  keyCommands.expire(GROUP_USERS_KEY.formatted(groupId), 36000));
+    public Uni<CreateUserResult> createUser(String groupId, User user) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+
+        // HSET + EXPIRE atomiques en un seul aller-retour (une transaction coûterait un aller-retour par commande) ;
+        // la fonction ne repousse le TTL que s'il est passé sous le seuil de rafraîchissement, et alimente le flux de changements et l'index des emails.
+        // Avec l'écriture différée (monapp.write-behind), l'écriture passe par le tampon, flushée en HSET multi-champs.
+        // Dans un groupe découpé (monapp.group-sharding), l'utilisateur est écrit dans son sous-hash.
+        pipeline.writing(groupId, key, user.id());
+        return pipeline.sharding().layout(groupId).chain(layout -> {
+            String hash = layout.writeKey(groupId, user.id());
+            if (writeBehind != null) {
+                return writeBehind.write(groupId, hash, user.id(), user.email(), Buffer.newInstance(jsonCodec.encodeToBuffer(user)));
+            }
+            return pipeline.call(groupId, RedisOp.HSET_EXPIRE, fcall(pipeline.changeFeed().call(GroupFunctions.CREATE_USER, List.of(hash), List.of(groupId),
+                            List.of(user.id(), "",
+                                    String.valueOf(pipeline.ttl().ttlSeconds(groupId)), String.valueOf(pipeline.ttl().refreshThresholdSeconds(groupId)),
+                                    pipeline.emailIndex().indexedGroup(groupId), EmailIndex.normalize(user.email())),
+                            1, jsonCodec.encodeToBuffer(user))))
+                    .map(response -> new CreateUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                    .invoke(result -> pipeline.created(groupId, key, result.expirationSet()));
+        });
+    }
+
+    /**
+     * Ingestion en masse : les utilisateurs sont regroupés en HSET multi-champs de {@code batchSize},
+     * eux-mêmes envoyés par {@code pipelineDepth} via le Redis.batch sous-jacent.
+     * Le TTL est posé dès le premier pipeline (EXPIRE de chaque hash écrit), puis en EXPIRE NX dans les suivants :
+     * seul un hash encore sans TTL (sous-hash créé entre-temps) en reçoit un, et une ingestion interrompue ne laisse
+     * pas de groupe sans TTL. La mise à jour de l'index des emails (un appel par lot) et les XADD
+     * du flux de changements suivent les HSET dans le même pipeline (pas de transaction : un lot interrompu peut
+     * laisser l'un sans l'autre).
+     * Dans un groupe découpé, chaque lot est réparti en un HSET par sous-hash.
+     */
+    public Uni<BulkCreateResult> createUsers(String groupId, Multi<User> users) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+
+        AtomicBoolean first = new AtomicBoolean(true);
+        AtomicBoolean expirationSet = new AtomicBoolean();
+        Uni<BulkCreateResult> bulk = pipeline.sharding().layout(groupId).chain(layout -> users
+                .invoke(user -> pipeline.emailIndex().validateUserId(user.id()))
+                .group().intoLists().of(bulkConfig.batchSize())
+                .group().intoLists().of(bulkConfig.pipelineDepth())
+                // Fenêtres envoyées l'une après l'autre : seule la première pose le TTL sans NX
+                .onItem().transformToUniAndConcatenate(window -> sendBatches(groupId, layout, window, first.getAndSet(false), expirationSet))
+                .onItem().transformToIterable(batches -> batches)
+                .collect().asList()
+                .map(batches -> new BulkCreateResult(batches, expirationSet.get()))
+                .invoke(result -> pipeline.ttl().written(groupId, result.expirationSet())))
+                .eventually(() -> pipeline.invalidate(key));
+        // Les écritures différées du groupe, plus anciennes, partent avant l'ingestion
+        return writeBehind == null ? bulk : writeBehind.flush(groupId).replaceWith(bulk);
+    }
+
+    private Uni<List<BulkCreateResult.Batch>> sendBatches(String groupId, ShardLayout layout, List<List<User>> window,
+                                                         boolean first, AtomicBoolean expirationSet) {
+        List<Request> requests = new ArrayList<>(window.size() + 1);
+        // Indices des HSET de chaque lot : un seul hors découpage
+        List<List<Integer>> batchRequests = new ArrayList<>(window.size());
+        Set<String> hashes = new LinkedHashSet<>();
+        for (List<User> batch : window) {
+            Map<String, Request> hsets = new LinkedHashMap<>();
+            for (User user : batch) {
+                hsets.computeIfAbsent(layout.writeKey(groupId, user.id()), hash -> Request.cmd(Command.HSET).arg(hash))
+                        .arg(user.id()).arg(Buffer.newInstance(jsonCodec.encodeToBuffer(user)));
+            }
+            List<Integer> indices = new ArrayList<>(hsets.size());
+            for (Request hset : hsets.values()) {
+                indices.add(requests.size());
+                requests.add(hset);
+            }
+            batchRequests.add(indices);
+            hashes.addAll(hsets.keySet());
+        }
+        int firstExpire = requests.size();
+        for (String hash : hashes) {
+            Request expire = Request.cmd(Command.EXPIRE).arg(hash).arg(pipeline.ttl().ttlSeconds(groupId));
+            requests.add(first ? expire : expire.arg("NX"));
+        }
+        // Après les HSET : les réponses de ceux-ci gardent leurs indices
+        if (pipeline.emailIndex().enabled()) {
+            for (List<User> batch : window) {
+                Map<String, String> emails = new LinkedHashMap<>();
+                batch.forEach(user -> emails.put(user.id(), user.email()));
+                requests.add(Request.newInstance(pipeline.emailIndex().set(groupId, emails)));
+            }
+        }
+        if (pipeline.changeFeed().enabled()) {
+            for (List<User> batch : window) {
+                for (User user : batch) {
+                    requests.add(Request.newInstance(pipeline.changeFeed().xadd(groupId, ChangeEvent.SET, user.id())));
+                }
+            }
+            io.vertx.redis.client.Request streamExpire = pipeline.changeFeed().streamExpire(groupId, ChangeEvent.SET,
+                    pipeline.ttl().ttlSeconds(groupId));
+            if (streamExpire != null) {
+                requests.add(Request.newInstance(streamExpire));
+            }
+        }
+
+        return pipeline.call(groupId, RedisOp.HSET, ds.getRedis().batch(requests))
+                .map(responses -> {
+                    for (int i = firstExpire; i < firstExpire + hashes.size(); i++) {
+                        if (responses.get(i).toInteger() == 1) {
+                            expirationSet.set(true);
+                        }
+                    }
+                    List<BulkCreateResult.Batch> batches = new ArrayList<>(window.size());
+                    for (int i = 0; i < window.size(); i++) {
+                        long created = 0;
+                        for (int index : batchRequests.get(i)) {
+                            created += responses.get(index).toLong();
+                        }
+                        batches.add(new BulkCreateResult.Batch(window.get(i).size(), created));
+                    }
+                    return batches;
+                });
     }
 
     public Uni<Integer> deleteUser(String groupId, String userId) {
-        return hashCommands.hdel(GROUP_USERS_KEY.formatted(groupId), userId);
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+        Uni<Integer> deleted = pipeline.sharding().layout(groupId).chain(layout -> {
+                    String hash = layout.writeKey(groupId, userId);
+                    Uni<Integer> hdel = pipeline.call(groupId, RedisOp.HDEL, pipeline.changeFeed().enabled() || pipeline.emailIndex().enabled()
+                            ? fcall(pipeline.changeFeed().callArgs(GroupFunctions.DELETE_USER, hash, groupId, userId, pipeline.emailIndex().indexedGroup(groupId))).map(Response::toInteger)
+                            : hashCommands.hdel(hash, userId));
+                    String source = layout.sourceKey(groupId, userId);
+                    if (source.equals(hash)) {
+                        return hdel;
+                    }
+                    // Resharding en cours : l'utilisateur peut être encore dans l'ancien sous-hash, supprimé d'abord
+                    // pour que la migration ne l'en recopie pas après la suppression dans le nouveau
+                    return pipeline.call(groupId, RedisOp.HDEL, hashCommands.hdel(source, userId))
+                            .chain(fromSource -> hdel.map(fromTarget -> Math.max(fromSource, fromTarget)));
+                })
+                .invoke(() -> pipeline.invalidate(key));
+        // Une écriture différée de l'utilisateur ne doit pas le recréer après la suppression
+        return writeBehind == null ? deleted : writeBehind.discard(groupId, List.of(userId)).replaceWith(deleted);
+    }
+
+    /**
+     * Supprime plusieurs utilisateurs et renvoie le nombre d'utilisateurs restants, en un seul appel atomique
+     * (fonction delete_users de la bibliothèque monapp_groups).
+     */
+    public Uni<DeleteUsersResult> deleteUsers(String groupId, List<String> userIds) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+        List<String> args = pipeline.changeFeed().callArgs(GroupFunctions.DELETE_USERS, List.of(key), List.of(groupId),
+                pipeline.emailIndex().deleteUsersArgs(groupId, userIds));
+
+        Uni<DeleteUsersResult> deleted = pipeline.unsharded(groupId)
+                .chain(() -> pipeline.call(groupId, RedisOp.DELETE_USERS, fcall(args)))
+                .map(response -> new DeleteUsersResult(response.get(0).toInteger(), response.get(1).toLong()))
+                .invoke(result -> {
+                    if (result.remaining() == 0) {
+                        pipeline.cleared(groupId, key);
+                    } else {
+                        pipeline.invalidate(key);
+                    }
+                });
+        return writeBehind == null ? deleted : writeBehind.discard(groupId, userIds).replaceWith(deleted);
+    }
+
+    /**
+     * Crée l'utilisateur s'il est absent du groupe (HSETNX) et rafraîchit le TTL du groupe dans tous les cas,
+     * en un seul appel atomique (fonction create_if_absent).
+     */
+    public Uni<CreateUserResult> createUserIfAbsent(String groupId, User user) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key, user.id());
+        io.vertx.redis.client.Request request = pipeline.changeFeed().call(GroupFunctions.CREATE_IF_ABSENT, List.of(key), List.of(groupId),
+                List.of(user.id(), "", String.valueOf(pipeline.ttl().ttlSeconds(groupId)),
+                        String.valueOf(pipeline.ttl().refreshThresholdSeconds(groupId)),
+                        pipeline.emailIndex().indexedGroup(groupId), EmailIndex.normalize(user.email())),
+                1, jsonCodec.encodeToBuffer(user));
+
+        Uni<CreateUserResult> created = pipeline.unsharded(groupId)
+                .chain(() -> pipeline.call(groupId, RedisOp.CREATE_IF_ABSENT, fcall(request)))
+                .map(response -> new CreateUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                .invoke(result -> pipeline.created(groupId, key, result.expirationSet()));
+        // L'utilisateur peut n'exister que dans le tampon d'écriture différée
+        return writeBehind == null ? created : writeBehind.flush(groupId).replaceWith(created);
+    }
+
+    /**
+     * Déplace un utilisateur d'un groupe à l'autre et rafraîchit le TTL du groupe cible, en un seul appel atomique
+     * (fonction move_user). En cluster, les deux groupes doivent partager un hash slot.
+     */
+    public Uni<MoveUserResult> moveUser(String fromGroupId, String toGroupId, String userId) {
+        String source = GROUP_USERS_KEY.formatted(fromGroupId);
+        String target = GROUP_USERS_KEY.formatted(toGroupId);
+        pipeline.writing(fromGroupId, source);
+        pipeline.writing(toGroupId, target);
+        List<String> args = pipeline.changeFeed().callArgs(GroupFunctions.MOVE_USER, List.of(source, target), List.of(fromGroupId, toGroupId),
+                List.of(userId, String.valueOf(pipeline.ttl().ttlSeconds(toGroupId)), String.valueOf(pipeline.ttl().refreshThresholdSeconds(toGroupId)),
+                        pipeline.emailIndex().indexedGroup(fromGroupId), pipeline.emailIndex().indexedGroup(toGroupId)));
+
+        Uni<MoveUserResult> moved = pipeline.unsharded(fromGroupId).chain(() -> pipeline.unsharded(toGroupId))
+                .chain(() -> pipeline.call(fromGroupId, RedisOp.MOVE_USER, fcall(args)))
+                .map(response -> new MoveUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                .invoke(result -> {
+                    if (result.moved()) {
+                        pipeline.ttl().written(toGroupId, result.expirationSet());
+                    }
+                    pipeline.invalidate(source);
+                    pipeline.invalidate(target);
+                });
+        // Déplace la dernière valeur écrite, et aucune écriture différée ne la recrée ensuite dans l'un des groupes
+        return writeBehind == null ? moved : writeBehind.flush(fromGroupId).chain(() -> writeBehind.flush(toGroupId)).replaceWith(moved);
     }
 
     public Uni<User> getUser(String groupId, String userId) {
-        return hashCommands.hget(GROUP_USERS_KEY.formatted(groupId), userId);
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        return pipeline.sharding().layout(groupId).chain(layout -> {
+            slide(groupId, layout);
+            String hash = layout.writeKey(groupId, userId);
+            String source = layout.sourceKey(groupId, userId);
+            // Resharding en cours : un utilisateur absent du nouveau sous-hash peut ne pas encore avoir été migré
+            return pipeline.nearCache().getUser(key, userId, () -> pipeline.flights().user(key, userId, () -> hget(groupId, hash, userId)
+                    .chain(user -> user != null || source.equals(hash) ? Uni.createFrom().item(user) : hget(groupId, source, userId))));
+        });
+    }
+
+    private Uni<User> hget(String groupId, String hash, String userId) {
+        return pipeline.call(groupId, RedisOp.HGET, pipeline.reader(groupId, hashCommands, readHashCommands).hget(hash, userId))
+                .map(user -> user == null ? null : user.withId(userId));
+    }
+
+    /**
+     * Récupère plusieurs utilisateurs du groupe : un HMGET par lot de {@code chunkSize} ids,
+     * les lots étant envoyés simultanément. Dans un groupe découpé, les lots sont formés par sous-hash.
+     */
+    public Uni<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        return pipeline.sharding().layout(groupId).chain(layout -> {
+            if (!layout.sharded()) {
+                return hmget(groupId, userIds, userId -> key);
+            }
+            return hmget(groupId, userIds, userId -> layout.writeKey(groupId, userId))
+                    .chain(result -> {
+                        // Resharding en cours : les absents non encore migrés sont cherchés dans l'ancien découpage
+                        List<String> unmigrated = result.missing().stream()
+                                .filter(userId -> !layout.sourceKey(groupId, userId).equals(layout.writeKey(groupId, userId)))
+                                .toList();
+                        Uni<Map<String, User>> more = unmigrated.isEmpty()
+                                ? Uni.createFrom().item(Map.<String, User>of())
+                                : hmget(groupId, unmigrated, userId -> layout.sourceKey(groupId, userId)).map(MultiGetResult::found);
+                        return more.map(found -> {
+                            Map<String, User> values = new HashMap<>(result.found());
+                            values.putAll(found);
+                            return MultiGet.ordered(userIds, values);
+                        });
+                    });
+        });
+    }
+
+    private Uni<MultiGetResult> hmget(String groupId, List<String> userIds, Function<String, String> hashOf) {
+        Map<String, List<String>> byHash = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            byHash.computeIfAbsent(hashOf.apply(userId), hash -> new ArrayList<>()).add(userId);
+        }
+
+        List<List<String>> chunks = new ArrayList<>();
+        List<Uni<List<User>>> unis = new ArrayList<>();
+        byHash.forEach((hash, ids) -> {
+            for (List<String> chunk : MultiGet.chunks(ids, pipeline.multiGetChunkSize())) {
+                chunks.add(chunk);
+                unis.add(pipeline.part(RedisOp.HMGET, hashCommands.hmget(hash, chunk.toArray(String[]::new)))
+                        .map(values -> MultiGet.align(chunk, values)));
+            }
+        });
+        if (chunks.isEmpty()) {
+            return Uni.createFrom().item(MultiGetResult.empty());
+        }
+
+        // Tous les lots, de tous les sous-hashes, sous une seule place d'admission du groupe
+        return pipeline.fanOut(groupId, Uni.join().all(unis).andFailFast()
+                .map(values -> MultiGet.result(chunks, values)));
     }
 
+    /**
+     * Groupe complet ; dans un groupe découpé, un HGETALL par sous-hash, envoyés simultanément. La taille observée
+     * déclenche au besoin le resharding automatique.
+     */
     public Uni<Map<String, User>> getAllUsers(String groupId) {
-        return hashCommands.hgetall(GROUP_USERS_KEY.formatted(groupId));
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        return pipeline.sharding().layout(groupId).chain(layout -> {
+            slide(groupId, layout);
+            return pipeline.nearCache().getAllUsers(key, () -> pipeline.flights().group(key, () -> hgetall(groupId, layout)
+                    .invoke(users -> pipeline.sharding().observed(groupId, users.size(), layout))));
+        });
+    }
+
+    private Uni<Map<String, User>> hgetall(String groupId, ShardLayout layout) {
+        List<String> hashes = layout.keys(groupId);
+        if (hashes.size() == 1) {
+            return pipeline.call(groupId, RedisOp.HGETALL, pipeline.reader(groupId, hashCommands, readHashCommands).hgetall(hashes.get(0)))
+                    .map(this::withIds);
+        }
+        List<Uni<Map<String, User>>> unis = new ArrayList<>(hashes.size());
+        for (String hash : hashes) {
+            unis.add(pipeline.part(RedisOp.HGETALL, pipeline.reader(groupId, hashCommands, readHashCommands).hgetall(hash)));
+        }
+        return pipeline.fanOut(groupId, Uni.join().all(unis).andFailFast()).map(maps -> {
+            // Un utilisateur en cours de migration est dans ses deux sous-hashes : celui du nouveau découpage l'emporte
+            Map<String, User> merged = new HashMap<>();
+            for (int i = 0; i < maps.size(); i++) {
+                String hash = hashes.get(i);
+                maps.get(i).forEach((userId, user) -> {
+                    if (hash.equals(layout.writeKey(groupId, userId)) || !merged.containsKey(userId)) {
+                        merged.put(userId, user);
+                    }
+                });
+            }
+            return withIds(merged);
+        });
+    }
+
+    /**
+     * Parcourt les utilisateurs du groupe page par page (HSCAN), sans jamais charger tout le hash ; les sous-hashes
+     * d'un groupe découpé l'un après l'autre (pendant un resharding, un utilisateur peut alors apparaître deux fois).
+     */
+    public Multi<User> streamUsers(String groupId) {
+        return pipeline.sharding().layout(groupId)
+                .onItem().transformToMulti(layout -> Multi.createFrom().iterable(layout.keys(groupId)))
+                .onItem().transformToMultiAndConcatenate(hash -> scan(groupId, hash))
+                .map(entry -> entry.getValue().withId(entry.getKey()));
+    }
+
+    /**
+     * Pages HSCAN d'un hash, chacune admise et chronométrée comme un appel, sur un réplica si le routage des
+     * lectures le permet.
+     */
+    private Multi<Map.Entry<String, User>> scan(String groupId, String hash) {
+        ReactiveHashScanCursor<String, User> cursor = pipeline.reader(groupId, hashCommands, readHashCommands)
+                .hscan(hash, new ScanArgs().count(pipeline.scanCount()));
+        return Multi.createBy().repeating()
+                .uni(() -> pipeline.call(groupId, RedisOp.HSCAN, cursor.next()))
+                // La dernière page (curseur 0) est tout de même émise
+                .whilst(page -> cursor.hasNext())
+                .onItem().transformToIterable(Map::entrySet);
     }
 
+    /**
+     * TTL du groupe ; dans un groupe découpé, celui de son premier sous-hash (tous reçoivent les mêmes EXPIRE).
+     */
     public Uni<Long> getUserTTL(String groupId) {
-        return keyCommands.ttl(GROUP_USERS_KEY.formatted(groupId));
+        return pipeline.sharding().layout(groupId).chain(layout -> pipeline.call(groupId, RedisOp.TTL,
+                pipeline.reader(groupId, keyCommands, readKeyCommands).ttl(layout.keys(groupId).get(0))));
+    }
+
+    /**
+     * Supprime le groupe par UNLINK (fonction delete_group, qui rapporte aussi HLEN et MEMORY USAGE) ;
+     * en mode progressif, supprime d'abord les utilisateurs par lots HSCAN + HDEL (voir GroupDeletion).
+     * Un groupe découpé est supprimé sous-hash par sous-hash.
+     */
+    public Uni<DeleteAllResult> deleteAllUsers(String groupId, boolean progressive) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+        Uni<DeleteAllResult> deleted = pipeline.sharding().layout(groupId)
+                .chain(layout -> progressive
+                        ? deleteProgressively(groupId, layout.keys(groupId))
+                        : unlink(groupId, layout.keys(groupId), false))
+                .invoke(() -> pipeline.cleared(groupId, key));
+        return writeBehind == null ? deleted : writeBehind.discard(groupId, null).replaceWith(deleted);
+    }
+
+    /**
+     * Fonction delete_group sur chaque hash, appels simultanés ; seul le premier alimente le flux de changements
+     * et retire le groupe de l'index des emails ({@code cleared} y force l'événement quand les lots ont déjà vidé
+     * le groupe).
+     */
+    private Uni<DeleteAllResult> unlink(String groupId, List<String> hashes, boolean cleared) {
+        List<Uni<DeleteAllResult>> unlinks = new ArrayList<>(hashes.size());
+        for (String hash : hashes) {
+            List<String> args = unlinks.isEmpty()
+                    ? pipeline.changeFeed().callArgs(GroupFunctions.DELETE_GROUP, hash, groupId, cleared ? "1" : "0",
+                            pipeline.emailIndex().indexedGroup(groupId))
+                    : List.of(GroupFunctions.DELETE_GROUP, "1", hash, "0", "");
+            unlinks.add(pipeline.part(RedisOp.UNLINK, fcall(args)).map(GroupDeletion::unlinked));
+        }
+        return pipeline.fanOut(groupId, unlinks.size() == 1 ? unlinks.get(0) : Uni.join().all(unlinks).andFailFast().map(GroupDeletion::merge));
+    }
+
+    private Uni<DeleteAllResult> deleteProgressively(String groupId, List<String> hashes) {
+        List<Uni<Long>> sizes = new ArrayList<>(hashes.size());
+        for (String hash : hashes) {
+            sizes.add(pipeline.part(RedisOp.MEMORY_USAGE, ds.execute(Command.MEMORY, "USAGE", hash))
+                    .map(bytes -> bytes == null ? 0L : bytes.toLong()));
+        }
+        return pipeline.fanOut(groupId, Uni.join().all(sizes).andFailFast())
+                .map(bytes -> new GroupDeletion.Progress(bytes.stream().mapToLong(Long::longValue).sum()))
+                .chain(progress -> Multi.createFrom().iterable(hashes)
+                        .onItem().transformToUniAndConcatenate(hash -> Multi.createBy().repeating()
+                                .uni(() -> progress, state -> deleteChunk(groupId, hash, state))
+                                // Le dernier lot (curseur "0") est tout de même émis
+                                .whilst(removed -> !progress.done())
+                                .collect().last())
+                        .collect().last()
+                        .chain(() -> unlink(groupId, hashes, progress.users() > 0))
+                        .map(progress::result));
+    }
+
+    /**
+     * Un lot de la suppression progressive : HSCAN puis HDEL des champs de la page ; renvoie le nombre supprimé.
+     */
+    private Uni<Long> deleteChunk(String groupId, String hash, GroupDeletion.Progress progress) {
+        return pipeline.call(groupId, RedisOp.HSCAN, ds.execute(Command.HSCAN, hash, progress.cursor(),
+                        "COUNT", String.valueOf(pipeline.deleteChunkSize())))
+                .chain(page -> {
+                    List<String> fields = progress.page(page);
+                    if (fields.isEmpty()) {
+                        return Uni.createFrom().item(0L);
+                    }
+                    return pipeline.call(groupId, RedisOp.HDEL, hashCommands.hdel(hash, fields.toArray(String[]::new)))
+                            .map(Integer::longValue);
+                })
+                .invoke(progress::deleted);
+    }
+
+    /**
+     * Resharde le groupe vers {@code shards} sous-hashes, ou selon sa taille si {@code null} (voir GroupSharding).
+     */
+    public Uni<ReshardResult> reshard(String groupId, Integer shards) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        return pipeline.sharding().reshard(groupId, shards)
+                .invoke(() -> {
+                    pipeline.flights().forget(key);
+                    pipeline.invalidate(key);
+                });
+    }
+
+    /**
+     * FCALL d'une fonction de la bibliothèque monapp_groups, rechargée au besoin.
+     */
+    private Uni<Response> fcall(List<String> args) {
+        return pipeline.functions().call(() -> ds.execute(Command.FCALL, args.toArray(String[]::new)));
+    }
+
+    /**
+     * FCALL portant une valeur binaire (voir ChangeFeed#call) : ds.execute ne prend que des String.
+     */
+    private Uni<Response> fcall(io.vertx.redis.client.Request request) {
+        return pipeline.functions().call(() -> ds.getRedis().send(Request.newInstance(request)));
+    }
+
+    /**
+     * Expiration glissante sur lecture (monapp.ttl.sliding-on-read) : EXPIRE XX envoyé sans attendre la réponse,
+     * pour ne pas reposer de TTL sur une clé absente. Hors contrôle d'admission (voir GroupPipeline#background).
+     */
+    private void slide(String groupId, ShardLayout layout) {
+        if (pipeline.ttl().slideOnRead(groupId)) {
+            List<Uni<Boolean>> expires = new ArrayList<>();
+            for (String key : layout.keys(groupId)) {
+                expires.add(pipeline.background(RedisOp.EXPIRE, keyCommands.expire(key, pipeline.ttl().ttlSeconds(groupId), new ExpireArgs().xx())));
+            }
+            Uni.join().all(expires).andCollectFailures()
+                    .subscribe().with(ignored -> {
+                    }, failure -> Log.debugf(failure, "Sliding EXPIRE failed for group %s", groupId));
+        }
     }
 
-    public Uni<Integer> deleteAllUsers(String groupId) {
-        return keyCommands.del(GROUP_USERS_KEY.formatted(groupId));
+    /**
+     * Rétablit l'id depuis le nom du champ : les formats compacts ne l'écrivent pas dans la valeur.
+     */
+    private Map<String, User> withIds(Map<String, User> users) {
+        Map<String, User> result = new HashMap<>(users.size());
+        users.forEach((userId, user) -> result.put(userId, user.withId(userId)));
+        pipeline.metrics().recordGroupSize(result.size());
+        return result;
     }
 
 }
@@ -0,0 +1,28 @@
+package com.monapp.redis.lowlevel.codec;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.OutputStream;
+
+/**
+ * OutputStream qui ajoute les octets écrits à un {@link Buffer} Vert.x.
+ * Jackson écrit par blocs depuis son tampon interne : un seul appendBytes par valeur en pratique.
+ */
+final class BufferOutputStream extends OutputStream {
+
+    private final Buffer buffer;
+
+    BufferOutputStream(Buffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.appendByte((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        buffer.appendBytes(bytes, offset, length);
+    }
+}
@@ -1,20 +1,103 @@
 package com.monapp.redis.lowlevel.codec;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.monapp.config.CodecConfig;
+import com.monapp.metrics.RedisMetrics;
+import com.monapp.model.User;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Codec des valeurs User. Les nouvelles écritures Buffer suivent le format configuré ({@code monapp.codec.format}),
+ * la lecture reconnaît le format de chaque valeur à son premier octet : JSON et formats compacts cohabitent
+ * pendant une migration.
+ * <p>
+ * Les méthodes String restent en JSON : des octets binaires y seraient altérés par l'encodage UTF-8. Les écritures
+ * des managers, arguments de FCALL compris, passent par {@link #encodeToBuffer}.
+ * <p>
+ * Une valeur vide (posée hors de l'application) se décode en utilisateur sans nom ni email plutôt que d'échouer :
+ * une seule valeur invalide ne doit pas faire échouer la lecture de tout le groupe.
+ */
 @ApplicationScoped
-public class JsonCodec {
+public class JsonCodec implements UserCodec {
+
+    private static final int INITIAL_CAPACITY = 128;
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final byte[] JSON_NULL = "null".getBytes(StandardCharsets.US_ASCII);
 
+    private final ValueFormat format;
+    private final RedisMetrics metrics;
     private final ObjectMapper mapper;
+    private final ObjectReader userReader;
+    private final ObjectWriter userWriter;
+    private final ObjectReader smileReader;
+    private final ObjectWriter smileWriter;
+    private final ObjectReader cborReader;
+    private final ObjectWriter cborWriter;
+
+    @Inject
+    public JsonCodec(CodecConfig config, RedisMetrics metrics) {
+        this(config.format(), metrics);
+    }
 
-    public JsonCodec() {
+    public JsonCodec(ValueFormat format) {
+        this(format, RedisMetrics.DISABLED);
+    }
+
+    public JsonCodec(ValueFormat format, RedisMetrics metrics) {
+        this.format = format;
+        this.metrics = metrics;
         this.mapper = new ObjectMapper();
+        this.userReader = mapper.readerFor(User.class);
+        this.userWriter = mapper.writerFor(User.class);
+
+        // L'id (null) n'est pas écrit, ni l'en-tête Smile : l'octet de format en tient lieu
+        ObjectMapper smileMapper = SmileMapper.builder()
+                .disable(SmileGenerator.Feature.WRITE_HEADER)
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .build();
+        this.smileReader = smileMapper.readerFor(User.class);
+        this.smileWriter = smileMapper.writerFor(User.class);
+
+        ObjectMapper cborMapper = CBORMapper.builder()
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .build();
+        this.cborReader = cborMapper.readerFor(User.class);
+        this.cborWriter = cborMapper.writerFor(User.class);
     }
 
+    public ValueFormat format() {
+        return format;
+    }
+
+    /**
+     * Encodage JSON en String.
+     */
     public String encode(Object obj) {
         try {
-            return mapper.writeValueAsString(obj);
+            String json = mapper.writeValueAsString(obj);
+            metrics.recordValueWritten(json.length());
+            return json;
         } catch (Exception e) {
             throw new RuntimeException("Encoding error", e);
         }
@@ -27,4 +110,218 @@ public class JsonCodec {
             throw new RuntimeException("Decoding error", e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Buffer encodeToBuffer(User user) {
+        Buffer buffer = Buffer.buffer(INITIAL_CAPACITY);
+        try {
+            switch (format) {
+                case JSON -> userWriter.writeValue(new BufferOutputStream(buffer), user);
+                case BINARY -> {
+                    buffer.appendByte(format.header());
+                    appendString(buffer, user.name());
+                    appendString(buffer, user.email());
+                }
+                case SMILE -> {
+                    buffer.appendByte(format.header());
+                    smileWriter.writeValue(new BufferOutputStream(buffer), user.withId(null));
+                }
+                case CBOR -> {
+                    buffer.appendByte(format.header());
+                    cborWriter.writeValue(new BufferOutputStream(buffer), user.withId(null));
+                }
+            }
+            metrics.recordValueWritten(buffer.length());
+            return buffer;
+        } catch (Exception e) {
+            throw new RuntimeException("Encoding error", e);
+        }
+    }
+
+    @Override
+    public User decode(String id, Buffer buffer) {
+        metrics.recordValueRead(buffer.length());
+        if (buffer.length() == 0) {
+            return new User(id, null, null);
+        }
+        try {
+            return switch (ValueFormat.fromHeader(buffer.getByte(0))) {
+                case JSON -> {
+                    User user = read(userReader, buffer, 0);
+                    yield user.id() == null ? user.withId(id) : user;
+                }
+                case BINARY -> readBinary(id, buffer);
+                case SMILE -> read(smileReader, buffer, 1).withId(id);
+                case CBOR -> read(cborReader, buffer, 1).withId(id);
+            };
+        } catch (Exception e) {
+            throw new RuntimeException("Decoding error", e);
+        }
+    }
+
+    /**
+     * Liste de champs d'une projection ({@code id,email}), ou {@code null} pour l'utilisateur complet.
+     */
+    public static Set<String> fields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        return Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Corps JSON de get-all ({@code {"id": utilisateur, ...}}) écrit directement à partir de la réponse HGETALL,
+     * sans passer par des User. Une valeur JSON est recopiée octet pour octet ; avec une projection ({@code fields}),
+     * seuls les champs demandés sont lus, les autres sont sautés sans être décodés. Les formats compacts n'ont pas
+     * d'équivalent JSON à recopier : ils sont décodés puis réécrits.
+     */
+    public Buffer encodeRawGroup(Response hgetall, Set<String> fields) {
+        Buffer out = Buffer.buffer(INITIAL_CAPACITY);
+        out.appendByte((byte) '{');
+        if (hgetall != null) {
+            boolean first = true;
+            for (String userId : hgetall.getKeys()) {
+                if (!first) {
+                    out.appendByte((byte) ',');
+                }
+                first = false;
+                appendQuoted(out, userId);
+                out.appendByte((byte) ':');
+                appendRawUser(out, userId, hgetall.get(userId).toBuffer(), fields);
+            }
+        }
+        return out.appendByte((byte) '}');
+    }
+
+    void appendRawUser(Buffer out, String id, Buffer value, Set<String> fields) {
+        if (value.length() == 0 || ValueFormat.fromHeader(value.getByte(0)) != ValueFormat.JSON) {
+            appendUser(out, decode(id, value), fields);
+            return;
+        }
+        metrics.recordValueRead(value.length());
+        if (fields == null) {
+            out.appendBuffer(value);
+            return;
+        }
+        try (JsonParser parser = createParser(value)) {
+            appendProjection(out, id, parser, fields);
+        } catch (IOException e) {
+            throw new RuntimeException("Decoding error", e);
+        }
+    }
+
+    /**
+     * Parcourt l'objet JSON par jetons : une chaîne non demandée n'est jamais décodée.
+     */
+    private static void appendProjection(Buffer out, String id, JsonParser parser, Set<String> fields) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("User value is not a JSON object");
+        }
+        out.appendByte((byte) '{');
+        boolean first = true;
+        boolean idWritten = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            boolean id = "id".equals(name);
+            // Un id null est remplacé par le nom du champ du hash, comme au décodage
+            if (!fields.contains(name) || token.isStructStart() || (id && token == JsonToken.VALUE_NULL)) {
+                parser.skipChildren();
+                continue;
+            }
+            first = appendName(out, name, first);
+            switch (token) {
+                case VALUE_STRING -> appendQuoted(out, parser.getText());
+                case VALUE_NULL -> out.appendBytes(JSON_NULL);
+                default -> out.appendString(parser.getText());
+            }
+            idWritten |= id;
+        }
+        if (fields.contains("id") && !idWritten) {
+            appendName(out, "id", first);
+            appendQuoted(out, id);
+        }
+        out.appendByte((byte) '}');
+    }
+
+    private static void appendUser(Buffer out, User user, Set<String> fields) {
+        out.appendByte((byte) '{');
+        boolean first = appendField(out, "id", user.id(), fields, true);
+        first = appendField(out, "name", user.name(), fields, first);
+        appendField(out, "email", user.email(), fields, first);
+        out.appendByte((byte) '}');
+    }
+
+    private static boolean appendField(Buffer out, String name, String value, Set<String> fields, boolean first) {
+        if (fields != null && !fields.contains(name)) {
+            return first;
+        }
+        appendName(out, name, first);
+        if (value == null) {
+            out.appendBytes(JSON_NULL);
+        } else {
+            appendQuoted(out, value);
+        }
+        return false;
+    }
+
+    private static boolean appendName(Buffer out, String name, boolean first) {
+        if (!first) {
+            out.appendByte((byte) ',');
+        }
+        appendQuoted(out, name);
+        out.appendByte((byte) ':');
+        return false;
+    }
+
+    private static void appendQuoted(Buffer out, String value) {
+        out.appendByte((byte) '"')
+                .appendBytes(JsonStringEncoder.getInstance().quoteAsUTF8(value))
+                .appendByte((byte) '"');
+    }
+
+    private JsonParser createParser(Buffer buffer) throws IOException {
+        ByteBuf bytes = buffer.getByteBuf();
+        if (bytes.hasArray()) {
+            return mapper.getFactory().createParser(bytes.array(), bytes.arrayOffset() + bytes.readerIndex(), bytes.readableBytes());
+        }
+        return mapper.getFactory().createParser((InputStream) new ByteBufInputStream(bytes));
+    }
+
+    private static User read(ObjectReader reader, Buffer buffer, int offset) throws Exception {
+        ByteBuf bytes = buffer.getByteBuf();
+        if (bytes.hasArray()) {
+            // Lecture directe dans le tableau sous-jacent, sans copie
+            return reader.readValue(bytes.array(), bytes.arrayOffset() + bytes.readerIndex() + offset, bytes.readableBytes() - offset);
+        }
+        bytes.skipBytes(offset);
+        return reader.readValue((InputStream) new ByteBufInputStream(bytes));
+    }
+
+    private static void appendString(Buffer buffer, String value) {
+        if (value == null) {
+            buffer.appendUnsignedShort(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Value too long for the binary format: " + bytes.length + " bytes");
+        }
+        buffer.appendUnsignedShort(bytes.length).appendBytes(bytes);
+    }
+
+    private static User readBinary(String id, Buffer buffer) {
+        int position = 1;
+        int nameLength = buffer.getUnsignedShort(position);
+        position += 2;
+        String name = nameLength == NULL_LENGTH ? null : buffer.getString(position, position + nameLength, "UTF-8");
+        position += nameLength == NULL_LENGTH ? 0 : nameLength;
+        int emailLength = buffer.getUnsignedShort(position);
+        position += 2;
+        String email = emailLength == NULL_LENGTH ? null : buffer.getString(position, position + emailLength, "UTF-8");
+        return new User(id, name, email);
+    }
+}
@@ -0,0 +1,26 @@
+package com.monapp.redis.lowlevel.codec;
+
+import com.monapp.model.User;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Response;
+
+/**
+ * Codec binaire des valeurs User : écrit directement dans un {@link Buffer} passé à {@code Request.arg}
+ * et lit directement les octets de {@link Response#toBuffer()}, sans passer par une String intermédiaire.
+ * <p>
+ * Le décodage reçoit l'id (nom du champ dans le hash), que les formats compacts n'écrivent pas dans la valeur.
+ */
+public interface UserCodec {
+
+    Buffer encodeToBuffer(User user);
+
+    User decode(String id, Buffer buffer);
+
+    default User decode(String id, Response response) {
+        return response == null ? null : decode(id, response.toBuffer());
+    }
+
+    default User decode(String id, io.vertx.mutiny.redis.client.Response response) {
+        return response == null ? null : decode(id, response.getDelegate());
+    }
+}
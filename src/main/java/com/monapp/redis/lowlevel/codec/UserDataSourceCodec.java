@@ -0,0 +1,39 @@
+package com.monapp.redis.lowlevel.codec;
+
+import com.monapp.model.User;
+import io.quarkus.redis.datasource.codecs.Codec;
+import io.vertx.core.buffer.Buffer;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.lang.reflect.Type;
+
+/**
+ * Codec des valeurs User pour le DataSource Quarkus ({@code HashCommands<String, String, User>}),
+ * qui délègue à {@link JsonCodec} : mêmes formats que les managers bas niveau.
+ * <p>
+ * Le DataSource décode sans connaître le nom du champ : avec un format compact, l'id est rétabli par les managers.
+ */
+@ApplicationScoped
+public class UserDataSourceCodec implements Codec {
+
+    private final JsonCodec jsonCodec;
+
+    public UserDataSourceCodec(JsonCodec jsonCodec) {
+        this.jsonCodec = jsonCodec;
+    }
+
+    @Override
+    public boolean canHandle(Type clazz) {
+        return clazz.equals(User.class);
+    }
+
+    @Override
+    public byte[] encode(Object item) {
+        return jsonCodec.encodeToBuffer((User) item).getBytes();
+    }
+
+    @Override
+    public Object decode(byte[] item) {
+        return jsonCodec.decode(null, Buffer.buffer(item));
+    }
+}
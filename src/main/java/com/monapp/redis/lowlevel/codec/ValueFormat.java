@@ -0,0 +1,51 @@
+package com.monapp.redis.lowlevel.codec;
+
+/**
+ * Formats de valeur User, identifiés par leur premier octet.
+ * <p>
+ * JSON est le format historique, écrit sans en-tête (il commence toujours par {@code '{'}). Les autres formats
+ * commencent par un octet d'en-tête qui porte aussi la version de la disposition : une évolution future prendra
+ * un nouvel octet, et les valeurs existantes resteront lisibles. Ces formats n'écrivent pas l'id, qui est le nom
+ * du champ dans le hash.
+ */
+public enum ValueFormat {
+
+    /**
+     * JSON complet, id compris.
+     */
+    JSON((byte) '{'),
+
+    /**
+     * Binaire v1 : en-tête, puis name et email en UTF-8, chacun préfixé par sa longueur sur 2 octets (0xFFFF pour null).
+     */
+    BINARY((byte) 0x01),
+
+    /**
+     * Smile (JSON binaire), sans l'en-tête Smile ni l'id.
+     */
+    SMILE((byte) 0x02),
+
+    /**
+     * CBOR (RFC 8949), sans l'id.
+     */
+    CBOR((byte) 0x03);
+
+    private final byte header;
+
+    ValueFormat(byte header) {
+        this.header = header;
+    }
+
+    public byte header() {
+        return header;
+    }
+
+    public static ValueFormat fromHeader(byte header) {
+        for (ValueFormat format : values()) {
+            if (format.header == header) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown value format header: 0x%02x".formatted(header));
+    }
+}
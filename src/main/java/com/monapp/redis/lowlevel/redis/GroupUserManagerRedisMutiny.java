@@ -1,37 +1,76 @@
 package com.monapp.redis.lowlevel.redis;
 
+import com.monapp.config.GroupBatchConfig;
+import com.monapp.metrics.RedisOp;
+import com.monapp.model.ChangeEvent;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.GroupUsers;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.GroupDeletion;
+import com.monapp.redis.GroupPipeline;
+import com.monapp.redis.GroupPipelines;
+import com.monapp.redis.MultiGet;
+import com.monapp.redis.cluster.HashSlot;
 import com.monapp.redis.lowlevel.codec.JsonCodec;
+import com.monapp.redis.writebehind.WriteBehindBuffer;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.client.RedisClientName;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
 import io.vertx.mutiny.redis.client.Command;
 import io.vertx.mutiny.redis.client.Redis;
 import io.vertx.mutiny.redis.client.Request;
 import io.vertx.mutiny.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ApplicationScoped
 public class GroupUserManagerRedisMutiny {
 
     public static final String GROUP_USERS_KEY = "groups:%s";
-    private static final long DEFAULT_TTL = 36000;
 
     private final Redis redis;
+    private final Redis readRedis;
     private final JsonCodec jsonCodec;
+    private final GroupBatchConfig groupBatchConfig;
+    private final GroupPipeline pipeline;
+    private final WriteBehindBuffer writeBehind;
 
-    public GroupUserManagerRedisMutiny(Redis redis, JsonCodec jsonCodec) {
+    public GroupUserManagerRedisMutiny(Redis redis, @RedisClientName("read") Redis readRedis, JsonCodec jsonCodec,
+                                       GroupBatchConfig groupBatchConfig, GroupPipelines pipelines) {
         this.redis = redis;
+        this.readRedis = readRedis;
         this.jsonCodec = jsonCodec;
+        this.groupBatchConfig = groupBatchConfig;
+        this.pipeline = pipelines.forStyle("redis-mutiny");
+        this.writeBehind = pipeline.writeBehind(
+                (groupId, requests) -> pipeline.call(groupId, RedisOp.HSET_EXPIRE_FLUSH, redis.batch(requests)));
     }
 
     /**
      * Crée un utilisateur dans le groupe (hash Redis)
+     * Avec l'écriture différée (monapp.write-behind), l'écriture passe par le tampon et sera flushée avec les autres
+     * écritures du groupe.
      */
-    public Uni<Boolean> createUser(String groupId, User user) {
+    public Uni<CreateUserResult> createUser(String groupId, User user) {
         String key = GROUP_USERS_KEY.formatted(groupId);
-        String userJson = jsonCodec.encode(user);
+        // Valeur encodée directement en octets, sans String intermédiaire
+        Buffer userJson = Buffer.newInstance(jsonCodec.encodeToBuffer(user));
+        pipeline.writing(groupId, key, user.id());
+        if (writeBehind != null) {
+            return writeBehind.write(groupId, key, user.id(), user.email(), userJson);
+        }
 
         // 1. Préparation de la requête HSET
         // Commande: HSET key field value
@@ -41,90 +80,365 @@ public class GroupUserManagerRedisMutiny {
                 .arg(userJson); // field value
 
         // 2. Préparation de la requête EXPIRE
-        // Commande: EXPIRE key seconds
+        // Commande: EXPIRE key seconds [NX]
+        // Tant que le rafraîchissement n'est pas dû (suivi local), NX : seul un groupe sans TTL (recréé) en reçoit un
         Request expireRequest = Request.cmd(Command.EXPIRE)
                 .arg(key)
-                .arg(DEFAULT_TTL);
-
-        // 3. Exécution séquentielle
-        return redis.send(hsetRequest)
-                .chain(response -> redis.send(expireRequest))
-                .map(response -> {
-                    // Redis EXPIRE retourne l'entier 1 si le timeout a été défini, 0 sinon.
-                    return response != null && response.toInteger() == 1;
-                });
+                .arg(pipeline.ttl().ttlSeconds(groupId));
+        if (!pipeline.ttl().refreshDue(groupId)) {
+            expireRequest.arg("NX");
+        }
+
+        // 3. Exécution en un seul lot MULTI/EXEC : un aller-retour, écriture atomique
+        // (avec, s'ils sont activés, le XADD de l'événement, l'EXPIRE de son flux et la mise à jour de l'index des emails
+        // après EXPIRE)
+        List<Request> transaction = new ArrayList<>(7);
+        transaction.add(Request.cmd(Command.MULTI));
+        transaction.add(hsetRequest);
+        transaction.add(expireRequest);
+        Request xadd = change(groupId, ChangeEvent.SET, user.id());
+        if (xadd != null) {
+            transaction.add(xadd);
+            addIfPresent(transaction, streamExpire(groupId, ChangeEvent.SET));
+        }
+        Request index = wrap(pipeline.emailIndex().set(groupId, user.id(), user.email()));
+        if (index != null) {
+            transaction.add(index);
+        }
+        transaction.add(Request.cmd(Command.EXEC));
+        return pipeline.call(groupId, RedisOp.HSET_EXPIRE, redis.batch(transaction))
+                .map(responses -> {
+                    // La réponse d'EXEC contient [résultat HSET, résultat EXPIRE]
+                    Response exec = responses.get(responses.size() - 1);
+                    return new CreateUserResult(exec.get(0).toInteger() == 1, exec.get(1).toInteger() == 1);
+                })
+                .invoke(result -> pipeline.created(groupId, key, result.expirationSet()));
     }
 
     /**
      * Supprime un utilisateur du groupe (HDEL)
+     * Avec le flux de changements ou l'index des emails, HDEL, XADD et mise à jour de l'index partent en MULTI/EXEC
+     * (l'événement est ajouté même si l'utilisateur n'existait pas : une transaction ne peut pas conditionner une
+     * commande à une autre).
      */
     public Uni<Integer> deleteUser(String groupId, String userId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
 
-        return redis.send(Request.cmd(Command.HDEL).arg(key).arg(userId))
-                .map(Response::toInteger);
+        Uni<Integer> hdel = pipeline.call(groupId, RedisOp.HDEL, sendWithChange(Request.cmd(Command.HDEL).arg(key).arg(userId), change(groupId, ChangeEvent.DELETE, userId),
+                        streamExpire(groupId, ChangeEvent.DELETE), wrap(pipeline.emailIndex().delete(groupId, userId))))
+                .map(Response::toInteger)
+                .invoke(() -> pipeline.invalidate(key));
+        // Une écriture différée de l'utilisateur ne doit pas le recréer après la suppression
+        return writeBehind == null ? hdel : writeBehind.discard(groupId, List.of(userId)).replaceWith(hdel);
     }
 
     /**
-     * Récupère un utilisateur spécifique (HGET)
+     * Récupère un utilisateur spécifique (HGET), sur un réplica si le routage des lectures le permet
      */
     public Uni<User> getUser(String groupId, String userId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
+
+        return pipeline.nearCache().getUser(key, userId, () -> pipeline.flights().user(key, userId, () -> pipeline.call(groupId, RedisOp.HGET, reader(groupId).send(Request.cmd(Command.HGET).arg(key).arg(userId)))
+                        .map(response -> {
+                            // Redis renvoie null si la clé/champ n'existe pas
+                            if (response == null) {
+                                return null;
+                            }
+                            return jsonCodec.decode(userId, response);
+                        })));
+    }
+
+    /**
+     * Récupère plusieurs utilisateurs du groupe : un HMGET par lot de {@code chunkSize} ids,
+     * tous les lots envoyés en pipeline.
+     */
+    public Uni<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        List<List<String>> chunks = MultiGet.chunks(userIds, pipeline.multiGetChunkSize());
+        if (chunks.isEmpty()) {
+            return Uni.createFrom().item(MultiGetResult.empty());
+        }
 
-        return redis.send(Request.cmd(Command.HGET).arg(key).arg(userId))
-                .map(response -> {
-                    // Redis renvoie null si la clé/champ n'existe pas
-                    if (response == null) {
-                        return null;
+        List<Request> requests = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            Request hmget = Request.cmd(Command.HMGET).arg(key);
+            chunk.forEach(hmget::arg);
+            requests.add(hmget);
+        }
+
+        return pipeline.call(groupId, RedisOp.HMGET, redis.batch(requests))
+                .map(responses -> {
+                    List<List<User>> values = new ArrayList<>(chunks.size());
+                    for (int i = 0; i < chunks.size(); i++) {
+                        values.add(MultiGet.decode(jsonCodec, chunks.get(i), responses.get(i)));
                     }
-                    return jsonCodec.decode(response.toString(), User.class);
+                    return MultiGet.result(chunks, values);
                 });
     }
 
     /**
-     * Récupère tous les utilisateurs du groupe (HGETALL)
+     * Récupère tous les utilisateurs du groupe (HGETALL), sur un réplica si le routage des lectures le permet
      * Note : HGETALL renvoie une liste plate [key1, val1, key2, val2...]
      */
     public Uni<Map<String, User>> getAllUsers(String groupId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
+
+        return pipeline.nearCache().getAllUsers(key, () -> pipeline.flights().group(key, () -> pipeline.call(groupId, RedisOp.HGETALL, reader(groupId).send(Request.cmd(Command.HGETALL).arg(key)))
+                        .map(this::decodeAll)));
+    }
 
-        return redis.send(Request.cmd(Command.HGETALL).arg(key))
-                .map(response -> {
-                    Map<String, User> users = new HashMap<>();
+    /**
+     * Variante pass-through de getAllUsers : le corps JSON est écrit à partir des valeurs stockées, sans User
+     * intermédiaire ; {@code fields} restreint chaque utilisateur aux champs demandés ({@code null} : tous).
+     * Les User décodés n'existant pas ici, la lecture ne passe ni par le near-cache ni par le single-flight.
+     */
+    public Uni<Buffer> getAllUsersRaw(String groupId, Set<String> fields) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
 
-                    // Si la réponse est vide ou nulle
-                    if (response == null || response.size() == 0) {
-                        return users;
-                    }
+        return pipeline.call(groupId, RedisOp.HGETALL, reader(groupId).send(Request.cmd(Command.HGETALL).arg(key)))
+                .map(response -> Buffer.newInstance(jsonCodec.encodeRawGroup(response == null ? null : response.getDelegate(), fields)));
+    }
 
-                    for (String responseKey : response.getKeys()) {
-                        User user = jsonCodec.decode(response.get(responseKey).toString(), User.class);;
-                        users.put(user.id(), user);
-                    }
+    /**
+     * Récupère tous les utilisateurs de plusieurs groupes, émis groupe par groupe dès réception.
+     * Les HGETALL sont envoyés en pipelines de {@code pipelineSize} clés, au plus {@code concurrency} à la fois.
+     * En cluster ({@code groupBySlot}), chaque pipeline ne contient que des clés d'un même hash slot :
+     * le client Vert.x l'envoie alors d'un bloc au nœud propriétaire du slot.
+     * L'ordre d'émission ne suit pas celui de la demande.
+     */
+    public Multi<GroupUsers> getAllUsers(List<String> groupIds) {
+        List<List<String>> pipelines = new ArrayList<>();
+        for (List<String> sameSlot : partitionBySlot(new ArrayList<>(new LinkedHashSet<>(groupIds)))) {
+            pipelines.addAll(MultiGet.chunks(sameSlot, groupBatchConfig.pipelineSize()));
+        }
 
-                    return users;
-                });
+        return Multi.createFrom().iterable(pipelines)
+                .onItem().transformToMulti(this::getAllUsersPipeline)
+                .merge(groupBatchConfig.concurrency());
+    }
+
+    private Multi<GroupUsers> getAllUsersPipeline(List<String> groupIds) {
+        List<Request> requests = new ArrayList<>(groupIds.size());
+        for (String groupId : groupIds) {
+            requests.add(Request.cmd(Command.HGETALL).arg(GROUP_USERS_KEY.formatted(groupId)));
+        }
+
+        return pipeline.unsharded(groupIds)
+                .chain(() -> pipeline.call(null, RedisOp.HGETALL, redis.batch(requests)))
+                .onItem().transformToMulti(responses -> Multi.createFrom().range(0, groupIds.size())
+                        .map(i -> new GroupUsers(groupIds.get(i), decodeAll(responses.get(i)))));
+    }
+
+    private List<List<String>> partitionBySlot(List<String> groupIds) {
+        if (!groupBatchConfig.groupBySlot()) {
+            return List.of(groupIds);
+        }
+        Map<Integer, List<String>> bySlot = new LinkedHashMap<>();
+        for (String groupId : groupIds) {
+            bySlot.computeIfAbsent(HashSlot.of(GROUP_USERS_KEY.formatted(groupId)), slot -> new ArrayList<>()).add(groupId);
+        }
+        return new ArrayList<>(bySlot.values());
+    }
+
+    /**
+     * Décode la réponse d'un HGETALL, exposée en map par la Response
+     */
+    private Map<String, User> decodeAll(Response response) {
+        Map<String, User> users = new HashMap<>();
+
+        // Si la réponse est vide ou nulle
+        if (response == null || response.size() == 0) {
+            return users;
+        }
+
+        for (String responseKey : response.getKeys()) {
+            User user = jsonCodec.decode(responseKey, response.get(responseKey));
+            users.put(user.id(), user);
+        }
+
+        pipeline.metrics().recordGroupSize(users.size());
+        return users;
+    }
+
+    /**
+     * Parcourt les utilisateurs du groupe page par page (HSCAN)
+     * Chaque page est émise dès réception : la mémoire consommée ne dépend pas de la taille du groupe.
+     * Comme tout SCAN, un utilisateur peut être émis deux fois si le hash est modifié pendant le parcours.
+     */
+    public Multi<User> streamUsers(String groupId) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+
+        return Multi.createBy().repeating()
+                .uni(() -> new AtomicReference<>("0"),
+                        cursor -> pipeline.call(groupId, RedisOp.HSCAN, redis.send(Request.cmd(Command.HSCAN)
+                                        .arg(key)
+                                        .arg(cursor.get())
+                                        .arg("COUNT")
+                                        .arg(pipeline.scanCount())))
+                                .invoke(response -> cursor.set(response.get(0).toString())))
+                // Le curseur "0" marque la dernière page, qui est tout de même émise
+                .whilst(response -> !"0".equals(response.get(0).toString()))
+                .onItem().transformToIterable(this::decodeScanPage);
+    }
+
+    /**
+     * Une page HSCAN est une liste plate [champ1, valeur1, champ2, valeur2...]
+     */
+    private List<User> decodeScanPage(Response response) {
+        Response page = response.get(1);
+        List<User> users = new ArrayList<>(page.size() / 2);
+
+        for (int i = 1; i < page.size(); i += 2) {
+            users.add(jsonCodec.decode(page.get(i - 1).toString(), page.get(i)));
+        }
+
+        return users;
     }
 
     /**
-     * Récupère le TTL de la clé du groupe (TTL)
+     * Récupère le TTL de la clé du groupe (TTL), sur un réplica si le routage des lectures le permet
      */
     public Uni<Long> getUserTTL(String groupId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
 
-        return redis.send(Request.cmd(Command.TTL).arg(key))
+        return pipeline.call(groupId, RedisOp.TTL, reader(groupId).send(Request.cmd(Command.TTL).arg(key)))
                 .map(Response::toLong);
     }
 
 
     /**
-     * Supprime tous les utilisateurs du groupe (DEL)
+     * Supprime tous les utilisateurs du groupe (UNLINK : la mémoire est libérée en tâche de fond par Redis)
+     * HLEN, MEMORY USAGE et UNLINK partent en MULTI/EXEC, avec le XADD du flux de changements et le retrait de
+     * l'index des emails s'ils sont activés.
+     * En mode progressif, les utilisateurs sont d'abord supprimés par lots HSCAN + HDEL (voir GroupDeletion).
      */
-    public Uni<Integer> deleteAllUsers(String groupId) {
+    public Uni<DeleteAllResult> deleteAllUsers(String groupId, boolean progressive) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+
+        Uni<DeleteAllResult> deleted = (progressive ? deleteProgressively(groupId, key) : unlink(groupId, key))
+                .invoke(() -> pipeline.cleared(groupId, key));
+        return writeBehind == null ? deleted : writeBehind.discard(groupId, null).replaceWith(deleted);
+    }
+
+    private Uni<DeleteAllResult> unlink(String groupId, String key) {
+        List<Request> transaction = new ArrayList<>(8);
+        transaction.add(Request.cmd(Command.MULTI));
+        transaction.add(Request.cmd(Command.HLEN).arg(key));
+        transaction.add(Request.cmd(Command.MEMORY).arg("USAGE").arg(key));
+        transaction.add(Request.cmd(Command.UNLINK).arg(key));
+        Request xadd = change(groupId, ChangeEvent.CLEAR, null);
+        if (xadd != null) {
+            transaction.add(xadd);
+            addIfPresent(transaction, streamExpire(groupId, ChangeEvent.CLEAR));
+        }
+        Request index = wrap(pipeline.emailIndex().clear(groupId));
+        if (index != null) {
+            transaction.add(index);
+        }
+        transaction.add(Request.cmd(Command.EXEC));
+
+        return pipeline.call(groupId, RedisOp.UNLINK, redis.batch(transaction))
+                .map(responses -> GroupDeletion.unlinked(responses.get(responses.size() - 1)));
+    }
 
-        return redis.send(Request.cmd(Command.DEL).arg(key))
-                .map(Response::toInteger);
+    private Uni<DeleteAllResult> deleteProgressively(String groupId, String key) {
+        return pipeline.call(groupId, RedisOp.MEMORY_USAGE, redis.send(Request.cmd(Command.MEMORY).arg("USAGE").arg(key)))
+                .map(bytes -> new GroupDeletion.Progress(bytes == null ? 0 : bytes.toLong()))
+                .chain(progress -> Multi.createBy().repeating()
+                        .uni(() -> progress, state -> deleteChunk(groupId, key, state))
+                        // Le dernier lot (curseur "0") est tout de même émis
+                        .whilst(removed -> !progress.done())
+                        .collect().last()
+                        .chain(() -> unlink(groupId, key))
+                        .map(progress::result));
+    }
+
+    /**
+     * Un lot de la suppression progressive : HSCAN puis HDEL des champs de la page ; renvoie le nombre supprimé.
+     */
+    private Uni<Long> deleteChunk(String groupId, String key, GroupDeletion.Progress progress) {
+        return pipeline.call(groupId, RedisOp.HSCAN, redis.send(Request.cmd(Command.HSCAN)
+                        .arg(key)
+                        .arg(progress.cursor())
+                        .arg("COUNT")
+                        .arg(pipeline.deleteChunkSize())))
+                .chain(page -> {
+                    List<String> fields = progress.page(page);
+                    if (fields.isEmpty()) {
+                        return Uni.createFrom().item(0L);
+                    }
+                    Request hdel = Request.cmd(Command.HDEL).arg(key);
+                    fields.forEach(hdel::arg);
+                    return pipeline.call(groupId, RedisOp.HDEL, redis.send(hdel)).map(Response::toLong);
+                })
+                .invoke(progress::deleted);
+    }
+
+    /**
+     * XADD du flux de changements, ou {@code null} s'il est désactivé.
+     */
+    private Request change(String groupId, String op, String userId) {
+        return wrap(pipeline.changeFeed().xadd(groupId, op, userId));
+    }
+
+    /**
+     * EXPIRE du flux propre au groupe qui suit le XADD (voir ChangeFeed#streamExpire), ou {@code null}.
+     */
+    private Request streamExpire(String groupId, String op) {
+        return wrap(pipeline.changeFeed().streamExpire(groupId, op, pipeline.ttl().ttlSeconds(groupId)));
+    }
+
+    private static void addIfPresent(List<Request> transaction, Request request) {
+        if (request != null) {
+            transaction.add(request);
+        }
+    }
+
+    private static Request wrap(io.vertx.redis.client.Request request) {
+        return request == null ? null : Request.newInstance(request);
+    }
+
+    /**
+     * Envoie la commande seule, ou en MULTI/EXEC avec le XADD du flux de changements, l'EXPIRE de son flux et la mise
+     * à jour de l'index des emails (ignorés s'ils sont {@code null}) ; renvoie la réponse de la commande.
+     */
+    private Uni<Response> sendWithChange(Request command, Request xadd, Request streamExpire, Request index) {
+        if (xadd == null && index == null) {
+            return redis.send(command);
+        }
+        List<Request> transaction = new ArrayList<>(6);
+        transaction.add(Request.cmd(Command.MULTI));
+        transaction.add(command);
+        addIfPresent(transaction, xadd);
+        addIfPresent(transaction, streamExpire);
+        addIfPresent(transaction, index);
+        transaction.add(Request.cmd(Command.EXEC));
+        return redis.batch(transaction)
+                .map(responses -> responses.get(responses.size() - 1).get(0));
+    }
+
+    /**
+     * Client des lectures routables : réplicas (client nommé read) ou primaire.
+     */
+    private Redis reader(String groupId) {
+        return pipeline.reader(groupId, redis, readRedis);
+    }
+
+    /**
+     * Expiration glissante sur lecture (monapp.ttl.sliding-on-read) : EXPIRE XX envoyé sans attendre la réponse,
+     * pour ne pas reposer de TTL sur une clé absente. Hors contrôle d'admission (voir GroupPipeline#background).
+     */
+    private void slide(String groupId, String key) {
+        if (pipeline.ttl().slideOnRead(groupId)) {
+            pipeline.background(RedisOp.EXPIRE, redis.send(Request.cmd(Command.EXPIRE).arg(key).arg(pipeline.ttl().ttlSeconds(groupId)).arg("XX")))
+                    .subscribe().with(ignored -> {
+                    }, failure -> Log.debugf(failure, "Sliding EXPIRE failed for %s", key));
+        }
     }
 
 }
\ No newline at end of file
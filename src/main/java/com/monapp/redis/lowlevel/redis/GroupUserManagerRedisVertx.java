@@ -1,92 +1,172 @@
 package com.monapp.redis.lowlevel.redis;
 
+import com.monapp.metrics.RedisOp;
+import com.monapp.model.ChangeEvent;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.GroupDeletion;
+import com.monapp.redis.GroupPipeline;
+import com.monapp.redis.GroupPipelines;
+import com.monapp.redis.MultiGet;
 import com.monapp.redis.lowlevel.codec.JsonCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.client.RedisClientName;
 import io.vertx.codegen.annotations.Nullable;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.redis.client.Command;
 import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
 import io.vertx.redis.client.Request;
 import io.vertx.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @ApplicationScoped
 @Tag(name = "1- Redis VertX")
 public class GroupUserManagerRedisVertx {
 
     public static final String GROUP_USERS_KEY = "groups:%s";
-    private static final long DEFAULT_TTL = 36000;
 
     private final Redis redis;
+    private final Redis readRedis;
     private final JsonCodec jsonCodec;
+    private final Timer connectionAcquireTimer;
+    private final GroupPipeline pipeline;
 
-    public GroupUserManagerRedisVertx(Redis redis, JsonCodec jsonCodec) {
+    public GroupUserManagerRedisVertx(Redis redis, @RedisClientName("read") Redis readRedis, JsonCodec jsonCodec,
+                                      MeterRegistry registry, GroupPipelines pipelines) {
         this.redis = redis;
+        this.readRedis = readRedis;
         this.jsonCodec = jsonCodec;
+        this.connectionAcquireTimer = Timer.builder("redis.connection.acquire")
+                .description("Time spent waiting for a pooled Redis connection")
+                .tag("style", "redis-vertx")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.pipeline = pipelines.forStyle("redis-vertx");
     }
 
     /**
      * Crée un utilisateur dans le groupe (hash Redis)
+     * HSET et EXPIRE sont envoyés en un seul lot MULTI/EXEC : un aller-retour, écriture atomique.
+     * Tant que le TTL du groupe n'est pas dû au rafraîchissement (suivi local), l'EXPIRE part avec NX :
+     * il ne repose un TTL que si la clé n'en a pas (groupe recréé).
+     * Le XADD du flux de changements et la mise à jour de l'index des emails, s'ils sont activés, font partie
+     * de la même transaction.
      */
-    public Future<@Nullable Boolean> createUser(String groupId, User user) {
+    public Future<CreateUserResult> createUser(String groupId, User user) {
         String key = GROUP_USERS_KEY.formatted(groupId);
-        String userJson = jsonCodec.encode(user);
+        // Valeur encodée directement en octets, sans String intermédiaire
+        Buffer userJson = jsonCodec.encodeToBuffer(user);
+        pipeline.writing(groupId, key, user.id());
 
-        return redis.connect()
-                .compose(conn -> {
-                    Future<Response> hsetFuture = conn.send(Request.cmd(Command.HSET, key, user.id(), userJson));
-                    Future<Response> expireFuture = hsetFuture
-                            .andThen(newUser -> conn.send(Request.cmd(Command.EXPIRE, key, String.valueOf(DEFAULT_TTL))));
+        List<Request> transaction = new ArrayList<>(7);
+        transaction.add(Request.cmd(Command.MULTI));
+        transaction.add(Request.cmd(Command.HSET).arg(key).arg(user.id()).arg(userJson));
+        transaction.add(expire(groupId, key));
+        Request xadd = pipeline.changeFeed().xadd(groupId, ChangeEvent.SET, user.id());
+        if (xadd != null) {
+            transaction.add(xadd);
+            addIfPresent(transaction, streamExpire(groupId, ChangeEvent.SET));
+        }
+        Request index = pipeline.emailIndex().set(groupId, user.id(), user.email());
+        if (index != null) {
+            transaction.add(index);
+        }
+        transaction.add(Request.cmd(Command.EXEC));
 
-                    return expireFuture
-                            .map(Response::toBoolean)
-                            .onComplete(ar -> conn.close());
-                });
+        return withConnection(groupId, RedisOp.HSET_EXPIRE, conn -> conn.batch(transaction)
+                .map(responses -> {
+                    // La réponse d'EXEC contient les résultats de HSET et EXPIRE
+                    Response exec = responses.get(responses.size() - 1);
+                    return new CreateUserResult(exec.get(0).toInteger() == 1, exec.get(1).toInteger() == 1);
+                }))
+                .onSuccess(result -> pipeline.created(groupId, key, result.expirationSet()));
     }
 
     /**
      * Supprime un utilisateur du groupe
+     * Avec le flux de changements ou l'index des emails, HDEL, XADD et mise à jour de l'index partent en MULTI/EXEC
+     * (l'événement est ajouté même si l'utilisateur n'existait pas : une transaction ne peut pas conditionner une
+     * commande à une autre).
      */
     public Future<@Nullable Integer> deleteUser(String groupId, String userId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
 
-        return redis.connect()
-                .compose(conn -> conn.send(Request.cmd(Command.HDEL, key, userId))
-                        .map(Response::toInteger)
-                        .onComplete(ar -> conn.close())
-                );
+        return withConnection(groupId, RedisOp.HDEL, conn -> sendWithChange(conn, Request.cmd(Command.HDEL, key, userId),
+                        pipeline.changeFeed().xadd(groupId, ChangeEvent.DELETE, userId), streamExpire(groupId, ChangeEvent.DELETE),
+                        pipeline.emailIndex().delete(groupId, userId))
+                .map(Response::toInteger))
+                .onSuccess(result -> pipeline.invalidate(key));
     }
 
     /**
-     * Récupère un utilisateur spécifique
+     * Récupère un utilisateur spécifique, sur un réplica si le routage des lectures le permet
      */
     public Future<User> getUser(String groupId, String userId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
 
-        return redis.connect()
-                .compose(conn -> conn.send(Request.cmd(Command.HGET, key, userId))
+        return pipeline.nearCache().getUserFuture(key, userId, () -> pipeline.flights().userFuture(key, userId, () -> withConnection(reader(groupId), groupId, RedisOp.HGET, conn -> conn.send(Request.cmd(Command.HGET, key, userId))
                         .map(response -> {
                             if (response == null) {
                                 return null;
                             }
-                            return jsonCodec.decode(response.toString(), User.class);
-                        })
-                        .onComplete(ar -> conn.close())
-                );
+                            return jsonCodec.decode(userId, response);
+                        }))));
+    }
+
+    /**
+     * Récupère plusieurs utilisateurs du groupe : un HMGET par lot de {@code chunkSize} ids,
+     * tous les lots envoyés en pipeline sur une même connexion.
+     */
+    public Future<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        List<List<String>> chunks = MultiGet.chunks(userIds, pipeline.multiGetChunkSize());
+        if (chunks.isEmpty()) {
+            return Future.succeededFuture(MultiGetResult.empty());
+        }
+
+        List<Request> requests = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            Request hmget = Request.cmd(Command.HMGET).arg(key);
+            chunk.forEach(hmget::arg);
+            requests.add(hmget);
+        }
+
+        return withConnection(groupId, RedisOp.HMGET, conn -> conn.batch(requests)
+                .map(responses -> {
+                    List<List<User>> values = new ArrayList<>(chunks.size());
+                    for (int i = 0; i < chunks.size(); i++) {
+                        values.add(MultiGet.decode(jsonCodec, chunks.get(i), responses.get(i)));
+                    }
+                    return MultiGet.result(chunks, values);
+                }));
     }
 
     /**
-     * Récupère tous les utilisateurs du groupe
+     * Récupère tous les utilisateurs du groupe, sur un réplica si le routage des lectures le permet
      */
     public Future<Map<String, User>> getAllUsers(String groupId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
 
-        return redis.connect()
-                .compose(conn -> conn.send(Request.cmd(Command.HGETALL, key))
+        return pipeline.nearCache().getAllUsersFuture(key, () -> pipeline.flights().groupFuture(key, () -> withConnection(reader(groupId), groupId, RedisOp.HGETALL, conn -> conn.send(Request.cmd(Command.HGETALL, key))
                         .map(response -> {
                             Map<String, User> users = new HashMap<>();
 
@@ -95,40 +175,198 @@ public class GroupUserManagerRedisVertx {
                             }
 
                             for (String responseKey : response.getKeys()) {
-                                User user = jsonCodec.decode(response.get(responseKey).toString(), User.class);
+                                User user = jsonCodec.decode(responseKey, response.get(responseKey));
                                 users.put(user.id(), user);
                             }
 
+                            pipeline.metrics().recordGroupSize(users.size());
                             return users;
-                        })
-                        .onComplete(ar -> conn.close())
-                );
+                        }))));
+    }
+
+    /**
+     * Variante pass-through de getAllUsers : le corps JSON est écrit à partir des valeurs stockées, sans User
+     * intermédiaire ; {@code fields} restreint chaque utilisateur aux champs demandés ({@code null} : tous).
+     * Les User décodés n'existant pas ici, la lecture ne passe ni par le near-cache ni par le single-flight.
+     */
+    public Future<Buffer> getAllUsersRaw(String groupId, Set<String> fields) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
+
+        return withConnection(reader(groupId), groupId, RedisOp.HGETALL, conn -> conn.send(Request.cmd(Command.HGETALL, key))
+                .map(response -> jsonCodec.encodeRawGroup(response, fields)));
     }
 
     /**
-     * Récupère le TTL de la clé du groupe
+     * Récupère le TTL de la clé du groupe, sur un réplica si le routage des lectures le permet
      */
     public Future<@Nullable Long> getUserTTL(String groupId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
 
-        return redis.connect()
-                .compose(conn -> conn.send(Request.cmd(Command.TTL, key))
-                        .map(Response::toLong)
-                        .onComplete(ar -> conn.close())
-                );
+        return withConnection(reader(groupId), groupId, RedisOp.TTL, conn -> conn.send(Request.cmd(Command.TTL, key))
+                .map(Response::toLong));
     }
 
     /**
-     * Supprime tous les utilisateurs du groupe (supprime la clé)
+     * Supprime tous les utilisateurs du groupe (UNLINK : la mémoire est libérée en tâche de fond par Redis)
+     * HLEN, MEMORY USAGE et UNLINK partent en MULTI/EXEC, avec le XADD du flux de changements et le retrait de
+     * l'index des emails s'ils sont activés.
+     * En mode progressif, les utilisateurs sont d'abord supprimés par lots HSCAN + HDEL (voir GroupDeletion).
      */
-    public Future<@Nullable Integer> deleteAllUsers(String groupId) {
+    public Future<DeleteAllResult> deleteAllUsers(String groupId, boolean progressive) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+
+        return (progressive ? deleteProgressively(groupId, key) : unlink(groupId, key))
+                .onSuccess(result -> pipeline.cleared(groupId, key));
+    }
+
+    private Future<DeleteAllResult> unlink(String groupId, String key) {
+        List<Request> transaction = new ArrayList<>(8);
+        transaction.add(Request.cmd(Command.MULTI));
+        transaction.add(Request.cmd(Command.HLEN).arg(key));
+        transaction.add(Request.cmd(Command.MEMORY).arg("USAGE").arg(key));
+        transaction.add(Request.cmd(Command.UNLINK).arg(key));
+        Request xadd = pipeline.changeFeed().xadd(groupId, ChangeEvent.CLEAR, null);
+        if (xadd != null) {
+            transaction.add(xadd);
+            addIfPresent(transaction, streamExpire(groupId, ChangeEvent.CLEAR));
+        }
+        Request index = pipeline.emailIndex().clear(groupId);
+        if (index != null) {
+            transaction.add(index);
+        }
+        transaction.add(Request.cmd(Command.EXEC));
+
+        return withConnection(groupId, RedisOp.UNLINK, conn -> conn.batch(transaction)
+                .map(responses -> GroupDeletion.unlinked(responses.get(responses.size() - 1))));
+    }
+
+    private Future<DeleteAllResult> deleteProgressively(String groupId, String key) {
+        return withConnection(groupId, RedisOp.MEMORY_USAGE, conn -> conn.send(Request.cmd(Command.MEMORY).arg("USAGE").arg(key)))
+                .compose(bytes -> {
+                    GroupDeletion.Progress progress = new GroupDeletion.Progress(bytes == null ? 0 : bytes.toLong());
+                    Promise<Void> scanned = Promise.promise();
+                    deleteChunk(groupId, key, progress, scanned);
+                    return scanned.future()
+                            .compose(ignored -> unlink(groupId, key))
+                            .map(progress::result);
+                });
+    }
+
+    /**
+     * Un lot de la suppression progressive : HSCAN puis HDEL des champs de la page ; le lot suivant part
+     * à la fin de celui-ci (pas de chaîne de Future qui grandirait avec le groupe).
+     */
+    private void deleteChunk(String groupId, String key, GroupDeletion.Progress progress, Promise<Void> scanned) {
+        withConnection(groupId, RedisOp.HSCAN, conn -> conn.send(Request.cmd(Command.HSCAN).arg(key).arg(progress.cursor())
+                        .arg("COUNT").arg(pipeline.deleteChunkSize())))
+                .compose(page -> {
+                    List<String> fields = progress.page(page);
+                    if (fields.isEmpty()) {
+                        return Future.succeededFuture(0L);
+                    }
+                    Request hdel = Request.cmd(Command.HDEL).arg(key);
+                    fields.forEach(hdel::arg);
+                    return withConnection(groupId, RedisOp.HDEL, conn -> conn.send(hdel)).map(Response::toLong);
+                })
+                .onSuccess(removed -> {
+                    progress.deleted(removed);
+                    if (progress.done()) {
+                        scanned.complete();
+                    } else {
+                        deleteChunk(groupId, key, progress, scanned);
+                    }
+                })
+                .onFailure(scanned::fail);
+    }
+
+    /**
+     * Envoie la commande seule, ou en MULTI/EXEC avec le XADD du flux de changements, l'EXPIRE de son flux et la mise
+     * à jour de l'index des emails (ignorés s'ils sont {@code null}) ; renvoie la réponse de la commande.
+     */
+    private Future<@Nullable Response> sendWithChange(RedisConnection conn, Request command, @Nullable Request xadd,
+                                                      @Nullable Request streamExpire, @Nullable Request index) {
+        if (xadd == null && index == null) {
+            return conn.send(command);
+        }
+        List<Request> transaction = new ArrayList<>(6);
+        transaction.add(Request.cmd(Command.MULTI));
+        transaction.add(command);
+        addIfPresent(transaction, xadd);
+        addIfPresent(transaction, streamExpire);
+        addIfPresent(transaction, index);
+        transaction.add(Request.cmd(Command.EXEC));
+        return conn.batch(transaction)
+                .map(responses -> responses.get(responses.size() - 1).get(0));
+    }
+
+    /**
+     * EXPIRE du flux propre au groupe qui suit le XADD (voir ChangeFeed#streamExpire), ou {@code null}.
+     */
+    private @Nullable Request streamExpire(String groupId, String op) {
+        return pipeline.changeFeed().streamExpire(groupId, op, pipeline.ttl().ttlSeconds(groupId));
+    }
+
+    private static void addIfPresent(List<Request> transaction, @Nullable Request request) {
+        if (request != null) {
+            transaction.add(request);
+        }
+    }
+
+    /**
+     * EXPIRE du createUser : TTL du groupe, avec NX si le rafraîchissement n'est pas encore dû.
+     */
+    private Request expire(String groupId, String key) {
+        Request expire = Request.cmd(Command.EXPIRE).arg(key).arg(pipeline.ttl().ttlSeconds(groupId));
+        return pipeline.ttl().refreshDue(groupId) ? expire : expire.arg("NX");
+    }
+
+    /**
+     * Expiration glissante sur lecture (monapp.ttl.sliding-on-read) : EXPIRE XX envoyé sans attendre la réponse,
+     * pour ne pas reposer de TTL sur une clé absente. Hors contrôle d'admission (voir GroupPipeline#background).
+     */
+    private void slide(String groupId, String key) {
+        if (pipeline.ttl().slideOnRead(groupId)) {
+            connected(redis, RedisOp.EXPIRE, conn -> conn.send(Request.cmd(Command.EXPIRE).arg(key).arg(pipeline.ttl().ttlSeconds(groupId)).arg("XX")))
+                    .onFailure(failure -> Log.debugf(failure, "Sliding EXPIRE failed for %s", key));
+        }
+    }
 
-        return redis.connect()
-                .compose(conn -> conn.send(Request.cmd(Command.DEL, key))
-                        .map(Response::toInteger)
-                        .onComplete(ar -> conn.close())
-                );
+    /**
+     * Client des lectures routables : réplicas (client nommé read) ou primaire.
+     */
+    private Redis reader(String groupId) {
+        return pipeline.reader(groupId, redis, readRedis);
+    }
+
+    private <T> Future<T> withConnection(String groupId, RedisOp op, Function<RedisConnection, Future<T>> action) {
+        return withConnection(redis, groupId, op, action);
+    }
+
+    /**
+     * Emprunte une connexion au pool géré par le client Redis une fois l'appel admis (voir AdmissionController) :
+     * un pic de trafic ne devient pas une rafale de connexions.
+     */
+    private <T> Future<T> withConnection(Redis client, String groupId, RedisOp op, Function<RedisConnection, Future<T>> action) {
+        return pipeline.admitFuture(groupId, op, () -> connected(client, op, action));
+    }
+
+    /**
+     * Emprunte une connexion au pool géré par le client Redis, mesure le temps d'acquisition puis celui
+     * de la commande {@code op}, et rend la connexion au pool (close) une fois l'action terminée.
+     * Taille du pool, file d'attente et recyclage : voir quarkus.redis.* dans application.properties.
+     */
+    private <T> Future<T> connected(Redis client, RedisOp op, Function<RedisConnection, Future<T>> action) {
+        long start = System.nanoTime();
+
+        return client.connect()
+                .compose(conn -> {
+                    connectionAcquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    long commandStart = pipeline.metrics().start();
+                    return pipeline.metrics().record(op, commandStart, action.apply(conn))
+                            .onComplete(ar -> conn.close());
+                });
     }
 
-}
\ No newline at end of file
+}
@@ -1,111 +1,292 @@
 package com.monapp.redis.lowlevel.redisapi;
 
+import com.monapp.index.EmailIndex;
+import com.monapp.metrics.RedisOp;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.DeleteUsersResult;
+import com.monapp.model.MoveUserResult;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.GroupDeletion;
+import com.monapp.redis.GroupPipeline;
+import com.monapp.redis.GroupPipelines;
+import com.monapp.redis.MultiGet;
 import com.monapp.redis.lowlevel.codec.JsonCodec;
+import com.monapp.redis.script.GroupFunctions;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.client.RedisClientName;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.redis.client.Redis;
 import io.vertx.mutiny.redis.client.RedisAPI;
+import io.vertx.mutiny.redis.client.Request;
 import io.vertx.mutiny.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ApplicationScoped
 public class GroupUserManagerRedisAPIMutiny {
 
     public static final String GROUP_USERS_KEY = "groups:%s";
-    private static final long DEFAULT_TTL = 36000;
 
     private final RedisAPI redisAPI;
+    private final RedisAPI readRedisAPI;
+    private final Redis redis;
     private final JsonCodec jsonCodec;
+    private final GroupPipeline pipeline;
 
-    public GroupUserManagerRedisAPIMutiny(RedisAPI redisAPI, JsonCodec jsonCodec) {
+    /**
+     * {@code redis} : client sous-jacent, pour les FCALL qui portent une valeur binaire (RedisAPI ne prend que des String).
+     */
+    public GroupUserManagerRedisAPIMutiny(RedisAPI redisAPI, @RedisClientName("read") RedisAPI readRedisAPI, Redis redis,
+                                          JsonCodec jsonCodec, GroupPipelines pipelines) {
         this.redisAPI = redisAPI;
+        this.redis = redis;
+        this.readRedisAPI = readRedisAPI;
         this.jsonCodec = jsonCodec;
+        this.pipeline = pipelines.forStyle("redisapi-mutiny");
     }
 
     /**
      * Crée un utilisateur dans le groupe (hash Redis)
+     * HSET et EXPIRE passent par la fonction create_user : exécution atomique en un seul aller-retour.
+     * La fonction ne repousse le TTL que si le TTL restant est sous le seuil de rafraîchissement,
+     * ajoute l'événement au flux de changements et met à jour l'index des emails, s'ils sont activés.
+     * La valeur suit {@code monapp.codec.format} : le FCALL part par le client sous-jacent, en octets.
      */
-    public Uni<Boolean> createUser(String groupId, User user) {
+    public Uni<CreateUserResult> createUser(String groupId, User user) {
         String key = GROUP_USERS_KEY.formatted(groupId);
-        String userJson = jsonCodec.encode(user);
+        pipeline.writing(groupId, key, user.id());
 
         /*
           for the imperative way you can use:
-           - redisAPI.hsetAndAwait(key, user.id(), userJson);
-           - redisAPI.expireAndAwait(key, DEFAULT_TTL);
+           - redis.sendAndAwait(fcall);
          */
-        return redisAPI.hset(List.of(key, user.id(), userJson))
-                .chain(newUser -> redisAPI.expire(java.util.List.of(key, String.valueOf(DEFAULT_TTL))))
-                .map(Response::toBoolean);
+        String ttl = String.valueOf(pipeline.ttl().ttlSeconds(groupId));
+        String threshold = String.valueOf(pipeline.ttl().refreshThresholdSeconds(groupId));
+        Request fcall = Request.newInstance(pipeline.changeFeed().call(GroupFunctions.CREATE_USER, List.of(key), List.of(groupId),
+                List.of(user.id(), "", ttl, threshold, pipeline.emailIndex().indexedGroup(groupId), EmailIndex.normalize(user.email())),
+                1, jsonCodec.encodeToBuffer(user)));
+        return pipeline.call(groupId, RedisOp.HSET_EXPIRE, pipeline.functions().call(() -> redis.send(fcall)))
+                .map(response -> new CreateUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                .invoke(result -> pipeline.created(groupId, key, result.expirationSet()));
     }
 
     /**
      * Supprime un utilisateur du groupe
+     * Avec le flux de changements ou l'index des emails, HDEL, XADD et mise à jour de l'index passent par la fonction delete_user
+     * (événement ajouté si l'utilisateur existait).
      */
     public Uni<Integer> deleteUser(String groupId, String userId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
 
         /*
           for the imperative way you can use:
            - redisAPI.hdelAndAwait(key, userId);
          */
 
-        return redisAPI.hdel(List.of(key, userId))
-                .map(Response::toInteger);
+        Uni<Response> hdel = pipeline.changeFeed().enabled() || pipeline.emailIndex().enabled()
+                ? pipeline.functions().call(() -> redisAPI.fcall(pipeline.changeFeed().callArgs(GroupFunctions.DELETE_USER, key, groupId, userId, pipeline.emailIndex().indexedGroup(groupId))))
+                : redisAPI.hdel(List.of(key, userId));
+        return pipeline.call(groupId, RedisOp.HDEL, hdel)
+                .map(Response::toInteger)
+                .invoke(() -> pipeline.invalidate(key));
+    }
+
+    /**
+     * Supprime plusieurs utilisateurs et renvoie le nombre d'utilisateurs restants, en un seul appel atomique
+     * (fonction delete_users de la bibliothèque monapp_groups).
+     */
+    public Uni<DeleteUsersResult> deleteUsers(String groupId, List<String> userIds) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+        List<String> args = pipeline.changeFeed().callArgs(GroupFunctions.DELETE_USERS, List.of(key), List.of(groupId),
+                pipeline.emailIndex().deleteUsersArgs(groupId, userIds));
+
+        return pipeline.call(groupId, RedisOp.DELETE_USERS, pipeline.functions().call(() -> redisAPI.fcall(args)))
+                .map(response -> new DeleteUsersResult(response.get(0).toInteger(), response.get(1).toLong()))
+                .invoke(result -> {
+                    if (result.remaining() == 0) {
+                        pipeline.cleared(groupId, key);
+                    } else {
+                        pipeline.invalidate(key);
+                    }
+                });
+    }
+
+    /**
+     * Crée l'utilisateur s'il est absent du groupe (HSETNX) et rafraîchit le TTL du groupe dans tous les cas,
+     * en un seul appel atomique (fonction create_if_absent).
+     */
+    public Uni<CreateUserResult> createUserIfAbsent(String groupId, User user) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key, user.id());
+        Request fcall = Request.newInstance(pipeline.changeFeed().call(GroupFunctions.CREATE_IF_ABSENT, List.of(key), List.of(groupId),
+                List.of(user.id(), "", String.valueOf(pipeline.ttl().ttlSeconds(groupId)),
+                        String.valueOf(pipeline.ttl().refreshThresholdSeconds(groupId)),
+                        pipeline.emailIndex().indexedGroup(groupId), EmailIndex.normalize(user.email())),
+                1, jsonCodec.encodeToBuffer(user)));
+
+        return pipeline.call(groupId, RedisOp.CREATE_IF_ABSENT, pipeline.functions().call(() -> redis.send(fcall)))
+                .map(response -> new CreateUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                .invoke(result -> pipeline.created(groupId, key, result.expirationSet()));
+    }
+
+    /**
+     * Déplace un utilisateur d'un groupe à l'autre et rafraîchit le TTL du groupe cible, en un seul appel atomique
+     * (fonction move_user). En cluster, les deux groupes doivent partager un hash slot.
+     */
+    public Uni<MoveUserResult> moveUser(String fromGroupId, String toGroupId, String userId) {
+        String source = GROUP_USERS_KEY.formatted(fromGroupId);
+        String target = GROUP_USERS_KEY.formatted(toGroupId);
+        pipeline.writing(fromGroupId, source);
+        pipeline.writing(toGroupId, target);
+        List<String> args = pipeline.changeFeed().callArgs(GroupFunctions.MOVE_USER, List.of(source, target), List.of(fromGroupId, toGroupId),
+                List.of(userId, String.valueOf(pipeline.ttl().ttlSeconds(toGroupId)), String.valueOf(pipeline.ttl().refreshThresholdSeconds(toGroupId)),
+                        pipeline.emailIndex().indexedGroup(fromGroupId), pipeline.emailIndex().indexedGroup(toGroupId)));
+
+        // Seul le groupe source est vérifié par pipeline.call
+        return pipeline.unsharded(List.of(toGroupId))
+                .chain(() -> pipeline.call(fromGroupId, RedisOp.MOVE_USER, pipeline.functions().call(() -> redisAPI.fcall(args))))
+                .map(response -> new MoveUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                .invoke(result -> {
+                    if (result.moved()) {
+                        pipeline.ttl().written(toGroupId, result.expirationSet());
+                    }
+                    pipeline.invalidate(source);
+                    pipeline.invalidate(target);
+                });
     }
 
     /**
-     * Récupère un utilisateur spécifique
+     * Récupère un utilisateur spécifique, sur un réplica si le routage des lectures le permet
      */
     public Uni<User> getUser(String groupId, String userId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
 
         /*
          for the imperative way you can use:
           - redisAPI.hgetAndAwait(key, userId);
          */
 
-        return redisAPI.hget(key, userId)
-                .map(response -> {
-                    if (response == null) {
-                        return null;
-                    }
-                    return jsonCodec.decode(response.toString(), User.class);
-                });
+        return pipeline.nearCache().getUser(key, userId, () -> pipeline.flights().user(key, userId, () -> pipeline.call(groupId, RedisOp.HGET, reader(groupId).hget(key, userId))
+                        .map(response -> {
+                            if (response == null) {
+                                return null;
+                            }
+                            return jsonCodec.decode(userId, response);
+                        })));
+    }
+
+    /**
+     * Récupère plusieurs utilisateurs du groupe : un HMGET par lot de {@code chunkSize} ids,
+     * les lots étant envoyés simultanément sur le pool, sous une seule place d'admission du groupe.
+     */
+    public Uni<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        List<List<String>> chunks = MultiGet.chunks(userIds, pipeline.multiGetChunkSize());
+        if (chunks.isEmpty()) {
+            return Uni.createFrom().item(MultiGetResult.empty());
+        }
+
+        List<Uni<List<User>>> unis = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            List<String> args = new ArrayList<>(chunk.size() + 1);
+            args.add(key);
+            args.addAll(chunk);
+            unis.add(pipeline.part(RedisOp.HMGET, redisAPI.hmget(args))
+                    .map(response -> MultiGet.decode(jsonCodec, chunk, response)));
+        }
+
+        return pipeline.fanOut(groupId, Uni.join().all(unis).andFailFast()
+                .map(values -> MultiGet.result(chunks, values)));
     }
 
     /**
-     * Récupère tous les utilisateurs du groupe
+     * Récupère tous les utilisateurs du groupe, sur un réplica si le routage des lectures le permet
      */
     public Uni<Map<String, User>> getAllUsers(String groupId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
 
         /* For the imperative way you can use:
          - redisAPI.hgetallAndAwait(key);
          */
 
-        return redisAPI.hgetall(key)
-                .map(response -> {
-                    Map<String, User> users = new HashMap<>();
+        return pipeline.nearCache().getAllUsers(key, () -> pipeline.flights().group(key, () -> pipeline.call(groupId, RedisOp.HGETALL, reader(groupId).hgetall(key))
+                        .map(response -> {
+                            Map<String, User> users = new HashMap<>();
 
-                    if (response == null) {
-                        return users;
-                    }
+                            if (response == null) {
+                                return users;
+                            }
 
-                    for (String responseKey : response.getKeys()) {
-                        User user = jsonCodec.decode(response.get(responseKey).toString(), User.class);;
-                        users.put(user.id(), user);
-                    }
+                            for (String responseKey : response.getKeys()) {
+                                User user = jsonCodec.decode(responseKey, response.get(responseKey));
+                                users.put(user.id(), user);
+                            }
 
-                    return users;
-                });
+                            pipeline.metrics().recordGroupSize(users.size());
+                            return users;
+                        })));
+    }
+
+    /**
+     * Variante pass-through de getAllUsers : le corps JSON est écrit à partir des valeurs stockées, sans User
+     * intermédiaire ; {@code fields} restreint chaque utilisateur aux champs demandés ({@code null} : tous).
+     * Les User décodés n'existant pas ici, la lecture ne passe ni par le near-cache ni par le single-flight.
+     */
+    public Uni<Buffer> getAllUsersRaw(String groupId, Set<String> fields) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
+
+        return pipeline.call(groupId, RedisOp.HGETALL, reader(groupId).hgetall(key))
+                .map(response -> Buffer.newInstance(jsonCodec.encodeRawGroup(response == null ? null : response.getDelegate(), fields)));
+    }
+
+    /**
+     * Parcourt les utilisateurs du groupe page par page (HSCAN)
+     * Chaque page est émise dès réception : la mémoire consommée ne dépend pas de la taille du groupe.
+     */
+    public Multi<User> streamUsers(String groupId) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        String count = String.valueOf(pipeline.scanCount());
+
+        return Multi.createBy().repeating()
+                .uni(() -> new AtomicReference<>("0"),
+                        cursor -> pipeline.call(groupId, RedisOp.HSCAN, redisAPI.hscan(List.of(key, cursor.get(), "COUNT", count)))
+                                .invoke(response -> cursor.set(response.get(0).toString())))
+                // Le curseur "0" marque la dernière page, qui est tout de même émise
+                .whilst(response -> !"0".equals(response.get(0).toString()))
+                .onItem().transformToIterable(this::decodeScanPage);
     }
 
     /**
-     * Récupère le TTL de la clé du groupe
+     * Une page HSCAN est une liste plate [champ1, valeur1, champ2, valeur2...]
+     */
+    private List<User> decodeScanPage(Response response) {
+        Response page = response.get(1);
+        List<User> users = new ArrayList<>(page.size() / 2);
+
+        for (int i = 1; i < page.size(); i += 2) {
+            users.add(jsonCodec.decode(page.get(i - 1).toString(), page.get(i)));
+        }
+
+        return users;
+    }
+
+    /**
+     * Récupère le TTL de la clé du groupe, sur un réplica si le routage des lectures le permet
      */
     public Uni<Long> getUserTTL(String groupId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
@@ -114,23 +295,84 @@ public class GroupUserManagerRedisAPIMutiny {
             - redisAPI.ttlAndAwait(key);
          */
 
-        return redisAPI.ttl(key)
+        return pipeline.call(groupId, RedisOp.TTL, reader(groupId).ttl(key))
                 .map(Response::toLong);
     }
 
     /**
-     * Supprime tous les utilisateurs du groupe (supprime la clé)
+     * Supprime tous les utilisateurs du groupe (UNLINK : la mémoire est libérée en tâche de fond par Redis)
+     * HLEN, MEMORY USAGE, UNLINK et XADD passent par la fonction delete_group (événement ajouté si le groupe existait).
+     * En mode progressif, les utilisateurs sont d'abord supprimés par lots HSCAN + HDEL (voir GroupDeletion).
      */
-    public Uni<Integer> deleteAllUsers(String groupId) {
+    public Uni<DeleteAllResult> deleteAllUsers(String groupId, boolean progressive) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
 
         /*
          for the imperative way you can use:
-          - redisAPI.delAndAwait(key);
+          - redisAPI.unlinkAndAwait(List.of(key));
          */
 
-        return redisAPI.del(List.of(key))
-                .map(Response::toInteger);
+        return (progressive ? deleteProgressively(groupId, key) : unlink(groupId, key, false))
+                .invoke(() -> pipeline.cleared(groupId, key));
+    }
+
+    /**
+     * Fonction delete_group ; {@code cleared} force l'événement de changement quand les lots ont déjà vidé le groupe.
+     */
+    private Uni<DeleteAllResult> unlink(String groupId, String key, boolean cleared) {
+        return pipeline.call(groupId, RedisOp.UNLINK, pipeline.functions().call(() -> redisAPI.fcall(pipeline.changeFeed().callArgs(GroupFunctions.DELETE_GROUP, key, groupId, cleared ? "1" : "0",
+                pipeline.emailIndex().indexedGroup(groupId)))))
+                .map(GroupDeletion::unlinked);
+    }
+
+    private Uni<DeleteAllResult> deleteProgressively(String groupId, String key) {
+        return pipeline.call(groupId, RedisOp.MEMORY_USAGE, redisAPI.memory(List.of("USAGE", key)))
+                .map(bytes -> new GroupDeletion.Progress(bytes == null ? 0 : bytes.toLong()))
+                .chain(progress -> Multi.createBy().repeating()
+                        .uni(() -> progress, state -> deleteChunk(groupId, key, state))
+                        // Le dernier lot (curseur "0") est tout de même émis
+                        .whilst(removed -> !progress.done())
+                        .collect().last()
+                        .chain(() -> unlink(groupId, key, progress.users() > 0))
+                        .map(progress::result));
+    }
+
+    /**
+     * Un lot de la suppression progressive : HSCAN puis HDEL des champs de la page ; renvoie le nombre supprimé.
+     */
+    private Uni<Long> deleteChunk(String groupId, String key, GroupDeletion.Progress progress) {
+        return pipeline.call(groupId, RedisOp.HSCAN, redisAPI.hscan(List.of(key, progress.cursor(), "COUNT", String.valueOf(pipeline.deleteChunkSize()))))
+                .chain(page -> {
+                    List<String> fields = progress.page(page);
+                    if (fields.isEmpty()) {
+                        return Uni.createFrom().item(0L);
+                    }
+                    List<String> args = new ArrayList<>(fields.size() + 1);
+                    args.add(key);
+                    args.addAll(fields);
+                    return pipeline.call(groupId, RedisOp.HDEL, redisAPI.hdel(args)).map(Response::toLong);
+                })
+                .invoke(progress::deleted);
+    }
+
+    /**
+     * Client des lectures routables : réplicas (client nommé read) ou primaire.
+     */
+    private RedisAPI reader(String groupId) {
+        return pipeline.reader(groupId, redisAPI, readRedisAPI);
+    }
+
+    /**
+     * Expiration glissante sur lecture (monapp.ttl.sliding-on-read) : EXPIRE XX envoyé sans attendre la réponse,
+     * pour ne pas reposer de TTL sur une clé absente. Hors contrôle d'admission (voir GroupPipeline#background).
+     */
+    private void slide(String groupId, String key) {
+        if (pipeline.ttl().slideOnRead(groupId)) {
+            pipeline.background(RedisOp.EXPIRE, redisAPI.expire(List.of(key, String.valueOf(pipeline.ttl().ttlSeconds(groupId)), "XX")))
+                    .subscribe().with(ignored -> {
+                    }, failure -> Log.debugf(failure, "Sliding EXPIRE failed for %s", key));
+        }
     }
 
 }
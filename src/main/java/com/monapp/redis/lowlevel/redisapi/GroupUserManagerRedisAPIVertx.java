@@ -1,109 +1,331 @@
 package com.monapp.redis.lowlevel.redisapi;
 
+import com.monapp.index.EmailIndex;
+import com.monapp.metrics.RedisOp;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.DeleteUsersResult;
+import com.monapp.model.MoveUserResult;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.GroupDeletion;
+import com.monapp.redis.GroupPipeline;
+import com.monapp.redis.GroupPipelines;
+import com.monapp.redis.MultiGet;
 import com.monapp.redis.lowlevel.codec.JsonCodec;
+import com.monapp.redis.script.GroupFunctions;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.client.RedisClientName;
 import io.vertx.codegen.annotations.Nullable;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Redis;
 import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.Request;
 import io.vertx.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @ApplicationScoped
 public class GroupUserManagerRedisAPIVertx {
 
     public static final String GROUP_USERS_KEY = "groups:%s";
-    private static final long DEFAULT_TTL = 36000;
 
     private final RedisAPI redisAPI;
+    private final RedisAPI readRedisAPI;
+    private final Redis redis;
     private final JsonCodec jsonCodec;
+    private final GroupPipeline pipeline;
 
-    public GroupUserManagerRedisAPIVertx(RedisAPI redisAPI, JsonCodec jsonCodec) {
+    /**
+     * {@code redis} : client sous-jacent, pour les FCALL qui portent une valeur binaire (RedisAPI ne prend que des String).
+     */
+    public GroupUserManagerRedisAPIVertx(RedisAPI redisAPI, @RedisClientName("read") RedisAPI readRedisAPI, Redis redis,
+                                         JsonCodec jsonCodec, GroupPipelines pipelines) {
         this.redisAPI = redisAPI;
+        this.redis = redis;
+        this.readRedisAPI = readRedisAPI;
         this.jsonCodec = jsonCodec;
+        this.pipeline = pipelines.forStyle("redisapi-vertx");
     }
 
     /**
      * Crée un utilisateur dans le groupe (hash Redis)
+     * RedisAPI n'offre pas de connexion dédiée pour MULTI/EXEC : HSET et EXPIRE passent par la fonction create_user,
+     * exécutée atomiquement en un seul aller-retour. Elle ne repousse le TTL que si le TTL restant est sous
+     * le seuil de rafraîchissement, ajoute l'événement au flux de changements et met à jour l'index des emails,
+     * s'ils sont activés. La valeur suit {@code monapp.codec.format} : le FCALL part par le client sous-jacent, en octets.
      */
-    public Future<@Nullable Boolean> createUser(String groupId, User user) {
+    public Future<CreateUserResult> createUser(String groupId, User user) {
         String key = GROUP_USERS_KEY.formatted(groupId);
-        String userJson = jsonCodec.encode(user);
+        pipeline.writing(groupId, key, user.id());
 
-        return redisAPI.hset(List.of(key, user.id(), userJson))
-                .andThen(newUser -> redisAPI.expire(List.of(key, String.valueOf(DEFAULT_TTL))))
-                .map(Response::toBoolean);
+        String ttl = String.valueOf(pipeline.ttl().ttlSeconds(groupId));
+        String threshold = String.valueOf(pipeline.ttl().refreshThresholdSeconds(groupId));
+        Request fcall = pipeline.changeFeed().call(GroupFunctions.CREATE_USER, List.of(key), List.of(groupId),
+                List.of(user.id(), "", ttl, threshold, pipeline.emailIndex().indexedGroup(groupId), EmailIndex.normalize(user.email())),
+                1, jsonCodec.encodeToBuffer(user));
+
+        return pipeline.callFuture(groupId, RedisOp.HSET_EXPIRE, () -> pipeline.functions().callFuture(() -> redis.send(fcall)))
+                .map(response -> new CreateUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                .onSuccess(result -> pipeline.created(groupId, key, result.expirationSet()));
     }
 
     /**
      * Supprime un utilisateur du groupe
+     * Avec le flux de changements ou l'index des emails, HDEL, XADD et mise à jour de l'index passent par la fonction delete_user
+     * (événement ajouté si l'utilisateur existait).
      */
     public Future<@Nullable Integer> deleteUser(String groupId, String userId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
 
-        return redisAPI.hdel(List.of(key, userId))
-                .map(Response::toInteger);
+        Supplier<Future<@Nullable Response>> hdel = pipeline.changeFeed().enabled() || pipeline.emailIndex().enabled()
+                ? () -> pipeline.functions().callFuture(() -> redisAPI.fcall(pipeline.changeFeed().callArgs(GroupFunctions.DELETE_USER, key, groupId, userId, pipeline.emailIndex().indexedGroup(groupId))))
+                : () -> redisAPI.hdel(List.of(key, userId));
+        return pipeline.callFuture(groupId, RedisOp.HDEL, hdel)
+                .map(Response::toInteger)
+                .onSuccess(result -> pipeline.invalidate(key));
     }
 
     /**
-     * Récupère un utilisateur spécifique
+     * Supprime plusieurs utilisateurs et renvoie le nombre d'utilisateurs restants, en un seul appel atomique
+     * (fonction delete_users de la bibliothèque monapp_groups).
      */
-    public Future<User> getUser(String groupId, String userId) {
+    public Future<DeleteUsersResult> deleteUsers(String groupId, List<String> userIds) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+        List<String> args = pipeline.changeFeed().callArgs(GroupFunctions.DELETE_USERS, List.of(key), List.of(groupId),
+                pipeline.emailIndex().deleteUsersArgs(groupId, userIds));
 
-        return redisAPI.hget(key, userId)
-                .map(response -> {
-                    if (response == null) {
-                        return null;
+        return pipeline.callFuture(groupId, RedisOp.DELETE_USERS, () -> pipeline.functions().callFuture(() -> redisAPI.fcall(args)))
+                .map(response -> new DeleteUsersResult(response.get(0).toInteger(), response.get(1).toLong()))
+                .onSuccess(result -> {
+                    if (result.remaining() == 0) {
+                        pipeline.cleared(groupId, key);
+                    } else {
+                        pipeline.invalidate(key);
                     }
-                    return jsonCodec.decode(response.toString(), User.class);
                 });
     }
 
     /**
-     * Récupère tous les utilisateurs du groupe
+     * Crée l'utilisateur s'il est absent du groupe (HSETNX) et rafraîchit le TTL du groupe dans tous les cas,
+     * en un seul appel atomique (fonction create_if_absent).
      */
-    public Future<Map<String, User>> getAllUsers(String groupId) {
+    public Future<CreateUserResult> createUserIfAbsent(String groupId, User user) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key, user.id());
+        Request fcall = pipeline.changeFeed().call(GroupFunctions.CREATE_IF_ABSENT, List.of(key), List.of(groupId),
+                List.of(user.id(), "", String.valueOf(pipeline.ttl().ttlSeconds(groupId)),
+                        String.valueOf(pipeline.ttl().refreshThresholdSeconds(groupId)),
+                        pipeline.emailIndex().indexedGroup(groupId), EmailIndex.normalize(user.email())),
+                1, jsonCodec.encodeToBuffer(user));
 
-        return redisAPI.hgetall(key)
-                .map(response -> {
-                    Map<String, User> users = new HashMap<>();
+        return pipeline.callFuture(groupId, RedisOp.CREATE_IF_ABSENT, () -> pipeline.functions().callFuture(() -> redis.send(fcall)))
+                .map(response -> new CreateUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                .onSuccess(result -> pipeline.created(groupId, key, result.expirationSet()));
+    }
 
-                    if (response == null) {
-                        return users;
-                    }
+    /**
+     * Déplace un utilisateur d'un groupe à l'autre et rafraîchit le TTL du groupe cible, en un seul appel atomique
+     * (fonction move_user). En cluster, les deux groupes doivent partager un hash slot.
+     */
+    public Future<MoveUserResult> moveUser(String fromGroupId, String toGroupId, String userId) {
+        String source = GROUP_USERS_KEY.formatted(fromGroupId);
+        String target = GROUP_USERS_KEY.formatted(toGroupId);
+        pipeline.writing(fromGroupId, source);
+        pipeline.writing(toGroupId, target);
+        List<String> args = pipeline.changeFeed().callArgs(GroupFunctions.MOVE_USER, List.of(source, target), List.of(fromGroupId, toGroupId),
+                List.of(userId, String.valueOf(pipeline.ttl().ttlSeconds(toGroupId)), String.valueOf(pipeline.ttl().refreshThresholdSeconds(toGroupId)),
+                        pipeline.emailIndex().indexedGroup(fromGroupId), pipeline.emailIndex().indexedGroup(toGroupId)));
 
-                    for (String responseKey : response.getKeys()) {
-                        User user = jsonCodec.decode(response.get(responseKey).toString(), User.class);;
-                        users.put(user.id(), user);
+        // Seul le groupe source est vérifié par pipeline.callFuture
+        return Future.fromCompletionStage(pipeline.unsharded(List.of(toGroupId)).subscribeAsCompletionStage())
+                .compose(ignored -> pipeline.callFuture(fromGroupId, RedisOp.MOVE_USER, () -> pipeline.functions().callFuture(() -> redisAPI.fcall(args))))
+                .map(response -> new MoveUserResult(response.get(0).toInteger() == 1, response.get(1).toInteger() == 1))
+                .onSuccess(result -> {
+                    if (result.moved()) {
+                        pipeline.ttl().written(toGroupId, result.expirationSet());
                     }
-
-                    return users;
+                    pipeline.invalidate(source);
+                    pipeline.invalidate(target);
                 });
     }
 
     /**
-     * Récupère le TTL de la clé du groupe
+     * Récupère un utilisateur spécifique, sur un réplica si le routage des lectures le permet
+     */
+    public Future<User> getUser(String groupId, String userId) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
+
+        return pipeline.nearCache().getUserFuture(key, userId, () -> pipeline.flights().userFuture(key, userId, () -> pipeline.callFuture(groupId, RedisOp.HGET, () -> reader(groupId).hget(key, userId))
+                        .map(response -> {
+                            if (response == null) {
+                                return null;
+                            }
+                            return jsonCodec.decode(userId, response);
+                        })));
+    }
+
+    /**
+     * Récupère plusieurs utilisateurs du groupe : un HMGET par lot de {@code chunkSize} ids,
+     * les lots étant envoyés simultanément sur le pool, sous une seule place d'admission du groupe.
+     */
+    public Future<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        List<List<String>> chunks = MultiGet.chunks(userIds, pipeline.multiGetChunkSize());
+        if (chunks.isEmpty()) {
+            return Future.succeededFuture(MultiGetResult.empty());
+        }
+
+        return pipeline.fanOutFuture(groupId, () -> {
+            List<Future<List<User>>> futures = new ArrayList<>(chunks.size());
+            for (List<String> chunk : chunks) {
+                List<String> args = new ArrayList<>(chunk.size() + 1);
+                args.add(key);
+                args.addAll(chunk);
+                futures.add(pipeline.partFuture(RedisOp.HMGET, () -> redisAPI.hmget(args))
+                        .map(response -> MultiGet.decode(jsonCodec, chunk, response)));
+            }
+            return Future.all(futures)
+                    .map(composite -> MultiGet.result(chunks, composite.list()));
+        });
+    }
+
+    /**
+     * Récupère tous les utilisateurs du groupe, sur un réplica si le routage des lectures le permet
+     */
+    public Future<Map<String, User>> getAllUsers(String groupId) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
+
+        return pipeline.nearCache().getAllUsersFuture(key, () -> pipeline.flights().groupFuture(key, () -> pipeline.callFuture(groupId, RedisOp.HGETALL, () -> reader(groupId).hgetall(key))
+                        .map(response -> {
+                            Map<String, User> users = new HashMap<>();
+
+                            if (response == null) {
+                                return users;
+                            }
+
+                            for (String responseKey : response.getKeys()) {
+                                User user = jsonCodec.decode(responseKey, response.get(responseKey));
+                                users.put(user.id(), user);
+                            }
+
+                            pipeline.metrics().recordGroupSize(users.size());
+                            return users;
+                        })));
+    }
+
+    /**
+     * Variante pass-through de getAllUsers : le corps JSON est écrit à partir des valeurs stockées, sans User
+     * intermédiaire ; {@code fields} restreint chaque utilisateur aux champs demandés ({@code null} : tous).
+     * Les User décodés n'existant pas ici, la lecture ne passe ni par le near-cache ni par le single-flight.
+     */
+    public Future<Buffer> getAllUsersRaw(String groupId, Set<String> fields) {
+        String key = GROUP_USERS_KEY.formatted(groupId);
+        slide(groupId, key);
+
+        return pipeline.callFuture(groupId, RedisOp.HGETALL, () -> reader(groupId).hgetall(key))
+                .map(response -> jsonCodec.encodeRawGroup(response, fields));
+    }
+
+    /**
+     * Récupère le TTL de la clé du groupe, sur un réplica si le routage des lectures le permet
      */
     public Future<@Nullable Long> getUserTTL(String groupId) {
         String key = GROUP_USERS_KEY.formatted(groupId);
 
-        return redisAPI.ttl(key)
+        return pipeline.callFuture(groupId, RedisOp.TTL, () -> reader(groupId).ttl(key))
                 .map(Response::toLong);
     }
 
     /**
-     * Supprime tous les utilisateurs du groupe (supprime la clé)
+     * Supprime tous les utilisateurs du groupe (UNLINK : la mémoire est libérée en tâche de fond par Redis)
+     * HLEN, MEMORY USAGE, UNLINK et XADD passent par la fonction delete_group (événement ajouté si le groupe existait).
+     * En mode progressif, les utilisateurs sont d'abord supprimés par lots HSCAN + HDEL (voir GroupDeletion).
      */
-    public Future<@Nullable Integer> deleteAllUsers(String groupId) {
+    public Future<DeleteAllResult> deleteAllUsers(String groupId, boolean progressive) {
         String key = GROUP_USERS_KEY.formatted(groupId);
+        pipeline.writing(groupId, key);
+
+        return (progressive ? deleteProgressively(groupId, key) : unlink(groupId, key, false))
+                .onSuccess(result -> pipeline.cleared(groupId, key));
+    }
+
+    /**
+     * Fonction delete_group ; {@code cleared} force l'événement de changement quand les lots ont déjà vidé le groupe.
+     */
+    private Future<DeleteAllResult> unlink(String groupId, String key, boolean cleared) {
+        return pipeline.callFuture(groupId, RedisOp.UNLINK, () -> pipeline.functions().callFuture(() -> redisAPI.fcall(pipeline.changeFeed().callArgs(GroupFunctions.DELETE_GROUP, key, groupId, cleared ? "1" : "0",
+                pipeline.emailIndex().indexedGroup(groupId)))))
+                .map(GroupDeletion::unlinked);
+    }
 
-        return redisAPI.del(List.of(key))
-                .map(Response::toInteger);
+    private Future<DeleteAllResult> deleteProgressively(String groupId, String key) {
+        return pipeline.callFuture(groupId, RedisOp.MEMORY_USAGE, () -> redisAPI.memory(List.of("USAGE", key)))
+                .compose(bytes -> {
+                    GroupDeletion.Progress progress = new GroupDeletion.Progress(bytes == null ? 0 : bytes.toLong());
+                    Promise<Void> scanned = Promise.promise();
+                    deleteChunk(groupId, key, progress, scanned);
+                    return scanned.future()
+                            .compose(ignored -> unlink(groupId, key, progress.users() > 0))
+                            .map(progress::result);
+                });
+    }
+
+    /**
+     * Un lot de la suppression progressive : HSCAN puis HDEL des champs de la page ; le lot suivant part
+     * à la fin de celui-ci (pas de chaîne de Future qui grandirait avec le groupe).
+     */
+    private void deleteChunk(String groupId, String key, GroupDeletion.Progress progress, Promise<Void> scanned) {
+        pipeline.callFuture(groupId, RedisOp.HSCAN, () -> redisAPI.hscan(List.of(key, progress.cursor(), "COUNT", String.valueOf(pipeline.deleteChunkSize()))))
+                .compose(page -> {
+                    List<String> fields = progress.page(page);
+                    if (fields.isEmpty()) {
+                        return Future.succeededFuture(0L);
+                    }
+                    List<String> args = new ArrayList<>(fields.size() + 1);
+                    args.add(key);
+                    args.addAll(fields);
+                    return pipeline.callFuture(groupId, RedisOp.HDEL, () -> redisAPI.hdel(args)).map(Response::toLong);
+                })
+                .onSuccess(removed -> {
+                    progress.deleted(removed);
+                    if (progress.done()) {
+                        scanned.complete();
+                    } else {
+                        deleteChunk(groupId, key, progress, scanned);
+                    }
+                })
+                .onFailure(scanned::fail);
+    }
+
+    /**
+     * Client des lectures routables : réplicas (client nommé read) ou primaire.
+     */
+    private RedisAPI reader(String groupId) {
+        return pipeline.reader(groupId, redisAPI, readRedisAPI);
+    }
+
+    /**
+     * Expiration glissante sur lecture (monapp.ttl.sliding-on-read) : EXPIRE XX envoyé sans attendre la réponse,
+     * pour ne pas reposer de TTL sur une clé absente. Hors contrôle d'admission (voir GroupPipeline#background).
+     */
+    private void slide(String groupId, String key) {
+        if (pipeline.ttl().slideOnRead(groupId)) {
+            pipeline.backgroundFuture(RedisOp.EXPIRE, () -> redisAPI.expire(List.of(key, String.valueOf(pipeline.ttl().ttlSeconds(groupId)), "XX")))
+                    .onFailure(failure -> Log.debugf(failure, "Sliding EXPIRE failed for %s", key));
+        }
     }
 
 }
@@ -0,0 +1,163 @@
+package com.monapp.redis.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.monapp.config.ReadRoutingConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Choix du client Redis pour les lectures de groupe : primaire ou réplicas (client nommé {@code read}).
+ * <p>
+ * Les écritures restent toujours sur le client par défaut, donc sur les primaires. Une lecture part sur les réplicas
+ * si le routage est activé, si le dernier retard de réplication mesuré ne dépasse pas {@code max-staleness},
+ * et si ce nœud n'a pas écrit le groupe depuis moins de {@code max-staleness} (lecture de ses propres écritures).
+ * <p>
+ * Le retard est lu dans {@code INFO replication} du nœud qui répond au client par défaut : le primaire en
+ * topologie standalone, réplication ou sentinel. Tant qu'aucune mesure n'a réussi, ou si un réplica n'est pas
+ * {@code online}, les lectures restent sur les primaires.
+ * <p>
+ * En cluster, ce nœud n'est qu'un primaire parmi d'autres et son retard ne dit rien des autres shards : le routage
+ * est alors refusé ({@code cluster_enabled:1} dans {@code INFO cluster}) et les lectures restent sur les primaires.
+ */
+@ApplicationScoped
+public class ReadRouting {
+
+    private final Redis redis;
+    private final ReadRoutingConfig config;
+    private final long maxLagSeconds;
+
+    /**
+     * Groupes écrits par ce nœud depuis moins de {@code max-staleness}.
+     */
+    private final Cache<String, Boolean> recentWrites;
+
+    private volatile boolean replicasUsable;
+    private volatile boolean clusterWarned;
+    private volatile long replicaLagSeconds = -1;
+
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    public ReadRouting(Redis redis, ReadRoutingConfig config, MeterRegistry registry) {
+        this.redis = redis;
+        this.config = config;
+        this.maxLagSeconds = config.maxStaleness().toSeconds();
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(config.trackedGroups())
+                .expireAfterWrite(config.maxStaleness())
+                .build();
+
+        this.replicaReads = Counter.builder("read_routing.reads")
+                .description("Group reads by target node")
+                .tag("target", "replica")
+                .register(registry);
+        this.primaryReads = Counter.builder("read_routing.reads")
+                .description("Group reads by target node")
+                .tag("target", "primary")
+                .register(registry);
+        Gauge.builder("read_routing.replica_lag", this, routing -> routing.replicaLagSeconds)
+                .description("Highest replication lag reported by INFO replication, -1 when unknown")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    /**
+     * Client à utiliser pour lire le groupe : {@code replica} si les réplicas sont assez à jour, {@code primary} sinon.
+     */
+    public <T> T select(String groupId, T primary, T replica) {
+        if (!config.enabled()) {
+            return primary;
+        }
+        if (replicasUsable && recentWrites.getIfPresent(groupId) == null) {
+            replicaReads.increment();
+            return replica;
+        }
+        primaryReads.increment();
+        return primary;
+    }
+
+    /**
+     * Le groupe vient d'être écrit par ce nœud : ses lectures restent sur le primaire pendant {@code max-staleness}.
+     */
+    public void written(String groupId) {
+        if (config.enabled()) {
+            recentWrites.put(groupId, Boolean.TRUE);
+        }
+    }
+
+    @Scheduled(identity = "replica-lag-check", every = "${monapp.read-routing.lag-check-interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public Uni<Void> checkLag() {
+        if (!config.enabled()) {
+            return Uni.createFrom().voidItem();
+        }
+        return redis.send(Request.cmd(Command.INFO).arg("replication").arg("cluster"))
+                .invoke(response -> update(ReplicationInfo.parse(response.toString())))
+                .onFailure().invoke(failure -> {
+                    Log.debugf(failure, "Replica lag check failed, reads stay on primaries");
+                    replicasUsable = false;
+                    replicaLagSeconds = -1;
+                })
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    private void update(ReplicationInfo info) {
+        if (info.cluster() && !clusterWarned) {
+            clusterWarned = true;
+            Log.warn("monapp.read-routing is not supported on a Redis cluster (the lag of other shards is unknown), reads stay on primaries");
+        }
+        boolean usable = !info.cluster() && info.replicas() > 0 && info.allOnline() && info.maxLagSeconds() <= maxLagSeconds;
+        if (usable != replicasUsable) {
+            Log.infof("Group reads routed to %s (replicas: %d, lag: %ds)",
+                    usable ? "replicas" : "primaries", info.replicas(), info.maxLagSeconds());
+        }
+        replicaLagSeconds = info.maxLagSeconds();
+        replicasUsable = usable;
+    }
+
+    /**
+     * Extrait des sections {@code replication} et {@code cluster} d'INFO, vues du primaire :
+     * {@code slave0:ip=...,port=6380,state=online,offset=1234,lag=0} et {@code cluster_enabled:0}.
+     */
+    record ReplicationInfo(int replicas, boolean allOnline, long maxLagSeconds, boolean cluster) {
+
+        static ReplicationInfo parse(String info) {
+            int replicas = 0;
+            boolean allOnline = true;
+            long maxLag = -1;
+            boolean cluster = false;
+            for (String line : info.split("\r?\n")) {
+                if (line.startsWith("cluster_enabled:")) {
+                    cluster = line.endsWith(":1");
+                    continue;
+                }
+                if (!line.startsWith("slave") || line.indexOf(':') < 0 || !Character.isDigit(line.charAt(5))) {
+                    continue;
+                }
+                replicas++;
+                String state = null;
+                long lag = Long.MAX_VALUE;
+                for (String field : line.substring(line.indexOf(':') + 1).split(",")) {
+                    if (field.startsWith("state=")) {
+                        state = field.substring(6);
+                    } else if (field.startsWith("lag=")) {
+                        lag = Long.parseLong(field.substring(4));
+                    }
+                }
+                allOnline &= "online".equals(state);
+                maxLag = Math.max(maxLag, lag);
+            }
+            return new ReplicationInfo(replicas, allOnline, maxLag, cluster);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.monapp.redis.script;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Future;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * Bibliothèque de fonctions Redis {@code monapp_groups} ({@code redis/groups.lua}, Redis 7+).
+ * <p>
+ * Chargée au démarrage par FUNCTION LOAD REPLACE : le serveur la conserve (persistance, réplication), les appels
+ * n'envoient ensuite que le nom de la fonction (FCALL). Si la bibliothèque manque au moment d'un appel (FUNCTION
+ * FLUSH, serveur redémarré sans persistance, nœud de cluster non chargé), elle est rechargée puis l'appel est rejoué
+ * une fois. En cluster, le chargement au démarrage n'atteint qu'un nœud : les autres sont chargés à leur premier
+ * appel manqué.
+ * <p>
+ * Dans un MULTI/EXEC ou un pipeline, l'échec d'un FCALL n'annule pas les autres commandes : seule sa réponse est en
+ * erreur, sans rechargement ni nouvel essai. Seule la mise à jour de l'index des emails y passe par FCALL
+ * (voir EmailIndex), rattrapée au besoin par EmailIndexRebuildJob.
+ */
+@ApplicationScoped
+public class GroupFunctions {
+
+    public static final String LIBRARY = "monapp_groups";
+    public static final String CREATE_USER = "create_user";
+    public static final String DELETE_USER = "delete_user";
+    public static final String DELETE_GROUP = "delete_group";
+    public static final String INDEX_EMAILS = "index_emails";
+    public static final String DELETE_USERS = "delete_users";
+    public static final String CREATE_IF_ABSENT = "create_if_absent";
+    public static final String MOVE_USER = "move_user";
+    public static final String LOOKUP_EMAIL = "lookup_email";
+
+    private static final String SOURCE = "redis/groups.lua";
+
+    private final Redis redis;
+    private final String code;
+
+    public GroupFunctions(Redis redis) {
+        this.redis = redis;
+        this.code = readSource();
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        load().subscribe().with(
+                ignored -> Log.infof("Redis function library %s loaded", LIBRARY),
+                failure -> Log.warnf(failure, "Could not load Redis function library %s, retrying on first call", LIBRARY));
+    }
+
+    /**
+     * FUNCTION LOAD REPLACE : remplace une version précédente de la bibliothèque.
+     */
+    public Uni<Void> load() {
+        return redis.send(Request.cmd(Command.FUNCTION).arg("LOAD").arg("REPLACE").arg(code)).replaceWithVoid();
+    }
+
+    /**
+     * Exécute {@code fcall}, et le rejoue une fois après rechargement si la fonction est inconnue du serveur.
+     */
+    public <T> Uni<T> call(Supplier<Uni<T>> fcall) {
+        return fcall.get()
+                .onFailure(GroupFunctions::notLoaded).recoverWithUni(() -> load().chain(fcall));
+    }
+
+    public <T> Future<T> callFuture(Supplier<Future<T>> fcall) {
+        return fcall.get()
+                .recover(failure -> notLoaded(failure)
+                        ? Future.fromCompletionStage(load().subscribeAsCompletionStage()).compose(ignored -> fcall.get())
+                        : Future.failedFuture(failure));
+    }
+
+    /**
+     * Variante bloquante, pour le DataSource impératif.
+     */
+    public <T> T callBlocking(Supplier<T> fcall) {
+        try {
+            return fcall.get();
+        } catch (RuntimeException e) {
+            if (!notLoaded(e)) {
+                throw e;
+            }
+            load().await().indefinitely();
+            return fcall.get();
+        }
+    }
+
+    private static boolean notLoaded(Throwable failure) {
+        return failure.getMessage() != null && failure.getMessage().contains("Function not found");
+    }
+
+    private static String readSource() {
+        try (InputStream in = GroupFunctions.class.getClassLoader().getResourceAsStream(SOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing Redis function library " + SOURCE);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.monapp.redis.script;
+
+/**
+ * Scripts Lua ponctuels, envoyés par EVAL. Les écritures des managers passent par la bibliothèque de fonctions
+ * {@code monapp_groups} (voir GroupFunctions), qui n'envoie pas le corps du script à chaque appel.
+ */
+public final class GroupScripts {
+
+    /**
+     * Critère commun aux scripts de purge : {@code stale(key)} vaut {@code nil} si la clé n'existe pas, sinon
+     * {@code true} si elle est sans TTL et inactive depuis le délai de grâce (purge des groupes sans TTL activée), ou
+     * inactive depuis plus que l'inactivité maximale. TTL et OBJECT IDLETIME ne touchent pas la clé.
+     * ARGV[1] = "1" pour purger les groupes sans TTL, ARGV[2] = inactivité maximale en secondes (0 = ignorée),
+     * ARGV[3] = délai de grâce d'un groupe sans TTL, en secondes.
+     */
+    private static final String STALE = """
+            local maxIdle = tonumber(ARGV[2])
+            local grace = tonumber(ARGV[3])
+            local function stale(key)
+                local ttl = redis.call('TTL', key)
+                if ttl == -2 then
+                    return nil
+                end
+                local idle = nil
+                if ttl == -1 and ARGV[1] == '1' then
+                    idle = redis.call('OBJECT', 'IDLETIME', key)
+                    if idle > grace then
+                        return true
+                    end
+                end
+                if maxIdle > 0 then
+                    idle = idle or redis.call('OBJECT', 'IDLETIME', key)
+                    return idle > maxIdle
+                end
+                return false
+            end
+            """;
+
+    /**
+     * Supprime (UNLINK) parmi KEYS les groupes sans TTL ou inactifs depuis trop longtemps (un hash vide n'existe
+     * pas dans Redis : il n'y a pas de groupe vide à purger). Les critères ({@link #STALE}) sont réévalués côté
+     * serveur pour ne pas supprimer un groupe modifié entre SCAN et purge. Un groupe sans TTL n'est supprimé
+     * qu'inactif depuis le délai de grâce : un HSET dont l'EXPIRE n'est pas encore passé (pipeline, écriture
+     * différée) ne le rend pas purgeable. Avec ARGV[4] = "1", le dernier élément de KEYS est le hash des découpages
+     * (voir GroupSharding) : un groupe qui y figure est découpé, et n'est purgé que d'un seul tenant
+     * ({@link #PURGE_STALE_SHARDED_GROUP}). Retourne les clés supprimées.
+     */
+    public static final String PURGE_STALE_GROUPS = STALE + """
+            local purged = {}
+            local last = #KEYS
+            local layouts = nil
+            if ARGV[4] == '1' then
+                layouts = KEYS[last]
+                last = last - 1
+            end
+            for i = 1, last do
+                local key = KEYS[i]
+                local sharded = layouts and redis.call('HEXISTS', layouts, string.sub(key, 8)) == 1
+                if not sharded and stale(key) and redis.call('UNLINK', key) == 1 then
+                    table.insert(purged, key)
+                end
+            end
+            return purged
+            """;
+
+    /**
+     * Purge d'un groupe découpé en sous-hashes (voir GroupSharding), d'un seul tenant : KEYS = ses sous-hashes puis le
+     * hash des découpages, ARGV[1..3] comme {@link #PURGE_STALE_GROUPS}, ARGV[4] = id du groupe. Le groupe n'est
+     * supprimé (tous ses sous-hashes, et son découpage) que si chaque sous-hash existant est à purger : un seul
+     * sous-hash actif le garde entier. Retourne le nombre de sous-hashes supprimés.
+     */
+    public static final String PURGE_STALE_SHARDED_GROUP = STALE + """
+            local found = false
+            for i = 1, #KEYS - 1 do
+                local s = stale(KEYS[i])
+                if s == false then
+                    return 0
+                end
+                found = found or s
+            end
+            if not found then
+                return 0
+            end
+            local purged = 0
+            for i = 1, #KEYS - 1 do
+                purged = purged + redis.call('UNLINK', KEYS[i])
+            end
+            redis.call('HDEL', KEYS[#KEYS], ARGV[4])
+            return purged
+            """;
+
+    /**
+     * Annule la copie d'un utilisateur vers son nouveau sous-hash pendant un resharding, si la valeur copiée
+     * n'a pas été remplacée entre-temps (voir GroupSharding).
+     * KEYS[1] = sous-hash cible, ARGV[1] = id utilisateur, ARGV[2] = valeur copiée. Retourne le résultat de HDEL.
+     */
+    public static final String UNDO_SHARD_MOVE = """
+            if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then
+                return redis.call('HDEL', KEYS[1], ARGV[1])
+            end
+            return 0
+            """;
+
+    private GroupScripts() {
+    }
+}
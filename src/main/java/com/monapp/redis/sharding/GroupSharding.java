@@ -0,0 +1,308 @@
+package com.monapp.redis.sharding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.monapp.config.GroupShardingConfig;
+import com.monapp.error.ConflictException;
+import com.monapp.error.InvalidRequestException;
+import com.monapp.model.ReshardResult;
+import com.monapp.redis.script.GroupScripts;
+import com.monapp.redis.ttl.TtlPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.ScanArgs;
+import io.quarkus.redis.datasource.hash.ReactiveHashCommands;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Découpage des très gros groupes en sous-hashes ({@link ShardLayout}), et resharding en ligne.
+ * <p>
+ * Le découpage de chaque groupe découpé est enregistré dans le hash {@code group-shards} (absent : un seul hash)
+ * et gardé en mémoire {@code layout-cache-ttl} par chaque nœud. Un resharding :
+ * <ol>
+ *     <li>annonce le découpage visé ({@code "<count>><target>"}) : les écritures et les lectures le prennent en compte
+ *     au plus tard après {@code layout-cache-ttl} ;</li>
+ *     <li>attend {@code migration-delay}, puis parcourt (HSCAN) chaque ancien sous-hash et y déplace les utilisateurs
+ *     dont le sous-hash change : HSETNX dans la cible (une écriture plus récente n'est pas écrasée), puis HDEL de la
+ *     source ; si l'utilisateur a quitté la source entre-temps (suppression concurrente), la copie est annulée ;</li>
+ *     <li>enregistre le nouveau découpage.</li>
+ * </ol>
+ * Chaque commande ne touche qu'une clé : le resharding fonctionne aussi en cluster, où les sous-hashes d'un groupe
+ * se répartissent entre les nœuds. Un seul resharding par groupe et par nœud ; un resharding interrompu
+ * (arrêt du nœud) est repris par le suivant.
+ */
+@ApplicationScoped
+public class GroupSharding {
+
+    /**
+     * Hash des découpages : champ = id du groupe, valeur = {@code "<count>"} ou {@code "<count>><target>"}.
+     */
+    public static final String LAYOUT_KEY = "group-shards";
+
+    private static final Uni<ShardLayout> SINGLE = Uni.createFrom().item(ShardLayout.SINGLE);
+
+    private final ReactiveRedisDataSource ds;
+    private final ReactiveHashCommands<String, String, byte[]> rawHash;
+    private final GroupShardingConfig config;
+    private final TtlPolicy ttlPolicy;
+    private final Cache<String, ShardLayout> layouts;
+    private final Set<String> resharding = ConcurrentHashMap.newKeySet();
+
+    private final Counter moved;
+    private final Counter completed;
+    private final Counter failed;
+
+    public GroupSharding(ReactiveRedisDataSource ds, GroupShardingConfig config, TtlPolicy ttlPolicy,
+                         MeterRegistry registry) {
+        this.ds = ds;
+        this.rawHash = ds.hash(String.class, String.class, byte[].class);
+        this.config = config;
+        this.ttlPolicy = ttlPolicy;
+        this.layouts = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(config.layoutCacheTtl())
+                .build();
+
+        this.moved = Counter.builder("group_sharding.moved")
+                .description("Users moved to another sub-hash by resharding")
+                .register(registry);
+        this.completed = Counter.builder("group_sharding.reshards")
+                .description("Group reshardings")
+                .tag("result", "completed")
+                .register(registry);
+        this.failed = Counter.builder("group_sharding.reshards")
+                .description("Group reshardings")
+                .tag("result", "failed")
+                .register(registry);
+        Gauge.builder("group_sharding.in_progress", resharding, Set::size)
+                .description("Group reshardings running on this node")
+                .register(registry);
+    }
+
+    public boolean enabled() {
+        return config.enabled();
+    }
+
+    /**
+     * Découpage du groupe, depuis la mémoire si lu il y a moins de {@code layout-cache-ttl}.
+     */
+    public Uni<ShardLayout> layout(String groupId) {
+        if (!config.enabled()) {
+            return SINGLE;
+        }
+        ShardLayout cached = layouts.getIfPresent(groupId);
+        if (cached != null) {
+            return Uni.createFrom().item(cached);
+        }
+        return readLayout(groupId).invoke(layout -> layouts.put(groupId, layout));
+    }
+
+    /**
+     * Découpage enregistré dans {@code group-shards}, sans passer par la mémoire : pour la purge, qui supprime le
+     * groupe d'après ses sous-hashes.
+     */
+    public Uni<ShardLayout> storedLayout(String groupId) {
+        return config.enabled() ? readLayout(groupId) : SINGLE;
+    }
+
+    /**
+     * Découpage supprimé hors de GroupSharding (purge) : relu à la prochaine opération sur ce nœud.
+     */
+    public void forget(String groupId) {
+        layouts.invalidate(groupId);
+    }
+
+    /**
+     * Nombre de sous-hashes adapté à un groupe de {@code size} utilisateurs.
+     */
+    public int shardsFor(long size) {
+        int maxShards = Integer.highestOneBit(Math.max(1, config.maxShards()));
+        long needed = Math.min(maxShards, Math.max(1, (size + config.shardSize() - 1) / config.shardSize()));
+        return needed == 1 ? 1 : Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    /**
+     * Taille observée par une lecture complète du groupe : lance en tâche de fond le resharding
+     * si le découpage ne convient plus (monapp.group-sharding.auto-reshard).
+     */
+    public void observed(String groupId, long size, ShardLayout layout) {
+        if (!config.enabled() || !config.autoReshard() || layout.migrating() || resharding.contains(groupId)) {
+            return;
+        }
+        int shards = shardsFor(size);
+        if (shards > layout.count() || shards * 2 < layout.count()) {
+            reshard(groupId, shards).subscribe().with(
+                    result -> Log.infof("Group %s resharded from %d to %d sub-hashes, %d users moved",
+                            groupId, result.fromShards(), result.toShards(), result.moved()),
+                    failure -> Log.warnf(failure, "Resharding of group %s failed", groupId));
+        }
+    }
+
+    /**
+     * Resharde le groupe vers {@code shards} sous-hashes (puissance de deux), ou vers le nombre adapté à sa taille
+     * si {@code null} ; reprend un resharding interrompu s'il y en a un.
+     */
+    public Uni<ReshardResult> reshard(String groupId, Integer shards) {
+        if (!config.enabled()) {
+            return Uni.createFrom().failure(new ConflictException("Group sharding is disabled"));
+        }
+        if (shards != null && (shards < 1 || shards > config.maxShards() || Integer.bitCount(shards) != 1)) {
+            return Uni.createFrom().failure(new InvalidRequestException(
+                    "Shard count must be a power of two between 1 and " + config.maxShards()));
+        }
+        if (!resharding.add(groupId)) {
+            return Uni.createFrom().failure(new ConflictException("Group " + groupId + " is already being resharded"));
+        }
+        return readLayout(groupId)
+                .chain(layout -> layout.migrating() ? Uni.createFrom().item(layout) : announce(groupId, layout, shards))
+                .chain(layout -> layout.migrating()
+                        ? migrate(groupId, layout)
+                        : Uni.createFrom().item(new ReshardResult(groupId, layout.count(), layout.count(), 0)))
+                .invoke(result -> completed.increment())
+                .onFailure().invoke(failure -> failed.increment())
+                .eventually(() -> resharding.remove(groupId));
+    }
+
+    private Uni<ShardLayout> readLayout(String groupId) {
+        return ds.execute(Command.HGET, LAYOUT_KEY, groupId)
+                .map(response -> response == null ? ShardLayout.SINGLE : ShardLayout.parse(response.toString()));
+    }
+
+    private Uni<Void> writeLayout(String groupId, ShardLayout layout) {
+        Uni<Response> write = layout.equals(ShardLayout.SINGLE)
+                ? ds.execute(Command.HDEL, LAYOUT_KEY, groupId)
+                : ds.execute(Command.HSET, LAYOUT_KEY, groupId, layout.format());
+        return write.invoke(() -> layouts.invalidate(groupId)).replaceWithVoid();
+    }
+
+    /**
+     * Étape 1 : choisit le découpage visé et l'annonce ; renvoie le découpage inchangé si le groupe n'en a pas besoin.
+     */
+    private Uni<ShardLayout> announce(String groupId, ShardLayout layout, Integer shards) {
+        Uni<Integer> target = shards != null ? Uni.createFrom().item(shards) : size(groupId, layout).map(this::shardsFor);
+        return target.chain(count -> {
+            if (count == layout.count()) {
+                return Uni.createFrom().item(layout);
+            }
+            ShardLayout migrating = new ShardLayout(layout.count(), count);
+            return writeLayout(groupId, migrating).replaceWith(migrating);
+        });
+    }
+
+    private Uni<Long> size(String groupId, ShardLayout layout) {
+        List<Uni<Long>> sizes = new ArrayList<>();
+        for (String key : layout.keys(groupId)) {
+            sizes.add(ds.execute(Command.HLEN, key).map(Response::toLong));
+        }
+        return Uni.join().all(sizes).andFailFast()
+                .map(lengths -> lengths.stream().mapToLong(Long::longValue).sum());
+    }
+
+    /**
+     * Étapes 2 et 3 : migre chaque ancien sous-hash, un à la fois, puis enregistre le nouveau découpage.
+     */
+    private Uni<ReshardResult> migrate(String groupId, ShardLayout layout) {
+        return Uni.createFrom().voidItem()
+                .onItem().delayIt().by(config.migrationDelay())
+                .onItem().transformToMulti(ignored -> Multi.createFrom().iterable(ShardLayout.keys(groupId, layout.count())))
+                .onItem().transformToUniAndConcatenate(source -> migrateKey(groupId, source, layout))
+                .collect().with(Collectors.summingLong(Long::longValue))
+                .call(() -> writeLayout(groupId, new ShardLayout(layout.target(), layout.target())))
+                .map(count -> new ReshardResult(groupId, layout.count(), layout.target(), count));
+    }
+
+    private Uni<Long> migrateKey(String groupId, String source, ShardLayout layout) {
+        return rawHash.hscan(source, new ScanArgs().count(config.migrationScanCount()))
+                .toMulti()
+                .group().intoLists().of(config.migrationScanCount())
+                .onItem().transformToUniAndConcatenate(page -> movePage(groupId, source, layout, page))
+                .collect().with(Collectors.summingLong(Long::longValue));
+    }
+
+    /**
+     * Déplace les utilisateurs d'une page HSCAN qui changent de sous-hash. Trois allers-retours, chaque pipeline
+     * ne visant qu'une clé : HSETNX (+ EXPIRE NX) par cible, HDEL dans la source, puis annulation des copies
+     * dont l'utilisateur a été supprimé de la source entre-temps.
+     */
+    private Uni<Long> movePage(String groupId, String source, ShardLayout layout, List<Map.Entry<String, byte[]>> page) {
+        Map<String, List<Move>> byTarget = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : page) {
+            String target = layout.writeKey(groupId, entry.getKey());
+            if (!target.equals(source)) {
+                byTarget.computeIfAbsent(target, key -> new ArrayList<>())
+                        .add(new Move(target, entry.getKey(), Buffer.buffer(entry.getValue())));
+            }
+        }
+        if (byTarget.isEmpty()) {
+            return Uni.createFrom().item(0L);
+        }
+
+        List<Move> moves = new ArrayList<>();
+        List<Uni<Void>> copies = new ArrayList<>(byTarget.size());
+        byTarget.forEach((target, targetMoves) -> {
+            moves.addAll(targetMoves);
+            List<Request> requests = new ArrayList<>(targetMoves.size() + 1);
+            for (Move move : targetMoves) {
+                requests.add(Request.cmd(Command.HSETNX).arg(target).arg(move.userId).arg(move.value));
+            }
+            requests.add(Request.cmd(Command.EXPIRE).arg(target).arg(ttlPolicy.ttlSeconds(groupId)).arg("NX"));
+            copies.add(ds.getRedis().batch(requests).invoke(responses -> {
+                for (int i = 0; i < targetMoves.size(); i++) {
+                    targetMoves.get(i).copied = responses.get(i).toInteger() == 1;
+                }
+            }).replaceWithVoid());
+        });
+
+        return Uni.join().all(copies).andFailFast()
+                .chain(() -> {
+                    List<Request> deletes = new ArrayList<>(moves.size());
+                    for (Move move : moves) {
+                        deletes.add(Request.cmd(Command.HDEL).arg(source).arg(move.userId));
+                    }
+                    return ds.getRedis().batch(deletes);
+                })
+                .chain(responses -> {
+                    List<Uni<Response>> undos = new ArrayList<>();
+                    for (int i = 0; i < moves.size(); i++) {
+                        Move move = moves.get(i);
+                        if (move.copied && responses.get(i).toInteger() == 0) {
+                            undos.add(ds.getRedis().send(Request.cmd(Command.EVAL).arg(GroupScripts.UNDO_SHARD_MOVE)
+                                    .arg(1).arg(move.target).arg(move.userId).arg(move.value)));
+                        }
+                    }
+                    return undos.isEmpty() ? Uni.createFrom().voidItem() : Uni.join().all(undos).andFailFast().replaceWithVoid();
+                })
+                .map(ignored -> (long) moves.size())
+                .invoke(count -> moved.increment(count));
+    }
+
+    private static final class Move {
+        private final String target;
+        private final String userId;
+        private final Buffer value;
+        private boolean copied;
+
+        private Move(String target, String userId, Buffer value) {
+            this.target = target;
+            this.userId = userId;
+            this.value = value;
+        }
+    }
+}
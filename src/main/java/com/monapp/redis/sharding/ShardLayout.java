@@ -0,0 +1,120 @@
+package com.monapp.redis.sharding;
+
+import com.monapp.error.InvalidRequestException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Découpage d'un groupe : {@code count} sous-hashes, et pendant un resharding le découpage visé {@code target}.
+ * <p>
+ * Un groupe à un seul sous-hash garde la clé {@code groups:<groupId>} ; au-delà, le sous-hash {@code i} est
+ * {@code groups:<groupId>#<i>} et un utilisateur va dans le sous-hash {@code hash(userId) mod count}. Le séparateur
+ * {@code #} est refusé dans les ids de groupe écrits (voir {@link #validateGroupId}) : une clé désigne ainsi sans
+ * ambiguïté un groupe ou le sous-hash d'un groupe, ce que {@code :} ne permettait pas ({@code groups:a:1}). Les nombres
+ * de sous-hashes étant des puissances de deux, doubler le découpage ne déplace que la moitié des utilisateurs.
+ * <p>
+ * Pendant un resharding, les écritures vont dans le découpage visé ; une lecture y cherche d'abord l'utilisateur,
+ * puis dans l'ancien découpage s'il n'a pas encore été migré.
+ */
+public record ShardLayout(int count, int target) {
+
+    public static final ShardLayout SINGLE = new ShardLayout(1, 1);
+
+    public static final String GROUP_KEY = "groups:%s";
+    public static final char SHARD_SEPARATOR = '#';
+    private static final String GROUP_PREFIX = "groups:";
+    private static final String SHARD_KEY = GROUP_KEY + SHARD_SEPARATOR + "%d";
+
+    public static String key(String groupId, int index, int count) {
+        return count == 1 ? GROUP_KEY.formatted(groupId) : SHARD_KEY.formatted(groupId, index);
+    }
+
+    /**
+     * Id du groupe d'une clé {@code groups:<groupId>} ou de l'un de ses sous-hashes {@code groups:<groupId>#<n>},
+     * ou {@code null} pour une autre clé.
+     */
+    public static String groupIdOf(String key) {
+        if (!key.startsWith(GROUP_PREFIX)) {
+            return null;
+        }
+        int separator = key.indexOf(SHARD_SEPARATOR, GROUP_PREFIX.length());
+        return key.substring(GROUP_PREFIX.length(), separator < 0 ? key.length() : separator);
+    }
+
+    /**
+     * Refuse (400) un id de groupe contenant le séparateur des sous-hashes, à l'écriture dans tous les styles.
+     */
+    public static void validateGroupId(String groupId) {
+        if (groupId.indexOf(SHARD_SEPARATOR) >= 0) {
+            throw new InvalidRequestException("Group id must not contain '" + SHARD_SEPARATOR + "': " + groupId);
+        }
+    }
+
+    /**
+     * Sous-hash de l'utilisateur ; String#hashCode est spécifié, donc identique sur tous les nœuds.
+     */
+    public static int index(String userId, int count) {
+        return Math.floorMod(userId.hashCode(), count);
+    }
+
+    public static List<String> keys(String groupId, int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(key(groupId, i, count));
+        }
+        return keys;
+    }
+
+    /**
+     * Valeur stockée dans {@code group-shards} : {@code "<count>"}, ou {@code "<count>><target>"} pendant un resharding.
+     */
+    static ShardLayout parse(String value) {
+        int separator = value.indexOf('>');
+        if (separator < 0) {
+            int count = Integer.parseInt(value);
+            return new ShardLayout(count, count);
+        }
+        return new ShardLayout(Integer.parseInt(value.substring(0, separator)), Integer.parseInt(value.substring(separator + 1)));
+    }
+
+    String format() {
+        return migrating() ? count + ">" + target : String.valueOf(count);
+    }
+
+    public boolean sharded() {
+        return count > 1 || target > 1;
+    }
+
+    public boolean migrating() {
+        return count != target;
+    }
+
+    /**
+     * Sous-hash où écrire l'utilisateur, et où le lire en premier.
+     */
+    public String writeKey(String groupId, String userId) {
+        return key(groupId, index(userId, target), target);
+    }
+
+    /**
+     * Sous-hash de l'utilisateur dans l'ancien découpage ; égal à {@link #writeKey} hors resharding.
+     */
+    public String sourceKey(String groupId, String userId) {
+        return key(groupId, index(userId, count), count);
+    }
+
+    /**
+     * Tous les sous-hashes du groupe, ceux du découpage visé en premier.
+     */
+    public List<String> keys(String groupId) {
+        if (!migrating()) {
+            return keys(groupId, count);
+        }
+        Set<String> keys = new LinkedHashSet<>(keys(groupId, target));
+        keys.addAll(keys(groupId, count));
+        return new ArrayList<>(keys);
+    }
+}
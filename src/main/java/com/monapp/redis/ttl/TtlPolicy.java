@@ -0,0 +1,132 @@
+package com.monapp.redis.ttl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.monapp.config.TtlConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TTL des groupes et décision de rafraîchissement.
+ * <p>
+ * Le TTL d'un groupe dépend du plus long préfixe configuré qui correspond à son id. Il n'est repoussé que
+ * lorsque le TTL restant passe sous {@code refreshRatio} × TTL :
+ * <ul>
+ *     <li>côté serveur pour les managers à script Lua (RedisAPI, DataSource), qui lisent le TTL avant l'EXPIRE ;</li>
+ *     <li>par suivi local pour les managers MULTI/EXEC, qui ne peuvent pas brancher dans la transaction : entre deux
+ *     rafraîchissements ils envoient {@code EXPIRE NX}, sans effet sur une clé qui a déjà un TTL (ni réplication
+ *     ni notification), mais qui en pose un si la clé a été supprimée puis recréée par un autre nœud.</li>
+ * </ul>
+ */
+@ApplicationScoped
+public class TtlPolicy {
+
+    private final Duration defaultTtl;
+    private final List<Map.Entry<String, Duration>> prefixes;
+    private final double refreshRatio;
+    private final boolean slidingOnRead;
+
+    /**
+     * Échéance locale (System.nanoTime) du prochain rafraîchissement, par groupe.
+     */
+    private final Cache<String, Long> refreshDue;
+
+    private final Counter expireSet;
+    private final Counter expireSkipped;
+
+    public TtlPolicy(TtlConfig config, MeterRegistry registry) {
+        this.defaultTtl = config.defaultTtl();
+        this.prefixes = config.prefixes().entrySet().stream()
+                .sorted(Comparator.comparingInt((Map.Entry<String, Duration> entry) -> entry.getKey().length()).reversed())
+                .toList();
+        this.refreshRatio = config.refreshRatio();
+        this.slidingOnRead = config.slidingOnRead();
+        this.refreshDue = Caffeine.newBuilder()
+                .maximumSize(config.trackedGroups())
+                .build();
+
+        this.expireSet = Counter.builder("ttl.expire")
+                .description("Group TTL updates after a write or read")
+                .tag("result", "set")
+                .register(registry);
+        this.expireSkipped = Counter.builder("ttl.expire")
+                .description("Group TTL updates after a write or read")
+                .tag("result", "skipped")
+                .register(registry);
+    }
+
+    public Duration ttl(String groupId) {
+        for (Map.Entry<String, Duration> prefix : prefixes) {
+            if (groupId.startsWith(prefix.getKey())) {
+                return prefix.getValue();
+            }
+        }
+        return defaultTtl;
+    }
+
+    public long ttlSeconds(String groupId) {
+        return ttl(groupId).toSeconds();
+    }
+
+    /**
+     * TTL restant (secondes) sous lequel le TTL est repoussé : argument des scripts Lua.
+     */
+    public long refreshThresholdSeconds(String groupId) {
+        return (long) (ttlSeconds(groupId) * refreshRatio);
+    }
+
+    /**
+     * Suivi local : {@code true} si le groupe est inconnu ou si son TTL a pu passer sous le seuil.
+     */
+    public boolean refreshDue(String groupId) {
+        Long due = refreshDue.getIfPresent(groupId);
+        return due == null || System.nanoTime() - due >= 0;
+    }
+
+    /**
+     * Enregistre le résultat d'une écriture : {@code expirationSet} si l'EXPIRE a effectivement modifié le TTL.
+     */
+    public void written(String groupId, boolean expirationSet) {
+        if (expirationSet) {
+            expireSet.increment();
+            markRefreshed(groupId);
+        } else {
+            expireSkipped.increment();
+        }
+    }
+
+    /**
+     * Expiration glissante sur lecture : {@code true} si un EXPIRE doit être envoyé pour ce groupe.
+     * Le groupe est marqué rafraîchi immédiatement, pour qu'une rafale de lectures n'envoie qu'un EXPIRE.
+     */
+    public boolean slideOnRead(String groupId) {
+        if (!slidingOnRead) {
+            return false;
+        }
+        if (!refreshDue(groupId)) {
+            expireSkipped.increment();
+            return false;
+        }
+        expireSet.increment();
+        markRefreshed(groupId);
+        return true;
+    }
+
+    /**
+     * Le groupe a été supprimé : le prochain write repose le TTL.
+     */
+    public void forget(String groupId) {
+        refreshDue.invalidate(groupId);
+    }
+
+    private void markRefreshed(String groupId) {
+        long ttlNanos = ttl(groupId).toNanos();
+        refreshDue.put(groupId, System.nanoTime() + (long) (ttlNanos * (1 - refreshRatio)));
+    }
+}
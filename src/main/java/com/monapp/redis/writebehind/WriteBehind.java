@@ -0,0 +1,98 @@
+package com.monapp.redis.writebehind;
+
+import com.monapp.config.WriteBehindConfig;
+import com.monapp.feed.ChangeFeed;
+import com.monapp.index.EmailIndex;
+import com.monapp.redis.ttl.TtlPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.ShutdownEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Fabrique des tampons d'écriture différée ({@link WriteBehindBuffer}), un par style d'accès.
+ * <p>
+ * Un minuteur commun vide tous les tampons toutes les {@code flush-interval} ; à l'arrêt de l'application,
+ * les écritures en attente sont flushées (au plus {@code shutdown-timeout}) avant la fermeture des clients Redis.
+ */
+@ApplicationScoped
+public class WriteBehind {
+
+    private final WriteBehindConfig config;
+    private final TtlPolicy ttlPolicy;
+    private final ChangeFeed changeFeed;
+    private final EmailIndex emailIndex;
+    private final Vertx vertx;
+    private final MeterRegistry registry;
+    private final List<WriteBehindBuffer> buffers = new CopyOnWriteArrayList<>();
+    private volatile long timerId = -1;
+
+    public WriteBehind(WriteBehindConfig config, TtlPolicy ttlPolicy, ChangeFeed changeFeed, EmailIndex emailIndex,
+                       Vertx vertx, MeterRegistry registry) {
+        this.config = config;
+        this.ttlPolicy = ttlPolicy;
+        this.changeFeed = changeFeed;
+        this.emailIndex = emailIndex;
+        this.vertx = vertx;
+        this.registry = registry;
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        close();
+    }
+
+    public boolean enabled() {
+        return config.enabled();
+    }
+
+    /**
+     * Tampon d'un style d'accès, ou {@code null} si l'écriture différée est désactivée ; à appeler une fois,
+     * à la construction du manager.
+     *
+     * @param sender  envoie le pipeline d'un groupe (un HSET par utilisateur, EXPIRE, index des emails et XADD éventuels)
+     * @param flushed appelé avec l'id du groupe après chaque flush, réussi ou non (invalidation des caches)
+     */
+    public WriteBehindBuffer forStyle(String style, BiFunction<String, List<Request>, Uni<List<Response>>> sender,
+                                      Consumer<String> flushed) {
+        if (!config.enabled()) {
+            return null;
+        }
+        WriteBehindBuffer buffer = new WriteBehindBuffer(style, config, ttlPolicy, changeFeed, emailIndex, sender, flushed, registry);
+        buffers.add(buffer);
+        synchronized (this) {
+            if (timerId < 0) {
+                timerId = vertx.setPeriodic(config.flushInterval().toMillis(), id -> buffers.forEach(WriteBehindBuffer::flushAll));
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Arrête le minuteur et flushe les écritures en attente de tous les tampons.
+     */
+    public void close() {
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+        if (buffers.isEmpty()) {
+            return;
+        }
+        try {
+            Uni.join().all(buffers.stream().map(WriteBehindBuffer::drain).toList())
+                    .andCollectFailures()
+                    .await().atMost(config.shutdownTimeout());
+        } catch (RuntimeException e) {
+            Log.warnf(e, "Write-behind buffers not fully flushed on shutdown");
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.monapp.redis.writebehind;
+
+import com.monapp.config.WriteBehindConfig;
+import com.monapp.error.TooManyRequestsException;
+import com.monapp.feed.ChangeFeed;
+import com.monapp.index.EmailIndex;
+import com.monapp.model.ChangeEvent;
+import com.monapp.model.CreateUserResult;
+import com.monapp.redis.ttl.TtlPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Tampon d'écriture différée des createUser d'un style d'accès.
+ * <p>
+ * Les écritures sont réparties par groupe entre {@code shards} partitions. Dans une partition, une nouvelle écriture
+ * du même (hash, utilisateur) remplace la valeur en attente au lieu de s'y ajouter : seule la dernière part à Redis.
+ * Un flush envoie, pour chaque hash (le groupe, ou l'un de ses sous-hashes s'il est découpé), un pipeline d'un HSET
+ * par utilisateur + EXPIRE (+ la mise à jour de l'index des emails et un XADD par utilisateur s'ils sont activés) ; il est déclenché quand la partition atteint {@code flush-size} écritures, par le
+ * minuteur de {@link WriteBehind} et à l'arrêt. Une partition n'a jamais deux flushs en cours : deux valeurs
+ * successives d'un même utilisateur arrivent dans l'ordre.
+ * <p>
+ * Les lectures ne voient une écriture qu'une fois flushée. Un deleteUser / deleteAllUsers / delete-many écarte
+ * les écritures en attente de ce qu'il supprime et attend le flush en cours de la partition ({@link #discard}) ;
+ * les autres écritures directes du groupe (create-if-absent, move) font d'abord flusher la partition ({@link #flush}).
+ */
+public final class WriteBehindBuffer {
+
+    private static final CreateUserResult BUFFERED = new CreateUserResult(false, false, true);
+
+    private final WriteBehindConfig config;
+    private final TtlPolicy ttlPolicy;
+    private final ChangeFeed changeFeed;
+    private final EmailIndex emailIndex;
+    private final BiFunction<String, List<Request>, Uni<List<Response>>> sender;
+    private final Consumer<String> flushed;
+    private final Shard[] shards;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Counter coalesced;
+    private final Counter rejected;
+    private final Counter failures;
+    private final DistributionSummary flushSize;
+
+    WriteBehindBuffer(String style, WriteBehindConfig config, TtlPolicy ttlPolicy, ChangeFeed changeFeed,
+                      EmailIndex emailIndex, BiFunction<String, List<Request>, Uni<List<Response>>> sender,
+                      Consumer<String> flushed, MeterRegistry registry) {
+        this.config = config;
+        this.ttlPolicy = ttlPolicy;
+        this.changeFeed = changeFeed;
+        this.emailIndex = emailIndex;
+        this.sender = sender;
+        this.flushed = flushed;
+        this.shards = new Shard[Math.max(1, config.shards())];
+        Arrays.setAll(shards, i -> new Shard());
+
+        this.coalesced = Counter.builder("write_behind.coalesced")
+                .description("Buffered writes replaced by a newer write of the same user before being flushed")
+                .tag("style", style)
+                .register(registry);
+        this.rejected = Counter.builder("write_behind.rejected")
+                .description("Writes rejected because the write-behind buffer was full")
+                .tag("style", style)
+                .register(registry);
+        this.failures = Counter.builder("write_behind.flush.failures")
+                .description("Group pipelines that failed to flush")
+                .tag("style", style)
+                .register(registry);
+        this.flushSize = DistributionSummary.builder("write_behind.flush.size")
+                .description("Users written by each flushed group pipeline")
+                .tag("style", style)
+                .register(registry);
+        Gauge.builder("write_behind.pending", pending, AtomicInteger::get)
+                .description("Distinct (group, user) writes waiting to be flushed")
+                .tag("style", style)
+                .register(registry);
+    }
+
+    /**
+     * Met en tampon l'écriture de {@code value} dans le champ {@code userId} du hash {@code key} ; {@code email}
+     * est indexé au flush.
+     */
+    public Uni<CreateUserResult> write(String groupId, String key, String userId, String email, Buffer value) {
+        Shard shard = shardOf(groupId);
+        CompletableFuture<CreateUserResult> waiter = config.ack() == WriteBehindConfig.Ack.FLUSHED ? new CompletableFuture<>() : null;
+        boolean full = false;
+        boolean flushNow;
+        synchronized (shard) {
+            PendingGroup group = shard.groups.get(key);
+            PendingWrite write = group == null ? null : group.users.get(userId);
+            if (write != null) {
+                write.value = value;
+                write.email = email;
+                write.addWaiter(waiter);
+                coalesced.increment();
+            } else if (pending.incrementAndGet() > config.maxPending()) {
+                pending.decrementAndGet();
+                full = true;
+            } else {
+                if (group == null) {
+                    group = new PendingGroup(groupId, key);
+                    shard.groups.put(key, group);
+                }
+                write = new PendingWrite(value, email);
+                write.addWaiter(waiter);
+                group.users.put(userId, write);
+                shard.size++;
+            }
+            flushNow = full || shard.size >= config.flushSize();
+        }
+        if (flushNow) {
+            flush(shard);
+        }
+        if (full) {
+            rejected.increment();
+            return Uni.createFrom().failure(new TooManyRequestsException("Write-behind buffer full"));
+        }
+        return waiter == null ? Uni.createFrom().item(BUFFERED) : Uni.createFrom().completionStage(waiter);
+    }
+
+    /**
+     * Écarte les écritures en attente des utilisateurs {@code userIds} du groupe (tout le groupe si {@code null}),
+     * puis attend le flush en cours de sa partition : la suppression qui suit ne peut plus être recouverte.
+     * Les createUser écartés se terminent comme s'ils avaient été écrits puis supprimés.
+     */
+    public Uni<Void> discard(String groupId, Collection<String> userIds) {
+        Shard shard = shardOf(groupId);
+        List<PendingWrite> discarded = new ArrayList<>();
+        CompletableFuture<Void> idle;
+        synchronized (shard) {
+            Iterator<PendingGroup> groups = shard.groups.values().iterator();
+            while (groups.hasNext()) {
+                PendingGroup group = groups.next();
+                if (!group.groupId.equals(groupId)) {
+                    continue;
+                }
+                if (userIds == null) {
+                    discarded.addAll(group.users.values());
+                    group.users.clear();
+                } else {
+                    for (String userId : userIds) {
+                        PendingWrite write = group.users.remove(userId);
+                        if (write != null) {
+                            discarded.add(write);
+                        }
+                    }
+                }
+                if (group.users.isEmpty()) {
+                    groups.remove();
+                }
+            }
+            shard.size -= discarded.size();
+            pending.addAndGet(-discarded.size());
+            idle = shard.flushing ? shard.idle : null;
+        }
+        discarded.forEach(write -> write.complete(BUFFERED));
+        return idle == null ? Uni.createFrom().voidItem() : Uni.createFrom().completionStage(idle).replaceWithVoid();
+    }
+
+    /**
+     * Flushe la partition du groupe et attend que ses écritures en attente soient dans Redis.
+     */
+    public Uni<Void> flush(String groupId) {
+        return drain(shardOf(groupId));
+    }
+
+    void flushAll() {
+        for (Shard shard : shards) {
+            flush(shard);
+        }
+    }
+
+    /**
+     * Flushe toutes les partitions jusqu'à ce qu'elles soient vides et sans flush en cours.
+     */
+    Uni<Void> drain() {
+        return Uni.join().all(Arrays.stream(shards).map(this::drain).toList())
+                .andCollectFailures()
+                .replaceWithVoid();
+    }
+
+    private Uni<Void> drain(Shard shard) {
+        return Uni.createFrom().deferred(() -> {
+            flush(shard);
+            CompletableFuture<Void> idle;
+            synchronized (shard) {
+                idle = shard.flushing ? shard.idle : null;
+            }
+            return idle == null
+                    ? Uni.createFrom().voidItem()
+                    : Uni.createFrom().completionStage(idle).chain(() -> drain(shard));
+        });
+    }
+
+    private Shard shardOf(String groupId) {
+        return shards[Math.floorMod(groupId.hashCode(), shards.length)];
+    }
+
+    // ----- Flush -----
+
+    private void flush(Shard shard) {
+        Map<String, PendingGroup> batch;
+        synchronized (shard) {
+            if (shard.flushing) {
+                shard.flushAgain = true;
+                return;
+            }
+            if (shard.groups.isEmpty()) {
+                return;
+            }
+            batch = shard.groups;
+            pending.addAndGet(-shard.size);
+            shard.groups = new LinkedHashMap<>();
+            shard.size = 0;
+            shard.flushing = true;
+            shard.idle = new CompletableFuture<>();
+        }
+
+        List<Uni<Void>> pipelines = new ArrayList<>(batch.size());
+        batch.values().forEach(group -> pipelines.add(send(shard, group)));
+        Uni.join().all(pipelines).andCollectFailures()
+                .subscribe().with(ignored -> flushed(shard), failure -> flushed(shard));
+    }
+
+    private void flushed(Shard shard) {
+        CompletableFuture<Void> idle;
+        boolean again;
+        synchronized (shard) {
+            shard.flushing = false;
+            again = shard.flushAgain || shard.size >= config.flushSize();
+            shard.flushAgain = false;
+            idle = shard.idle;
+        }
+        idle.complete(null);
+        if (again) {
+            flush(shard);
+        }
+    }
+
+    /**
+     * Pipeline d'un hash : un HSET par utilisateur, pour que chacun connaisse sa propre réponse, EXPIRE (NX tant que le rafraîchissement n'est pas dû), mise à jour de
+     * l'index des emails et XADD éventuels (suivis de l'EXPIRE d'un flux propre au groupe). Les clés du groupe et de son flux partagent son slot ; l'index suppose
+     * une topologie sans cluster (voir EmailIndex).
+     */
+    private Uni<Void> send(Shard shard, PendingGroup group) {
+        String groupId = group.groupId;
+        int users = group.users.size();
+        List<Request> requests = new ArrayList<>(users + 2 + (changeFeed.enabled() ? users + 1 : 0));
+        // Les HSET occupent les indices 0..users-1, dans l'ordre de group.users
+        group.users.forEach((userId, write) -> requests.add(Request.cmd(Command.HSET).arg(group.key).arg(userId).arg(write.value)));
+        Request expire = Request.cmd(Command.EXPIRE).arg(group.key).arg(ttlPolicy.ttlSeconds(groupId));
+        requests.add(ttlPolicy.refreshDue(groupId) ? expire : expire.arg("NX"));
+        if (emailIndex.enabled()) {
+            Map<String, String> emails = new LinkedHashMap<>();
+            group.users.forEach((userId, write) -> emails.put(userId, write.email));
+            requests.add(Request.newInstance(emailIndex.set(groupId, emails)));
+        }
+        if (changeFeed.enabled()) {
+            for (String userId : group.users.keySet()) {
+                requests.add(Request.newInstance(changeFeed.xadd(groupId, ChangeEvent.SET, userId)));
+            }
+            io.vertx.redis.client.Request streamExpire = changeFeed.streamExpire(groupId, ChangeEvent.SET, ttlPolicy.ttlSeconds(groupId));
+            if (streamExpire != null) {
+                requests.add(Request.newInstance(streamExpire));
+            }
+        }
+
+        flushSize.record(users);
+        return sender.apply(groupId, requests)
+                .onItemOrFailure().invoke((responses, failure) -> {
+                    flushed.accept(groupId);
+                    if (failure == null) {
+                        boolean expirationSet = responses.get(users).toInteger() == 1;
+                        ttlPolicy.written(groupId, expirationSet);
+                        int index = 0;
+                        for (PendingWrite write : group.users.values()) {
+                            write.complete(new CreateUserResult(responses.get(index++).toInteger() == 1, expirationSet, true));
+                        }
+                    } else {
+                        failures.increment();
+                        failed(shard, group, failure);
+                    }
+                })
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    /**
+     * Flush en échec : les createUser en attente du flush échouent ; les écritures déjà acquittées
+     * (mode buffered) reprennent place dans le tampon, sauf si une écriture plus récente les a remplacées.
+     */
+    private void failed(Shard shard, PendingGroup group, Throwable failure) {
+        if (config.ack() == WriteBehindConfig.Ack.FLUSHED) {
+            group.users.values().forEach(write -> write.fail(failure));
+            return;
+        }
+        Log.warnf(failure, "Write-behind flush of %s failed, %d writes requeued", group.key, group.users.size());
+        synchronized (shard) {
+            PendingGroup current = shard.groups.computeIfAbsent(group.key, key -> new PendingGroup(group.groupId, key));
+            group.users.forEach((userId, write) -> {
+                if (current.users.putIfAbsent(userId, write) == null) {
+                    shard.size++;
+                    pending.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private static final class Shard {
+        private Map<String, PendingGroup> groups = new LinkedHashMap<>();
+        private int size;
+        private boolean flushing;
+        private boolean flushAgain;
+        private CompletableFuture<Void> idle;
+    }
+
+    /**
+     * Écritures en attente d'un hash, indexées par clé dans la partition.
+     */
+    private static final class PendingGroup {
+        private final String groupId;
+        private final String key;
+        private final Map<String, PendingWrite> users = new LinkedHashMap<>();
+
+        private PendingGroup(String groupId, String key) {
+            this.groupId = groupId;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Dernière valeur en attente d'un utilisateur (et son email), et les createUser (mode flushed) qu'elle acquittera.
+     */
+    private static final class PendingWrite {
+        private Buffer value;
+        private String email;
+        private List<CompletableFuture<CreateUserResult>> waiters;
+
+        private PendingWrite(Buffer value, String email) {
+            this.value = value;
+            this.email = email;
+        }
+
+        private void addWaiter(CompletableFuture<CreateUserResult> waiter) {
+            if (waiter != null) {
+                if (waiters == null) {
+                    waiters = new ArrayList<>(1);
+                }
+                waiters.add(waiter);
+            }
+        }
+
+        /**
+         * Seul le premier createUser d'écritures fusionnées a pu créer le champ : les suivants l'ont mis à jour.
+         */
+        private void complete(CreateUserResult result) {
+            if (waiters == null) {
+                return;
+            }
+            waiters.get(0).complete(result);
+            if (waiters.size() > 1) {
+                CreateUserResult updated = new CreateUserResult(false, result.expirationSet(), result.deferred());
+                waiters.subList(1, waiters.size()).forEach(waiter -> waiter.complete(updated));
+            }
+        }
+
+        private void fail(Throwable failure) {
+            if (waiters != null) {
+                waiters.forEach(waiter -> waiter.completeExceptionally(failure));
+            }
+        }
+    }
+}
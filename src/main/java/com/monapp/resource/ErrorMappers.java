@@ -0,0 +1,37 @@
+package com.monapp.resource;
+
+import com.monapp.error.ConflictException;
+import com.monapp.error.InvalidRequestException;
+import com.monapp.error.TooManyRequestsException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response.Status;
+import org.jboss.resteasy.reactive.RestResponse;
+import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
+
+/**
+ * Traduction des exceptions métier en réponses HTTP, message en corps texte. Les managers restent indépendants
+ * de JAX-RS : seule la couche resource connaît les statuts.
+ */
+public class ErrorMappers {
+
+    @ServerExceptionMapper
+    public RestResponse<String> conflict(ConflictException e) {
+        return response(Status.CONFLICT, e);
+    }
+
+    @ServerExceptionMapper
+    public RestResponse<String> tooManyRequests(TooManyRequestsException e) {
+        return response(Status.TOO_MANY_REQUESTS, e);
+    }
+
+    @ServerExceptionMapper
+    public RestResponse<String> invalidRequest(InvalidRequestException e) {
+        return response(Status.BAD_REQUEST, e);
+    }
+
+    private static RestResponse<String> response(Status status, RuntimeException e) {
+        return RestResponse.ResponseBuilder.create(status, e.getMessage())
+                .type(MediaType.TEXT_PLAIN_TYPE)
+                .build();
+    }
+}
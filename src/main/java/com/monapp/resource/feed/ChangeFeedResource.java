@@ -0,0 +1,110 @@
+package com.monapp.resource.feed;
+
+import com.monapp.feed.ChangeFeed;
+import com.monapp.feed.ChangeFeedReader;
+import com.monapp.model.ChangeEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+
+import java.util.List;
+
+/**
+ * Suivi du flux de changements des groupes en Server-Sent Events, un événement JSON par changement.
+ * L'id de chaque événement sert d'offset ({@code from}) pour reprendre après une coupure.
+ */
+@Path("/changes")
+@Tag(name = "4- Change feed (Redis Streams)")
+public class ChangeFeedResource {
+
+    private final ChangeFeed changeFeed;
+    private final ChangeFeedReader reader;
+
+    public ChangeFeedResource(ChangeFeed changeFeed, ChangeFeedReader reader) {
+        this.changeFeed = changeFeed;
+        this.reader = reader;
+    }
+
+    /**
+     * Changements d'un groupe après l'offset {@code from} ({@code 0-0} : depuis le début, {@code $} : à partir de maintenant).
+     */
+    @GET
+    @Path("/groups/{groupId}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<ChangeEvent> tailGroup(String groupId, @QueryParam("from") @DefaultValue(ChangeFeedReader.LATEST) String from) {
+        return reader.tail(changeFeed.streamKey(groupId), groupId, from);
+    }
+
+    /**
+     * Changements de tous les groupes d'un flux partagé (monapp.change-feed.shards > 0).
+     */
+    @GET
+    @Path("/shards/{shard}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<ChangeEvent> tailShard(int shard, @QueryParam("from") @DefaultValue(ChangeFeedReader.LATEST) String from) {
+        return reader.tail(shardKey(shard), null, from);
+    }
+
+    /**
+     * Consommation d'un groupe au sein d'un consumer group : chaque événement est remis à un seul consommateur
+     * et reste en attente jusqu'à son acquittement. Flux propres à chaque groupe uniquement.
+     */
+    @GET
+    @Path("/groups/{groupId}/consumers/{consumerGroup}/{consumer}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<ChangeEvent> consumeGroup(String groupId, String consumerGroup, String consumer) {
+        return reader.consume(groupStreamKey(groupId), groupId, consumerGroup, consumer);
+    }
+
+    @GET
+    @Path("/shards/{shard}/consumers/{consumerGroup}/{consumer}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<ChangeEvent> consumeShard(int shard, String consumerGroup, String consumer) {
+        return reader.consume(shardKey(shard), null, consumerGroup, consumer);
+    }
+
+    /**
+     * Acquitte les événements traités (corps = liste des ids) ; renvoie le nombre d'événements acquittés.
+     */
+    @POST
+    @Path("/groups/{groupId}/consumers/{consumerGroup}/ack")
+    public Uni<Integer> ackGroup(String groupId, String consumerGroup, List<String> ids) {
+        return reader.ack(groupStreamKey(groupId), consumerGroup, ids);
+    }
+
+    @POST
+    @Path("/shards/{shard}/consumers/{consumerGroup}/ack")
+    public Uni<Integer> ackShard(int shard, String consumerGroup, List<String> ids) {
+        return reader.ack(shardKey(shard), consumerGroup, ids);
+    }
+
+    private String groupStreamKey(String groupId) {
+        if (changeFeed.sharded()) {
+            // Un consumer group porte sur tout le flux partagé : il verrait aussi les autres groupes
+            throw new WebApplicationException("Consumer groups are per shard when monapp.change-feed.shards > 0",
+                    Response.Status.BAD_REQUEST);
+        }
+        return changeFeed.streamKey(groupId);
+    }
+
+    private String shardKey(int shard) {
+        if (!changeFeed.sharded() || shard < 0 || shard >= changeFeed.shards()) {
+            throw new WebApplicationException("Unknown change feed shard: " + shard, Response.Status.NOT_FOUND);
+        }
+        return changeFeed.shardKey(shard);
+    }
+}
@@ -1,10 +1,15 @@
 package com.monapp.resource.highlevel;
 
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.MultiGet;
 import com.monapp.redis.highlevel.GroupUserManagerDataSourceImperative;
 import jakarta.ws.rs.*;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
+import java.util.List;
 import java.util.Map;
 
 @Path("/datasource/imperative")
@@ -19,7 +24,7 @@ public class GroupUserResourceDataSourceImperative {
 
     @POST
     @Path("/create/{groupId}")
-    public boolean createUser(String groupId, User user) {
+    public CreateUserResult createUser(String groupId, User user) {
         return redisDataSourceImperative.createUser(groupId, user);
     }
 
@@ -29,6 +34,15 @@ public class GroupUserResourceDataSourceImperative {
         return redisDataSourceImperative.getUser(groupId, userId);
     }
 
+    /**
+     * Lecture multiple : corps = liste des ids, réponse = utilisateurs trouvés et ids manquants.
+     */
+    @POST
+    @Path("/get-many/{groupId}")
+    public MultiGetResult getUsers(String groupId, List<String> userIds) {
+        return redisDataSourceImperative.getUsers(groupId, MultiGet.requireIds(userIds));
+    }
+
     @GET
     @Path("/get-all/{groupId}")
     public Map<String, User> getAllUsers(String groupId) {
@@ -41,10 +55,14 @@ public class GroupUserResourceDataSourceImperative {
         return redisDataSourceImperative.deleteUser(groupId, userId);
     }
 
+    /**
+     * Supprime le groupe (UNLINK) et rapporte sa taille ; {@code progressive} supprime d'abord les utilisateurs
+     * par lots HSCAN + HDEL et ne répond qu'une fois le groupe vidé.
+     */
     @DELETE
     @Path("/delete-all/{groupId}")
-    public int deleteAllUsers(String groupId) {
-        return redisDataSourceImperative.deleteAllUsers(groupId);
+    public DeleteAllResult deleteAllUsers(String groupId, @QueryParam("progressive") boolean progressive) {
+        return redisDataSourceImperative.deleteAllUsers(groupId, progressive);
     }
 
     @GET
@@ -1,14 +1,33 @@
 package com.monapp.resource.highlevel;
 
+import com.monapp.model.BulkCreateResult;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.DeleteUsersResult;
+import com.monapp.model.MoveUserResult;
+import com.monapp.model.MultiGetResult;
+import com.monapp.model.ReshardResult;
 import com.monapp.model.User;
+import com.monapp.redis.MultiGet;
 import com.monapp.redis.highlevel.GroupUserManagerDataSourceReactive;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.resteasy.reactive.RestMediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 
 @Path("/datasource/reactive")
@@ -23,32 +42,98 @@ public class GroupUserResourceDataSourceReactive {
 
     @POST
     @Path("/create/{groupId}")
-    public Uni<Boolean> createUser(String groupId, User user) {
+    public Uni<CreateUserResult> createUser(String groupId, User user) {
         return redisDataSourceReactive.createUser(groupId, user);
     }
 
+    /**
+     * Accepte un tableau JSON ou un flux NDJSON d'utilisateurs, lu au fil de l'eau ; 400 si le corps est mal formé
+     * (les lots déjà envoyés restent écrits).
+     */
+    @POST
+    @Path("/bulk/{groupId}")
+    @Consumes({MediaType.APPLICATION_JSON, RestMediaType.APPLICATION_NDJSON})
+    @Blocking
+    public Uni<BulkCreateResult> createUsers(String groupId, InputStream body) {
+        Multi<User> users = Multi.createFrom().<User>iterable(() -> UserStreamReader.read(body))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+
+        return redisDataSourceReactive.createUsers(groupId, users);
+    }
+
     @GET
     @Path("/get/{groupId}/{userId}")
     public Uni<User> getUser(String groupId, String userId) {
         return redisDataSourceReactive.getUser(groupId, userId);
     }
 
+    /**
+     * Lecture multiple : corps = liste des ids, réponse = utilisateurs trouvés et ids manquants.
+     */
+    @POST
+    @Path("/get-many/{groupId}")
+    public Uni<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        return redisDataSourceReactive.getUsers(groupId, MultiGet.requireIds(userIds));
+    }
+
     @GET
     @Path("/get-all/{groupId}")
     public Uni<Map<String, User>> getAllUsers(String groupId) {
         return redisDataSourceReactive.getAllUsers(groupId);
     }
 
+    /**
+     * Variante streaming de get-all : un utilisateur par ligne (NDJSON), envoyé au fil du HSCAN.
+     */
+    @GET
+    @Path("/stream/{groupId}")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<User> streamUsers(String groupId) {
+        return redisDataSourceReactive.streamUsers(groupId);
+    }
+
+    /**
+     * Crée l'utilisateur s'il n'existe pas encore et rafraîchit le TTL du groupe (FCALL create_if_absent).
+     */
+    @POST
+    @Path("/create-if-absent/{groupId}")
+    public Uni<CreateUserResult> createUserIfAbsent(String groupId, User user) {
+        return redisDataSourceReactive.createUserIfAbsent(groupId, user);
+    }
+
+    /**
+     * Déplace un utilisateur vers un autre groupe (FCALL move_user).
+     */
+    @POST
+    @Path("/move/{fromGroupId}/{toGroupId}/{userId}")
+    public Uni<MoveUserResult> moveUser(String fromGroupId, String toGroupId, String userId) {
+        return redisDataSourceReactive.moveUser(fromGroupId, toGroupId, userId);
+    }
+
+    /**
+     * Suppression multiple : corps = liste des ids, réponse = supprimés et restants (FCALL delete_users).
+     */
+    @POST
+    @Path("/delete-many/{groupId}")
+    public Uni<DeleteUsersResult> deleteUsers(String groupId, List<String> userIds) {
+        return redisDataSourceReactive.deleteUsers(groupId, MultiGet.requireIds(userIds));
+    }
+
     @DELETE
     @Path("/delete/{groupId}/{userId}")
     public Uni<Integer> deleteUser(String groupId, String userId) {
         return redisDataSourceReactive.deleteUser(groupId, userId);
     }
 
+    /**
+     * Supprime le groupe (UNLINK) et rapporte sa taille ; {@code progressive} supprime d'abord les utilisateurs
+     * par lots HSCAN + HDEL et ne répond qu'une fois le groupe vidé.
+     */
     @DELETE
     @Path("/delete-all/{groupId}")
-    public Uni<Integer> deleteAllUsers(String groupId) {
-        return redisDataSourceReactive.deleteAllUsers(groupId);
+    public Uni<DeleteAllResult> deleteAllUsers(String groupId, @QueryParam("progressive") boolean progressive) {
+        return redisDataSourceReactive.deleteAllUsers(groupId, progressive);
     }
 
     @GET
@@ -57,4 +142,14 @@ public class GroupUserResourceDataSourceReactive {
         return redisDataSourceReactive.getUserTTL(groupId);
     }
 
+    /**
+     * Resharde le groupe (monapp.group-sharding) : {@code shards} sous-hashes, ou selon sa taille si absent.
+     * Répond à la fin de la migration.
+     */
+    @POST
+    @Path("/reshard/{groupId}")
+    public Uni<ReshardResult> reshard(String groupId, @QueryParam("shards") Integer shards) {
+        return redisDataSourceReactive.reshard(groupId, shards);
+    }
+
 }
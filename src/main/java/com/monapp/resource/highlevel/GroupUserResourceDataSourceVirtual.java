@@ -0,0 +1,85 @@
+package com.monapp.resource.highlevel;
+
+import com.monapp.concurrency.ConcurrencyLimiter;
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.MultiGetResult;
+import com.monapp.model.User;
+import com.monapp.redis.MultiGet;
+import com.monapp.redis.highlevel.GroupUserManagerDataSourceImperative;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.ws.rs.*;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mêmes endpoints que {@link GroupUserResourceDataSourceImperative}, exécutés sur threads virtuels plutôt que
+ * sur le pool de workers borné. Les appels au manager impératif sont limités par {@link ConcurrencyLimiter}.
+ * Présent seulement si l'application est construite avec {@code monapp.virtual-threads.enabled=true}.
+ */
+@Path("/datasource/virtual")
+@Tag(name = "3.3- DataSource Imperative on virtual threads (Quarkus)")
+@RunOnVirtualThread
+@IfBuildProperty(name = "monapp.virtual-threads.enabled", stringValue = "true")
+public class GroupUserResourceDataSourceVirtual {
+
+    private final GroupUserManagerDataSourceImperative redisDataSourceImperative;
+    private final ConcurrencyLimiter limiter;
+
+    public GroupUserResourceDataSourceVirtual(GroupUserManagerDataSourceImperative redisDataSourceImperative,
+                                              ConcurrencyLimiter limiter) {
+        this.redisDataSourceImperative = redisDataSourceImperative;
+        this.limiter = limiter;
+    }
+
+    @POST
+    @Path("/create/{groupId}")
+    public CreateUserResult createUser(String groupId, User user) {
+        return limiter.call(() -> redisDataSourceImperative.createUser(groupId, user));
+    }
+
+    @GET
+    @Path("/get/{groupId}/{userId}")
+    public User getUser(String groupId, String userId) {
+        return limiter.call(() -> redisDataSourceImperative.getUser(groupId, userId));
+    }
+
+    @POST
+    @Path("/get-many/{groupId}")
+    public MultiGetResult getUsers(String groupId, List<String> userIds) {
+        List<String> ids = MultiGet.requireIds(userIds);
+        return limiter.call(() -> redisDataSourceImperative.getUsers(groupId, ids));
+    }
+
+    @GET
+    @Path("/get-all/{groupId}")
+    public Map<String, User> getAllUsers(String groupId) {
+        return limiter.call(() -> redisDataSourceImperative.getAllUsers(groupId));
+    }
+
+    @DELETE
+    @Path("/delete/{groupId}/{userId}")
+    public int deleteUser(String groupId, String userId) {
+        return limiter.call(() -> redisDataSourceImperative.deleteUser(groupId, userId));
+    }
+
+    /**
+     * Supprime le groupe (UNLINK) et rapporte sa taille ; {@code progressive} supprime d'abord les utilisateurs
+     * par lots HSCAN + HDEL et ne répond qu'une fois le groupe vidé.
+     */
+    @DELETE
+    @Path("/delete-all/{groupId}")
+    public DeleteAllResult deleteAllUsers(String groupId, @QueryParam("progressive") boolean progressive) {
+        return limiter.call(() -> redisDataSourceImperative.deleteAllUsers(groupId, progressive));
+    }
+
+    @GET
+    @Path("/get-ttl/{groupId}")
+    public Long getGroupTTL(String groupId) {
+        return limiter.call(() -> redisDataSourceImperative.getUserTTL(groupId));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.monapp.resource.highlevel;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.monapp.error.InvalidRequestException;
+import com.monapp.model.User;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Utilisateurs d'un corps de requête, tableau JSON ou suite de valeurs (NDJSON), lus au fil de l'eau.
+ * Un corps mal formé, dès le début ou en cours de flux, lève {@link InvalidRequestException} (400) plutôt qu'une
+ * exception Jackson (500).
+ */
+final class UserStreamReader implements Iterator<User> {
+
+    private static final ObjectReader USER_READER = User.OBJECT_MAPPER.readerFor(User.class);
+
+    private final MappingIterator<User> values;
+
+    private UserStreamReader(MappingIterator<User> values) {
+        this.values = values;
+    }
+
+    static Iterator<User> read(InputStream body) {
+        try {
+            // readValues accepte aussi bien un tableau JSON qu'une suite de valeurs (NDJSON)
+            return new UserStreamReader(USER_READER.readValues(body));
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return values.hasNextValue();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public User next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return values.nextValue();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    /**
+     * JSON mal formé ou valeur qui n'est pas un utilisateur : 400 ; erreur de lecture du corps (client déconnecté) :
+     * inchangée.
+     */
+    private static RuntimeException failure(IOException e) {
+        if (e instanceof JsonProcessingException json) {
+            return new InvalidRequestException("Malformed users body: " + json.getOriginalMessage());
+        }
+        return new UncheckedIOException(e);
+    }
+}
@@ -0,0 +1,47 @@
+package com.monapp.resource.index;
+
+import com.monapp.index.EmailIndex;
+import com.monapp.index.EmailIndexRebuildJob;
+import com.monapp.model.EmailIndexRebuildResult;
+import com.monapp.model.EmailMatch;
+import io.smallrye.mutiny.Uni;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import java.util.List;
+
+/**
+ * Recherche des utilisateurs par email, tous groupes confondus, via l'index secondaire (monapp.email-index).
+ */
+@Path("/email-index")
+@Tag(name = "5- Email index")
+public class EmailIndexResource {
+
+    private final EmailIndex emailIndex;
+    private final EmailIndexRebuildJob rebuildJob;
+
+    public EmailIndexResource(EmailIndex emailIndex, EmailIndexRebuildJob rebuildJob) {
+        this.emailIndex = emailIndex;
+        this.rebuildJob = rebuildJob;
+    }
+
+    /**
+     * Groupes et utilisateurs qui portent l'email (comparaison insensible à la casse).
+     */
+    @GET
+    @Path("/{email}")
+    public Uni<List<EmailMatch>> lookup(String email) {
+        return emailIndex.lookup(email);
+    }
+
+    /**
+     * Reconstruit l'index à partir des groupes existants ; répond à la fin de la reconstruction.
+     */
+    @POST
+    @Path("/rebuild")
+    public Uni<EmailIndexRebuildResult> rebuild() {
+        return rebuildJob.rebuild();
+    }
+}
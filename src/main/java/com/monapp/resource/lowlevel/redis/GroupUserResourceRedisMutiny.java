@@ -1,14 +1,28 @@
 package com.monapp.resource.lowlevel.redis;
 
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.GroupUsers;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.MultiGet;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
 import com.monapp.redis.lowlevel.redis.GroupUserManagerRedisMutiny;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.resteasy.reactive.RestMediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
+import java.util.List;
 import java.util.Map;
 
 @Path("/redis/mutiny")
@@ -23,7 +37,7 @@ public class GroupUserResourceRedisMutiny {
 
     @POST
     @Path("/create/{groupId}")
-    public Uni<Boolean> createUser(String groupId, User user) {
+    public Uni<CreateUserResult> createUser(String groupId, User user) {
         return redisMutiny.createUser(groupId, user);
     }
 
@@ -33,22 +47,68 @@ public class GroupUserResourceRedisMutiny {
         return redisMutiny.getUser(groupId, userId);
     }
 
+    /**
+     * Lecture multiple : corps = liste des ids, réponse = utilisateurs trouvés et ids manquants.
+     */
+    @POST
+    @Path("/get-many/{groupId}")
+    public Uni<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        return redisMutiny.getUsers(groupId, MultiGet.requireIds(userIds));
+    }
+
     @GET
     @Path("/get-all/{groupId}")
     public Uni<Map<String, User>> getAllUsers(String groupId) {
         return redisMutiny.getAllUsers(groupId);
     }
 
+    /**
+     * Variante pass-through de get-all : valeurs stockées recopiées sans décodage ;
+     * {@code ?fields=id,email} ne lit que ces champs de chaque utilisateur.
+     */
+    @GET
+    @Path("/get-all-raw/{groupId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Buffer> getAllUsersRaw(String groupId, @QueryParam("fields") String fields) {
+        return redisMutiny.getAllUsersRaw(groupId, JsonCodec.fields(fields));
+    }
+
+    /**
+     * Lecture de plusieurs groupes : corps = liste des ids de groupe, un élément NDJSON par groupe, au fil des réponses.
+     */
+    @POST
+    @Path("/get-all-groups")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<GroupUsers> getAllUsers(List<String> groupIds) {
+        return redisMutiny.getAllUsers(groupIds);
+    }
+
+    /**
+     * Variante streaming de get-all : un utilisateur par ligne (NDJSON), envoyé au fil du HSCAN.
+     */
+    @GET
+    @Path("/stream/{groupId}")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<User> streamUsers(String groupId) {
+        return redisMutiny.streamUsers(groupId);
+    }
+
     @DELETE
     @Path("/delete/{groupId}/{userId}")
     public Uni<Integer> deleteUser(String groupId, String userId) {
         return redisMutiny.deleteUser(groupId, userId);
     }
 
+    /**
+     * Supprime le groupe (UNLINK) et rapporte sa taille ; {@code progressive} supprime d'abord les utilisateurs
+     * par lots HSCAN + HDEL et ne répond qu'une fois le groupe vidé.
+     */
     @DELETE
     @Path("/delete-all/{groupId}")
-    public Uni<Integer> deleteAllUsers(String groupId) {
-        return redisMutiny.deleteAllUsers(groupId);
+    public Uni<DeleteAllResult> deleteAllUsers(String groupId, @QueryParam("progressive") boolean progressive) {
+        return redisMutiny.deleteAllUsers(groupId, progressive);
     }
 
     @GET
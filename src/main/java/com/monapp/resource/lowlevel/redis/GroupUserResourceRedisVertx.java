@@ -1,13 +1,23 @@
 package com.monapp.resource.lowlevel.redis;
 
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.MultiGet;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
 import com.monapp.redis.lowlevel.redis.GroupUserManagerRedisVertx;
+import io.vertx.core.buffer.Buffer;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletionStage;
 
@@ -23,7 +33,7 @@ public class GroupUserResourceRedisVertx {
 
     @POST
     @Path("/create/{groupId}")
-    public CompletionStage<Boolean> createUser(String groupId, User user) {
+    public CompletionStage<CreateUserResult> createUser(String groupId, User user) {
         return redisVertx.createUser(groupId, user).toCompletionStage();
     }
 
@@ -33,22 +43,46 @@ public class GroupUserResourceRedisVertx {
         return redisVertx.getUser(groupId, userId).toCompletionStage();
     }
 
+    /**
+     * Lecture multiple : corps = liste des ids, réponse = utilisateurs trouvés et ids manquants.
+     */
+    @POST
+    @Path("/get-many/{groupId}")
+    public CompletionStage<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        return redisVertx.getUsers(groupId, MultiGet.requireIds(userIds)).toCompletionStage();
+    }
+
     @GET
     @Path("/get-all/{groupId}")
     public CompletionStage<Map<String, User>> getAllUsers(String groupId) {
         return redisVertx.getAllUsers(groupId).toCompletionStage();
     }
 
+    /**
+     * Variante pass-through de get-all : valeurs stockées recopiées sans décodage ;
+     * {@code ?fields=id,email} ne lit que ces champs de chaque utilisateur.
+     */
+    @GET
+    @Path("/get-all-raw/{groupId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public CompletionStage<Buffer> getAllUsersRaw(String groupId, @QueryParam("fields") String fields) {
+        return redisVertx.getAllUsersRaw(groupId, JsonCodec.fields(fields)).toCompletionStage();
+    }
+
     @DELETE
     @Path("/delete/{groupId}/{userId}")
     public CompletionStage<Integer> deleteUser(String groupId, String userId) {
         return redisVertx.deleteUser(groupId, userId).toCompletionStage();
     }
 
+    /**
+     * Supprime le groupe (UNLINK) et rapporte sa taille ; {@code progressive} supprime d'abord les utilisateurs
+     * par lots HSCAN + HDEL et ne répond qu'une fois le groupe vidé.
+     */
     @DELETE
     @Path("/delete-all/{groupId}")
-    public CompletionStage<Integer> deleteAllUsers(String groupId) {
-        return redisVertx.deleteAllUsers(groupId).toCompletionStage();
+    public CompletionStage<DeleteAllResult> deleteAllUsers(String groupId, @QueryParam("progressive") boolean progressive) {
+        return redisVertx.deleteAllUsers(groupId, progressive).toCompletionStage();
     }
 
     @GET
@@ -1,14 +1,29 @@
 package com.monapp.resource.lowlevel.redisapi;
 
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.DeleteUsersResult;
+import com.monapp.model.MoveUserResult;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.MultiGet;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
 import com.monapp.redis.lowlevel.redisapi.GroupUserManagerRedisAPIMutiny;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.resteasy.reactive.RestMediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
+import java.util.List;
 import java.util.Map;
 
 @Path("/redisapi/mutiny")
@@ -23,7 +38,7 @@ public class GroupUserResourceRedisAPIMutiny {
 
     @POST
     @Path("/create/{groupId}")
-    public Uni<Boolean> createUser(String groupId, User user) {
+    public Uni<CreateUserResult> createUser(String groupId, User user) {
         return redisAPIMutiny.createUser(groupId, user);
     }
 
@@ -33,22 +48,84 @@ public class GroupUserResourceRedisAPIMutiny {
         return redisAPIMutiny.getUser(groupId, userId);
     }
 
+    /**
+     * Lecture multiple : corps = liste des ids, réponse = utilisateurs trouvés et ids manquants.
+     */
+    @POST
+    @Path("/get-many/{groupId}")
+    public Uni<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        return redisAPIMutiny.getUsers(groupId, MultiGet.requireIds(userIds));
+    }
+
     @GET
     @Path("/get-all/{groupId}")
     public Uni<Map<String, User>> getAllUsers(String groupId) {
         return redisAPIMutiny.getAllUsers(groupId);
     }
 
+    /**
+     * Variante pass-through de get-all : valeurs stockées recopiées sans décodage ;
+     * {@code ?fields=id,email} ne lit que ces champs de chaque utilisateur.
+     */
+    @GET
+    @Path("/get-all-raw/{groupId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Buffer> getAllUsersRaw(String groupId, @QueryParam("fields") String fields) {
+        return redisAPIMutiny.getAllUsersRaw(groupId, JsonCodec.fields(fields));
+    }
+
+    /**
+     * Variante streaming de get-all : un utilisateur par ligne (NDJSON), envoyé au fil du HSCAN.
+     */
+    @GET
+    @Path("/stream/{groupId}")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<User> streamUsers(String groupId) {
+        return redisAPIMutiny.streamUsers(groupId);
+    }
+
+    /**
+     * Crée l'utilisateur s'il n'existe pas encore et rafraîchit le TTL du groupe (FCALL create_if_absent).
+     */
+    @POST
+    @Path("/create-if-absent/{groupId}")
+    public Uni<CreateUserResult> createUserIfAbsent(String groupId, User user) {
+        return redisAPIMutiny.createUserIfAbsent(groupId, user);
+    }
+
+    /**
+     * Déplace un utilisateur vers un autre groupe (FCALL move_user).
+     */
+    @POST
+    @Path("/move/{fromGroupId}/{toGroupId}/{userId}")
+    public Uni<MoveUserResult> moveUser(String fromGroupId, String toGroupId, String userId) {
+        return redisAPIMutiny.moveUser(fromGroupId, toGroupId, userId);
+    }
+
+    /**
+     * Suppression multiple : corps = liste des ids, réponse = supprimés et restants (FCALL delete_users).
+     */
+    @POST
+    @Path("/delete-many/{groupId}")
+    public Uni<DeleteUsersResult> deleteUsers(String groupId, List<String> userIds) {
+        return redisAPIMutiny.deleteUsers(groupId, MultiGet.requireIds(userIds));
+    }
+
     @DELETE
     @Path("/delete/{groupId}/{userId}")
     public Uni<Integer> deleteUser(String groupId, String userId) {
         return redisAPIMutiny.deleteUser(groupId, userId);
     }
 
+    /**
+     * Supprime le groupe (UNLINK) et rapporte sa taille ; {@code progressive} supprime d'abord les utilisateurs
+     * par lots HSCAN + HDEL et ne répond qu'une fois le groupe vidé.
+     */
     @DELETE
     @Path("/delete-all/{groupId}")
-    public Uni<Integer> deleteAllUsers(String groupId) {
-        return redisAPIMutiny.deleteAllUsers(groupId);
+    public Uni<DeleteAllResult> deleteAllUsers(String groupId, @QueryParam("progressive") boolean progressive) {
+        return redisAPIMutiny.deleteAllUsers(groupId, progressive);
     }
 
     @GET
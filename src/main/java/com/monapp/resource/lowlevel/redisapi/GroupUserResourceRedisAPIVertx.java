@@ -1,13 +1,25 @@
 package com.monapp.resource.lowlevel.redisapi;
 
+import com.monapp.model.CreateUserResult;
+import com.monapp.model.DeleteAllResult;
+import com.monapp.model.DeleteUsersResult;
+import com.monapp.model.MoveUserResult;
+import com.monapp.model.MultiGetResult;
 import com.monapp.model.User;
+import com.monapp.redis.MultiGet;
+import com.monapp.redis.lowlevel.codec.JsonCodec;
 import com.monapp.redis.lowlevel.redisapi.GroupUserManagerRedisAPIVertx;
+import io.vertx.core.buffer.Buffer;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletionStage;
 
@@ -23,7 +35,7 @@ public class GroupUserResourceRedisAPIVertx {
 
     @POST
     @Path("/create/{groupId}")
-    public CompletionStage<Boolean> createUser(String groupId, User user) {
+    public CompletionStage<CreateUserResult> createUser(String groupId, User user) {
         return redisAPIVertx.createUser(groupId, user).toCompletionStage();
     }
 
@@ -33,22 +45,73 @@ public class GroupUserResourceRedisAPIVertx {
         return redisAPIVertx.getUser(groupId, userId).toCompletionStage();
     }
 
+    /**
+     * Lecture multiple : corps = liste des ids, réponse = utilisateurs trouvés et ids manquants.
+     */
+    @POST
+    @Path("/get-many/{groupId}")
+    public CompletionStage<MultiGetResult> getUsers(String groupId, List<String> userIds) {
+        return redisAPIVertx.getUsers(groupId, MultiGet.requireIds(userIds)).toCompletionStage();
+    }
+
     @GET
     @Path("/get-all/{groupId}")
     public CompletionStage<Map<String, User>> getAllUsers(String groupId) {
         return redisAPIVertx.getAllUsers(groupId).toCompletionStage();
     }
 
+    /**
+     * Variante pass-through de get-all : valeurs stockées recopiées sans décodage ;
+     * {@code ?fields=id,email} ne lit que ces champs de chaque utilisateur.
+     */
+    @GET
+    @Path("/get-all-raw/{groupId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public CompletionStage<Buffer> getAllUsersRaw(String groupId, @QueryParam("fields") String fields) {
+        return redisAPIVertx.getAllUsersRaw(groupId, JsonCodec.fields(fields)).toCompletionStage();
+    }
+
+    /**
+     * Crée l'utilisateur s'il n'existe pas encore et rafraîchit le TTL du groupe (FCALL create_if_absent).
+     */
+    @POST
+    @Path("/create-if-absent/{groupId}")
+    public CompletionStage<CreateUserResult> createUserIfAbsent(String groupId, User user) {
+        return redisAPIVertx.createUserIfAbsent(groupId, user).toCompletionStage();
+    }
+
+    /**
+     * Déplace un utilisateur vers un autre groupe (FCALL move_user).
+     */
+    @POST
+    @Path("/move/{fromGroupId}/{toGroupId}/{userId}")
+    public CompletionStage<MoveUserResult> moveUser(String fromGroupId, String toGroupId, String userId) {
+        return redisAPIVertx.moveUser(fromGroupId, toGroupId, userId).toCompletionStage();
+    }
+
+    /**
+     * Suppression multiple : corps = liste des ids, réponse = supprimés et restants (FCALL delete_users).
+     */
+    @POST
+    @Path("/delete-many/{groupId}")
+    public CompletionStage<DeleteUsersResult> deleteUsers(String groupId, List<String> userIds) {
+        return redisAPIVertx.deleteUsers(groupId, MultiGet.requireIds(userIds)).toCompletionStage();
+    }
+
     @DELETE
     @Path("/delete/{groupId}/{userId}")
     public CompletionStage<Integer> deleteUser(String groupId, String userId) {
         return redisAPIVertx.deleteUser(groupId, userId).toCompletionStage();
     }
 
+    /**
+     * Supprime le groupe (UNLINK) et rapporte sa taille ; {@code progressive} supprime d'abord les utilisateurs
+     * par lots HSCAN + HDEL et ne répond qu'une fois le groupe vidé.
+     */
     @DELETE
     @Path("/delete-all/{groupId}")
-    public CompletionStage<Integer> deleteAllUsers(String groupId) {
-        return redisAPIVertx.deleteAllUsers(groupId).toCompletionStage();
+    public CompletionStage<DeleteAllResult> deleteAllUsers(String groupId, @QueryParam("progressive") boolean progressive) {
+        return redisAPIVertx.deleteAllUsers(groupId, progressive).toCompletionStage();
     }
 
     @GET
@@ -0,0 +1,331 @@
+#!lua name=monapp_groups
+
+-- Bibliothèque de fonctions des groupes, chargée au démarrage par GroupFunctions (FUNCTION LOAD REPLACE)
+-- et appelée par FCALL : chaque opération est atomique et tient en un aller-retour.
+--
+-- Chaque fonction reçoit d'abord ses n clés de groupe. Si le flux de changements est activé (voir ChangeFeed),
+-- ces clés sont suivies des n flux correspondants, et les ARGV se terminent par MAXLEN, la rétention d'un flux propre
+-- au groupe (secondes) puis, pour chaque flux, l'id du groupe ('' pour un flux propre au groupe).
+
+-- MAXLEN du flux de changements (nil si désactivé) et nombre d'ARGV propres à la fonction
+local function change_feed(keys, args, n)
+    if #keys < 2 * n then
+        return nil, #args
+    end
+    return args[#args - n - 1], #args - n - 2
+end
+
+-- Ajoute l'événement au flux du i-ème groupe ; user nil pour un événement sur tout le groupe.
+-- Un flux propre au groupe prend le TTL du groupe plus la rétention, ou la rétention seule si le groupe n'existe plus :
+-- à appeler après l'écriture et le rafraîchissement du TTL.
+local function append_change(keys, args, n, i, maxlen, op, user)
+    if not maxlen then
+        return
+    end
+    local event = {keys[n + i], 'MAXLEN', '~', maxlen, '*', 'op', op}
+    if user then
+        table.insert(event, 'u')
+        table.insert(event, user)
+    end
+    local group = args[#args - n + i]
+    if group ~= '' then
+        table.insert(event, 'g')
+        table.insert(event, group)
+    end
+    redis.call('XADD', unpack(event))
+    if group == '' then
+        local retention = tonumber(args[#args - n])
+        local pttl = redis.call('PTTL', keys[i])
+        if pttl > 0 then
+            redis.call('PEXPIRE', keys[n + i], pttl + retention * 1000)
+        elseif pttl == -1 then
+            redis.call('PERSIST', keys[n + i])
+        else
+            redis.call('EXPIRE', keys[n + i], retention)
+        end
+    end
+end
+
+-- Repose le TTL si le TTL restant est sous le seuil de rafraîchissement (voir TtlPolicy) ; 1 si posé
+local function refresh_ttl(key, ttl, threshold)
+    if redis.call('TTL', key) < tonumber(threshold) then
+        return redis.call('EXPIRE', key, ttl)
+    end
+    return 0
+end
+
+-- Index des emails (voir EmailIndex), sans effet si group est vide ou absent (index désactivé).
+-- users:email:<email> est le set des <groupId>:<userId> qui portent l'email ; la table inverse
+-- group-emails:{groups:<groupId>} (userId -> email) donne l'ancien email sans décoder la valeur stockée.
+-- Les clés de l'index sont calculées ici, hors KEYS : refusé en cluster (voir ClusterCompatibility). Un id utilisateur contenant ':',
+-- séparateur du groupe et de l'utilisateur dans l'index, n'est pas indexé.
+local function email_reverse(group)
+    return 'group-emails:{groups:' .. group .. '}'
+end
+
+local function index_del(group, user)
+    if not group or group == '' then
+        return
+    end
+    local reverse = email_reverse(group)
+    local old = redis.call('HGET', reverse, user)
+    if old then
+        redis.call('SREM', 'users:email:' .. old, group .. ':' .. user)
+        redis.call('HDEL', reverse, user)
+    end
+end
+
+local function index_set(group, user, email)
+    if not group or group == '' or string.find(user, ':', 1, true) then
+        return
+    end
+    local reverse = email_reverse(group)
+    local old = redis.call('HGET', reverse, user)
+    if old and old ~= email then
+        redis.call('SREM', 'users:email:' .. old, group .. ':' .. user)
+    end
+    if email == '' then
+        redis.call('HDEL', reverse, user)
+    else
+        redis.call('SADD', 'users:email:' .. email, group .. ':' .. user)
+        redis.call('HSET', reverse, user, email)
+    end
+end
+
+-- Retrait d'un groupe en O(1) : la table inverse est renommée en group-emails-clearing:<n>:<groupId>, inscrite dans le
+-- set group-emails-clearing, puis vidée par lots hors de l'écriture (opération drain, voir EmailIndex#drainPending).
+-- Retourne le nombre d'utilisateurs à retirer.
+local function index_clear(group)
+    if not group or group == '' then
+        return 0
+    end
+    local reverse = email_reverse(group)
+    local users = redis.call('HLEN', reverse)
+    if users == 0 then
+        return 0
+    end
+    local pending = 'group-emails-clearing:' .. redis.call('INCR', 'group-emails-clearing-seq') .. ':' .. group
+    redis.call('RENAME', reverse, pending)
+    redis.call('SADD', 'group-emails-clearing', pending)
+    return users
+end
+
+-- Retire de l'index au plus count utilisateurs d'une table renommée par index_clear ; une entrée que le groupe,
+-- recréé depuis, a réindexée avec le même email est gardée. Retourne le nombre d'utilisateurs restants.
+local function index_drain(pending, count)
+    local group = string.match(pending, '^group%-emails%-clearing:%d+:(.*)$')
+    if group then
+        local entries = redis.call('HRANDFIELD', pending, count, 'WITHVALUES')
+        local reverse = email_reverse(group)
+        for i = 1, #entries, 2 do
+            if redis.call('HGET', reverse, entries[i]) ~= entries[i + 1] then
+                redis.call('SREM', 'users:email:' .. entries[i + 1], group .. ':' .. entries[i])
+            end
+            redis.call('HDEL', pending, entries[i])
+        end
+    end
+    local remaining = redis.call('HLEN', pending)
+    if remaining == 0 then
+        redis.call('SREM', 'group-emails-clearing', pending)
+    end
+    return remaining
+end
+
+-- Clé du groupe et de ses sous-hashes (voir GroupSharding)
+local function group_hashes(group)
+    local hashes = {'groups:' .. group}
+    local layout = redis.call('HGET', 'group-shards', group)
+    if layout then
+        local shards = 0
+        for count in string.gmatch(layout, '%d+') do
+            shards = math.max(shards, tonumber(count))
+        end
+        for shard = 0, shards - 1 do
+            table.insert(hashes, 'groups:' .. group .. '#' .. shard)
+        end
+    end
+    return hashes
+end
+
+-- KEYS[1] = groupe (ou sous-hash), ARGV[1] = id, ARGV[2] = valeur, ARGV[3] = TTL, ARGV[4] = seuil de
+-- rafraîchissement, ARGV[5] = id du groupe à indexer ('' : index désactivé), ARGV[6] = email normalisé.
+-- HSET, puis EXPIRE seulement si le TTL restant est sous le seuil : une rafale d'écritures sur un groupe ne repousse
+-- son TTL qu'une fois. Retourne {résultat HSET, 1 si le TTL a été posé}.
+local function create_user(keys, args)
+    local maxlen = change_feed(keys, args, 1)
+    local created = redis.call('HSET', keys[1], args[1], args[2])
+    local expired = refresh_ttl(keys[1], args[3], args[4])
+    index_set(args[5], args[1], args[6])
+    append_change(keys, args, 1, 1, maxlen, 'set', args[1])
+    return {created, expired}
+end
+
+-- KEYS[1] = groupe, ARGV[1] = id, ARGV[2] = id du groupe à indexer ('' : index désactivé).
+-- L'événement n'est ajouté que si l'utilisateur existait. Retourne le résultat de HDEL.
+local function delete_user(keys, args)
+    local maxlen = change_feed(keys, args, 1)
+    local deleted = redis.call('HDEL', keys[1], args[1])
+    index_del(args[2], args[1])
+    if deleted == 1 then
+        append_change(keys, args, 1, 1, maxlen, 'del', args[1])
+    end
+    return deleted
+end
+
+-- KEYS[1] = groupe, ARGV[1] = '1' pour ajouter l'événement même si le groupe n'existe plus (fin d'une suppression
+-- progressive, le hash déjà vidé), ARGV[2] = id du groupe à retirer de l'index ('' : index désactivé ou déjà traité).
+-- UNLINK précédé de HLEN et MEMORY USAGE pour rapporter ce qui est libéré.
+-- Retourne {HLEN, MEMORY USAGE (0 si le groupe n'existe pas), résultat d'UNLINK}.
+local function delete_group(keys, args)
+    local maxlen = change_feed(keys, args, 1)
+    local users = redis.call('HLEN', keys[1])
+    local bytes = redis.call('MEMORY', 'USAGE', keys[1]) or 0
+    local deleted = redis.call('UNLINK', keys[1])
+    index_clear(args[2])
+    if deleted == 1 or args[1] == '1' then
+        append_change(keys, args, 1, 1, maxlen, 'clear')
+    end
+    return {users, bytes, deleted}
+end
+
+-- Aucune clé ; ARGV[1] = opération, ARGV[2] = id du groupe, puis selon l'opération :
+-- set : paires (id, email normalisé) ; del : ids ; clear : rien ;
+-- drain : ARGV[2] est une table renommée par index_clear, ARGV[3] la taille du lot ;
+-- sync : triplets (id, valeur stockée, email normalisé), indexés seulement si le groupe contient encore cette valeur
+-- (une écriture concurrente de la reconstruction l'emporte) ; prune : ids, retirés s'ils ne sont plus dans le groupe ;
+-- clear-if-gone : rien, le groupe n'est retiré que s'il n'existe plus. Le groupe s'entend avec ses sous-hashes.
+-- Retourne le nombre d'entrées ajoutées ou retirées (restantes pour drain), -1 pour clear-if-gone sur un groupe existant.
+local function index_emails(keys, args)
+    local op, group = args[1], args[2]
+    if op == 'set' then
+        for i = 3, #args, 2 do
+            index_set(group, args[i], args[i + 1])
+        end
+        return (#args - 2) / 2
+    elseif op == 'del' then
+        for i = 3, #args do
+            index_del(group, args[i])
+        end
+        return #args - 2
+    elseif op == 'clear' then
+        return index_clear(group)
+    elseif op == 'drain' then
+        return index_drain(group, tonumber(args[3]))
+    end
+    local hashes = group_hashes(group)
+    if op == 'sync' then
+        local synced = 0
+        for i = 3, #args, 3 do
+            for _, hash in ipairs(hashes) do
+                if redis.call('HGET', hash, args[i]) == args[i + 1] then
+                    index_set(group, args[i], args[i + 2])
+                    synced = synced + 1
+                    break
+                end
+            end
+        end
+        return synced
+    elseif op == 'prune' then
+        local pruned = 0
+        for i = 3, #args do
+            local found = false
+            for _, hash in ipairs(hashes) do
+                if redis.call('HEXISTS', hash, args[i]) == 1 then
+                    found = true
+                    break
+                end
+            end
+            if not found then
+                index_del(group, args[i])
+                pruned = pruned + 1
+            end
+        end
+        return pruned
+    end
+    for _, hash in ipairs(hashes) do
+        if redis.call('EXISTS', hash) == 1 then
+            return -1
+        end
+    end
+    return index_clear(group)
+end
+
+-- Membres de users:email:<ARGV[1]> dont l'utilisateur est encore dans son groupe (sous-hashes compris) : un groupe
+-- expiré sans notification keyspace, ou en cours de retrait de l'index, n'est pas retourné. Lecture seule.
+local function lookup_email(keys, args)
+    local matches = {}
+    for _, member in ipairs(redis.call('SMEMBERS', 'users:email:' .. args[1])) do
+        local group, user = string.match(member, '^(.*):([^:]*)$')
+        if group then
+            for _, hash in ipairs(group_hashes(group)) do
+                if redis.call('HEXISTS', hash, user) == 1 then
+                    table.insert(matches, member)
+                    break
+                end
+            end
+        end
+    end
+    return matches
+end
+
+-- KEYS[1] = groupe, ARGV[1] = id du groupe à indexer ('' : index désactivé), puis les ids des utilisateurs.
+-- Retourne {supprimés, restants}.
+local function delete_users(keys, args)
+    local maxlen, last = change_feed(keys, args, 1)
+    local deleted = 0
+    for i = 2, last do
+        index_del(args[1], args[i])
+        if redis.call('HDEL', keys[1], args[i]) == 1 then
+            deleted = deleted + 1
+            append_change(keys, args, 1, 1, maxlen, 'del', args[i])
+        end
+    end
+    return {deleted, redis.call('HLEN', keys[1])}
+end
+
+-- KEYS[1] = groupe, ARGV[1] = id, ARGV[2] = valeur, ARGV[3] = TTL, ARGV[4] = seuil de rafraîchissement,
+-- ARGV[5] = id du groupe à indexer ('' : index désactivé), ARGV[6] = email normalisé.
+-- N'écrit l'utilisateur (et ne l'indexe) que s'il est absent ; le TTL est rafraîchi dans tous les cas.
+-- Retourne {1 si créé, 1 si le TTL a été posé}.
+local function create_if_absent(keys, args)
+    local maxlen = change_feed(keys, args, 1)
+    local created = redis.call('HSETNX', keys[1], args[1], args[2])
+    local expired = refresh_ttl(keys[1], args[3], args[4])
+    if created == 1 then
+        index_set(args[5], args[1], args[6])
+        append_change(keys, args, 1, 1, maxlen, 'set', args[1])
+    end
+    return {created, expired}
+end
+
+-- KEYS[1] = groupe source, KEYS[2] = groupe cible, ARGV[1] = id, ARGV[2] = TTL de la cible,
+-- ARGV[3] = seuil de rafraîchissement de la cible, ARGV[4] et ARGV[5] = ids des groupes source et cible à indexer
+-- ('' : index désactivé). Un utilisateur déjà présent dans la cible est remplacé ; son email indexé suit.
+-- Retourne {1 si déplacé (0 si absent de la source), 1 si le TTL de la cible a été posé}.
+local function move_user(keys, args)
+    local maxlen = change_feed(keys, args, 2)
+    local value = redis.call('HGET', keys[1], args[1])
+    if not value then
+        return {0, 0}
+    end
+    redis.call('HDEL', keys[1], args[1])
+    redis.call('HSET', keys[2], args[1], value)
+    local expired = refresh_ttl(keys[2], args[2], args[3])
+    if args[4] ~= '' then
+        local email = redis.call('HGET', email_reverse(args[4]), args[1])
+        index_del(args[4], args[1])
+        index_set(args[5], args[1], email or '')
+    end
+    append_change(keys, args, 2, 1, maxlen, 'del', args[1])
+    append_change(keys, args, 2, 2, maxlen, 'set', args[1])
+    return {1, expired}
+end
+
+redis.register_function('create_user', create_user)
+redis.register_function('delete_user', delete_user)
+redis.register_function('delete_group', delete_group)
+redis.register_function('index_emails', index_emails)
+redis.register_function('delete_users', delete_users)
+redis.register_function('create_if_absent', create_if_absent)
+redis.register_function('move_user', move_user)
+redis.register_function{function_name = 'lookup_email', callback = lookup_email, flags = {'no-writes'}}
@@ -0,0 +1,166 @@
+package com.monapp.cache;
+
+import com.monapp.config.NearCacheConfig;
+import com.monapp.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GroupNearCacheTest {
+
+    private static final Duration AWAIT = Duration.ofSeconds(5);
+    private static final String KEY = "groups:g1";
+    private static final User ALICE = new User("u1", "Alice", null);
+
+    private final GroupNearCache cache = new GroupNearCache(null, null,
+            new Config(true, 100, new MemorySize(BigInteger.valueOf(1 << 20)), Duration.ofMinutes(1), Duration.ofSeconds(1)),
+            new SimpleMeterRegistry());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void inactiveCacheAlwaysLoads() {
+        getUser(KEY, ALICE);
+        getUser(KEY, ALICE);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void servesRepeatedReadsFromCache() {
+        cache.activate();
+
+        assertEquals(ALICE, getUser(KEY, ALICE));
+        assertEquals(ALICE, getUser(KEY, new User("u1", "stale", null)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void cachesAbsentUsers() {
+        cache.activate();
+
+        assertNull(getUser(KEY, null));
+        assertNull(getUser(KEY, ALICE));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidationDropsEntry() {
+        cache.activate();
+        getUser(KEY, ALICE);
+
+        cache.invalidate(KEY);
+
+        assertEquals(new User("u1", "Bob", null), getUser(KEY, new User("u1", "Bob", null)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void readStartedBeforeAnInvalidationIsNotCached() {
+        cache.activate();
+        CompletableFuture<User> redis = new CompletableFuture<>();
+        Uni<User> read = cache.getUser(KEY, "u1", () -> Uni.createFrom().completionStage(redis));
+        CompletableFuture<User> result = read.subscribeAsCompletionStage();
+
+        // Écriture pendant la lecture : la valeur lue est peut-être déjà périmée
+        cache.invalidate(KEY);
+        redis.complete(ALICE);
+
+        assertEquals(ALICE, result.join());
+        assertEquals(new User("u1", "Bob", null), getUser(KEY, new User("u1", "Bob", null)));
+    }
+
+    @Test
+    void getAllStartedBeforeAnInvalidationIsNotCached() {
+        cache.activate();
+        CompletableFuture<Map<String, User>> redis = new CompletableFuture<>();
+        CompletableFuture<Map<String, User>> result = cache.getAllUsers(KEY, () -> Uni.createFrom().completionStage(redis))
+                .subscribeAsCompletionStage();
+
+        cache.invalidate(KEY);
+        redis.complete(Map.of("u1", ALICE));
+
+        assertEquals(Map.of("u1", ALICE), result.join());
+        assertEquals(Map.of(), cache.getAllUsers(KEY, () -> Uni.createFrom().item(Map.of())).await().atMost(AWAIT));
+    }
+
+    @Test
+    void invalidationOfAnotherStripeDoesNotPreventCaching() {
+        String other = "groups:g2";
+        assertNotEquals(GroupNearCache.stripe(KEY), GroupNearCache.stripe(other));
+        cache.activate();
+        CompletableFuture<User> redis = new CompletableFuture<>();
+        CompletableFuture<User> result = cache.getUser(KEY, "u1", () -> Uni.createFrom().completionStage(redis))
+                .subscribeAsCompletionStage();
+
+        cache.invalidate(other);
+        redis.complete(ALICE);
+        result.join();
+
+        assertEquals(ALICE, getUser(KEY, new User("u1", "Bob", null)));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void invalidationOfACollidingKeyConservativelySkipsCaching() {
+        String colliding = collidingKey(KEY);
+        cache.activate();
+        CompletableFuture<User> redis = new CompletableFuture<>();
+        CompletableFuture<User> result = cache.getUser(KEY, "u1", () -> Uni.createFrom().completionStage(redis))
+                .subscribeAsCompletionStage();
+
+        cache.invalidate(colliding);
+        redis.complete(ALICE);
+        result.join();
+
+        getUser(KEY, ALICE);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidateAllDropsEveryEntryAndInFlightRead() {
+        cache.activate();
+        getUser("groups:g2", ALICE);
+        CompletableFuture<User> redis = new CompletableFuture<>();
+        CompletableFuture<User> result = cache.getUser(KEY, "u1", () -> Uni.createFrom().completionStage(redis))
+                .subscribeAsCompletionStage();
+
+        cache.invalidateAll();
+        redis.complete(ALICE);
+        result.join();
+
+        getUser(KEY, ALICE);
+        getUser("groups:g2", ALICE);
+        assertEquals(3, loads.get());
+    }
+
+    private User getUser(String key, User stored) {
+        return cache.getUser(key, "u1", () -> {
+            loads.incrementAndGet();
+            return Uni.createFrom().item(stored);
+        }).await().atMost(AWAIT);
+    }
+
+    private static String collidingKey(String key) {
+        for (int i = 0; ; i++) {
+            String candidate = "groups:c" + i;
+            if (!candidate.equals(key) && GroupNearCache.stripe(candidate) == GroupNearCache.stripe(key)) {
+                return candidate;
+            }
+        }
+    }
+
+    private record Config(boolean enabled, int maxEntries, MemorySize maxMemory, Duration expireAfterWrite,
+                          Duration reconnectDelay) implements NearCacheConfig {
+    }
+}
@@ -0,0 +1,171 @@
+package com.monapp.concurrency;
+
+import com.monapp.config.AdmissionConfig;
+import com.monapp.error.TooManyRequestsException;
+import com.monapp.metrics.RedisOp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    private static final Duration AWAIT = Duration.ofSeconds(5);
+
+    @Test
+    void fastCallUnderHighUtilisationRaisesLimit() {
+        AdmissionController admission = controller(2, 0, Duration.ofMillis(50));
+
+        admission.admitBlocking(null, RedisOp.HGET, () -> "ok");
+
+        // Un appel en vol sur une limite de 2 : +1/limite
+        assertEquals(2.5, admission.limit());
+    }
+
+    @Test
+    void fastCallUnderLowUtilisationKeepsLimit() {
+        AdmissionController admission = controller(64, 0, Duration.ofMillis(50));
+
+        admission.admitBlocking(null, RedisOp.HGET, () -> "ok");
+
+        assertEquals(64, admission.limit());
+    }
+
+    @Test
+    void slowCallLowersLimit() {
+        AdmissionController admission = controller(64, 0, Duration.ofMillis(50));
+        admission.admitBlocking(null, RedisOp.HGET, () -> "ok");
+
+        admission.admitBlocking(null, RedisOp.HGET, () -> {
+            sleep(50);
+            return "ok";
+        });
+
+        assertEquals(32, admission.limit());
+    }
+
+    @Test
+    void timeoutLowersLimit() {
+        AdmissionController admission = controller(64, 0, Duration.ofMillis(50));
+
+        assertThrows(CompletionException.class, () -> admission.admitBlocking(null, RedisOp.HGET, () -> {
+            throw new CompletionException(new TimeoutException());
+        }));
+
+        assertEquals(32, admission.limit());
+    }
+
+    @Test
+    void applicationErrorKeepsLimit() {
+        AdmissionController admission = controller(64, 0, Duration.ofMillis(50));
+
+        assertThrows(IllegalStateException.class, () -> admission.admitBlocking(null, RedisOp.HGET, () -> {
+            throw new IllegalStateException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }));
+
+        assertEquals(64, admission.limit());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "BUSY Redis is busy running a script. You can only call SCRIPT KILL or SHUTDOWN NOSAVE.",
+            "LOADING Redis is loading the dataset in memory",
+            "MASTERDOWN Link with MASTER is down and replica-serve-stale-data is set to 'no'."
+    })
+    void overloadErrors(String message) {
+        assertTrue(AdmissionController.overload(new RuntimeException(message)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "WRONGTYPE Operation against a key holding the wrong kind of value",
+            "NOSCRIPT No matching script. Please use EVAL.",
+            "BUSYGROUP Consumer Group name already exists",
+            "ERR Function not found"
+    })
+    void applicationErrors(String message) {
+        assertFalse(AdmissionController.overload(new RuntimeException(message)));
+    }
+
+    @Test
+    void queuedCallTimesOutWith429() {
+        AdmissionController admission = controller(1, 1, Duration.ofMillis(50));
+        Promise<String> held = Promise.promise();
+        admission.admitFuture(null, RedisOp.HGET, held::future);
+
+        Uni<String> queued = admission.admit(null, RedisOp.HGET, Uni.createFrom().item("ok"));
+
+        assertThrows(TooManyRequestsException.class, () -> queued.await().atMost(AWAIT));
+        held.complete("ok");
+    }
+
+    @Test
+    void fullQueueRejectsAtOnce() {
+        AdmissionController admission = controller(1, 0, Duration.ofSeconds(10));
+        Promise<String> held = Promise.promise();
+        admission.admitFuture(null, RedisOp.HGET, held::future);
+
+        Future<String> rejected = admission.admitFuture(null, RedisOp.HGET, () -> Future.succeededFuture("ok"));
+
+        assertTrue(rejected.failed());
+        assertTrue(rejected.cause() instanceof TooManyRequestsException);
+        held.complete("ok");
+    }
+
+    @Test
+    void queuedCallRunsOnceAPermitIsReleased() {
+        AdmissionController admission = controller(1, 1, Duration.ofSeconds(10));
+        Promise<String> held = Promise.promise();
+        admission.admitFuture(null, RedisOp.HGET, held::future);
+
+        Future<String> queued = admission.admitFuture(null, RedisOp.HGET, () -> Future.succeededFuture("queued"));
+        assertFalse(queued.isComplete());
+
+        held.complete("held");
+        assertEquals("queued", queued.result());
+    }
+
+    @Test
+    void groupOverItsLimitIsRejected() {
+        AdmissionController admission = new AdmissionController(
+                new Config(true, 64, 1, 512, 1, 0, Duration.ofMillis(50), 2.0, 0.5), new SimpleMeterRegistry());
+        Promise<String> held = Promise.promise();
+        admission.admitFuture("g1", RedisOp.HGET, held::future);
+
+        assertTrue(admission.admitFuture("g1", RedisOp.HGET, () -> Future.succeededFuture("ok")).failed());
+        assertEquals("ok", admission.admitFuture("g2", RedisOp.HGET, () -> Future.succeededFuture("ok")).result());
+
+        held.complete("ok");
+        assertEquals("ok", admission.admitFuture("g1", RedisOp.HGET, () -> Future.succeededFuture("ok")).result());
+    }
+
+    private static AdmissionController controller(int initialLimit, int queueSize, Duration queueTimeout) {
+        return new AdmissionController(new Config(true, initialLimit, 1, 512, 1000, queueSize, queueTimeout, 2.0, 0.5),
+                new SimpleMeterRegistry());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Config(boolean enabled, int initialLimit, int minLimit, int maxLimit, int perGroupLimit,
+                          int queueSize, Duration queueTimeout, double latencyTolerance, double backoffRatio)
+            implements AdmissionConfig {
+    }
+}
@@ -0,0 +1,97 @@
+package com.monapp.redis;
+
+import com.monapp.error.InvalidRequestException;
+import com.monapp.model.MultiGetResult;
+import com.monapp.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiGetTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, 0",
+            "1, 1",
+            "99, 1",
+            "100, 1",
+            "101, 2",
+            "200, 2",
+            "201, 3"
+    })
+    void chunkBoundaries(int ids, int expectedChunks) {
+        List<String> userIds = ids(ids);
+
+        List<List<String>> chunks = MultiGet.chunks(userIds, 100);
+
+        assertEquals(expectedChunks, chunks.size());
+        chunks.forEach(chunk -> assertTrue(!chunk.isEmpty() && chunk.size() <= 100));
+        assertEquals(userIds, chunks.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void chunksDropDuplicatesAndKeepOrder() {
+        List<List<String>> chunks = MultiGet.chunks(List.of("u3", "u1", "u3", "u2", "u1"), 2);
+
+        assertEquals(List.of(List.of("u3", "u1"), List.of("u2")), chunks);
+    }
+
+    @Test
+    void chunkSizeOfOneSendsOneFieldPerHmget() {
+        assertEquals(List.of(List.of("u1"), List.of("u2")), MultiGet.chunks(List.of("u1", "u2"), 1));
+    }
+
+    @Test
+    void resultSplitsFoundAndMissingAcrossChunks() {
+        User alice = new User("u1", "Alice", null);
+        User carol = new User("u3", "Carol", null);
+        List<List<String>> chunks = List.of(List.of("u1", "u2"), List.of("u3"));
+
+        MultiGetResult result = MultiGet.result(chunks, List.of(Arrays.asList(alice, null), List.of(carol)));
+
+        assertEquals(Map.of("u1", alice, "u3", carol), result.found());
+        assertEquals(List.of("u1", "u3"), new ArrayList<>(result.found().keySet()));
+        assertEquals(List.of("u2"), result.missing());
+    }
+
+    @Test
+    void alignRestoresIdsAndMissingValues() {
+        Map<String, User> values = new HashMap<>();
+        values.put("u1", new User(null, "Alice", null));
+
+        assertEquals(Arrays.asList(new User("u1", "Alice", null), null), MultiGet.align(List.of("u1", "u2"), values));
+    }
+
+    @Test
+    void orderedFollowsRequestAcrossSubHashes() {
+        User alice = new User("u1", "Alice", null);
+        User bob = new User("u2", "Bob", null);
+
+        MultiGetResult result = MultiGet.ordered(List.of("u2", "u3", "u1", "u2"), Map.of("u1", alice, "u2", bob));
+
+        assertEquals(List.of("u2", "u1"), new ArrayList<>(result.found().keySet()));
+        assertEquals(List.of("u3"), result.missing());
+    }
+
+    @Test
+    void missingOrNullIdsAreInvalidRequests() {
+        assertThrows(InvalidRequestException.class, () -> MultiGet.requireIds(null));
+        assertThrows(InvalidRequestException.class, () -> MultiGet.requireIds(Arrays.asList("u1", null)));
+        assertEquals(List.of("u1"), MultiGet.requireIds(List.of("u1")));
+    }
+
+    private static List<String> ids(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "u" + i).toList();
+    }
+}
@@ -0,0 +1,151 @@
+package com.monapp.redis;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Un redis-server local pour les tests d'intégration, interrogé en RESP sur une connexion par commande.
+ * Binaire : propriété système {@code redis.server} (défaut {@code redis-server} dans le PATH).
+ */
+public record RedisNode(int port) {
+
+    /**
+     * Démarre un redis-server sans persistance sur un port libre et attend qu'il réponde ; le processus est ajouté
+     * à {@code processes}, que l'appelant arrête.
+     */
+    public static RedisNode start(List<Process> processes, String... extraArgs) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>(List.of(
+                System.getProperty("redis.server", "redis-server"),
+                "--port", String.valueOf(port),
+                "--save", "",
+                "--appendonly", "no"));
+        command.addAll(List.of(extraArgs));
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        processes.add(process);
+
+        RedisNode node = new RedisNode(port);
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("redis-server exited with code " + process.exitValue());
+            }
+            try {
+                if ("PONG".equals(node.call("PING"))) {
+                    return node;
+                }
+            } catch (IOException notYetListening) {
+                // le serveur démarre encore
+            }
+            Thread.sleep(50);
+        }
+        throw new IOException("redis-server did not answer PING on port " + port);
+    }
+
+    /**
+     * Nombre d'appels de {@code command} reçus depuis le dernier {@link #resetStats()} (INFO commandstats).
+     */
+    public long calls(String command) throws IOException {
+        String prefix = "cmdstat_" + command.toLowerCase() + ":calls=";
+        for (String line : call("INFO", "commandstats").split("\r?\n")) {
+            if (line.startsWith(prefix)) {
+                int end = line.indexOf(',', prefix.length());
+                return Long.parseLong(line.substring(prefix.length(), end < 0 ? line.length() : end));
+            }
+        }
+        return 0;
+    }
+
+    public void resetStats() throws IOException {
+        call("CONFIG", "RESETSTAT");
+    }
+
+    /**
+     * Envoie une commande et renvoie sa réponse simple, entière ou bulk ({@code null} si absente).
+     */
+    public String call(String... args) throws IOException {
+        Object reply = send(args);
+        if (reply instanceof List<?>) {
+            throw new IOException("Unexpected array reply to " + args[0]);
+        }
+        return (String) reply;
+    }
+
+    /**
+     * Envoie une commande dont la réponse est un tableau de valeurs simples, entières ou bulk.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> callArray(String... args) throws IOException {
+        Object reply = send(args);
+        if (!(reply instanceof List<?>)) {
+            throw new IOException("Expected an array reply to " + args[0] + ", got " + reply);
+        }
+        return (List<String>) reply;
+    }
+
+    private Object send(String... args) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            StringBuilder request = new StringBuilder("*").append(args.length).append("\r\n");
+            for (String arg : args) {
+                request.append('$').append(arg.getBytes(StandardCharsets.UTF_8).length).append("\r\n").append(arg).append("\r\n");
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(request.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            return read(new DataInputStream(socket.getInputStream()));
+        }
+    }
+
+    private static Object read(DataInputStream in) throws IOException {
+        char type = (char) in.readByte();
+        String line = readLine(in);
+        return switch (type) {
+            case '+', ':' -> line;
+            case '-' -> throw new IOException(line);
+            case '$' -> {
+                int length = Integer.parseInt(line);
+                if (length < 0) {
+                    yield null;
+                }
+                byte[] bulk = in.readNBytes(length + 2);
+                yield new String(bulk, 0, length, StandardCharsets.UTF_8);
+            }
+            case '*' -> {
+                int size = Integer.parseInt(line);
+                List<Object> elements = new ArrayList<>(Math.max(0, size));
+                for (int i = 0; i < size; i++) {
+                    elements.add(read(in));
+                }
+                yield elements;
+            }
+            default -> throw new IOException("Unexpected reply type " + type);
+        };
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b < 0) {
+                throw new IOException("Connection closed");
+            }
+            line.append((char) b);
+        }
+        in.read();
+        return line.toString();
+    }
+}
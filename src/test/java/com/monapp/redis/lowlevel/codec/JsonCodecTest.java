@@ -0,0 +1,75 @@
+package com.monapp.redis.lowlevel.codec;
+
+import com.monapp.model.User;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonCodecTest {
+
+    @ParameterizedTest
+    @EnumSource(ValueFormat.class)
+    void roundTrip(ValueFormat format) {
+        JsonCodec codec = new JsonCodec(format);
+        User user = new User("u1", "Zoé Ünïcode", "zoe@example.com");
+
+        Buffer encoded = codec.encodeToBuffer(user);
+
+        assertEquals(format.header(), encoded.getByte(0));
+        assertEquals(user, codec.decode("u1", encoded));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ValueFormat.class)
+    void roundTripWithNullFields(ValueFormat format) {
+        JsonCodec codec = new JsonCodec(format);
+
+        assertEquals(new User("u1", null, null), codec.decode("u1", codec.encodeToBuffer(new User("u1", null, null))));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ValueFormat.class)
+    void readsEveryFormatWhateverTheSetting(ValueFormat format) {
+        User user = new User("u1", "Alice", "alice@example.com");
+        Buffer encoded = new JsonCodec(format).encodeToBuffer(user);
+
+        for (ValueFormat reader : ValueFormat.values()) {
+            assertEquals(user, new JsonCodec(reader).decode("u1", encoded));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ValueFormat.class)
+    void encodesRawGroupFromEveryFormat(ValueFormat format) {
+        JsonCodec codec = new JsonCodec(format);
+        Buffer value = codec.encodeToBuffer(new User("u1", "Alice", "alice@example.com"));
+        Buffer out = Buffer.buffer();
+
+        codec.appendRawUser(out, "u1", value, Set.of("id", "email"));
+
+        assertEquals(new JsonObject().put("id", "u1").put("email", "alice@example.com"), new JsonObject(out));
+    }
+
+    @Test
+    void emptyValueDecodesToUserWithoutFields() {
+        JsonCodec codec = new JsonCodec(ValueFormat.JSON);
+
+        assertEquals(new User("u1", null, null), codec.decode("u1", Buffer.buffer()));
+    }
+
+    @Test
+    void emptyValueInRawGroup() {
+        JsonCodec codec = new JsonCodec(ValueFormat.JSON);
+        Buffer out = Buffer.buffer();
+
+        codec.appendRawUser(out, "u1", Buffer.buffer(), null);
+
+        assertEquals(new JsonObject().put("id", "u1").putNull("name").putNull("email"), new JsonObject(out));
+    }
+}
@@ -0,0 +1,88 @@
+package com.monapp.redis.routing;
+
+import com.monapp.redis.RedisNode;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Primaire et réplica redis-server locaux ({@code --replicaof}, voir {@link RedisNode}), pour les tests d'intégration
+ * du routage des lectures.
+ * <p>
+ * L'application lit avec le client {@code read} en topologie réplication ({@code replicas=always}) et mesure le
+ * retard toutes les secondes. Le test reçoit l'instance par un champ annoté {@link InjectReplicaSet}.
+ */
+public class RedisReplicaSet implements QuarkusTestResourceLifecycleManager {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.FIELD)
+    public @interface InjectReplicaSet {
+    }
+
+    private final List<Process> processes = new ArrayList<>();
+    private RedisNode primary;
+    private RedisNode replica;
+
+    @Override
+    public Map<String, String> start() {
+        try {
+            primary = RedisNode.start(processes);
+            replica = RedisNode.start(processes, "--replicaof", "localhost", String.valueOf(primary.port()));
+            awaitReplicaOnline();
+        } catch (IOException e) {
+            stop();
+            throw new IllegalStateException("Cannot start redis-server (set -Dredis.server=<path>)", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+            throw new IllegalStateException(e);
+        }
+
+        String hosts = "redis://localhost:" + primary.port();
+        return Map.of(
+                "quarkus.redis.hosts", hosts,
+                "quarkus.redis.read.hosts", hosts,
+                "quarkus.redis.read.client-type", "replication",
+                "quarkus.redis.read.replicas", "always",
+                "monapp.read-routing.enabled", "true",
+                "monapp.read-routing.lag-check-interval", "1s",
+                "monapp.purge.every", "off");
+    }
+
+    @Override
+    public void inject(TestInjector testInjector) {
+        testInjector.injectIntoFields(this, new TestInjector.AnnotatedAndMatchesType(InjectReplicaSet.class, RedisReplicaSet.class));
+    }
+
+    @Override
+    public void stop() {
+        processes.forEach(Process::destroy);
+        processes.clear();
+    }
+
+    public RedisNode primary() {
+        return primary;
+    }
+
+    public RedisNode replica() {
+        return replica;
+    }
+
+    private void awaitReplicaOnline() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (primary.call("INFO", "replication").contains("state=online")) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new IOException("replica on port " + replica.port() + " did not come online");
+    }
+}
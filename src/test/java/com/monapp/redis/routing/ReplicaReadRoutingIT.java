@@ -0,0 +1,90 @@
+package com.monapp.redis.routing;
+
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusIntegrationTest;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routage des lectures contre un vrai primaire et un vrai réplica (voir RedisReplicaSet) : les HGET reçus par chaque
+ * nœud sont comptés dans INFO commandstats.
+ */
+@QuarkusIntegrationTest
+@WithTestResource(RedisReplicaSet.class)
+class ReplicaReadRoutingIT {
+
+    private static final String BASE = "/datasource/imperative";
+
+    @RedisReplicaSet.InjectReplicaSet
+    RedisReplicaSet replicaSet;
+
+    @BeforeEach
+    void awaitReplicaReads() throws Exception {
+        create("warmup", "w1");
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        while (replicaSet.replica().calls("hget") == 0) {
+            assertTrue(System.nanoTime() < deadline, "reads never reached the replica");
+            get("warmup", "w1");
+            Thread.sleep(200);
+        }
+    }
+
+    @Test
+    void readsGoToReplica() throws Exception {
+        create("replicated", "u1");
+        Thread.sleep(1500); // max-staleness : le groupe n'est plus lu sur le primaire
+        awaitReplicated("replicated");
+        resetStats();
+
+        for (int i = 0; i < 10; i++) {
+            get("replicated", "u1");
+        }
+
+        assertEquals(10, replicaSet.replica().calls("hget"));
+        assertEquals(0, replicaSet.primary().calls("hget"));
+    }
+
+    @Test
+    void readAfterWriteGoesToPrimary() throws Exception {
+        resetStats();
+
+        create("own-writes", "u2");
+        get("own-writes", "u2");
+
+        assertEquals(1, replicaSet.primary().calls("hget"));
+        assertEquals(0, replicaSet.replica().calls("hget"));
+    }
+
+    private void create(String groupId, String userId) {
+        given().contentType(ContentType.JSON)
+                .body("{\"id\":\"" + userId + "\",\"name\":\"Alice\",\"email\":\"" + userId + "@example.com\"}")
+                .post(BASE + "/create/" + groupId)
+                .then().statusCode(200);
+    }
+
+    private void get(String groupId, String userId) {
+        given().get(BASE + "/get/" + groupId + "/" + userId)
+                .then().statusCode(200).body("id", equalTo(userId));
+    }
+
+    private void awaitReplicated(String groupId) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!"1".equals(replicaSet.replica().call("EXISTS", "groups:" + groupId))) {
+            assertTrue(System.nanoTime() < deadline, "group " + groupId + " never reached the replica");
+            Thread.sleep(50);
+        }
+    }
+
+    private void resetStats() throws IOException {
+        replicaSet.primary().resetStats();
+        replicaSet.replica().resetStats();
+    }
+}
@@ -0,0 +1,96 @@
+package com.monapp.redis.routing;
+
+import com.monapp.redis.routing.ReadRouting.ReplicationInfo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicationInfoTest {
+
+    private static final String PRIMARY_TWO_REPLICAS = """
+            # Replication\r
+            role:master\r
+            connected_slaves:2\r
+            slave0:ip=10.0.0.2,port=6380,state=online,offset=1234,lag=0\r
+            slave1:ip=10.0.0.3,port=6381,state=online,offset=1200,lag=3\r
+            master_failover_state:no-failover\r
+            master_replid:8c1d7e3b5a0f1c2d3e4f5a6b7c8d9e0f1a2b3c4d\r
+            master_repl_offset:1234\r
+            \r
+            # Cluster\r
+            cluster_enabled:0\r
+            """;
+
+    @Test
+    void primaryWithOnlineReplicas() {
+        assertEquals(new ReplicationInfo(2, true, 3, false), ReplicationInfo.parse(PRIMARY_TWO_REPLICAS));
+    }
+
+    @Test
+    void primaryWithoutReplicas() {
+        String info = """
+                # Replication
+                role:master
+                connected_slaves:0
+                master_repl_offset:0
+
+                # Cluster
+                cluster_enabled:0
+                """;
+
+        assertEquals(new ReplicationInfo(0, true, -1, false), ReplicationInfo.parse(info));
+    }
+
+    @Test
+    void replicaStillSyncingIsNotOnline() {
+        String info = """
+                role:master
+                connected_slaves:2
+                slave0:ip=10.0.0.2,port=6380,state=online,offset=1234,lag=1
+                slave1:ip=10.0.0.3,port=6381,state=wait_bgsave,offset=0,lag=0
+                cluster_enabled:0
+                """;
+
+        assertEquals(new ReplicationInfo(2, false, 1, false), ReplicationInfo.parse(info));
+    }
+
+    @Test
+    void replicaWithoutLagFieldCountsAsInfinitelyLate() {
+        // Versions anciennes ou réplica en cours de synchronisation : pas de champ lag
+        String info = """
+                role:master
+                slave0:ip=10.0.0.2,port=6380,state=online,offset=1234
+                cluster_enabled:0
+                """;
+
+        assertEquals(new ReplicationInfo(1, true, Long.MAX_VALUE, false), ReplicationInfo.parse(info));
+    }
+
+    @Test
+    void replicaSideFieldsAreNotReplicas() {
+        String info = """
+                role:slave
+                master_host:10.0.0.1
+                slave_read_repl_offset:1234
+                slave_repl_offset:1234
+                slave_priority:100
+                slave_read_only:1
+                connected_slaves:0
+                cluster_enabled:0
+                """;
+
+        assertEquals(new ReplicationInfo(0, true, -1, false), ReplicationInfo.parse(info));
+    }
+
+    @Test
+    void clusterIsDetected() {
+        String info = """
+                role:master
+                connected_slaves:1
+                slave0:ip=10.0.0.2,port=6380,state=online,offset=1234,lag=0
+                cluster_enabled:1
+                """;
+
+        assertEquals(new ReplicationInfo(1, true, 0, true), ReplicationInfo.parse(info));
+    }
+}
@@ -0,0 +1,183 @@
+package com.monapp.redis.script;
+
+import com.monapp.redis.RedisNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Scripts de purge ({@link GroupScripts#PURGE_STALE_GROUPS}, {@link GroupScripts#PURGE_STALE_SHARDED_GROUP}) contre un
+ * redis-server local (voir RedisNode). OBJECT IDLETIME compte en secondes : chaque test laisse ses groupes inactifs
+ * {@link #IDLE_MILLIS}, puis relit ceux qui doivent rester actifs.
+ */
+class PurgeScriptsIT {
+
+    private static final long IDLE_MILLIS = 2500;
+    private static final String LAYOUTS = "group-shards";
+
+    private static final List<Process> processes = new ArrayList<>();
+    private static RedisNode redis;
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        redis = RedisNode.start(processes);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        processes.forEach(Process::destroy);
+    }
+
+    @BeforeEach
+    void flush() throws IOException {
+        redis.call("FLUSHALL");
+    }
+
+    @Test
+    void idleGroupWithoutTtlIsPurgedAfterGrace() throws Exception {
+        group("groups:idle", null);
+        group("groups:fresh", null);
+        group("groups:expiring", 3600);
+        idle();
+        touch("groups:fresh");
+
+        assertEquals(List.of("groups:idle"),
+                purge(List.of("groups:idle", "groups:fresh", "groups:expiring"), true, 0, 1, false));
+        assertEquals("0", redis.call("EXISTS", "groups:idle"));
+        assertEquals("2", redis.call("EXISTS", "groups:fresh", "groups:expiring"));
+    }
+
+    @Test
+    void groupWithoutTtlIsKeptWhenItsPurgeIsDisabled() throws Exception {
+        group("groups:idle", null);
+        idle();
+
+        assertEquals(List.of(), purge(List.of("groups:idle"), false, 0, 1, false));
+        assertEquals("1", redis.call("EXISTS", "groups:idle"));
+    }
+
+    @Test
+    void groupIdleBeyondMaxIdleIsPurgedEvenWithTtl() throws Exception {
+        group("groups:idle", 3600);
+        group("groups:active", 3600);
+        idle();
+        touch("groups:active");
+
+        assertEquals(List.of("groups:idle"), purge(List.of("groups:idle", "groups:active"), false, 1, 1, false));
+        assertEquals(List.of(), purge(List.of("groups:active"), false, 0, 1, false));
+    }
+
+    @Test
+    void missingGroupIsSkipped() throws Exception {
+        assertEquals(List.of(), purge(List.of("groups:missing"), true, 1, 1, false));
+    }
+
+    @Test
+    void keyOfAShardedGroupIsLeftToTheShardedPurge() throws Exception {
+        group("groups:plain", null);
+        // Groupe en cours de passage de 1 à 2 sous-hashes : groups:sharded est encore la source
+        group("groups:sharded", null);
+        redis.call("HSET", LAYOUTS, "sharded", "1>2");
+        idle();
+
+        assertEquals(List.of("groups:plain"), purge(List.of("groups:plain", "groups:sharded"), true, 0, 1, true));
+        assertEquals("1", redis.call("EXISTS", "groups:sharded"));
+    }
+
+    @Test
+    void shardedGroupIsPurgedWholeWhenEverySubHashIsStale() throws Exception {
+        group("groups:s1#0", null);
+        group("groups:s1#1", null);
+        redis.call("HSET", LAYOUTS, "s1", "2");
+        idle();
+
+        assertEquals("2", purgeSharded("s1", List.of("groups:s1#0", "groups:s1#1")));
+        assertEquals("0", redis.call("EXISTS", "groups:s1#0", "groups:s1#1"));
+        assertEquals("0", redis.call("HEXISTS", LAYOUTS, "s1"));
+    }
+
+    @Test
+    void oneActiveSubHashKeepsTheWholeShardedGroup() throws Exception {
+        group("groups:s1#0", null);
+        group("groups:s1#1", null);
+        redis.call("HSET", LAYOUTS, "s1", "2");
+        idle();
+        touch("groups:s1#1");
+
+        assertEquals("0", purgeSharded("s1", List.of("groups:s1#0", "groups:s1#1")));
+        assertEquals("2", redis.call("EXISTS", "groups:s1#0", "groups:s1#1"));
+        assertEquals("1", redis.call("HEXISTS", LAYOUTS, "s1"));
+    }
+
+    @Test
+    void missingSubHashesDoNotKeepAStaleShardedGroup() throws Exception {
+        group("groups:s1#1", null);
+        redis.call("HSET", LAYOUTS, "s1", "2");
+        idle();
+
+        assertEquals("1", purgeSharded("s1", List.of("groups:s1#0", "groups:s1#1")));
+        assertEquals("0", redis.call("HEXISTS", LAYOUTS, "s1"));
+    }
+
+    @Test
+    void shardedGroupWithoutAnySubHashIsLeftAlone() throws Exception {
+        redis.call("HSET", LAYOUTS, "s1", "2");
+
+        assertEquals("0", purgeSharded("s1", List.of("groups:s1#0", "groups:s1#1")));
+        assertEquals("1", redis.call("HEXISTS", LAYOUTS, "s1"));
+    }
+
+    // ----- Outils -----
+
+    private static void group(String key, Integer ttlSeconds) throws IOException {
+        redis.call("HSET", key, "u1", "{\"name\":\"Alice\"}");
+        if (ttlSeconds != null) {
+            redis.call("EXPIRE", key, String.valueOf(ttlSeconds));
+        }
+    }
+
+    private static void idle() throws InterruptedException {
+        Thread.sleep(IDLE_MILLIS);
+    }
+
+    /**
+     * Lecture qui remet à zéro OBJECT IDLETIME.
+     */
+    private static void touch(String key) throws IOException {
+        redis.call("HGET", key, "u1");
+    }
+
+    private static List<String> purge(List<String> keys, boolean withoutTtl, long maxIdle, long grace, boolean layouts)
+            throws IOException {
+        List<String> args = new ArrayList<>(List.of("EVAL", GroupScripts.PURGE_STALE_GROUPS,
+                String.valueOf(keys.size() + (layouts ? 1 : 0))));
+        args.addAll(keys);
+        if (layouts) {
+            args.add(LAYOUTS);
+        }
+        args.addAll(criteria(withoutTtl, maxIdle, grace));
+        args.add(layouts ? "1" : "0");
+        return redis.callArray(args.toArray(String[]::new));
+    }
+
+    private static String purgeSharded(String groupId, List<String> hashes) throws IOException {
+        List<String> args = new ArrayList<>(List.of("EVAL", GroupScripts.PURGE_STALE_SHARDED_GROUP,
+                String.valueOf(hashes.size() + 1)));
+        args.addAll(hashes);
+        args.add(LAYOUTS);
+        args.addAll(criteria(true, 0, 1));
+        args.add(groupId);
+        return redis.call(args.toArray(String[]::new));
+    }
+
+    private static List<String> criteria(boolean withoutTtl, long maxIdle, long grace) {
+        return List.of(withoutTtl ? "1" : "0", String.valueOf(maxIdle), String.valueOf(grace));
+    }
+}
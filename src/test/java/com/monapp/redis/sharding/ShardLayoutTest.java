@@ -0,0 +1,105 @@
+package com.monapp.redis.sharding;
+
+import com.monapp.error.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardLayoutTest {
+
+    @Test
+    void singleHashKeepsGroupKey() {
+        assertEquals(List.of("groups:g1"), ShardLayout.SINGLE.keys("g1"));
+        assertEquals("groups:g1", ShardLayout.SINGLE.writeKey("g1", "u1"));
+        assertFalse(ShardLayout.SINGLE.sharded());
+        assertFalse(ShardLayout.SINGLE.migrating());
+    }
+
+    @Test
+    void shardedGroupUsesNumberedSubHashes() {
+        ShardLayout layout = new ShardLayout(4, 4);
+
+        assertEquals(List.of("groups:g1#0", "groups:g1#1", "groups:g1#2", "groups:g1#3"), layout.keys("g1"));
+        assertEquals("groups:g1#" + Math.floorMod("u1".hashCode(), 4), layout.writeKey("g1", "u1"));
+        assertEquals(layout.writeKey("g1", "u1"), layout.sourceKey("g1", "u1"));
+        assertTrue(layout.sharded());
+        assertFalse(layout.migrating());
+    }
+
+    @Test
+    void userIndexIsStableAndInRange() {
+        for (int i = 0; i < 1000; i++) {
+            String userId = "user-" + i;
+            int index = ShardLayout.index(userId, 8);
+            assertTrue(index >= 0 && index < 8);
+            assertEquals(index, ShardLayout.index(userId, 8));
+        }
+    }
+
+    @Test
+    void groupIdOfGroupAndSubHashKeys() {
+        assertEquals("g1", ShardLayout.groupIdOf("groups:g1"));
+        assertEquals("g1", ShardLayout.groupIdOf("groups:g1#3"));
+        // ':' n'est pas un séparateur : groups:a:1 est le groupe "a:1", pas un sous-hash de "a"
+        assertEquals("a:1", ShardLayout.groupIdOf("groups:a:1"));
+        assertNull(ShardLayout.groupIdOf("group-shards"));
+    }
+
+    @Test
+    void groupIdWithSeparatorIsRejected() {
+        assertThrows(InvalidRequestException.class, () -> ShardLayout.validateGroupId("g1#2"));
+        ShardLayout.validateGroupId("a:1");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1", "4", "4>8", "8>4", "1>2"})
+    void storedValueRoundTrips(String value) {
+        assertEquals(value, ShardLayout.parse(value).format());
+    }
+
+    @Test
+    void reshardingWritesToTargetAndReadsBothLayouts() {
+        ShardLayout layout = ShardLayout.parse("2>4");
+
+        assertTrue(layout.migrating());
+        assertTrue(layout.sharded());
+        assertEquals(List.of("groups:g1#0", "groups:g1#1", "groups:g1#2", "groups:g1#3"), layout.keys("g1"));
+        for (int i = 0; i < 100; i++) {
+            String userId = "user-" + i;
+            assertEquals(new ShardLayout(4, 4).writeKey("g1", userId), layout.writeKey("g1", userId));
+            assertEquals(new ShardLayout(2, 2).writeKey("g1", userId), layout.sourceKey("g1", userId));
+        }
+    }
+
+    @Test
+    void reshardingFromSingleHashListsTargetThenGroupKey() {
+        ShardLayout layout = ShardLayout.parse("1>2");
+
+        assertEquals(List.of("groups:g1#0", "groups:g1#1", "groups:g1"), layout.keys("g1"));
+        assertEquals("groups:g1", layout.sourceKey("g1", "u1"));
+    }
+
+    @Test
+    void doublingMovesUsersOnlyToTheirSubHashOrItsNewTwin() {
+        int moved = 0;
+        for (int i = 0; i < 1000; i++) {
+            String userId = "user-" + i;
+            int before = ShardLayout.index(userId, 4);
+            int after = ShardLayout.index(userId, 8);
+            assertTrue(after == before || after == before + 4, userId);
+            if (after != before) {
+                moved++;
+            }
+        }
+        // Environ la moitié des utilisateurs change de sous-hash
+        assertTrue(moved > 400 && moved < 600, "moved " + moved);
+    }
+}
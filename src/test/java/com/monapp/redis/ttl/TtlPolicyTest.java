@@ -0,0 +1,117 @@
+package com.monapp.redis.ttl;
+
+import com.monapp.config.TtlConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TtlPolicyTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void longestPrefixWins() {
+        TtlPolicy policy = policy(Duration.ofHours(10), 0.9, false,
+                Map.of("session-", Duration.ofMinutes(30), "session-long-", Duration.ofHours(2)));
+
+        assertEquals(Duration.ofMinutes(30), policy.ttl("session-1"));
+        assertEquals(Duration.ofHours(2), policy.ttl("session-long-1"));
+        assertEquals(Duration.ofHours(10), policy.ttl("other"));
+    }
+
+    @Test
+    void refreshThresholdIsAFractionOfTheGroupTtl() {
+        TtlPolicy policy = policy(Duration.ofHours(10), 0.9, false, Map.of("session-", Duration.ofSeconds(100)));
+
+        assertEquals(36000, policy.ttlSeconds("g1"));
+        assertEquals(32400, policy.refreshThresholdSeconds("g1"));
+        assertEquals(90, policy.refreshThresholdSeconds("session-1"));
+    }
+
+    @Test
+    void refreshIsDueUntilAnExpireIsSet() {
+        TtlPolicy policy = policy(Duration.ofHours(10), 0.9, false, Map.of());
+
+        assertTrue(policy.refreshDue("g1"));
+        policy.written("g1", false);
+        assertTrue(policy.refreshDue("g1"));
+
+        policy.written("g1", true);
+        assertFalse(policy.refreshDue("g1"));
+        assertTrue(policy.refreshDue("g2"));
+    }
+
+    @Test
+    void refreshIsDueAgainOnceTheTtlMayHaveFallenUnderTheThreshold() throws InterruptedException {
+        // TTL 1 s, seuil 0.9 : rafraîchissement dû 100 ms après un EXPIRE
+        TtlPolicy policy = policy(Duration.ofSeconds(1), 0.9, false, Map.of());
+
+        policy.written("g1", true);
+        assertFalse(policy.refreshDue("g1"));
+
+        Thread.sleep(200);
+        assertTrue(policy.refreshDue("g1"));
+    }
+
+    @Test
+    void forgottenGroupIsDueAtOnce() {
+        TtlPolicy policy = policy(Duration.ofHours(10), 0.9, false, Map.of());
+        policy.written("g1", true);
+
+        policy.forget("g1");
+
+        assertTrue(policy.refreshDue("g1"));
+    }
+
+    @Test
+    void noSlidingOnReadUnlessEnabled() {
+        TtlPolicy policy = policy(Duration.ofHours(10), 0.9, false, Map.of());
+
+        assertFalse(policy.slideOnRead("g1"));
+    }
+
+    @Test
+    void burstOfReadsSlidesOnce() {
+        TtlPolicy policy = policy(Duration.ofHours(10), 0.9, true, Map.of());
+
+        assertTrue(policy.slideOnRead("g1"));
+        assertFalse(policy.slideOnRead("g1"));
+        assertFalse(policy.slideOnRead("g1"));
+
+        assertEquals(1, registry.counter("ttl.expire", "result", "set").count());
+        assertEquals(2, registry.counter("ttl.expire", "result", "skipped").count());
+    }
+
+    @Test
+    void readAfterARecentWriteDoesNotSlide() {
+        TtlPolicy policy = policy(Duration.ofHours(10), 0.9, true, Map.of());
+
+        policy.written("g1", true);
+
+        assertFalse(policy.slideOnRead("g1"));
+    }
+
+    @Test
+    void readSlidesAgainOnceRefreshIsDue() throws InterruptedException {
+        TtlPolicy policy = policy(Duration.ofSeconds(1), 0.9, true, Map.of());
+        assertTrue(policy.slideOnRead("g1"));
+
+        Thread.sleep(200);
+
+        assertTrue(policy.slideOnRead("g1"));
+    }
+
+    private TtlPolicy policy(Duration defaultTtl, double refreshRatio, boolean slidingOnRead, Map<String, Duration> prefixes) {
+        return new TtlPolicy(new Config(defaultTtl, prefixes, refreshRatio, slidingOnRead, 1000), registry);
+    }
+
+    private record Config(Duration defaultTtl, Map<String, Duration> prefixes, double refreshRatio,
+                          boolean slidingOnRead, int trackedGroups) implements TtlConfig {
+    }
+}
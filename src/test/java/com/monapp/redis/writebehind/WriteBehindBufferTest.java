@@ -0,0 +1,266 @@
+package com.monapp.redis.writebehind;
+
+import com.monapp.config.ChangeFeedConfig;
+import com.monapp.config.EmailIndexConfig;
+import com.monapp.config.TtlConfig;
+import com.monapp.config.WriteBehindConfig;
+import com.monapp.error.TooManyRequestsException;
+import com.monapp.feed.ChangeFeed;
+import com.monapp.index.EmailIndex;
+import com.monapp.model.CreateUserResult;
+import com.monapp.redis.ttl.TtlPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import io.vertx.redis.client.impl.RequestImpl;
+import io.vertx.redis.client.impl.types.IntegerType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindBufferTest {
+
+    private static final Duration AWAIT = Duration.ofSeconds(5);
+    private static final String KEY = "groups:g1";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FakeRedis redis = new FakeRedis();
+
+    @Test
+    void coalescesRepeatedWritesOfAUser() {
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.BUFFERED, 100, redis::send);
+
+        buffer.write("g1", KEY, "u1", null, value("v1")).await().atMost(AWAIT);
+        buffer.write("g1", KEY, "u1", null, value("v2")).await().atMost(AWAIT);
+        buffer.write("g1", KEY, "u2", null, value("w1")).await().atMost(AWAIT);
+        buffer.flush("g1").await().atMost(AWAIT);
+
+        assertEquals(Map.of("u1", "v2", "u2", "w1"), redis.hashes.get(KEY));
+        assertEquals(List.of(List.of("HSET", "HSET", "EXPIRE")), redis.pipelines);
+        assertEquals(1, registry.counter("write_behind.coalesced", "style", "test").count());
+    }
+
+    @Test
+    void flushedAckReportsEachUsersOwnHsetReply() {
+        redis.hashes.put(KEY, new HashMap<>(Map.of("u1", "old")));
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.FLUSHED, 100, redis::send);
+
+        Uni<CreateUserResult> updated = buffer.write("g1", KEY, "u1", null, value("v1"));
+        Uni<CreateUserResult> created = buffer.write("g1", KEY, "u2", null, value("w1"));
+        buffer.flush("g1").await().atMost(AWAIT);
+
+        assertEquals(new CreateUserResult(false, true, true), updated.await().atMost(AWAIT));
+        assertEquals(new CreateUserResult(true, true, true), created.await().atMost(AWAIT));
+    }
+
+    @Test
+    void onlyTheFirstCoalescedWriteReportsCreated() {
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.FLUSHED, 100, redis::send);
+
+        Uni<CreateUserResult> first = buffer.write("g1", KEY, "u1", null, value("v1"));
+        Uni<CreateUserResult> second = buffer.write("g1", KEY, "u1", null, value("v2"));
+        buffer.flush("g1").await().atMost(AWAIT);
+
+        assertTrue(first.await().atMost(AWAIT).created());
+        assertFalse(second.await().atMost(AWAIT).created());
+    }
+
+    @Test
+    void discardDropsPendingWritesOfDeletedUsers() {
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.FLUSHED, 100, redis::send);
+
+        Uni<CreateUserResult> discarded = buffer.write("g1", KEY, "u1", null, value("v1"));
+        Uni<CreateUserResult> kept = buffer.write("g1", KEY, "u2", null, value("w1"));
+        buffer.discard("g1", List.of("u1")).await().atMost(AWAIT);
+        buffer.flush("g1").await().atMost(AWAIT);
+
+        assertEquals(new CreateUserResult(false, false, true), discarded.await().atMost(AWAIT));
+        assertTrue(kept.await().atMost(AWAIT).created());
+        assertEquals(Map.of("u2", "w1"), redis.hashes.get(KEY));
+    }
+
+    @Test
+    void discardOfAWholeGroupDropsAllItsWrites() {
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.BUFFERED, 100, redis::send);
+
+        buffer.write("g1", KEY, "u1", null, value("v1")).await().atMost(AWAIT);
+        buffer.write("g1", "groups:g1#1", "u2", null, value("w1")).await().atMost(AWAIT);
+        buffer.discard("g1", null).await().atMost(AWAIT);
+        buffer.flush("g1").await().atMost(AWAIT);
+
+        assertTrue(redis.pipelines.isEmpty());
+    }
+
+    @Test
+    void failedFlushRequeuesBufferedWrites() {
+        Failing failing = new Failing(redis::send);
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.BUFFERED, 100, failing);
+
+        buffer.write("g1", KEY, "u1", null, value("v1")).await().atMost(AWAIT);
+        failing.failures = 1;
+        buffer.flush("g1").await().atMost(AWAIT);
+        assertTrue(redis.hashes.isEmpty());
+
+        buffer.flush("g1").await().atMost(AWAIT);
+        assertEquals(Map.of("u1", "v1"), redis.hashes.get(KEY));
+        assertEquals(1, registry.counter("write_behind.flush.failures", "style", "test").count());
+    }
+
+    @Test
+    void requeuedWriteDoesNotOverwriteANewerOne() {
+        CompletableFuture<List<Response>> inFlight = new CompletableFuture<>();
+        List<List<Request>> sent = new ArrayList<>();
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.BUFFERED, 100, requests -> {
+            sent.add(requests);
+            return sent.size() == 1 ? Uni.createFrom().completionStage(inFlight) : redis.send(requests);
+        });
+
+        buffer.write("g1", KEY, "u1", null, value("v1")).await().atMost(AWAIT);
+        buffer.flushAll();
+        buffer.write("g1", KEY, "u1", null, value("v2")).await().atMost(AWAIT);
+        inFlight.completeExceptionally(new IllegalStateException("connection closed"));
+        buffer.flush("g1").await().atMost(AWAIT);
+
+        assertEquals(Map.of("u1", "v2"), redis.hashes.get(KEY));
+    }
+
+    @Test
+    void failedFlushFailsFlushedAckWrites() {
+        Failing failing = new Failing(redis::send);
+        failing.failures = 1;
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.FLUSHED, 100, failing);
+
+        Uni<CreateUserResult> write = buffer.write("g1", KEY, "u1", null, value("v1"));
+        buffer.flush("g1").await().atMost(AWAIT);
+
+        assertThrows(IllegalStateException.class, () -> write.await().atMost(AWAIT));
+        buffer.flush("g1").await().atMost(AWAIT);
+        assertTrue(redis.hashes.isEmpty());
+    }
+
+    @Test
+    void fullBufferRejectsWith429() {
+        WriteBehindBuffer buffer = buffer(WriteBehindConfig.Ack.BUFFERED, 1, requests -> Uni.createFrom().nothing());
+
+        buffer.write("g1", KEY, "u1", null, value("v1")).await().atMost(AWAIT);
+
+        assertThrows(TooManyRequestsException.class,
+                () -> buffer.write("g1", KEY, "u2", null, value("w1")).await().atMost(AWAIT));
+        assertEquals(1, registry.counter("write_behind.rejected", "style", "test").count());
+    }
+
+    // ----- Outils -----
+
+    private WriteBehindBuffer buffer(WriteBehindConfig.Ack ack, int maxPending,
+                                     Function<List<Request>, Uni<List<Response>>> sender) {
+        return new WriteBehindBuffer("test", new Config(true, ack, 1, maxPending, 1000, Duration.ofMillis(50), Duration.ofSeconds(1)),
+                new TtlPolicy(new Ttl(Duration.ofHours(10), Map.of(), 0.9, false, 1000), registry),
+                new ChangeFeed(new Feed(false, 0, Duration.ofMinutes(10), 10000, 100, Duration.ofMillis(200))),
+                new EmailIndex(null, new Index(false, 500, "off", 1000, 500, 5000), null),
+                (groupId, requests) -> sender.apply(requests), groupId -> {
+                }, registry);
+    }
+
+    private static io.vertx.mutiny.core.buffer.Buffer value(String value) {
+        return io.vertx.mutiny.core.buffer.Buffer.buffer(value);
+    }
+
+    /**
+     * Hashes en mémoire : HSET répond 1 pour un champ créé, 0 pour un champ mis à jour ; EXPIRE répond 1.
+     */
+    private static final class FakeRedis {
+        private final Map<String, Map<String, String>> hashes = new HashMap<>();
+        private final List<List<String>> pipelines = new ArrayList<>();
+
+        Uni<List<Response>> send(List<Request> requests) {
+            List<String> commands = new ArrayList<>();
+            List<Response> responses = new ArrayList<>();
+            for (Request request : requests) {
+                List<String> args = args(request);
+                commands.add(args.get(0));
+                long reply = switch (args.get(0)) {
+                    case "HSET" -> hashes.computeIfAbsent(args.get(1), key -> new HashMap<>()).put(args.get(2), args.get(3)) == null ? 1 : 0;
+                    case "EXPIRE" -> 1;
+                    default -> throw new IllegalArgumentException(args.get(0));
+                };
+                responses.add(Response.newInstance(IntegerType.create(reply)));
+            }
+            pipelines.add(commands);
+            return Uni.createFrom().item(responses);
+        }
+
+        /**
+         * Arguments d'une commande, relus de son encodage RESP (tableau de bulk strings).
+         */
+        private static List<String> args(Request request) {
+            byte[] resp = ((RequestImpl) request.getDelegate()).encode().getBytes();
+            List<String> args = new ArrayList<>();
+            int pos = resp[0] == '*' ? lineEnd(resp, 0) + 2 : 0;
+            while (pos < resp.length) {
+                int end = lineEnd(resp, pos);
+                int length = Integer.parseInt(new String(resp, pos + 1, end - pos - 1, StandardCharsets.US_ASCII));
+                args.add(new String(resp, end + 2, length, StandardCharsets.UTF_8));
+                pos = end + 2 + length + 2;
+            }
+            return args;
+        }
+
+        private static int lineEnd(byte[] resp, int from) {
+            int i = from;
+            while (resp[i] != '\r') {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Fait échouer les {@code failures} prochains pipelines.
+     */
+    private static final class Failing implements Function<List<Request>, Uni<List<Response>>> {
+        private final Function<List<Request>, Uni<List<Response>>> delegate;
+        private int failures;
+
+        private Failing(Function<List<Request>, Uni<List<Response>>> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Uni<List<Response>> apply(List<Request> requests) {
+            if (failures > 0) {
+                failures--;
+                return Uni.createFrom().failure(new IllegalStateException("connection closed"));
+            }
+            return delegate.apply(requests);
+        }
+    }
+
+    private record Config(boolean enabled, WriteBehindConfig.Ack ack, int shards, int maxPending, int flushSize, Duration flushInterval,
+                          Duration shutdownTimeout) implements WriteBehindConfig {
+    }
+
+    private record Ttl(Duration defaultTtl, Map<String, Duration> prefixes, double refreshRatio, boolean slidingOnRead,
+                       int trackedGroups) implements TtlConfig {
+    }
+
+    private record Feed(boolean enabled, int shards, Duration clearedRetention, long maxLen, int readCount,
+                        Duration pollInterval) implements ChangeFeedConfig {
+    }
+
+    private record Index(boolean enabled, int drainBatchSize, String rebuildEvery, int rebuildScanCount,
+                         int rebuildPageSize, int rebuildMaxUsersPerSecond) implements EmailIndexConfig {
+    }
+}
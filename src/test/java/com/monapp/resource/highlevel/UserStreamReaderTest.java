@@ -0,0 +1,65 @@
+package com.monapp.resource.highlevel;
+
+import com.monapp.error.InvalidRequestException;
+import com.monapp.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UserStreamReaderTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "[{\"id\":\"u1\",\"name\":\"Alice\"},{\"id\":\"u2\",\"name\":\"Bob\"}]",
+            "{\"id\":\"u1\",\"name\":\"Alice\"}\n{\"id\":\"u2\",\"name\":\"Bob\"}\n"
+    })
+    void readsArrayAndNdjson(String body) {
+        assertEquals(List.of(new User("u1", "Alice", null), new User("u2", "Bob", null)), readAll(body));
+    }
+
+    @Test
+    void emptyBodyHasNoUsers() {
+        assertEquals(List.of(), readAll(""));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"id\":",
+            "[{\"id\":\"u1\"},",
+            "not json",
+            "{\"id\":{\"nested\":true}}",
+            "{\"id\":\"u1\",\"unknown\":1}"
+    })
+    void malformedBodyIsInvalidRequest(String body) {
+        assertThrows(InvalidRequestException.class, () -> readAll(body));
+    }
+
+    @Test
+    void malformedValueMidStreamIsInvalidRequest() {
+        Iterator<User> users = UserStreamReader.read(stream("{\"id\":\"u1\"}\n{\"id\":\"u2\"}\n{\"id\":\"u3\""));
+
+        assertEquals(new User("u1", null, null), users.next());
+        assertEquals(new User("u2", null, null), users.next());
+        assertThrows(InvalidRequestException.class, users::next);
+    }
+
+    private static List<User> readAll(String body) {
+        List<User> users = new ArrayList<>();
+        UserStreamReader.read(stream(body)).forEachRemaining(users::add);
+        return users;
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}